@@ -0,0 +1,95 @@
+package org.copasi.cytoscape.internal.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.copasi.cytoscape.internal.AttributeUtil;
+import org.copasi.cytoscape.internal.BulkAttributeWriter;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Writing the node attributes of a model, cell by cell through
+ * {@link AttributeUtil} and column by column through a
+ * {@link BulkAttributeWriter}. Every invocation writes into a new network,
+ * so columns are created as on import.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AttributeBenchmarks {
+
+    private CyNetworkFactory networkFactory;
+    private CyEventHelper eventHelper;
+    private CyNetwork network;
+    private CyNode[] nodes;
+    private String[] names;
+    private String[] types;
+    private Double[] values;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticModelState state) {
+        networkFactory = Headless.networkFactory();
+        eventHelper = Headless.eventHelper();
+        ModelSnapshot snapshot = state.snapshot;
+        int n = snapshot.getObjectCount();
+        names = new String[n];
+        types = new String[n];
+        values = new Double[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = snapshot.getName(i);
+            types[i] = ModelSnapshot.getTypeName(snapshot.getKind(i));
+            values[i] = Double.isNaN(snapshot.getValue(i)) ? null : snapshot.getValue(i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createNodes() {
+        network = networkFactory.createNetwork();
+        nodes = new CyNode[names.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = network.addNode();
+        }
+    }
+
+    @Benchmark
+    public CyNetwork attributeUtil() {
+        for (int i = 0; i < nodes.length; i++) {
+            AttributeUtil.set(network, nodes[i], CyNetwork.NAME, names[i], String.class);
+            AttributeUtil.set(network, nodes[i], "type", types[i], String.class);
+            AttributeUtil.set(network, nodes[i], "value", values[i], Double.class);
+        }
+        return network;
+    }
+
+    @Benchmark
+    public CyNetwork bulkWriter() {
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), eventHelper)) {
+            writer.declare(CyNetwork.NAME, String.class)
+                    .declare("type", String.class)
+                    .declare("value", Double.class);
+            writer.set(CyNetwork.NAME, nodes, names, 0, nodes.length);
+            writer.set("type", nodes, types, 0, nodes.length);
+            writer.set("value", nodes, values, 0, nodes.length);
+        }
+        return network;
+    }
+
+}
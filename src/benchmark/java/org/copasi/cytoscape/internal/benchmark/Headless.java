@@ -0,0 +1,174 @@
+package org.copasi.cytoscape.internal.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.event.DummyCyEventHelper;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Cytoscape services for benchmarks without Cytoscape.
+ * <p>
+ * Networks and tables are the in-memory implementations Cytoscape tests
+ * with. Views and task monitors are stubs: a view keeps the visual
+ * properties set on it in a map and renders nothing, a task monitor drops
+ * everything, so the benchmarks measure the work of the app only.
+ */
+public final class Headless {
+
+    private static final AtomicLong SUIDS = new AtomicLong(1L << 40);
+
+    private Headless() {
+    }
+
+    /** Factory of in-memory networks, every network gets a root network of its own. */
+    public static CyNetworkFactory networkFactory() {
+        return new NetworkTestSupport().getNetworkFactory();
+    }
+
+    /** Event helper that delivers no events. */
+    public static CyEventHelper eventHelper() {
+        return new DummyCyEventHelper();
+    }
+
+    public static TaskMonitor taskMonitor() {
+        return (TaskMonitor) Proxy.newProxyInstance(Headless.class.getClassLoader(),
+                new Class<?>[]{TaskMonitor.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return defaultValue(proxy, method, args);
+                    }
+                });
+    }
+
+    /** Factory of views that hold a view per node and edge but render nothing. */
+    public static CyNetworkViewFactory viewFactory() {
+        return (CyNetworkViewFactory) Proxy.newProxyInstance(Headless.class.getClassLoader(),
+                new Class<?>[]{CyNetworkViewFactory.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("createNetworkView".equals(method.getName())) {
+                            return createView((CyNetwork) args[0]);
+                        }
+                        return defaultValue(proxy, method, args);
+                    }
+                });
+    }
+
+    private static CyNetworkView createView(final CyNetwork network) {
+        final Map<CyNode, View<CyNode>> nodeViews = new LinkedHashMap<>();
+        for (CyNode node : network.getNodeList()) {
+            nodeViews.put(node, Headless.<View<CyNode>>view(View.class, node, null));
+        }
+        final Map<CyEdge, View<CyEdge>> edgeViews = new LinkedHashMap<>();
+        for (CyEdge edge : network.getEdgeList()) {
+            edgeViews.put(edge, Headless.<View<CyEdge>>view(View.class, edge, null));
+        }
+        return view(CyNetworkView.class, network, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getNodeView":
+                        return nodeViews.get(args[0]);
+                    case "getEdgeView":
+                        return edgeViews.get(args[0]);
+                    case "getNodeViews":
+                        return nodeViews.values();
+                    case "getEdgeViews":
+                        return edgeViews.values();
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * View of a model object, the given handler answers the methods of the
+     * view type it knows, returning null for the others.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T view(Class<?> type, final Object model, final InvocationHandler handler) {
+        final Map<VisualProperty<?>, Object> values = new HashMap<>();
+        final long suid = SUIDS.incrementAndGet();
+        return (T) Proxy.newProxyInstance(Headless.class.getClassLoader(), new Class<?>[]{type},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                            case "getModel":
+                                return model;
+                            case "getSUID":
+                                return suid;
+                            case "setVisualProperty":
+                            case "setLockedValue":
+                                values.put((VisualProperty<?>) args[0], args[1]);
+                                return null;
+                            case "getVisualProperty":
+                                return values.containsKey(args[0])
+                                        ? values.get(args[0]) : ((VisualProperty<?>) args[0]).getDefault();
+                            default:
+                                break;
+                        }
+                        Object result = handler != null ? handler.invoke(proxy, method, args) : null;
+                        return result != null ? result : defaultValue(proxy, method, args);
+                    }
+                });
+    }
+
+    /** Result of a method the stub does not implement: nothing, zero or false. */
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "headless " + method.getDeclaringClass().getSimpleName();
+            default:
+                break;
+        }
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.copasi.cytoscape.internal.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.work.TaskMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.ImportProfile;
+import org.copasi.cytoscape.internal.tasks.ModelFile;
+import org.copasi.cytoscape.internal.tasks.NetworkBuilder;
+import org.copasi.cytoscape.internal.tasks.NetworkViews;
+
+/**
+ * Phases of an import that run in Java: spilling the input stream, building
+ * the network and creating its view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmarks {
+
+    /** Import profile of the built network, see {@link ImportProfile}. */
+    @Param({"standard"})
+    public String profile;
+
+    private NetworkBuilder networkBuilder;
+    private CyNetworkViewFactory viewFactory;
+    private TaskMonitor taskMonitor;
+    private CyNetwork network;
+
+    @Setup(Level.Trial)
+    public void setUp(SyntheticModelState state) {
+        networkBuilder = new NetworkBuilder(Headless.networkFactory(), Headless.eventHelper());
+        viewFactory = Headless.viewFactory();
+        taskMonitor = Headless.taskMonitor();
+        network = networkBuilder.build(state.snapshot);
+    }
+
+    /** Copies an uncompressed stream into the temporary file COPASI reads. */
+    @Benchmark
+    public long spill(SyntheticModelState state) throws IOException {
+        ModelFile modelFile = ModelFile.spill(new ByteArrayInputStream(state.bytes));
+        try {
+            return modelFile.length();
+        } finally {
+            modelFile.release();
+        }
+    }
+
+    /** Inflates a gzip stream into the temporary file COPASI reads. */
+    @Benchmark
+    public long spillGzip(SyntheticModelState state) throws IOException {
+        ModelFile modelFile = ModelFile.spill(new ByteArrayInputStream(state.gzipBytes));
+        try {
+            return modelFile.length();
+        } finally {
+            modelFile.release();
+        }
+    }
+
+    /** Creates the nodes, edges and attributes of the network. */
+    @Benchmark
+    public CyNetwork build(SyntheticModelState state) {
+        return networkBuilder.build(state.snapshot, ImportProfile.of(profile), Cancellation.NONE, taskMonitor,
+                0.0, 1.0);
+    }
+
+    /** Creates the view and applies the model layout, no layout algorithm runs. */
+    @Benchmark
+    public CyNetworkView createView() {
+        return NetworkViews.createView(viewFactory, null, network, taskMonitor);
+    }
+
+}
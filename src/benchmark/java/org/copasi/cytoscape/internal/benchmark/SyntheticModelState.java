@@ -0,0 +1,86 @@
+package org.copasi.cytoscape.internal.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+import org.copasi.cytoscape.internal.model.SyntheticModel;
+
+/**
+ * Synthetic model shared by the benchmarks, generated once per trial.
+ * <p>
+ * The parameters select the model size, run e.g. with
+ * {@code -p species=100000 -p reactions=80000} for other sizes.
+ */
+@State(Scope.Benchmark)
+public class SyntheticModelState {
+
+    @Param({"4"})
+    public int compartments;
+
+    @Param({"100"})
+    public int parameters;
+
+    @Param({"1000", "10000"})
+    public int species;
+
+    /** Reactions, 0 for as many as species. */
+    @Param({"0"})
+    public int reactions;
+
+    @Param({"2"})
+    public int fanIn;
+
+    @Param({"2"})
+    public int fanOut;
+
+    @Param({"8", "64"})
+    public int nameLength;
+
+    @Param({"true"})
+    public boolean layout;
+
+    public SyntheticModel model;
+    /** Snapshot with layout positions, as an import sees it. */
+    public ModelSnapshot snapshot;
+    /** CopasiML document of the model. */
+    public File file;
+    public byte[] bytes;
+    public byte[] gzipBytes;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        model = new SyntheticModel(compartments, parameters, species, reactions > 0 ? reactions : species,
+                fanIn, fanOut, nameLength, layout, 1L);
+        snapshot = model.toSnapshot();
+
+        file = File.createTempFile("copasi-benchmark-", ".cps");
+        file.deleteOnExit();
+        model.writeCopasiMl(file);
+        bytes = Files.readAllBytes(file.toPath());
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(bytes);
+        }
+        gzipBytes = gzip.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+}
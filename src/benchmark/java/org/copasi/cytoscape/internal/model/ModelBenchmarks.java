@@ -0,0 +1,137 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.COPASI.CDataModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.copasi.cytoscape.internal.benchmark.SyntheticModelState;
+
+/**
+ * Phases that turn a model file into a snapshot: loading it into COPASI,
+ * extracting the snapshot, reading the layout and the snapshot cache.
+ * <p>
+ * The COPASI benchmarks need the native library of the COPASI Java
+ * bindings on {@code java.library.path}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelBenchmarks {
+
+    private ModelSnapshot snapshot;
+    private byte[] cached;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticModelState state) throws IOException {
+        snapshot = state.model.toSnapshot();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SnapshotIO.write(state.snapshot, out);
+        }
+        cached = bytes.toByteArray();
+    }
+
+    /** Parses the file with COPASI, the data model is reset afterwards. */
+    @Benchmark
+    public boolean load(SyntheticModelState state, NativeModels models) {
+        try (DataModelManager.Lease lease = models.dataModels.acquire(1, Cancellation.NONE)) {
+            return lease.getDataModel().loadFromFile(state.file.getAbsolutePath());
+        }
+    }
+
+    /** Extracts the snapshot from a loaded model. */
+    @Benchmark
+    public ModelSnapshot extract(LoadedModel loaded) {
+        return ModelExtractor.extract(loaded.dataModel.getModel());
+    }
+
+    /** Streams the layout positions of the file into the snapshot. */
+    @Benchmark
+    public ModelSnapshot readLayout(SyntheticModelState state) {
+        Arrays.fill(snapshot.x, Double.NaN);
+        Arrays.fill(snapshot.y, Double.NaN);
+        LayoutReader.read(state.file, snapshot);
+        return snapshot;
+    }
+
+    @Benchmark
+    public byte[] writeCache(SyntheticModelState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(cached.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SnapshotIO.write(state.snapshot, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public ModelSnapshot readCache() throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(cached))) {
+            return SnapshotIO.read(in);
+        }
+    }
+
+    /** Data models for the benchmark thread, pooled as in the app. */
+    @State(Scope.Thread)
+    public static class NativeModels {
+
+        DataModelManager dataModels;
+
+        @Setup(Level.Trial)
+        public void create() {
+            dataModels = new DataModelManager(Long.MAX_VALUE, 1);
+        }
+
+        @TearDown(Level.Trial)
+        public void clear() {
+            dataModels.clear();
+        }
+    }
+
+    /** The synthetic model loaded into COPASI once per trial. */
+    @State(Scope.Thread)
+    public static class LoadedModel {
+
+        DataModelManager dataModels;
+        DataModelManager.Lease lease;
+        CDataModel dataModel;
+
+        @Setup(Level.Trial)
+        public void load(SyntheticModelState state) throws IOException {
+            dataModels = new DataModelManager(Long.MAX_VALUE, 0);
+            lease = dataModels.acquire(1, Cancellation.NONE);
+            dataModel = lease.getDataModel();
+            if (!dataModel.loadFromFile(state.file.getAbsolutePath())) {
+                lease.close();
+                throw new IOException("COPASI could not load " + state.file.getName());
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void release() {
+            lease.close();
+            dataModels.clear();
+        }
+    }
+
+}
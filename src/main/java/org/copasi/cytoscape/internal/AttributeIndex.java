@@ -0,0 +1,329 @@
+package org.copasi.cytoscape.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.AboutToRemoveNodesEvent;
+import org.cytoscape.model.events.AboutToRemoveNodesListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.events.RowsSetListener;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+
+/**
+ * Index of the identifying node attributes of networks.
+ * <p>
+ * The COPASI key ({@code id}), the {@code cn}, the {@code name} and the
+ * {@code display name} of all nodes of a network are indexed when the
+ * network is first searched, afterwards the index follows the table events:
+ * changed values are re-indexed and removed nodes dropped, and the index
+ * is discarded with the network. Exact lookups return all nodes with the
+ * value, prefix and substring searches are case-insensitive and run over
+ * all indexed columns.
+ */
+public class AttributeIndex implements RowsSetListener, AboutToRemoveNodesListener,
+        NetworkAboutToBeDestroyedListener {
+
+    /** Indexed node columns. */
+    public static final String[] COLUMNS = {"id", "cn", CyNetwork.NAME, "display name"};
+
+    private final Map<Long, NetworkIndex> indices = new ConcurrentHashMap<>();
+
+    /** Whether lookups of the column are answered by the index. */
+    public static boolean isIndexed(String column) {
+        return column(column) >= 0;
+    }
+
+    private static int column(String column) {
+        for (int c = 0; c < COLUMNS.length; c++) {
+            if (COLUMNS[c].equals(column)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /** All nodes with the value in an indexed column, in no particular order. */
+    public List<CyNode> getNodes(CyNetwork network, String column, String value) {
+        int c = column(column);
+        if (c < 0) {
+            throw new IllegalArgumentException("Column is not indexed: " + column);
+        }
+        return index(network).exact(c, value);
+    }
+
+    /**
+     * Nodes with a value in any indexed column starting with the prefix,
+     * ignoring case, ordered by the matching value.
+     *
+     * @param limit maximal number of nodes returned
+     */
+    public List<CyNode> findByPrefix(CyNetwork network, String prefix, int limit) {
+        return index(network).prefix(prefix.toLowerCase(Locale.ROOT), limit);
+    }
+
+    /**
+     * Nodes with a value in any indexed column containing the text,
+     * ignoring case, ordered by the matching value. Nodes that match the
+     * text as prefix come first.
+     *
+     * @param limit maximal number of nodes returned
+     */
+    public List<CyNode> findBySubstring(CyNetwork network, String text, int limit) {
+        return index(network).substring(text.toLowerCase(Locale.ROOT), limit);
+    }
+
+    /** Drops all indices, they are rebuilt on the next lookup. */
+    public void clear() {
+        indices.clear();
+    }
+
+    private NetworkIndex index(CyNetwork network) {
+        NetworkIndex index = indices.get(network.getSUID());
+        if (index == null) {
+            // built outside of the map so concurrent lookups of other networks do not wait
+            NetworkIndex built = new NetworkIndex(network);
+            index = indices.putIfAbsent(network.getSUID(), built);
+            if (index == null) {
+                index = built;
+            }
+        }
+        return index;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Events
+    //////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void handleEvent(RowsSetEvent e) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        boolean indexed = false;
+        for (String column : COLUMNS) {
+            indexed |= e.containsColumn(column);
+        }
+        if (!indexed) {
+            return;
+        }
+        CyTable table = e.getSource();
+        for (NetworkIndex index : indices.values()) {
+            if (index.tables.contains(table)) {
+                index.update(e.getPayloadCollection());
+            }
+        }
+    }
+
+    @Override
+    public void handleEvent(AboutToRemoveNodesEvent e) {
+        NetworkIndex index = indices.get(e.getSource().getSUID());
+        if (index != null) {
+            index.remove(e.getNodes());
+        }
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        indices.remove(e.getNetwork().getSUID());
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Index of one network
+    //////////////////////////////////////////////////////////////////////////
+
+    private static class NetworkIndex {
+
+        private final CyNetwork network;
+        /** Tables whose row events can change the indexed values of the network. */
+        private final Set<CyTable> tables = new HashSet<>();
+
+        /** Node SUIDs by exact value, one map per column. */
+        private final List<Map<String, Set<Long>>> exact = new ArrayList<>();
+        /** Node SUIDs by lower case value over all columns, sorted for prefix search. */
+        private final TreeMap<String, Set<Long>> folded = new TreeMap<>();
+        /** Indexed values of every node by column. */
+        private final Map<Long, String[]> values = new HashMap<>();
+
+        NetworkIndex(CyNetwork network) {
+            this.network = network;
+            tables.add(network.getDefaultNodeTable());
+            tables.add(network.getTable(CyNode.class, CyNetwork.LOCAL_ATTRS));
+            if (network instanceof CySubNetwork) {
+                tables.add(((CySubNetwork) network).getRootNetwork().getSharedNodeTable());
+            }
+            tables.remove(null);
+            for (int c = 0; c < COLUMNS.length; c++) {
+                exact.add(new HashMap<String, Set<Long>>());
+            }
+            for (CyNode node : network.getNodeList()) {
+                put(node.getSUID(), read(network.getRow(node)));
+            }
+        }
+
+        private static String[] read(CyRow row) {
+            String[] values = new String[COLUMNS.length];
+            CyTable table = row.getTable();
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (table.getColumn(COLUMNS[c]) != null
+                        && String.class.equals(table.getColumn(COLUMNS[c]).getType())) {
+                    values[c] = row.get(COLUMNS[c], String.class);
+                }
+            }
+            return values;
+        }
+
+        synchronized void update(Collection<RowSetRecord> records) {
+            Set<Long> changed = new HashSet<>();
+            for (RowSetRecord record : records) {
+                if (column(record.getColumn()) >= 0) {
+                    Long suid = record.getRow().get(CyTable.SUID, Long.class);
+                    if (suid != null) {
+                        changed.add(suid);
+                    }
+                }
+            }
+            for (Long suid : changed) {
+                // the network row combines the shared and the local values
+                CyNode node = network.getNode(suid);
+                if (node != null) {
+                    put(suid, read(network.getRow(node)));
+                }
+            }
+        }
+
+        synchronized void remove(Collection<CyNode> nodes) {
+            for (CyNode node : nodes) {
+                put(node.getSUID(), null);
+            }
+        }
+
+        /** Replaces the values of a node, null removes the node. */
+        private void put(Long suid, String[] nodeValues) {
+            String[] previous = nodeValues != null ? values.put(suid, nodeValues) : values.remove(suid);
+            for (int c = 0; c < COLUMNS.length; c++) {
+                String before = previous != null ? previous[c] : null;
+                String after = nodeValues != null ? nodeValues[c] : null;
+                if (before == null ? after == null : before.equals(after)) {
+                    continue;
+                }
+                if (before != null) {
+                    removeFrom(exact.get(c), before, suid);
+                    if (!foldedElsewhere(previous, nodeValues, c)) {
+                        removeFrom(folded, before.toLowerCase(Locale.ROOT), suid);
+                    }
+                }
+                if (after != null) {
+                    addTo(exact.get(c), after, suid);
+                    addTo(folded, after.toLowerCase(Locale.ROOT), suid);
+                }
+            }
+        }
+
+        /** Whether another column of the node still has the same folded value. */
+        private static boolean foldedElsewhere(String[] previous, String[] current, int column) {
+            if (current == null) {
+                return false;
+            }
+            String value = previous[column].toLowerCase(Locale.ROOT);
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (c != column && current[c] != null && current[c].toLowerCase(Locale.ROOT).equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void addTo(Map<String, Set<Long>> map, String value, Long suid) {
+            Set<Long> suids = map.get(value);
+            if (suids == null) {
+                suids = new LinkedHashSet<>(2);
+                map.put(value, suids);
+            }
+            suids.add(suid);
+        }
+
+        private static void removeFrom(Map<String, Set<Long>> map, String value, Long suid) {
+            Set<Long> suids = map.get(value);
+            if (suids != null && suids.remove(suid) && suids.isEmpty()) {
+                map.remove(value);
+            }
+        }
+
+        synchronized List<CyNode> exact(int column, String value) {
+            Set<Long> suids = exact.get(column).get(value);
+            if (suids == null) {
+                return Collections.emptyList();
+            }
+            return nodes(suids, Integer.MAX_VALUE);
+        }
+
+        synchronized List<CyNode> prefix(String prefix, int limit) {
+            Set<Long> suids = new LinkedHashSet<>();
+            collectPrefix(prefix, suids, limit);
+            return nodes(suids, limit);
+        }
+
+        synchronized List<CyNode> substring(String text, int limit) {
+            Set<Long> suids = new LinkedHashSet<>();
+            collectPrefix(text, suids, limit);
+            for (Map.Entry<String, Set<Long>> entry : folded.entrySet()) {
+                if (suids.size() >= limit) {
+                    break;
+                }
+                if (entry.getKey().contains(text)) {
+                    addLimited(suids, entry.getValue(), limit);
+                }
+            }
+            return nodes(suids, limit);
+        }
+
+        private void collectPrefix(String prefix, Set<Long> suids, int limit) {
+            SortedMap<String, Set<Long>> range = folded.subMap(prefix, prefix + Character.MAX_VALUE);
+            for (Set<Long> matches : range.values()) {
+                if (suids.size() >= limit) {
+                    return;
+                }
+                addLimited(suids, matches, limit);
+            }
+        }
+
+        private static void addLimited(Set<Long> suids, Set<Long> matches, int limit) {
+            for (Long suid : matches) {
+                if (suids.size() >= limit) {
+                    return;
+                }
+                suids.add(suid);
+            }
+        }
+
+        private List<CyNode> nodes(Set<Long> suids, int limit) {
+            List<CyNode> nodes = new ArrayList<>(Math.min(suids.size(), limit));
+            for (Long suid : suids) {
+                CyNode node = network.getNode(suid);
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+            return nodes;
+        }
+    }
+
+}
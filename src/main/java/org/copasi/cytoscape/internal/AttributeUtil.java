@@ -1,6 +1,8 @@
 package org.copasi.cytoscape.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.cytoscape.model.CyColumn;
 import org.cytoscape.model.CyEdge;
@@ -123,25 +125,56 @@ public class AttributeUtil {
     // Find Nodes
     //////////////////////////////////////////////////////////////////////////
 
+	/** Index answering the lookups of the indexed columns, set by the activator. */
+	private static volatile AttributeIndex index;
+
+	/** Sets the index used for lookups, null scans the node table. */
+	public static void setIndex(AttributeIndex attributeIndex) {
+		index = attributeIndex;
+	}
+
 	/**
 	 * Returns the first matching node.
-     * TODO: method for all matchin nodes
-     * Returns first node with attribute==identifier in DefaultNodeTable.
-     *
+	 * Returns a node with attribute==identifier in DefaultNodeTable, null if
+	 * there is none. Use getNodesByAttribute if the value is not unique.
+	 *
 	 * @param network network in which the node is searched
 	 * @param attribute attribute column to search
 	 * @param identifier identifier to search
-	 * @return
+	 * @return the first matching node or null
 	 */
 	public static CyNode getNodeByAttribute(CyNetwork network, String attribute, String identifier) {
+		List<CyNode> nodes = getNodesByAttribute(network, attribute, identifier);
+		return nodes.isEmpty() ? null : nodes.get(0);
+	}
+
+	/**
+	 * Returns all matching nodes.
+	 * The id, cn, name and display name columns are looked up in the
+	 * attribute index, other columns are scanned in the DefaultNodeTable.
+	 *
+	 * @param network network in which the nodes are searched
+	 * @param attribute attribute column to search
+	 * @param identifier identifier to search
+	 * @return the matching nodes, empty if there are none
+	 */
+	public static List<CyNode> getNodesByAttribute(CyNetwork network, String attribute, String identifier) {
+		AttributeIndex attributeIndex = index;
+		if (attributeIndex != null && AttributeIndex.isIndexed(attribute)) {
+			return attributeIndex.getNodes(network, attribute, identifier);
+		}
+		List<CyNode> nodes = new ArrayList<>();
+		if (network.getDefaultNodeTable().getColumn(attribute) == null) {
+			return nodes;
+		}
 		Collection<CyRow> rows = network.getDefaultNodeTable().getMatchingRows(attribute, identifier);
-		CyNode node = null;
-		if (rows != null && rows.size()>0){
-			// return first matching one
-			CyRow row = rows.iterator().next();
-			node = network.getNode(row.get(CyTable.SUID, Long.class));
-		} 
-		return node;
+		for (CyRow row : rows) {
+			CyNode node = network.getNode(row.get(CyTable.SUID, Long.class));
+			if (node != null) {
+				nodes.add(node);
+			}
+		}
+		return nodes;
 	}
 	
 }
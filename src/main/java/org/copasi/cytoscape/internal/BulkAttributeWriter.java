@@ -0,0 +1,127 @@
+package org.copasi.cytoscape.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+
+
+/**
+ * Column-wise attribute writer for a single table.
+ *
+ * The schema is declared up front, so every column is looked up and created
+ * once. Values are then written a whole column at a time. Cytoscape collects
+ * the row changes as payload events, closing the writer flushes them once,
+ * so styles, the table browser and other listeners see all values in one
+ * event. Use it in a try-with-resources block.
+ */
+public class BulkAttributeWriter implements AutoCloseable {
+
+	private final CyTable table;
+	private final CyEventHelper eventHelper;
+	private final Map<String, Class<?>> schema = new HashMap<>();
+
+	/**
+	 * Opens a writer on the given table.
+	 *
+	 * @param table table to write to
+	 * @param eventHelper flushes the collected row events on close, may be null
+	 */
+	public BulkAttributeWriter(CyTable table, CyEventHelper eventHelper) {
+		this.table = table;
+		this.eventHelper = eventHelper;
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	// Schema
+	//////////////////////////////////////////////////////////////////////////
+
+	/** Declares a column, it is created if the table does not have it yet. */
+	public BulkAttributeWriter declare(String name, Class<?> type) {
+		CyColumn column = table.getColumn(name);
+		if (column == null) {
+			table.createColumn(name, type, false);
+		}
+		schema.put(name, type);
+		return this;
+	}
+
+	/** Declares a list column, it is created if the table does not have it yet. */
+	public BulkAttributeWriter declareList(String name, Class<?> elementType) {
+		CyColumn column = table.getColumn(name);
+		if (column == null) {
+			table.createListColumn(name, elementType, false);
+		}
+		schema.put(name, elementType);
+		return this;
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	// Write
+	//////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Writes a column for a range of entries.
+	 *
+	 * values[i] is written to entries[i] for from &lt;= i &lt; to, null entries
+	 * and null values are skipped.
+	 */
+	public void set(String name, CyIdentifiable[] entries, Object[] values, int from, int to) {
+		checkDeclared(name);
+		for (int i = from; i < to; i++) {
+			if (entries[i] != null && values[i] != null) {
+				table.getRow(entries[i].getSUID()).set(name, values[i]);
+			}
+		}
+	}
+
+	/** Writes the same value to a column for a range of entries. */
+	public void set(String name, CyIdentifiable[] entries, Object value, int from, int to) {
+		checkDeclared(name);
+		if (value == null) {
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			if (entries[i] != null) {
+				table.getRow(entries[i].getSUID()).set(name, value);
+			}
+		}
+	}
+
+	/** Writes a single value. */
+	public void set(CyIdentifiable entry, String name, Object value) {
+		checkDeclared(name);
+		if (value != null) {
+			CyRow row = table.getRow(entry.getSUID());
+			row.set(name, value);
+		}
+	}
+
+	/** Removes a single value. */
+	public void clear(CyIdentifiable entry, String name) {
+		checkDeclared(name);
+		CyRow row = table.getRow(entry.getSUID());
+		if (row.isSet(name)) {
+			row.set(name, null);
+		}
+	}
+
+	private void checkDeclared(String name) {
+		if (!schema.containsKey(name)) {
+			throw new IllegalArgumentException("Column not declared: " + name);
+		}
+	}
+
+	/** Fires the row events collected while writing. */
+	@Override
+	public void close() {
+		if (eventHelper != null) {
+			eventHelper.flushPayloadEvents();
+		}
+	}
+
+}
@@ -1,9 +1,7 @@
 package org.copasi.cytoscape.internal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
 
 import org.cytoscape.io.BasicCyFileFilter;
@@ -13,19 +11,18 @@ import org.cytoscape.io.util.StreamUtil;
 /**
  * COPASI Filter class.
  * Extends CyFileFilter for integration into the Cytoscape ImportHandler framework.
+ * Accepts plain, gzip compressed and zipped COPASI files, see {@link ModelStreams}.
  */
 public class CopasiFileFilter extends BasicCyFileFilter {
-	private static final String COPASI_XML_NAMESPACE = "http://www.copasi.org/static/schema";
-	private static final int DEFAULT_LINES_TO_CHECK = 5;
-
 
 	/**
 	 * Constructor.
 	 */
 	public CopasiFileFilter(StreamUtil streamUtil) {
 		super(
-				new String[] { "xml", "cps", ""},
-				new String[] { "text/xml", "application/rdf+xml", "application/xml", "application/x-copasi", "text/plain", "text/copasi", "text/copasi+xml" },
+				new String[] { "xml", "cps", "gz", "zip", ""},
+				new String[] { "text/xml", "application/rdf+xml", "application/xml", "application/x-copasi", "text/plain", "text/copasi", "text/copasi+xml",
+						"application/gzip", "application/x-gzip", "application/zip" },
 				"COPASI network reader",
 				DataCategory.NETWORK,
 				streamUtil
@@ -41,8 +38,8 @@ public class CopasiFileFilter extends BasicCyFileFilter {
 			return false;
 		}
 
-		try {
-			return accepts(streamUtil.getInputStream(uri.toURL()), category);
+		try (InputStream stream = streamUtil.getInputStream(uri.toURL())) {
+			return accepts(stream, category);
 		} catch (IOException e){
 			return false;
 		}
@@ -50,6 +47,7 @@ public class CopasiFileFilter extends BasicCyFileFilter {
 
     /**
      * Indicates which streams the CopasiFileFilter accepts.
+     * Only a bounded prefix is read, the caller keeps ownership of the stream.
      */
 	@Override
 	public boolean accepts(InputStream stream, DataCategory category) {
@@ -67,16 +65,7 @@ public class CopasiFileFilter extends BasicCyFileFilter {
 	 * Checks if the header contains the COPASI namespace definition.
      */
 	private boolean checkHeader(InputStream stream) throws IOException {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-		int linesToCheck = DEFAULT_LINES_TO_CHECK;
-		while (linesToCheck > 0) {
-			String line = reader.readLine();
-			if (line != null && line.contains(COPASI_XML_NAMESPACE)) {
-				return true;
-			}
-			linesToCheck--;
-		}
-		return false;
+		return ModelStreams.isCopasiModel(stream);
 	}
 
 }
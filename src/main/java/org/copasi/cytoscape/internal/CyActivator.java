@@ -1,21 +1,57 @@
 package org.copasi.cytoscape.internal;
 
+import java.io.File;
 import java.util.Properties;
 
+import org.cytoscape.application.CyApplicationConfiguration;
+import org.cytoscape.application.CyApplicationManager;
 import org.cytoscape.application.swing.CyAction;
 import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
 import org.cytoscape.io.util.StreamUtil;
 import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.events.AboutToRemoveNodesListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RowsSetListener;
 import org.cytoscape.service.util.AbstractCyActivator;
-import org.cytoscape.task.read.LoadNetworkFileTaskFactory;
 import org.cytoscape.util.swing.FileUtil;
 import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
 import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
 import org.cytoscape.work.ServiceProperties;
-import org.cytoscape.work.SynchronousTaskManager;
+import org.cytoscape.work.TaskManager;
 import org.osgi.framework.BundleContext;
+import org.copasi.cytoscape.internal.actions.CacheStatisticsAction;
+import org.copasi.cytoscape.internal.actions.CreateViewAction;
+import org.copasi.cytoscape.internal.actions.ExpandAction;
+import org.copasi.cytoscape.internal.actions.ExportStoichiometryAction;
+import org.copasi.cytoscape.internal.actions.FindNodeAction;
 import org.copasi.cytoscape.internal.actions.ImportAction;
+import org.copasi.cytoscape.internal.actions.JobsAction;
+import org.copasi.cytoscape.internal.actions.PlayTrajectoryAction;
+import org.copasi.cytoscape.internal.actions.ReloadAction;
+import org.copasi.cytoscape.internal.actions.RunTaskAction;
+import org.copasi.cytoscape.internal.actions.ScanAction;
+import org.copasi.cytoscape.internal.actions.SimulateAction;
+import org.copasi.cytoscape.internal.actions.SteadyStateAction;
+import org.copasi.cytoscape.internal.actions.WatchModelAction;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.ModelCache;
 import org.copasi.cytoscape.internal.tasks.CopasiReaderTaskFactory;
+import org.copasi.cytoscape.internal.tasks.CreateViewTaskFactory;
+import org.copasi.cytoscape.internal.tasks.ExpandTaskFactory;
+import org.copasi.cytoscape.internal.tasks.ExportStoichiometryTaskFactory;
+import org.copasi.cytoscape.internal.tasks.ImportFilesTaskFactory;
+import org.copasi.cytoscape.internal.tasks.JobEngine;
+import org.copasi.cytoscape.internal.tasks.ModelRegistry;
+import org.copasi.cytoscape.internal.tasks.ModelWatcher;
+import org.copasi.cytoscape.internal.tasks.ReloadTaskFactory;
+import org.copasi.cytoscape.internal.tasks.ScanTaskFactory;
+import org.copasi.cytoscape.internal.tasks.SimulationTaskFactory;
+import org.copasi.cytoscape.internal.tasks.SteadyStateTaskFactory;
 
 /**
  * {@code CyActivator} is a class that is a starting point for OSGi bundles.
@@ -42,6 +78,14 @@ import org.copasi.cytoscape.internal.tasks.CopasiReaderTaskFactory;
  * {@code unget}s any services we fetch using getService().
  */
 public class CyActivator extends AbstractCyActivator {
+
+	/** Owns the native COPASI data models, emptied with the bundle. */
+	private DataModelManager dataModelManager;
+	/** Runs COPASI tasks in the background, stopped with the bundle. */
+	private JobEngine jobEngine;
+	/** Watches the COPASI files of networks, stopped with the bundle. */
+	private ModelWatcher modelWatcher;
+
 	/**
 	 * This is the {@code start} method, which sets up your app. The
 	 * {@code BundleContext} object allows you to communicate with the OSGi
@@ -52,14 +96,42 @@ public class CyActivator extends AbstractCyActivator {
 	public void start(BundleContext context) throws Exception {
 		// Get the services we're going to want to use
 		CyNetworkFactory networkFactory = getService(context, CyNetworkFactory.class);
+		CyNetworkManager networkManager = getService(context, CyNetworkManager.class);
         CySwingApplication cySwingApplication = getService(context, CySwingApplication.class);
         CyNetworkViewFactory cyNetworkViewFactory = getService(context, CyNetworkViewFactory.class);
+        CyNetworkViewManager cyNetworkViewManager = getService(context, CyNetworkViewManager.class);
         CyLayoutAlgorithmManager cyLayoutAlgorithmManager = getService(context, CyLayoutAlgorithmManager.class);
+        CyEventHelper cyEventHelper = getService(context, CyEventHelper.class);
+        CyGroupFactory cyGroupFactory = getService(context, CyGroupFactory.class);
+        CyGroupManager cyGroupManager = getService(context, CyGroupManager.class);
         FileUtil fileUtil = getService(context, FileUtil.class);
         StreamUtil streamUtil = getService(context, StreamUtil.class);
-        LoadNetworkFileTaskFactory loadNetworkFileTaskFactory = getService(context, LoadNetworkFileTaskFactory.class);
+        CyApplicationConfiguration cyApplicationConfiguration = getService(context, CyApplicationConfiguration.class);
+        CyApplicationManager cyApplicationManager = getService(context, CyApplicationManager.class);
         @SuppressWarnings("rawtypes")
-        SynchronousTaskManager synchronousTaskManager = getService(context, SynchronousTaskManager.class);
+        TaskManager taskManager = getService(context, TaskManager.class);
+
+        // native data models of all imports, simulations and jobs
+        dataModelManager = new DataModelManager(ImportSettings.getNativeBudgetMB(), ImportSettings.getDataModelPoolSize());
+        registerService(context, dataModelManager, DataModelManager.class, new Properties());
+
+        // snapshots of parsed models, shared by all imports
+        File cacheDirectory = new File(cyApplicationConfiguration.getAppConfigurationDirectoryLocation(CyActivator.class), "model-cache");
+        ModelCache modelCache = new ModelCache(cacheDirectory, ImportSettings.getCacheMaxBytes(), dataModelManager);
+
+        // model files behind the imported networks
+        ModelRegistry modelRegistry = new ModelRegistry();
+        registerService(context, modelRegistry, NetworkAboutToBeDestroyedListener.class, new Properties());
+
+        // lookups of nodes by id, cn, name and display name
+        AttributeIndex attributeIndex = new AttributeIndex();
+        registerService(context, attributeIndex, RowsSetListener.class, new Properties());
+        registerService(context, attributeIndex, AboutToRemoveNodesListener.class, new Properties());
+        registerService(context, attributeIndex, NetworkAboutToBeDestroyedListener.class, new Properties());
+        AttributeUtil.setIndex(attributeIndex);
+
+        // per-phase measurements of imports, in JMX and the metrics log
+        ImportMetrics.register(new File(cyApplicationConfiguration.getAppConfigurationDirectoryLocation(CyActivator.class), "import-metrics.log"));
 
 
 		// Configure the service properties first.
@@ -68,12 +140,102 @@ public class CyActivator extends AbstractCyActivator {
 			"Apps.COPASI");
 		properties.put(ServiceProperties.TITLE, "Import COPASI file");
 			
-        ImportAction importAction = new ImportAction(cySwingApplication, fileUtil, loadNetworkFileTaskFactory, synchronousTaskManager);
+        ImportFilesTaskFactory importFilesTaskFactory = new ImportFilesTaskFactory(networkFactory, networkManager,
+        		cyNetworkViewFactory, cyNetworkViewManager, cyLayoutAlgorithmManager, cyEventHelper, cyGroupFactory,
+        		modelCache, modelRegistry);
+        ImportAction importAction = new ImportAction(cySwingApplication, fileUtil, importFilesTaskFactory, taskManager);
         registerService(context, importAction, CyAction.class, properties);
+
+        Properties cacheProperties = new Properties();
+        cacheProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        cacheProperties.put(ServiceProperties.TITLE, "Model cache statistics");
+        registerService(context, new CacheStatisticsAction(cySwingApplication, modelCache, dataModelManager), CyAction.class, cacheProperties);
+
+        // networks follow the changes of their COPASI file
+        ReloadTaskFactory reloadTaskFactory = new ReloadTaskFactory(modelRegistry, modelCache, networkFactory,
+                cyNetworkViewManager, cyEventHelper, cyGroupManager);
+        Properties reloadProperties = new Properties();
+        reloadProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        reloadProperties.put(ServiceProperties.TITLE, "Reload COPASI file");
+        registerService(context, new ReloadAction(cySwingApplication, cyApplicationManager,
+                reloadTaskFactory, taskManager), CyAction.class, reloadProperties);
+        modelWatcher = new ModelWatcher(modelRegistry, reloadTaskFactory, taskManager);
+        registerService(context, modelWatcher, NetworkAboutToBeDestroyedListener.class, new Properties());
+        Properties watchProperties = new Properties();
+        watchProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        watchProperties.put(ServiceProperties.TITLE, "Reload on file change");
+        registerService(context, new WatchModelAction(cySwingApplication, cyApplicationManager,
+                reloadTaskFactory, modelWatcher), CyAction.class, watchProperties);
+
+        // views of large networks are created on demand
+        CreateViewTaskFactory createViewTaskFactory = new CreateViewTaskFactory(networkManager,
+                cyNetworkViewFactory, cyNetworkViewManager, cyLayoutAlgorithmManager, cyEventHelper);
+        Properties viewProperties = new Properties();
+        viewProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        viewProperties.put(ServiceProperties.TITLE, "Create view");
+        registerService(context, new CreateViewAction(cySwingApplication, cyApplicationManager,
+                createViewTaskFactory, taskManager), CyAction.class, viewProperties);
+
+        // details left out by the import profile are added for selected reactions
+        Properties expandProperties = new Properties();
+        expandProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        expandProperties.put(ServiceProperties.TITLE, "Expand reactions");
+        registerService(context, new ExpandAction(cySwingApplication, cyApplicationManager,
+                new ExpandTaskFactory(modelRegistry, networkFactory, cyNetworkViewManager, cyEventHelper,
+                        cyGroupManager),
+                taskManager), CyAction.class, expandProperties);
+
+        // time course simulation of imported networks
+        SimulationTaskFactory simulationTaskFactory = new SimulationTaskFactory(modelRegistry, cyEventHelper, dataModelManager);
+        Properties simulateProperties = new Properties();
+        simulateProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        simulateProperties.put(ServiceProperties.TITLE, "Simulate time course");
+        registerService(context, new SimulateAction(cySwingApplication, cyApplicationManager,
+                simulationTaskFactory, taskManager), CyAction.class, simulateProperties);
+        Properties playProperties = new Properties();
+        playProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        playProperties.put(ServiceProperties.TITLE, "Play time course");
+        registerService(context, new PlayTrajectoryAction(cySwingApplication, cyApplicationManager,
+                modelRegistry, cyEventHelper), CyAction.class, playProperties);
+        Properties scanProperties = new Properties();
+        scanProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        scanProperties.put(ServiceProperties.TITLE, "Parameter scan");
+        registerService(context, new ScanAction(cySwingApplication, cyApplicationManager,
+                new ScanTaskFactory(modelRegistry, cyEventHelper, dataModelManager), taskManager), CyAction.class, scanProperties);
+        Properties steadyStateProperties = new Properties();
+        steadyStateProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        steadyStateProperties.put(ServiceProperties.TITLE, "Steady state and control analysis");
+        registerService(context, new SteadyStateAction(cySwingApplication, cyApplicationManager,
+                new SteadyStateTaskFactory(modelRegistry, cyEventHelper, dataModelManager), taskManager), CyAction.class,
+                steadyStateProperties);
+        Properties stoichiometryProperties = new Properties();
+        stoichiometryProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        stoichiometryProperties.put(ServiceProperties.TITLE, "Export stoichiometry matrix");
+        registerService(context, new ExportStoichiometryAction(cySwingApplication, cyApplicationManager, fileUtil,
+                new ExportStoichiometryTaskFactory(modelRegistry), taskManager), CyAction.class, stoichiometryProperties);
+        Properties findProperties = new Properties();
+        findProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        findProperties.put(ServiceProperties.TITLE, "Find node");
+        registerService(context, new FindNodeAction(cySwingApplication, cyApplicationManager,
+                attributeIndex, cyEventHelper), CyAction.class, findProperties);
+
+        // tasks configured in the COPASI files, run in the background
+        File jobResultDirectory = new File(cyApplicationConfiguration.getAppConfigurationDirectoryLocation(CyActivator.class), "job-results");
+        jobEngine = new JobEngine(modelRegistry, dataModelManager, jobResultDirectory);
+        registerService(context, jobEngine, NetworkAboutToBeDestroyedListener.class, new Properties());
+        Properties runTaskProperties = new Properties();
+        runTaskProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        runTaskProperties.put(ServiceProperties.TITLE, "Run COPASI task");
+        registerService(context, new RunTaskAction(cySwingApplication, cyApplicationManager,
+                modelRegistry, jobEngine), CyAction.class, runTaskProperties);
+        Properties jobsProperties = new Properties();
+        jobsProperties.put(ServiceProperties.PREFERRED_MENU, "Apps.COPASI");
+        jobsProperties.put(ServiceProperties.TITLE, "COPASI jobs");
+        registerService(context, new JobsAction(cySwingApplication, jobEngine), CyAction.class, jobsProperties);
         
         // COPASI reader 
         CopasiFileFilter copasiFilter = new CopasiFileFilter(streamUtil);
-        CopasiReaderTaskFactory copasiReaderTaskFactory = new CopasiReaderTaskFactory(copasiFilter, networkFactory, cyNetworkViewFactory, cyLayoutAlgorithmManager);
+        CopasiReaderTaskFactory copasiReaderTaskFactory = new CopasiReaderTaskFactory(copasiFilter, networkFactory, cyNetworkViewFactory, cyLayoutAlgorithmManager, cyEventHelper, cyGroupFactory, modelCache, modelRegistry);
         Properties copasiReaderProps = new Properties();
         copasiReaderProps.setProperty("readerDescription", "COPASI file reader (copasi)");
         copasiReaderProps.setProperty("readerId", "copasiNetworkReader");
@@ -81,4 +243,20 @@ public class CyActivator extends AbstractCyActivator {
 
 		
 	}
+
+	@Override
+	public void stop(BundleContext context) {
+		super.stop(context);
+		AttributeUtil.setIndex(null);
+		ImportMetrics.unregister();
+		if (modelWatcher != null) {
+			modelWatcher.shutdown();
+		}
+		if (jobEngine != null) {
+			jobEngine.shutdown();
+		}
+		if (dataModelManager != null) {
+			dataModelManager.clear();
+		}
+	}
 }
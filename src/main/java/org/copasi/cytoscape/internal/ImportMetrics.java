@@ -0,0 +1,507 @@
+package org.copasi.cytoscape.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Per-phase measurements of model imports.
+ * <p>
+ * An import starts a {@link Recording} on its thread. Every phase it runs
+ * through, from copying the stream to laying out the view, is measured by
+ * a {@link Span}: wall time, bytes allocated by the thread, the items the
+ * phase produced and an estimate of the JNI calls it made, derived from
+ * the calls every kind of object takes rather than counted per call. A
+ * finished recording is shown in the task monitor, kept in a rolling
+ * history, appended to the metrics log and summed up for JMX, see
+ * {@link ImportMetricsMXBean}.
+ * <p>
+ * Measuring is off unless {@link ImportSettings#METRICS_ENABLED} is set or
+ * it is switched on through JMX. While it is off, recordings and spans are
+ * shared instances that do nothing, getting one costs a volatile read. The
+ * VM only starts to track the allocated bytes of threads once measuring is
+ * switched on.
+ */
+public final class ImportMetrics {
+
+    /** Name of the management bean. */
+    public static final String OBJECT_NAME = "org.copasi.cytoscape:type=ImportMetrics";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Phases of an import in the order they run. */
+    public enum Phase {
+        SPILL("stream copy", "bytes"),
+        CACHE("snapshot cache", "snapshots"),
+        LOAD("COPASI load", "bytes"),
+        EXTRACT("extraction", "objects"),
+        LAYOUT_READ("layout read", "objects"),
+        BUILD("network", "elements"),
+        VIEW("view", "views"),
+        LAYOUT("layout", "nodes");
+
+        private final String title;
+        private final String unit;
+
+        Phase(String title, String unit) {
+            this.title = title;
+            this.unit = unit;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /** What the items of the phase count. */
+        public String getUnit() {
+            return unit;
+        }
+
+        /** Key of the phase in the log and in JMX. */
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    // measures kept per phase
+    private static final int NANOS = 0;
+    private static final int ALLOCATED = 1;
+    private static final int ITEMS = 2;
+    private static final int NATIVE_CALLS = 3;
+
+    private static volatile boolean enabled;
+    private static volatile File logFile;
+
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+    private static final Recording NO_RECORDING = new Recording(null);
+    private static final Span NO_SPAN = new Span(null, null);
+
+    private static final Deque<Recording> HISTORY = new ArrayDeque<>();
+    private static final AtomicLong IMPORTS = new AtomicLong();
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    /** getThreadAllocatedBytes of the HotSpot thread bean, null on other VMs. */
+    private static final Method ALLOCATED_BYTES = hotSpotMethod("getThreadAllocatedBytes", long.class);
+    /** setThreadAllocatedMemoryEnabled of the HotSpot thread bean, null on other VMs. */
+    private static final Method ENABLE_ALLOCATED_BYTES =
+            hotSpotMethod("setThreadAllocatedMemoryEnabled", boolean.class);
+
+    static {
+        setEnabled(ImportSettings.isMetricsEnabled());
+    }
+
+    private ImportMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        if (enabled) {
+            enableAllocatedBytes();
+        }
+        ImportMetrics.enabled = enabled;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Recording
+    //////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts measuring the import of the given source on the current thread.
+     * Phases run on other threads are measured after
+     * {@link Recording#resume()} there.
+     */
+    public static Recording start(String source) {
+        if (!enabled) {
+            return NO_RECORDING;
+        }
+        Recording recording = new Recording(source);
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    /** Starts a phase of the import measured on the current thread. */
+    public static Span begin(Phase phase) {
+        if (!enabled) {
+            return NO_SPAN;
+        }
+        Recording recording = CURRENT.get();
+        return recording != null ? new Span(recording, phase) : NO_SPAN;
+    }
+
+    /** Measurements of one import. */
+    public static final class Recording {
+
+        private final String source;
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private long totalNanos;
+
+        private final int[] runs = new int[PHASES.length];
+        private final long[][] measures = new long[NATIVE_CALLS + 1][PHASES.length];
+
+        private Recording(String source) {
+            this.source = source;
+        }
+
+        /** Measures the phases run on the current thread from now on. */
+        public void resume() {
+            if (this != NO_RECORDING) {
+                CURRENT.set(this);
+            }
+        }
+
+        /** Stops measuring the phases run on the current thread. */
+        public void suspend() {
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+        }
+
+        /**
+         * Ends the import, reports its phases to the task monitor, which may
+         * be null, and keeps it in the history and the log.
+         */
+        public void finish(TaskMonitor taskMonitor) {
+            suspend();
+            if (this == NO_RECORDING) {
+                return;
+            }
+            synchronized (this) {
+                totalNanos = System.nanoTime() - startNanos;
+            }
+            if (taskMonitor != null) {
+                for (String line : getPhaseSummaries()) {
+                    taskMonitor.showMessage(TaskMonitor.Level.INFO, line);
+                }
+            }
+            IMPORTS.incrementAndGet();
+            synchronized (HISTORY) {
+                HISTORY.addLast(this);
+                while (HISTORY.size() > ImportSettings.getMetricsHistory()) {
+                    HISTORY.removeFirst();
+                }
+            }
+            log(this);
+        }
+
+        private synchronized void add(Phase phase, long spanNanos, long spanAllocated, long spanItems,
+                                      long spanNativeCalls) {
+            int p = phase.ordinal();
+            runs[p]++;
+            measures[NANOS][p] += spanNanos;
+            if (spanAllocated > 0) {
+                measures[ALLOCATED][p] += spanAllocated;
+            }
+            measures[ITEMS][p] += spanItems;
+            measures[NATIVE_CALLS][p] += spanNativeCalls;
+        }
+
+        /** One line per phase that ran, e.g. for the task monitor. */
+        public synchronized List<String> getPhaseSummaries() {
+            List<String> lines = new ArrayList<>();
+            for (Phase phase : PHASES) {
+                int p = phase.ordinal();
+                if (runs[p] == 0) {
+                    continue;
+                }
+                StringBuilder line = new StringBuilder();
+                line.append(String.format("%s: %d ms, %d %s", phase.getTitle(), measures[NANOS][p] / 1000000,
+                        measures[ITEMS][p], phase.getUnit()));
+                if (measures[ALLOCATED][p] > 0) {
+                    line.append(String.format(", %d kB allocated", measures[ALLOCATED][p] / 1024));
+                }
+                if (measures[NATIVE_CALLS][p] > 0) {
+                    line.append(String.format(", about %d JNI calls", measures[NATIVE_CALLS][p]));
+                }
+                lines.add(line.toString());
+            }
+            return lines;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder summary = new StringBuilder();
+            summary.append(source).append(": ").append(totalNanos / 1000000).append(" ms");
+            for (Phase phase : PHASES) {
+                int p = phase.ordinal();
+                if (runs[p] > 0) {
+                    summary.append(", ").append(phase.getTitle()).append(' ')
+                            .append(measures[NANOS][p] / 1000000).append(" ms");
+                }
+            }
+            return summary.toString();
+        }
+
+        /** Line of the metrics log, key=value pairs separated by tabs. */
+        synchronized String toLogLine() {
+            StringBuilder line = new StringBuilder();
+            line.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(startMillis)));
+            line.append("\tsource=").append(source.replace('\t', ' '));
+            line.append("\ttotal_ms=").append(totalNanos / 1000000);
+            for (Phase phase : PHASES) {
+                int p = phase.ordinal();
+                if (runs[p] == 0) {
+                    continue;
+                }
+                String key = phase.key();
+                line.append('\t').append(key).append("_ms=").append(measures[NANOS][p] / 1000000);
+                line.append('\t').append(key).append("_allocated_bytes=").append(measures[ALLOCATED][p]);
+                line.append('\t').append(key).append("_items=").append(measures[ITEMS][p]);
+                line.append('\t').append(key).append("_jni_calls=").append(measures[NATIVE_CALLS][p]);
+            }
+            return line.toString();
+        }
+    }
+
+    /** Measurement of one phase, ended exactly once. */
+    public static final class Span {
+
+        private final Recording recording;
+        private final Phase phase;
+        private final long startNanos;
+        private final long startAllocated;
+        private long nativeCalls;
+
+        private Span(Recording recording, Phase phase) {
+            this.recording = recording;
+            this.phase = phase;
+            this.startAllocated = recording != null ? allocatedBytes() : 0;
+            this.startNanos = recording != null ? System.nanoTime() : 0;
+        }
+
+        /** Adds to the estimated JNI calls of the phase. */
+        public void addNativeCalls(long calls) {
+            nativeCalls += calls;
+        }
+
+        /** Ends the phase with the number of items it produced. */
+        public void end(long items) {
+            if (recording == null) {
+                return;
+            }
+            long spanNanos = System.nanoTime() - startNanos;
+            long end = allocatedBytes();
+            long spanAllocated = startAllocated >= 0 && end >= 0 ? end - startAllocated : -1;
+            recording.add(phase, spanNanos, spanAllocated, items, nativeCalls);
+        }
+    }
+
+    /** Bytes allocated by the current thread so far, -1 if the VM does not tell. */
+    public static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /** Lets the VM track the bytes allocated by threads, left on once measuring was switched on. */
+    private static void enableAllocatedBytes() {
+        if (ENABLE_ALLOCATED_BYTES == null) {
+            return;
+        }
+        try {
+            ENABLE_ALLOCATED_BYTES.invoke(THREADS, true);
+        } catch (Exception e) {
+            // the allocated bytes are reported as -1
+        }
+    }
+
+    private static Method hotSpotMethod(String name, Class<?>... parameterTypes) {
+        try {
+            // HotSpot extension, looked up reflectively so the bundle does not import com.sun packages
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (!type.isInstance(THREADS)) {
+                return null;
+            }
+            Method isSupported = type.getMethod("isThreadAllocatedMemorySupported");
+            if (!(Boolean) isSupported.invoke(THREADS)) {
+                return null;
+            }
+            return type.getMethod(name, parameterTypes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // History and log
+    //////////////////////////////////////////////////////////////////////////
+
+    /** The recordings in the history, oldest first. */
+    public static List<Recording> getHistory() {
+        synchronized (HISTORY) {
+            return new ArrayList<>(HISTORY);
+        }
+    }
+
+    public static void clearHistory() {
+        synchronized (HISTORY) {
+            HISTORY.clear();
+        }
+    }
+
+    private static void log(Recording recording) {
+        File file = logFile;
+        if (file == null) {
+            return;
+        }
+        String line = recording.toLogLine() + System.getProperty("line.separator");
+        synchronized (ImportMetrics.class) {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), UTF8)) {
+                out.write(line);
+            } catch (IOException e) {
+                // measurements never fail an import
+            }
+        }
+    }
+
+    /** Sums of a measure over the history, keyed by phase. */
+    private static Map<String, Long> totals(int measure) {
+        long[] sums = new long[PHASES.length];
+        for (Recording recording : getHistory()) {
+            synchronized (recording) {
+                for (int p = 0; p < PHASES.length; p++) {
+                    sums[p] += recording.measures[measure][p];
+                }
+            }
+        }
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (Phase phase : PHASES) {
+            long sum = sums[phase.ordinal()];
+            totals.put(phase.key(), measure == NANOS ? sum / 1000000 : sum);
+        }
+        return totals;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // JMX
+    //////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Registers the management bean and appends finished imports to the
+     * given log file.
+     *
+     * @param file metrics log, null for no log
+     */
+    public static void register(File file) {
+        if (file != null && file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        logFile = file;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new Management(), name);
+        } catch (JMException e) {
+            // the metrics are still reported to the task monitor and the log
+        }
+    }
+
+    /** Unregisters the management bean and closes the log. */
+    public static void unregister() {
+        logFile = null;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            // nothing left to clean up
+        }
+    }
+
+    private static class Management implements ImportMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ImportMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            ImportMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getImportCount() {
+            return IMPORTS.get();
+        }
+
+        @Override
+        public String getLastImport() {
+            synchronized (HISTORY) {
+                return HISTORY.isEmpty() ? "" : HISTORY.getLast().toString();
+            }
+        }
+
+        @Override
+        public String[] getHistory() {
+            List<Recording> history = ImportMetrics.getHistory();
+            String[] summaries = new String[history.size()];
+            for (int i = 0; i < summaries.length; i++) {
+                summaries[i] = history.get(i).toString();
+            }
+            return summaries;
+        }
+
+        @Override
+        public Map<String, Long> getTotalMillis() {
+            return totals(NANOS);
+        }
+
+        @Override
+        public Map<String, Long> getTotalAllocatedBytes() {
+            return totals(ALLOCATED);
+        }
+
+        @Override
+        public Map<String, Long> getTotalItems() {
+            return totals(ITEMS);
+        }
+
+        @Override
+        public Map<String, Long> getTotalNativeCalls() {
+            return totals(NATIVE_CALLS);
+        }
+
+        @Override
+        public void clearHistory() {
+            ImportMetrics.clearHistory();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.copasi.cytoscape.internal;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link ImportMetrics}, registered as
+ * {@value ImportMetrics#OBJECT_NAME}.
+ * <p>
+ * The totals are summed over the imports in the history and keyed by phase.
+ */
+public interface ImportMetricsMXBean {
+
+    boolean isEnabled();
+
+    /** Switches measuring on or off, imports already running are not affected. */
+    void setEnabled(boolean enabled);
+
+    /** Number of imports measured since the app started. */
+    long getImportCount();
+
+    /** Summary of the last measured import, empty if there is none. */
+    String getLastImport();
+
+    /** Summaries of the imports in the history, oldest first. */
+    String[] getHistory();
+
+    Map<String, Long> getTotalMillis();
+
+    Map<String, Long> getTotalAllocatedBytes();
+
+    Map<String, Long> getTotalItems();
+
+    /**
+     * Estimated JNI calls per phase. The extractor derives them from the
+     * calls every kind of object takes, they are not counted per call.
+     */
+    Map<String, Long> getTotalNativeCalls();
+
+    void clearHistory();
+
+}
@@ -0,0 +1,174 @@
+package org.copasi.cytoscape.internal;
+
+import org.copasi.cytoscape.internal.model.ImportProfile;
+
+/**
+ * Settings of the COPASI import.
+ *
+ * All settings are read from system properties, so they can be tuned in
+ * Cytoscape.vmoptions without touching the app, e.g.
+ * {@code -Dcopasi.import.threads=4}.
+ */
+public class ImportSettings {
+
+	/** Number of files parsed in parallel, defaults to the number of cores. */
+	public static final String IMPORT_THREADS = "copasi.import.threads";
+	/** Native memory in MB that all leased data models may use together. */
+	public static final String NATIVE_BUDGET_MB = "copasi.import.nativeBudgetMB";
+	/** Estimated native bytes of a loaded model per byte of its file. */
+	public static final String NATIVE_BYTES_PER_FILE_BYTE = "copasi.import.nativeBytesPerFileByte";
+	/** Level of detail of imported networks: skeleton, standard or full. */
+	public static final String IMPORT_PROFILE = "copasi.import.profile";
+	/** Whether every compartment of a model with several gets its own subnetwork. */
+	public static final String COMPARTMENT_NETWORKS = "copasi.import.compartmentNetworks";
+	/** Whether the nodes of every compartment are grouped in the network of the whole model. */
+	public static final String COMPARTMENT_GROUPS = "copasi.import.compartmentGroups";
+	/** Number of emptied data models kept for reuse. */
+	public static final String DATA_MODEL_POOL_SIZE = "copasi.datamodels.poolSize";
+
+	/** Size of the on-disk model cache in MB, 0 disables the cache. */
+	public static final String CACHE_MAX_MB = "copasi.cache.maxMB";
+
+	/** Largest network without model layout that gets a force-directed layout, larger ones get a grid. */
+	public static final String FORCE_DIRECTED_MAX_NODES = "copasi.layout.forceDirectedMaxNodes";
+
+	/** Networks with more nodes and edges together are imported without view. */
+	public static final String VIEW_MAX_ELEMENTS = "copasi.view.maxElements";
+
+	/** Steps COPASI simulates, and holds, at a time. */
+	public static final String SIMULATION_CHUNK_STEPS = "copasi.simulation.chunkSteps";
+	/** Frames of a simulated time course kept on the heap, longer ones are thinned out. */
+	public static final String SIMULATION_MAX_FRAMES = "copasi.simulation.maxFrames";
+	/** Trajectories larger than this many MB are kept in a memory mapped file with all frames. */
+	public static final String TRAJECTORY_HEAP_MB = "copasi.trajectory.heapMB";
+
+	/** Number of COPASI tasks run in the background at a time. */
+	public static final String JOB_THREADS = "copasi.jobs.threads";
+	/** Number of COPASI tasks waiting to run, further ones are rejected. */
+	public static final String JOB_QUEUE = "copasi.jobs.queue";
+	/** Number of data models kept loaded for the jobs of their network, each holds its native memory. */
+	public static final String JOB_KEPT_MODELS = "copasi.jobs.keptModels";
+
+	/** Milliseconds a watched COPASI file has to stay unchanged before its network is reloaded. */
+	public static final String RELOAD_DELAY_MILLIS = "copasi.reload.delayMillis";
+
+	/** Whether the phases of imports are measured, see {@link ImportMetrics}. */
+	public static final String METRICS_ENABLED = "copasi.metrics.enabled";
+	/** Number of measured imports kept in the history. */
+	public static final String METRICS_HISTORY = "copasi.metrics.history";
+
+	private static final long DEFAULT_NATIVE_BUDGET_MB = 2048;
+	private static final long DEFAULT_CACHE_MAX_MB = 512;
+	private static final long DEFAULT_NATIVE_BYTES_PER_FILE_BYTE = 10;
+	private static final long DEFAULT_FORCE_DIRECTED_MAX_NODES = 1000;
+	private static final long DEFAULT_VIEW_MAX_ELEMENTS = 100000;
+	private static final long DEFAULT_SIMULATION_CHUNK_STEPS = 1000;
+	private static final long DEFAULT_SIMULATION_MAX_FRAMES = 2000;
+	private static final long DEFAULT_TRAJECTORY_HEAP_MB = 64;
+	private static final long DEFAULT_JOB_THREADS = 2;
+	private static final long DEFAULT_JOB_QUEUE = 16;
+	private static final long DEFAULT_JOB_KEPT_MODELS = 2;
+	private static final long DEFAULT_DATA_MODEL_POOL_SIZE = 2;
+	private static final long DEFAULT_RELOAD_DELAY_MILLIS = 1000;
+	private static final long DEFAULT_METRICS_HISTORY = 100;
+
+	private ImportSettings() {
+	}
+
+	public static int getImportThreads() {
+		int cores = Runtime.getRuntime().availableProcessors();
+		return (int) Math.max(1, getLong(IMPORT_THREADS, cores));
+	}
+
+	public static ImportProfile getImportProfile() {
+		ImportProfile profile = ImportProfile.of(System.getProperty(IMPORT_PROFILE));
+		return profile != null ? profile : ImportProfile.STANDARD;
+	}
+
+	public static boolean isCompartmentNetworks() {
+		return !"false".equalsIgnoreCase(System.getProperty(COMPARTMENT_NETWORKS, "true").trim());
+	}
+
+	public static boolean isCompartmentGroups() {
+		return Boolean.parseBoolean(System.getProperty(COMPARTMENT_GROUPS));
+	}
+
+	public static long getNativeBudgetMB() {
+		return Math.max(1, getLong(NATIVE_BUDGET_MB, DEFAULT_NATIVE_BUDGET_MB));
+	}
+
+	/** Estimated native memory in MB needed to load a model file of the given size. */
+	public static long estimateNativeMB(long fileBytes) {
+		long factor = Math.max(1, getLong(NATIVE_BYTES_PER_FILE_BYTE, DEFAULT_NATIVE_BYTES_PER_FILE_BYTE));
+		return Math.max(1, fileBytes * factor / (1024 * 1024));
+	}
+
+	public static int getDataModelPoolSize() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getLong(DATA_MODEL_POOL_SIZE, DEFAULT_DATA_MODEL_POOL_SIZE)));
+	}
+
+	public static long getCacheMaxBytes() {
+		return Math.max(0, getLong(CACHE_MAX_MB, DEFAULT_CACHE_MAX_MB)) * 1024 * 1024;
+	}
+
+	public static long getForceDirectedMaxNodes() {
+		return Math.max(0, getLong(FORCE_DIRECTED_MAX_NODES, DEFAULT_FORCE_DIRECTED_MAX_NODES));
+	}
+
+	public static long getViewMaxElements() {
+		return Math.max(0, getLong(VIEW_MAX_ELEMENTS, DEFAULT_VIEW_MAX_ELEMENTS));
+	}
+
+	public static long getSimulationChunkSteps() {
+		return Math.max(1, getLong(SIMULATION_CHUNK_STEPS, DEFAULT_SIMULATION_CHUNK_STEPS));
+	}
+
+	public static int getSimulationMaxFrames() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(2, getLong(SIMULATION_MAX_FRAMES, DEFAULT_SIMULATION_MAX_FRAMES)));
+	}
+
+	public static long getTrajectoryHeapBytes() {
+		return Math.max(0, getLong(TRAJECTORY_HEAP_MB, DEFAULT_TRAJECTORY_HEAP_MB)) * 1024 * 1024;
+	}
+
+	public static int getJobThreads() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, getLong(JOB_THREADS, DEFAULT_JOB_THREADS)));
+	}
+
+	public static int getJobQueue() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, getLong(JOB_QUEUE, DEFAULT_JOB_QUEUE)));
+	}
+
+	public static int getJobKeptModels() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getLong(JOB_KEPT_MODELS, DEFAULT_JOB_KEPT_MODELS)));
+	}
+
+	public static long getReloadDelayMillis() {
+		return Math.max(0, getLong(RELOAD_DELAY_MILLIS, DEFAULT_RELOAD_DELAY_MILLIS));
+	}
+
+	public static boolean isMetricsEnabled() {
+		return Boolean.parseBoolean(System.getProperty(METRICS_ENABLED));
+	}
+
+	public static int getMetricsHistory() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, getLong(METRICS_HISTORY, DEFAULT_METRICS_HISTORY)));
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	// Properties
+	//////////////////////////////////////////////////////////////////////////
+
+	static long getLong(String key, long defaultValue) {
+		String value = System.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+}
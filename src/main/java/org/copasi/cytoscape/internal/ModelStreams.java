@@ -0,0 +1,199 @@
+package org.copasi.cytoscape.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+
+/**
+ * Detection and decompression of COPASI model streams.
+ *
+ * Models may be stored plain, gzip compressed ({@code .cps.gz}) or as the
+ * first model entry of a zip archive. Detection only looks at a bounded
+ * prefix of the stream, decompression is always streamed.
+ */
+public class ModelStreams {
+
+	/** Raw bytes read to detect the format. */
+	public static final int PEEK_BYTES = 16 * 1024;
+	/** Decompressed bytes searched for the COPASI namespace. */
+	public static final int HEADER_BYTES = 4 * 1024;
+
+	private static final String COPASI_XML_NAMESPACE = "http://www.copasi.org/static/schema";
+	private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._:-]+)[\"']");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public enum Compression { NONE, GZIP, ZIP }
+
+	private ModelStreams() {
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	// Detection
+	//////////////////////////////////////////////////////////////////////////
+
+	/** Compression of a stream starting with the given bytes. */
+	public static Compression detect(byte[] prefix, int length) {
+		if (length >= 2 && (prefix[0] & 0xff) == 0x1f && (prefix[1] & 0xff) == 0x8b) {
+			return Compression.GZIP;
+		}
+		if (length >= 4 && prefix[0] == 'P' && prefix[1] == 'K' && prefix[2] == 3 && prefix[3] == 4) {
+			return Compression.ZIP;
+		}
+		return Compression.NONE;
+	}
+
+	/** Compression of the given file. */
+	public static Compression detect(File file) throws IOException {
+		byte[] prefix = new byte[4];
+		try (InputStream in = new FileInputStream(file)) {
+			return detect(prefix, readFully(in, prefix, prefix.length));
+		}
+	}
+
+	/**
+	 * Checks whether the stream is a COPASI model, also if it is compressed.
+	 * At most {@link #PEEK_BYTES} are read from the stream, it is neither
+	 * reset nor closed.
+	 */
+	public static boolean isCopasiModel(InputStream stream) throws IOException {
+		byte[] prefix = new byte[PEEK_BYTES];
+		int length = readFully(stream, prefix, prefix.length);
+
+		Compression compression = detect(prefix, length);
+		if (compression != Compression.NONE) {
+			// inflate the prefix only, the end of the compressed data is missing
+			byte[] header = new byte[HEADER_BYTES];
+			try {
+				InputStream in = decompress(new ByteArrayInputStream(prefix, 0, length), compression);
+				length = readPrefix(in, header);
+			} catch (IOException e) {
+				return false;
+			}
+			prefix = header;
+		}
+		return containsNamespace(prefix, length);
+	}
+
+	/** Checks the decoded header for the COPASI namespace. */
+	private static boolean containsNamespace(byte[] header, int length) {
+		String text = new String(header, 0, Math.max(0, length), charset(header, length));
+		return text.contains(COPASI_XML_NAMESPACE);
+	}
+
+	/**
+	 * Charset of an XML document from its byte order mark or declaration,
+	 * UTF-8 if it has neither.
+	 */
+	static Charset charset(byte[] header, int length) {
+		if (length >= 3 && (header[0] & 0xff) == 0xef && (header[1] & 0xff) == 0xbb && (header[2] & 0xff) == 0xbf) {
+			return UTF8;
+		}
+		if (length >= 2 && (header[0] & 0xff) == 0xfe && (header[1] & 0xff) == 0xff
+				|| length >= 2 && header[0] == 0 && header[1] == '<') {
+			return Charset.forName("UTF-16BE");
+		}
+		if (length >= 2 && (header[0] & 0xff) == 0xff && (header[1] & 0xff) == 0xfe
+				|| length >= 2 && header[0] == '<' && header[1] == 0) {
+			return Charset.forName("UTF-16LE");
+		}
+		// the declaration is ASCII in all ASCII compatible encodings
+		String text = new String(header, 0, Math.max(0, length), LATIN1);
+		int end = text.indexOf("?>");
+		if (text.startsWith("<?xml") && end > 0) {
+			Matcher matcher = ENCODING.matcher(text.substring(0, end));
+			if (matcher.find()) {
+				try {
+					return Charset.forName(matcher.group(1));
+				} catch (IllegalArgumentException e) {
+					return UTF8;
+				}
+			}
+		}
+		return UTF8;
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	// Decompression
+	//////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the decompressed model stream, the stream itself if it is not
+	 * compressed. Nothing is inflated up front.
+	 */
+	public static InputStream decompress(InputStream stream) throws IOException {
+		InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream, BUFFER_SIZE);
+		byte[] magic = new byte[4];
+		in.mark(magic.length);
+		int length = readFully(in, magic, magic.length);
+		in.reset();
+		return decompress(in, detect(magic, length));
+	}
+
+	private static InputStream decompress(InputStream in, Compression compression) throws IOException {
+		switch (compression) {
+			case GZIP:
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			case ZIP:
+				return firstModelEntry(new ZipInputStream(in));
+			default:
+				return in;
+		}
+	}
+
+	/** Positions the archive at its first .cps or .xml entry. */
+	private static InputStream firstModelEntry(ZipInputStream zip) throws IOException {
+		ZipEntry entry;
+		while ((entry = zip.getNextEntry()) != null) {
+			String name = entry.getName().toLowerCase();
+			if (!entry.isDirectory() && (name.endsWith(".cps") || name.endsWith(".xml"))) {
+				return zip;
+			}
+		}
+		throw new IOException("The archive contains no COPASI model");
+	}
+
+	/** Reads what a truncated compressed stream yields, up to the buffer size. */
+	private static int readPrefix(InputStream in, byte[] buffer) throws IOException {
+		int total = 0;
+		try {
+			int read;
+			while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) >= 0) {
+				total += read;
+			}
+		} catch (EOFException e) {
+			// end of the prefix
+		}
+		return total;
+	}
+
+	/**
+	 * Reads up to length bytes, fewer only at the end of the stream.
+	 *
+	 * @return number of bytes read
+	 */
+	private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+		int total = 0;
+		while (total < length) {
+			int read = in.read(buffer, total, length - total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+}
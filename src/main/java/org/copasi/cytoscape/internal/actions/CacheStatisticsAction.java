@@ -0,0 +1,49 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.ModelCache;
+
+/**
+ * Shows the hit/miss statistics of the model cache and the data models in
+ * use.
+ */
+public class CacheStatisticsAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	ModelCache modelCache;
+	DataModelManager dataModelManager;
+
+	public CacheStatisticsAction(CySwingApplication cySwingApplication, ModelCache modelCache,
+								 DataModelManager dataModelManager)
+	{
+		super(CacheStatisticsAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.modelCache = modelCache;
+		this.dataModelManager = dataModelManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		String[] options = {"Close", "Clear cache"};
+		int choice = JOptionPane.showOptionDialog(cySwingApplication.getJFrame(),
+				modelCache.getStatistics() + "\n" + dataModelManager.getStatistics(), "COPASI model cache",
+				JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
+		if (choice == 1)
+		{
+			modelCache.clear();
+		}
+	}
+
+}
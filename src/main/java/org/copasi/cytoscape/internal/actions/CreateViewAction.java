@@ -0,0 +1,73 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.CreateViewTaskFactory;
+import org.copasi.cytoscape.internal.tasks.NetworkViews;
+
+/**
+ * Creates the view of the current network on demand.
+ * Networks above the view threshold are imported without a view, for them
+ * the compartment overview is offered first.
+ */
+public class CreateViewAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	CreateViewTaskFactory createViewTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public CreateViewAction(CySwingApplication cySwingApplication,
+							CyApplicationManager cyApplicationManager,
+							CreateViewTaskFactory createViewTaskFactory,
+							@SuppressWarnings("rawtypes")
+							TaskManager taskManager)
+	{
+		super(CreateViewAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.createViewTaskFactory = createViewTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (network == null)
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network first.", "Create view", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		boolean overview = false;
+		if (NetworkViews.isLarge(network))
+		{
+			String[] options = {"Compartment overview", "Full view", "Cancel"};
+			int choice = JOptionPane.showOptionDialog(cySwingApplication.getJFrame(),
+					String.format("The network has %d nodes and %d edges.", network.getNodeCount(), network.getEdgeCount()),
+					"Create view", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+			if (choice != 0 && choice != 1)
+			{
+				return;
+			}
+			overview = choice == 0;
+		}
+		taskManager.execute(createViewTaskFactory.createTaskIterator(network, overview));
+	}
+
+}
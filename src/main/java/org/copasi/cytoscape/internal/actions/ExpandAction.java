@@ -0,0 +1,59 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.ExpandTaskFactory;
+
+/**
+ * Adds the modifiers and other objects the selected reactions of the
+ * current network depend on, when the network was imported with less
+ * detail.
+ */
+public class ExpandAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	ExpandTaskFactory expandTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public ExpandAction(CySwingApplication cySwingApplication,
+						CyApplicationManager cyApplicationManager,
+						ExpandTaskFactory expandTaskFactory,
+						@SuppressWarnings("rawtypes")
+						TaskManager taskManager)
+	{
+		super(ExpandAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.expandTaskFactory = expandTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!expandTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select reactions of a network imported from a COPASI file first.", "Expand reactions",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		taskManager.execute(expandTaskFactory.createTaskIterator(network));
+	}
+
+}
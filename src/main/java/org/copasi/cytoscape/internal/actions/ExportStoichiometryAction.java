@@ -0,0 +1,74 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.FileDialog;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.util.swing.FileChooserFilter;
+import org.cytoscape.util.swing.FileUtil;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.ExportStoichiometryTaskFactory;
+
+/**
+ * Exports the sparse stoichiometry matrix of the current network in the
+ * Matrix Market format.
+ */
+public class ExportStoichiometryAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	FileUtil fileUtil;
+	ExportStoichiometryTaskFactory exportStoichiometryTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public ExportStoichiometryAction(CySwingApplication cySwingApplication,
+									 CyApplicationManager cyApplicationManager,
+									 FileUtil fileUtil,
+									 ExportStoichiometryTaskFactory exportStoichiometryTaskFactory,
+									 @SuppressWarnings("rawtypes")
+									 TaskManager taskManager)
+	{
+		super(ExportStoichiometryAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.fileUtil = fileUtil;
+		this.exportStoichiometryTaskFactory = exportStoichiometryTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!exportStoichiometryTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", "Export stoichiometry matrix",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		Collection<FileChooserFilter> filters = new HashSet<>();
+		filters.add(new FileChooserFilter("Matrix Market files (*.mtx)", "mtx"));
+		File file = fileUtil.getFile(cySwingApplication.getJFrame(),
+				"Export stoichiometry matrix", FileUtil.SAVE, filters);
+		if (file != null)
+		{
+			taskManager.execute(exportStoichiometryTaskFactory.createTaskIterator(network, file));
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.util.List;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.copasi.cytoscape.internal.AttributeIndex;
+import org.copasi.cytoscape.internal.AttributeUtil;
+
+/**
+ * Jumps to a node of the current network.
+ * The nodes whose id, cn, name or display name contain the typed text are
+ * listed while typing, the chosen ones are selected.
+ */
+public class FindNodeAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	private static final String TITLE = "Find node";
+
+	/** Maximal number of listed nodes. */
+	private static final int LIMIT = 100;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	AttributeIndex attributeIndex;
+	CyEventHelper cyEventHelper;
+
+	public FindNodeAction(CySwingApplication cySwingApplication,
+						  CyApplicationManager cyApplicationManager,
+						  AttributeIndex attributeIndex,
+						  CyEventHelper cyEventHelper)
+	{
+		super(FindNodeAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.attributeIndex = attributeIndex;
+		this.cyEventHelper = cyEventHelper;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		final CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (network == null)
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network first.", TITLE, JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		final JTextField searchField = new JTextField(30);
+		final DefaultListModel<NodeItem> listModel = new DefaultListModel<>();
+		final JList<NodeItem> list = new JList<>(listModel);
+		searchField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				search(network, searchField.getText(), listModel);
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				search(network, searchField.getText(), listModel);
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				search(network, searchField.getText(), listModel);
+			}
+		});
+		JScrollPane scrollPane = new JScrollPane(list);
+		scrollPane.setPreferredSize(new Dimension(400, 250));
+		JPanel panel = new JPanel(new BorderLayout());
+		panel.add(searchField, BorderLayout.NORTH);
+		panel.add(scrollPane, BorderLayout.CENTER);
+
+		int choice = JOptionPane.showConfirmDialog(cySwingApplication.getJFrame(), panel, TITLE,
+				JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+		List<NodeItem> selected = list.getSelectedValuesList();
+		if (choice != JOptionPane.OK_OPTION || selected.isEmpty())
+		{
+			return;
+		}
+		for (CyNode node : network.getNodeList())
+		{
+			if (Boolean.TRUE.equals(AttributeUtil.get(network, node, CyNetwork.SELECTED, Boolean.class)))
+			{
+				network.getRow(node).set(CyNetwork.SELECTED, false);
+			}
+		}
+		for (NodeItem item : selected)
+		{
+			network.getRow(item.node).set(CyNetwork.SELECTED, true);
+		}
+		cyEventHelper.flushPayloadEvents();
+	}
+
+	private void search(CyNetwork network, String text, DefaultListModel<NodeItem> listModel)
+	{
+		listModel.clear();
+		if (text.trim().isEmpty())
+		{
+			return;
+		}
+		for (CyNode node : attributeIndex.findBySubstring(network, text.trim(), LIMIT))
+		{
+			listModel.addElement(new NodeItem(network, node));
+		}
+	}
+
+	/** Node in the list, shown by its display name and CN. */
+	private static class NodeItem {
+		final CyNode node;
+		final String label;
+
+		NodeItem(CyNetwork network, CyNode node) {
+			this.node = node;
+			String name = value(network, node, "display name");
+			if (name == null) {
+				name = value(network, node, CyNetwork.NAME);
+			}
+			String cn = value(network, node, "cn");
+			this.label = cn != null ? name + "  (" + cn + ")" : String.valueOf(name);
+		}
+
+		private static String value(CyNetwork network, CyNode node, String column) {
+			if (network.getDefaultNodeTable().getColumn(column) == null) {
+				return null;
+			}
+			return AttributeUtil.get(network, node, column, String.class);
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+}
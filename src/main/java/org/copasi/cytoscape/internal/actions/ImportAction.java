@@ -8,11 +8,10 @@ import java.util.HashSet;
 
 import org.cytoscape.application.swing.AbstractCyAction;
 import org.cytoscape.application.swing.CySwingApplication;
-import org.cytoscape.task.read.LoadNetworkFileTaskFactory;
 import org.cytoscape.util.swing.FileChooserFilter;
 import org.cytoscape.util.swing.FileUtil;
-import org.cytoscape.work.SynchronousTaskManager;
-import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.ImportFilesTaskFactory;
 
 /**
  * Importing SBML networks..
@@ -23,24 +22,24 @@ public class ImportAction extends AbstractCyAction{
     CySwingApplication cySwingApplication;
     FileUtil fileUtil;
 
-    LoadNetworkFileTaskFactory loadNetworkFileTaskFactory;
+    ImportFilesTaskFactory importFilesTaskFactory;
     @SuppressWarnings("rawtypes")
-    SynchronousTaskManager synchronousTaskManager;
+    TaskManager taskManager;
 
     
 
 	public ImportAction(CySwingApplication cySwingApplication,
 						FileUtil fileUtil,
-						LoadNetworkFileTaskFactory loadNetworkFileTaskFactory,
+						ImportFilesTaskFactory importFilesTaskFactory,
 						@SuppressWarnings("rawtypes")
-    					SynchronousTaskManager synchronousTaskManager)
+    					TaskManager taskManager)
 	{
 		super(ImportAction.class.getSimpleName());
 
 		this.cySwingApplication = cySwingApplication;
 		this.fileUtil = fileUtil;
-		this.loadNetworkFileTaskFactory = loadNetworkFileTaskFactory;
-		this.synchronousTaskManager = synchronousTaskManager;
+		this.importFilesTaskFactory = importFilesTaskFactory;
+		this.taskManager = taskManager;
 		
 		
 		
@@ -53,19 +52,16 @@ public class ImportAction extends AbstractCyAction{
 	{
 		// open new file open dialog
 		Collection<FileChooserFilter> filters = new HashSet<>();
-		String[] extensions = {"", "xml", "cps"};
-		filters.add(new FileChooserFilter("COPASI files (*, *.xml, *.cps)", extensions));
+		String[] extensions = {"", "xml", "cps", "gz", "zip"};
+		filters.add(new FileChooserFilter("COPASI files (*, *.xml, *.cps, *.gz, *.zip)", extensions));
 	
 		File[] files = fileUtil.getFiles(cySwingApplication.getJFrame(), 
 				"Open COPASI file", FileDialog.LOAD, filters);
 		
 		if ((files != null) && (files.length != 0)) 
 		{
-			for (int i = 0; i < files.length; i++) 
-			{
-				TaskIterator iterator = loadNetworkFileTaskFactory.createTaskIterator(files[i]);
-				synchronousTaskManager.execute(iterator);
-			}
+			// all files in one background task with a single progress dialog
+			taskManager.execute(importFilesTaskFactory.createTaskIterator(files));
 		}
 	}
 
@@ -0,0 +1,35 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.copasi.cytoscape.internal.tasks.JobEngine;
+
+/**
+ * Shows the COPASI tasks running in the background.
+ */
+public class JobsAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	JobEngine jobEngine;
+
+	public JobsAction(CySwingApplication cySwingApplication, JobEngine jobEngine)
+	{
+		super(JobsAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.jobEngine = jobEngine;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		new JobsDialog(cySwingApplication.getJFrame(), jobEngine).setVisible(true);
+	}
+
+}
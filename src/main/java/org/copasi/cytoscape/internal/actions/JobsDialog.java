@@ -0,0 +1,155 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import org.copasi.cytoscape.internal.tasks.Job;
+import org.copasi.cytoscape.internal.tasks.JobEngine;
+
+/**
+ * Lists the jobs of the job engine and cancels them.
+ * The list is refreshed while the dialog is open.
+ */
+public class JobsDialog extends JDialog {
+	private static final long serialVersionUID = 1L;
+
+	/** Milliseconds between two refreshes of the list. */
+	private static final int REFRESH = 500;
+
+	private static final String[] COLUMNS = {"#", "Network", "Task", "State", "Callbacks", "Seconds", "Result"};
+
+	private final JobEngine jobEngine;
+	private final JobTableModel tableModel = new JobTableModel();
+	private final JTable table = new JTable(tableModel);
+	private final Timer timer;
+
+	public JobsDialog(Frame owner, JobEngine jobEngine)
+	{
+		super(owner, "COPASI jobs", false);
+		this.jobEngine = jobEngine;
+
+		JButton cancelButton = new JButton("Cancel job");
+		cancelButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				for (int row : table.getSelectedRows()) {
+					tableModel.getJob(row).cancel();
+				}
+			}
+		});
+		JButton closeButton = new JButton("Close");
+		closeButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		});
+		timer = new Timer(REFRESH, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		buttons.add(cancelButton);
+		buttons.add(closeButton);
+		getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+		getContentPane().add(buttons, BorderLayout.SOUTH);
+
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				timer.stop();
+			}
+		});
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		refresh();
+		pack();
+		setLocationRelativeTo(owner);
+		timer.start();
+	}
+
+	private void refresh() {
+		int[] selected = table.getSelectedRows();
+		List<Integer> ids = new ArrayList<>();
+		for (int row : selected) {
+			ids.add(tableModel.getJob(row).getId());
+		}
+		tableModel.setJobs(jobEngine.getJobs());
+		for (int row = 0; row < tableModel.getRowCount(); row++) {
+			if (ids.contains(tableModel.getJob(row).getId())) {
+				table.addRowSelectionInterval(row, row);
+			}
+		}
+	}
+
+	private static class JobTableModel extends AbstractTableModel {
+		private static final long serialVersionUID = 1L;
+
+		private List<Job> jobs = new ArrayList<>();
+
+		void setJobs(List<Job> jobs) {
+			this.jobs = jobs;
+			fireTableDataChanged();
+		}
+
+		Job getJob(int row) {
+			return jobs.get(row);
+		}
+
+		@Override
+		public int getRowCount() {
+			return jobs.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return COLUMNS.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return COLUMNS[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			Job job = jobs.get(row);
+			switch (column) {
+			case 0:
+				return job.getId();
+			case 1:
+				return job.getNetworkName();
+			case 2:
+				return job.getTaskName();
+			case 3:
+				return job.getState();
+			case 4:
+				return job.getCallbacks();
+			case 5:
+				return job.getElapsedMillis() / 1000;
+			default:
+				return job.getReportFile() != null
+						? job.getMessage() + " (" + job.getReportFile().getAbsolutePath() + ")"
+						: job.getMessage();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.copasi.cytoscape.internal.model.SharedTrajectory;
+import org.copasi.cytoscape.internal.tasks.ModelRegistry;
+import org.copasi.cytoscape.internal.tasks.TrajectoryScrubber;
+
+/**
+ * Opens the player for the simulated trajectory of the current network.
+ */
+public class PlayTrajectoryAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	ModelRegistry modelRegistry;
+	CyEventHelper eventHelper;
+
+	public PlayTrajectoryAction(CySwingApplication cySwingApplication,
+								CyApplicationManager cyApplicationManager,
+								ModelRegistry modelRegistry,
+								CyEventHelper eventHelper)
+	{
+		super(PlayTrajectoryAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.modelRegistry = modelRegistry;
+		this.eventHelper = eventHelper;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		SharedTrajectory trajectory = network != null ? modelRegistry.getTrajectory(network) : null;
+		if (trajectory == null || trajectory.getFrameCount() == 0)
+		{
+			if (trajectory != null)
+			{
+				trajectory.release();
+			}
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Simulate the time course of the current network first.", "Play time course",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		String name = network.getRow(network).get(CyNetwork.NAME, String.class);
+		// the scrubber keeps the trajectory alive until the player is closed
+		TrajectoryScrubber scrubber = new TrajectoryScrubber(network, trajectory, eventHelper);
+		new TrajectoryPlayer(cySwingApplication.getJFrame(), "Time course: " + name, scrubber).setVisible(true);
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.ReloadTaskFactory;
+
+/**
+ * Reloads the COPASI file of the current network into the network.
+ * Only the changes are applied, the views keep their layout.
+ */
+public class ReloadAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	ReloadTaskFactory reloadTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public ReloadAction(CySwingApplication cySwingApplication,
+						CyApplicationManager cyApplicationManager,
+						ReloadTaskFactory reloadTaskFactory,
+						@SuppressWarnings("rawtypes")
+						TaskManager taskManager)
+	{
+		super(ReloadAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.reloadTaskFactory = reloadTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!reloadTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", "Reload COPASI file",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		taskManager.execute(reloadTaskFactory.createTaskIterator(network));
+	}
+
+}
@@ -0,0 +1,109 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.copasi.cytoscape.internal.tasks.JobEngine;
+import org.copasi.cytoscape.internal.tasks.ModelRegistry;
+
+/**
+ * Runs a task of the COPASI file of the current network as a background job.
+ * The tasks are listed off the event dispatch thread, since the model may
+ * have to be loaded for it.
+ */
+public class RunTaskAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	private static final String TITLE = "Run COPASI task";
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	ModelRegistry modelRegistry;
+	JobEngine jobEngine;
+
+	public RunTaskAction(CySwingApplication cySwingApplication,
+						 CyApplicationManager cyApplicationManager,
+						 ModelRegistry modelRegistry,
+						 JobEngine jobEngine)
+	{
+		super(RunTaskAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.modelRegistry = modelRegistry;
+		this.jobEngine = jobEngine;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		final CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (network == null || modelRegistry.getModelFile(network) == null)
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", TITLE,
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		new SwingWorker<List<String>, Void>() {
+			@Override
+			protected List<String> doInBackground() throws Exception {
+				return jobEngine.listTasks(network);
+			}
+
+			@Override
+			protected void done() {
+				try {
+					chooseTask(network, get());
+				} catch (InterruptedException | ExecutionException ex) {
+					Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+					JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+							"Could not list the tasks: " + cause.getMessage(), TITLE,
+							JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
+	}
+
+	private void chooseTask(CyNetwork network, List<String> tasks)
+	{
+		JComboBox<String> taskBox = new JComboBox<>(tasks.toArray(new String[tasks.size()]));
+		JCheckBox keepBox = new JCheckBox("Keep the model loaded for further tasks");
+		JPanel panel = new JPanel(new BorderLayout());
+		panel.add(taskBox, BorderLayout.NORTH);
+		panel.add(keepBox, BorderLayout.SOUTH);
+		int choice = JOptionPane.showConfirmDialog(cySwingApplication.getJFrame(), panel, TITLE,
+				JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+		if (choice != JOptionPane.OK_OPTION || taskBox.getSelectedItem() == null)
+		{
+			return;
+		}
+		try
+		{
+			jobEngine.submit(network, (String) taskBox.getSelectedItem(), keepBox.isSelected());
+		}
+		catch (RejectedExecutionException ex)
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Too many COPASI tasks are waiting, try again later.", TITLE,
+					JOptionPane.WARNING_MESSAGE);
+		}
+	}
+
+}
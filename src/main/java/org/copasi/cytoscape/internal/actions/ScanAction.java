@@ -0,0 +1,58 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.ScanTaskFactory;
+
+/**
+ * Scans a global quantity of the model behind the current network.
+ * The scan runs as a background task, its results end up in the node table.
+ */
+public class ScanAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	ScanTaskFactory scanTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public ScanAction(CySwingApplication cySwingApplication,
+						  CyApplicationManager cyApplicationManager,
+						  ScanTaskFactory scanTaskFactory,
+						  @SuppressWarnings("rawtypes")
+						  TaskManager taskManager)
+	{
+		super(ScanAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.scanTaskFactory = scanTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!scanTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", "Parameter scan",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		taskManager.execute(scanTaskFactory.createTaskIterator(network));
+	}
+
+}
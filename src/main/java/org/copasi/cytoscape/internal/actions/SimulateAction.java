@@ -0,0 +1,58 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.SimulationTaskFactory;
+
+/**
+ * Simulates the time course of the model behind the current network.
+ * The simulation runs as a background task, the node table follows it.
+ */
+public class SimulateAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	SimulationTaskFactory simulationTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public SimulateAction(CySwingApplication cySwingApplication,
+						  CyApplicationManager cyApplicationManager,
+						  SimulationTaskFactory simulationTaskFactory,
+						  @SuppressWarnings("rawtypes")
+						  TaskManager taskManager)
+	{
+		super(SimulateAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.simulationTaskFactory = simulationTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!simulationTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", "Simulate time course",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		taskManager.execute(simulationTaskFactory.createTaskIterator(network));
+	}
+
+}
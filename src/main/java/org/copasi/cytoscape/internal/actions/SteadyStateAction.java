@@ -0,0 +1,60 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskManager;
+import org.copasi.cytoscape.internal.tasks.SteadyStateTaskFactory;
+
+/**
+ * Computes the steady state and the control coefficients of the model behind
+ * the current network.
+ * Results are cached, asking again for the same parameter set only writes
+ * the columns.
+ */
+public class SteadyStateAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	SteadyStateTaskFactory steadyStateTaskFactory;
+	@SuppressWarnings("rawtypes")
+	TaskManager taskManager;
+
+	public SteadyStateAction(CySwingApplication cySwingApplication,
+						  CyApplicationManager cyApplicationManager,
+						  SteadyStateTaskFactory steadyStateTaskFactory,
+						  @SuppressWarnings("rawtypes")
+						  TaskManager taskManager)
+	{
+		super(SteadyStateAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.steadyStateTaskFactory = steadyStateTaskFactory;
+		this.taskManager = taskManager;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!steadyStateTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", "Steady state and control analysis",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		taskManager.execute(steadyStateTaskFactory.createTaskIterator(network));
+	}
+
+}
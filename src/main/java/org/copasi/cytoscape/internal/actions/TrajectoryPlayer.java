@@ -0,0 +1,111 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.copasi.cytoscape.internal.tasks.TrajectoryScrubber;
+
+/**
+ * Slider and play button for the trajectory of a network.
+ * Frames are written by the scrubber off the event dispatch thread.
+ */
+public class TrajectoryPlayer extends JDialog {
+	private static final long serialVersionUID = 1L;
+
+	/** Milliseconds between two frames while playing. */
+	private static final int TICK = 40;
+	/** Ticks a playback of the whole trajectory takes at most. */
+	private static final int TICKS_PER_PLAYBACK = 500;
+
+	private final TrajectoryScrubber scrubber;
+	private final JSlider slider;
+	private final JLabel timeLabel = new JLabel();
+	private final JButton playButton = new JButton("Play");
+	private final Timer timer;
+
+	public TrajectoryPlayer(Frame owner, String title, TrajectoryScrubber scrubber)
+	{
+		super(owner, title, false);
+		this.scrubber = scrubber;
+
+		final int frames = scrubber.getTrajectory().getFrameCount();
+		final int step = Math.max(1, frames / TICKS_PER_PLAYBACK);
+		slider = new JSlider(0, Math.max(0, frames - 1), 0);
+		slider.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				showFrame(slider.getValue());
+			}
+		});
+
+		timer = new Timer(TICK, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				int next = slider.getValue() + step;
+				if (next >= frames) {
+					stop();
+					next = frames - 1;
+				}
+				slider.setValue(next);
+			}
+		});
+		playButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (timer.isRunning()) {
+					stop();
+				} else {
+					if (slider.getValue() >= frames - 1) {
+						slider.setValue(0);
+					}
+					timer.start();
+					playButton.setText("Pause");
+				}
+			}
+		});
+
+		JPanel controls = new JPanel(new BorderLayout());
+		controls.add(playButton, BorderLayout.WEST);
+		controls.add(timeLabel, BorderLayout.EAST);
+		getContentPane().add(slider, BorderLayout.CENTER);
+		getContentPane().add(controls, BorderLayout.SOUTH);
+
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				timer.stop();
+				TrajectoryPlayer.this.scrubber.dispose();
+			}
+		});
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		pack();
+		setLocationRelativeTo(owner);
+		if (frames > 0) {
+			showFrame(0);
+		}
+	}
+
+	private void showFrame(int frame) {
+		timeLabel.setText(String.format("t = %g", scrubber.getTrajectory().getTime(frame)));
+		scrubber.request(frame);
+	}
+
+	private void stop() {
+		timer.stop();
+		playButton.setText("Play");
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.copasi.cytoscape.internal.actions;
+
+import java.awt.event.ActionEvent;
+import java.io.IOException;
+
+import javax.swing.JOptionPane;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.model.CyNetwork;
+import org.copasi.cytoscape.internal.tasks.ModelWatcher;
+import org.copasi.cytoscape.internal.tasks.ReloadTaskFactory;
+
+/**
+ * Turns the reload of the current network on changes of its COPASI file
+ * on or off.
+ */
+public class WatchModelAction extends AbstractCyAction{
+	private static final long serialVersionUID = 1L;
+
+	private static final String TITLE = "Reload on file change";
+
+	CySwingApplication cySwingApplication;
+	CyApplicationManager cyApplicationManager;
+	ReloadTaskFactory reloadTaskFactory;
+	ModelWatcher modelWatcher;
+
+	public WatchModelAction(CySwingApplication cySwingApplication,
+							CyApplicationManager cyApplicationManager,
+							ReloadTaskFactory reloadTaskFactory,
+							ModelWatcher modelWatcher)
+	{
+		super(WatchModelAction.class.getSimpleName());
+
+		this.cySwingApplication = cySwingApplication;
+		this.cyApplicationManager = cyApplicationManager;
+		this.reloadTaskFactory = reloadTaskFactory;
+		this.modelWatcher = modelWatcher;
+
+		this.inToolBar = false;
+		this.inMenuBar = true;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e)
+	{
+		CyNetwork network = cyApplicationManager.getCurrentNetwork();
+		if (!reloadTaskFactory.isReady(network))
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Select a network imported from a COPASI file first.", TITLE,
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		if (modelWatcher.isWatched(network))
+		{
+			modelWatcher.unwatch(network);
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"The network is no longer reloaded when its COPASI file changes.", TITLE,
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		try
+		{
+			modelWatcher.watch(network);
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"The network is reloaded whenever its COPASI file changes.\n"
+					+ "Choose this entry again to stop.", TITLE,
+					JOptionPane.INFORMATION_MESSAGE);
+		}
+		catch (IOException ex)
+		{
+			JOptionPane.showMessageDialog(cySwingApplication.getJFrame(),
+					"Could not watch the COPASI file: " + ex.getMessage(), TITLE,
+					JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+}
@@ -0,0 +1,334 @@
+package org.copasi.cytoscape.internal.batch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.COPASI.CVersion;
+
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.ModelCache;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+import org.copasi.cytoscape.internal.model.NativeLock;
+import org.copasi.cytoscape.internal.tasks.ModelFile;
+import org.copasi.cytoscape.internal.tasks.WorkerThreadFactory;
+
+/**
+ * Converts a directory tree of COPASI files into network files, without
+ * Cytoscape.
+ * <p>
+ * Models are loaded like the reader loads them, through the
+ * {@link ModelCache} and {@link ModelFile}, and every snapshot is streamed
+ * into a file of the {@link GraphWriter} format at the same relative path
+ * in the output directory. The network file keeps the whole name of the
+ * model file, so {@code m.cps} and {@code m.cps.gz} in one directory do not
+ * overwrite each other.
+ * <p>
+ * Files are converted by a fixed pool of workers that share the native
+ * memory budget of the app. Loading a model holds the {@link NativeLock}
+ * like every import does, the workers overlap in hashing, cache lookups
+ * and writing the networks. The directory walk only runs ahead of the
+ * workers by a bounded queue, so trees of any size are converted in
+ * constant memory. A file that fails is reported and skipped, the others
+ * are converted regardless. Output is written to a partial file first, a
+ * failed file leaves nothing behind.
+ */
+public class BatchConverter {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /** Files waiting per worker before the directory walk blocks. */
+    private static final int QUEUE_PER_THREAD = 4;
+
+    private final Path input;
+    private final Path output;
+    private final GraphWriter writer;
+    private final int threads;
+    private final ModelCache modelCache;
+
+    /**
+     * @param input      directory of the COPASI files
+     * @param output     directory of the network files, created if missing
+     * @param writer     format of the network files
+     * @param threads    number of files converted in parallel
+     * @param modelCache loads the models
+     */
+    public BatchConverter(Path input, Path output, GraphWriter writer, int threads, ModelCache modelCache) {
+        this.input = input;
+        this.output = output;
+        this.writer = writer;
+        this.threads = Math.max(1, threads);
+        this.modelCache = modelCache;
+    }
+
+    /** Whether the file name is one of a COPASI file, plain or compressed. */
+    public static boolean isModelFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".cps") || lower.endsWith(".cps.gz") || lower.endsWith(".cps.zip");
+    }
+
+    /**
+     * Name of the network file of the given model file name. The model file
+     * name is kept whole, distinct model files never share a network file.
+     */
+    String outputName(String name) {
+        return name + "." + writer.getExtension();
+    }
+
+    /**
+     * Converts all COPASI files below the input directory.
+     * Failed files are reported to standard error as they fail.
+     *
+     * @return counts and throughput of the conversion
+     * @throws IOException if the input directory cannot be walked
+     */
+    public Summary convert() throws IOException {
+        final Summary summary = new Summary();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_PER_THREAD * threads),
+                new WorkerThreadFactory("copasi-convert-"),
+                // a full queue makes the walk convert the next file itself
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && isModelFile(file.getFileName().toString())) {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                convert(file, summary);
+                            }
+                        });
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    summary.failed(input.relativize(file), e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // converting thousands of large models takes a while
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        summary.finish();
+        return summary;
+    }
+
+    /** Converts one file, any failure is recorded and ends only this file. */
+    private void convert(Path file, Summary summary) {
+        Path relative = input.relativize(file);
+        Path target = output.resolve(relative).resolveSibling(outputName(file.getFileName().toString()));
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            ModelSnapshot snapshot;
+            ModelFile modelFile = ModelFile.of(file.toFile());
+            try {
+                snapshot = modelCache.load(modelFile.getFile(), Cancellation.NONE);
+            } finally {
+                modelFile.release();
+            }
+
+            Files.createDirectories(target.getParent());
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(partial.toFile()), UTF8), BUFFER_SIZE)) {
+                writer.write(snapshot, networkName(snapshot, file), out);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            summary.converted(Files.size(file), snapshot);
+        } catch (Exception | StackOverflowError e) {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // the partial file only wastes space
+            }
+            summary.failed(relative, e);
+        }
+    }
+
+    /** The model name, the file name if the model has none, as the reader names networks. */
+    private static String networkName(ModelSnapshot snapshot, Path file) {
+        String name = snapshot.getModelName();
+        return name != null && !name.isEmpty() ? name : file.getFileName().toString();
+    }
+
+    /** Counts of a conversion, updated by all workers. */
+    public static class Summary {
+
+        private final long startNanos = System.nanoTime();
+        private long elapsedNanos;
+        private final AtomicLong converted = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nodes = new AtomicLong();
+        private final AtomicLong edges = new AtomicLong();
+
+        void converted(long fileBytes, ModelSnapshot snapshot) {
+            converted.incrementAndGet();
+            bytes.addAndGet(fileBytes);
+            nodes.addAndGet(snapshot.getObjectCount());
+            edges.addAndGet(snapshot.getParticipantCount());
+        }
+
+        void failed(Path file, Throwable e) {
+            failed.incrementAndGet();
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            synchronized (System.err) {
+                System.err.println("FAILED " + file + ": " + message);
+            }
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        public long getConverted() {
+            return converted.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        public long getNodes() {
+            return nodes.get();
+        }
+
+        public long getEdges() {
+            return edges.get();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            return String.format("Converted %d files, %d failed, in %.1f s: %.1f files/s, %.1f MB/s, "
+                            + "%d nodes and %d edges",
+                    getConverted(), getFailed(), seconds, getConverted() / seconds,
+                    getBytes() / (1024.0 * 1024.0) / seconds, getNodes(), getEdges());
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Command line
+    //////////////////////////////////////////////////////////////////////////
+
+    private static final String USAGE = "Usage: BatchConverter [-format sif|cx] [-threads n] [-cache directory]"
+            + " <input directory> <output directory>";
+
+    /**
+     * Converts a directory tree from the command line.
+     * Exits with 0 if all files were converted, 1 if some failed and 2 on
+     * wrong arguments or without the native COPASI library.
+     */
+    public static void main(String[] args) throws IOException {
+        GraphWriter writer = new CxWriter();
+        int threads = ImportSettings.getImportThreads();
+        File cacheDirectory = null;
+        Path input = null;
+        Path output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-format":
+                        writer = format(args[++i]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-cache":
+                        cacheDirectory = new File(args[++i]);
+                        break;
+                    default:
+                        if (input == null) {
+                            input = new File(args[i]).toPath();
+                        } else if (output == null) {
+                            output = new File(args[i]).toPath();
+                        } else {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        break;
+                }
+            }
+            if (input == null || output == null) {
+                throw new IllegalArgumentException("Input and output directory are required");
+            }
+            if (!Files.isDirectory(input)) {
+                throw new IllegalArgumentException("Not a directory: " + input);
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing value" : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        String version;
+        try {
+            version = CVersion.getVERSION().getVersion();
+        } catch (UnsatisfiedLinkError e) {
+            System.err.println("The native COPASI library is not on java.library.path: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println(String.format("Converting %s to %s with COPASI %s, %d threads",
+                input, output, version, threads));
+
+        DataModelManager dataModels = new DataModelManager(ImportSettings.getNativeBudgetMB(), threads);
+        ModelCache modelCache = new ModelCache(cacheDirectory,
+                cacheDirectory != null ? ImportSettings.getCacheMaxBytes() : 0, dataModels);
+        Summary summary;
+        try {
+            summary = new BatchConverter(input, output, writer, threads, modelCache).convert();
+        } finally {
+            dataModels.clear();
+        }
+        System.out.println(summary);
+        System.exit(summary.getFailed() > 0 ? 1 : 0);
+    }
+
+    private static GraphWriter format(String name) {
+        switch (name.toLowerCase()) {
+            case "sif":
+                return new SifWriter();
+            case "cx":
+                return new CxWriter();
+            default:
+                throw new IllegalArgumentException("Unknown format " + name);
+        }
+    }
+
+}
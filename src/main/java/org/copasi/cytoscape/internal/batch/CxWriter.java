@@ -0,0 +1,286 @@
+package org.copasi.cytoscape.internal.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Writes networks as CX, the JSON format of Cytoscape and NDEx.
+ * <p>
+ * Nodes and edges carry the attributes of an imported network, see
+ * {@link org.copasi.cytoscape.internal.tasks.NetworkBuilder}, and the
+ * model layout becomes the cartesian layout. Node ids are the object
+ * indices of the snapshot, edge ids follow them. The document is written
+ * aspect by aspect while the snapshot is walked, so memory does not grow
+ * with the size of the output.
+ */
+public class CxWriter implements GraphWriter {
+
+    /** Verifies that readers handle 48 bit ids, required first aspect of CX. */
+    private static final long VERIFICATION_NUMBER = 281474976710655L;
+
+    @Override
+    public String getExtension() {
+        return "cx";
+    }
+
+    @Override
+    public void write(ModelSnapshot snapshot, String name, Writer out) throws IOException {
+        int n = snapshot.getObjectCount();
+        int edgeCount = 0;
+        for (int k = 0; k < snapshot.getParticipantCount(); k++) {
+            if (snapshot.getParticipantSpecies(k) >= 0) {
+                edgeCount++;
+            }
+        }
+        boolean layout = snapshot.hasLayout();
+
+        out.write("[{\"numberVerification\":[{\"longNumber\":" + VERIFICATION_NUMBER + "}]},\n");
+        out.write("{\"metaData\":[");
+        out.write("{\"name\":\"nodes\",\"elementCount\":" + n + ",\"idCounter\":" + n + ",\"version\":\"1.0\"},");
+        out.write("{\"name\":\"edges\",\"elementCount\":" + edgeCount + ",\"idCounter\":"
+                + (n + snapshot.getParticipantCount()) + ",\"version\":\"1.0\"},");
+        out.write("{\"name\":\"networkAttributes\",\"version\":\"1.0\"},");
+        out.write("{\"name\":\"nodeAttributes\",\"version\":\"1.0\"},");
+        out.write("{\"name\":\"edgeAttributes\",\"version\":\"1.0\"}");
+        if (layout) {
+            out.write(",{\"name\":\"cartesianLayout\",\"version\":\"1.0\"}");
+        }
+        out.write("]},\n");
+
+        writeNetworkAttributes(snapshot, name, out);
+        writeNodes(snapshot, out);
+        writeEdges(snapshot, out);
+        writeNodeAttributes(snapshot, out);
+        writeEdgeAttributes(snapshot, out);
+        if (layout) {
+            writeLayout(snapshot, out);
+        }
+        out.write("{\"status\":[{\"error\":\"\",\"success\":true}]}]\n");
+    }
+
+    private static void writeNetworkAttributes(ModelSnapshot snapshot, String name, Writer out) throws IOException {
+        out.write("{\"networkAttributes\":[");
+        Aspect aspect = new Aspect(out);
+        aspect.networkAttribute("name", name);
+        aspect.networkAttribute("copasiNetwork", "copasi");
+        aspect.networkAttribute("copasiVersion", snapshot.getCopasiVersion());
+        aspect.networkAttribute("id", snapshot.getModelKey());
+        aspect.networkAttribute("cn", snapshot.getModelCn());
+        aspect.networkAttribute("display name", snapshot.getModelDisplayName());
+        if (snapshot.getMoietyCount() > 0) {
+            aspect.next();
+            out.write("{\"n\":\"conserved moieties\",\"v\":[");
+            for (int m = 0; m < snapshot.getMoietyCount(); m++) {
+                if (m > 0) {
+                    out.write(',');
+                }
+                string(out, snapshot.getMoietyDescription(m));
+            }
+            out.write("],\"d\":\"list_of_string\"}");
+        }
+        out.write("]},\n");
+    }
+
+    private static void writeNodes(ModelSnapshot snapshot, Writer out) throws IOException {
+        out.write("{\"nodes\":[");
+        for (int i = 0; i < snapshot.getObjectCount(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write("{\"@id\":" + i + ",\"n\":");
+            string(out, snapshot.getName(i));
+            out.write(",\"r\":");
+            string(out, snapshot.getCn(i));
+            out.write('}');
+        }
+        out.write("]},\n");
+    }
+
+    private static void writeEdges(ModelSnapshot snapshot, Writer out) throws IOException {
+        int n = snapshot.getObjectCount();
+        out.write("{\"edges\":[");
+        Aspect aspect = new Aspect(out);
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                int species = snapshot.getParticipantSpecies(k);
+                if (species < 0) {
+                    continue;
+                }
+                boolean substrate = snapshot.getParticipantStoichiometry(k) < 0;
+                aspect.next();
+                out.write("{\"@id\":" + (n + k) + ",\"s\":" + (substrate ? species : i)
+                        + ",\"t\":" + (substrate ? i : species) + ",\"i\":\"reaction\"}");
+            }
+        }
+        out.write("]},\n");
+    }
+
+    private static void writeNodeAttributes(ModelSnapshot snapshot, Writer out) throws IOException {
+        out.write("{\"nodeAttributes\":[");
+        Aspect aspect = new Aspect(out);
+        String[] moieties = new String[snapshot.getObjectCount()];
+        for (int m = 0; m < snapshot.getMoietyCount(); m++) {
+            int species = snapshot.getMoietySpecies(m);
+            if (species >= 0) {
+                moieties[species] = snapshot.getMoietyDescription(m);
+            }
+        }
+        for (int i = 0; i < snapshot.getObjectCount(); i++) {
+            byte kind = snapshot.getKind(i);
+            aspect.attribute(i, "type", ModelSnapshot.getTypeName(kind));
+            aspect.attribute(i, "id", snapshot.getKey(i));
+            aspect.attribute(i, "cn", snapshot.getCn(i));
+            aspect.attribute(i, "display name", snapshot.getDisplayName(i));
+            switch (kind) {
+                case ModelSnapshot.COMPARTMENT:
+                    aspect.attribute(i, "dimensions", (double) snapshot.getDimensionality(i));
+                    aspect.attribute(i, "size", snapshot.getValue(i));
+                    break;
+                case ModelSnapshot.PARAMETER:
+                    aspect.attribute(i, "value", snapshot.getValue(i));
+                    break;
+                case ModelSnapshot.SPECIES:
+                    int compartment = snapshot.getCompartment(i);
+                    aspect.attribute(i, "compartment", compartment >= 0 ? snapshot.getName(compartment) : null);
+                    aspect.attribute(i, "initial concentration", snapshot.getValue(i));
+                    aspect.attribute(i, "dependent", snapshot.isDependent(i));
+                    aspect.attribute(i, "moiety", moieties[i]);
+                    break;
+                case ModelSnapshot.REACTION:
+                    aspect.attribute(i, "reversible", snapshot.isReversible(i));
+                    break;
+                default:
+                    break;
+            }
+        }
+        out.write("]},\n");
+    }
+
+    private static void writeEdgeAttributes(ModelSnapshot snapshot, Writer out) throws IOException {
+        int n = snapshot.getObjectCount();
+        out.write("{\"edgeAttributes\":[");
+        Aspect aspect = new Aspect(out);
+        for (int k = 0; k < snapshot.getParticipantCount(); k++) {
+            if (snapshot.getParticipantSpecies(k) < 0) {
+                continue;
+            }
+            aspect.attribute(n + k, "type", "reaction");
+            aspect.attribute(n + k, "stoichiometry", Math.abs(snapshot.getParticipantStoichiometry(k)));
+        }
+        out.write("]},\n");
+    }
+
+    /** Positions of the model layout, objects without glyph get none. */
+    private static void writeLayout(ModelSnapshot snapshot, Writer out) throws IOException {
+        out.write("{\"cartesianLayout\":[");
+        Aspect aspect = new Aspect(out);
+        for (int i = 0; i < snapshot.getObjectCount(); i++) {
+            double x = snapshot.getX(i);
+            double y = snapshot.getY(i);
+            if (Double.isNaN(x) || Double.isNaN(y)) {
+                continue;
+            }
+            aspect.next();
+            out.write("{\"node\":" + i + ",\"x\":" + x + ",\"y\":" + y + "}");
+        }
+        out.write("]},\n");
+    }
+
+    /** Elements of one aspect, separated by commas. */
+    private static class Aspect {
+
+        private final Writer out;
+        private boolean first = true;
+
+        Aspect(Writer out) {
+            this.out = out;
+        }
+
+        void next() throws IOException {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+        }
+
+        void networkAttribute(String name, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            next();
+            out.write("{\"n\":");
+            string(out, name);
+            out.write(",\"v\":");
+            string(out, value);
+            out.write('}');
+        }
+
+        void attribute(long id, String name, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            next();
+            out.write("{\"po\":" + id + ",\"n\":");
+            string(out, name);
+            out.write(",\"v\":");
+            string(out, value);
+            out.write('}');
+        }
+
+        /** Numbers are written as strings with their type, as Cytoscape writes CX. */
+        void attribute(long id, String name, double value) throws IOException {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return;
+            }
+            next();
+            out.write("{\"po\":" + id + ",\"n\":");
+            string(out, name);
+            out.write(",\"v\":\"" + value + "\",\"d\":\"double\"}");
+        }
+
+        void attribute(long id, String name, boolean value) throws IOException {
+            next();
+            out.write("{\"po\":" + id + ",\"n\":");
+            string(out, name);
+            out.write(",\"v\":\"" + value + "\",\"d\":\"boolean\"}");
+        }
+    }
+
+    /** Writes a JSON string, null as empty string. */
+    private static void string(Writer out, String s) throws IOException {
+        out.write('"');
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.write("\\\"");
+                        break;
+                    case '\\':
+                        out.write("\\\\");
+                        break;
+                    case '\n':
+                        out.write("\\n");
+                        break;
+                    case '\r':
+                        out.write("\\r");
+                        break;
+                    case '\t':
+                        out.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                        break;
+                }
+            }
+        }
+        out.write('"');
+    }
+
+}
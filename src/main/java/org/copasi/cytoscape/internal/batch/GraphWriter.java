@@ -0,0 +1,31 @@
+package org.copasi.cytoscape.internal.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Writes the network of a model snapshot in a graph exchange format.
+ * <p>
+ * The network is the one the reader builds: a node per compartment,
+ * parameter, species and reaction, and a directed edge per reaction
+ * participant, from substrate to reaction and from reaction to product.
+ * Writers stream straight from the snapshot, no network is built.
+ * Implementations are stateless and used from several threads.
+ */
+public interface GraphWriter {
+
+    /** File extension of the format, without dot. */
+    String getExtension();
+
+    /**
+     * Writes the network of the snapshot.
+     *
+     * @param snapshot model to write
+     * @param name     name of the network
+     * @param out      receives the document, not closed
+     */
+    void write(ModelSnapshot snapshot, String name, Writer out) throws IOException;
+
+}
@@ -0,0 +1,80 @@
+package org.copasi.cytoscape.internal.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Writes networks in the simple interaction format (SIF).
+ * <p>
+ * Every edge is a line {@code source<TAB>reaction<TAB>target}, objects
+ * without participant, e.g. parameters, are lines of their own. Nodes are
+ * named by their display name, ambiguous display names are replaced by the
+ * COPASI key. SIF has no attributes, use {@link CxWriter} to keep them.
+ */
+public class SifWriter implements GraphWriter {
+
+    /** Interaction of all edges, as in the edge column {@code type} of imported networks. */
+    private static final String INTERACTION = "reaction";
+
+    @Override
+    public String getExtension() {
+        return "sif";
+    }
+
+    @Override
+    public void write(ModelSnapshot snapshot, String name, Writer out) throws IOException {
+        String[] nodeNames = nodeNames(snapshot);
+        boolean[] connected = new boolean[snapshot.getObjectCount()];
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                int species = snapshot.getParticipantSpecies(k);
+                if (species < 0) {
+                    continue;
+                }
+                boolean substrate = snapshot.getParticipantStoichiometry(k) < 0;
+                out.write(nodeNames[substrate ? species : i]);
+                out.write('\t');
+                out.write(INTERACTION);
+                out.write('\t');
+                out.write(nodeNames[substrate ? i : species]);
+                out.write('\n');
+                connected[i] = true;
+                connected[species] = true;
+            }
+        }
+        for (int i = 0; i < connected.length; i++) {
+            if (!connected[i]) {
+                out.write(nodeNames[i]);
+                out.write('\n');
+            }
+        }
+    }
+
+    /** Unique names of the nodes, without tabs and line breaks. */
+    private static String[] nodeNames(ModelSnapshot snapshot) {
+        int n = snapshot.getObjectCount();
+        String[] names = new String[n];
+        Set<String> seen = new HashSet<>(2 * n);
+        Set<String> ambiguous = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            String name = snapshot.getDisplayName(i);
+            names[i] = name == null || name.isEmpty() ? snapshot.getKey(i) : name.replaceAll("[\t\r\n]", " ");
+            if (!seen.add(names[i])) {
+                ambiguous.add(names[i]);
+            }
+        }
+        if (!ambiguous.isEmpty()) {
+            for (int i = 0; i < n; i++) {
+                if (ambiguous.contains(names[i])) {
+                    names[i] = snapshot.getKey(i);
+                }
+            }
+        }
+        return names;
+    }
+
+}
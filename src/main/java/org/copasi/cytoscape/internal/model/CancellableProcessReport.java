@@ -0,0 +1,34 @@
+package org.copasi.cytoscape.internal.model;
+
+import org.COPASI.CProcessReport;
+
+/**
+ * Process report that lets COPASI stop when the work is cancelled.
+ * <p>
+ * COPASI calls back into the report while it parses or runs a task and
+ * stops as soon as a callback returns false.
+ */
+public class CancellableProcessReport extends CProcessReport {
+
+    private final Cancellation cancellation;
+
+    public CancellableProcessReport(Cancellation cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public boolean progress() {
+        return proceed();
+    }
+
+    @Override
+    public boolean progressItem(long handle) {
+        return proceed();
+    }
+
+    @Override
+    public boolean proceed() {
+        return !cancellation.isCancelled();
+    }
+
+}
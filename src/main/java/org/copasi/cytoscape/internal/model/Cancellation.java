@@ -0,0 +1,21 @@
+package org.copasi.cytoscape.internal.model;
+
+/**
+ * Tells long running work whether it should stop.
+ * <p>
+ * Work checks it at checkpoints and throws a
+ * {@link java.util.concurrent.CancellationException} once it is cancelled.
+ */
+public interface Cancellation {
+
+    /** Never cancelled. */
+    Cancellation NONE = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    boolean isCancelled();
+
+}
@@ -0,0 +1,228 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.COPASI.CDataModel;
+import org.COPASI.CRootContainer;
+
+/**
+ * Owns the native COPASI data models of the app.
+ * <p>
+ * A data model is leased for a piece of work together with the native
+ * memory the work is estimated to take. Leases block until the memory fits
+ * into the budget shared by all imports, simulations and jobs. Closing a
+ * lease, best in a try-with-resources block, always gives the memory back.
+ * The data model is reset to an empty model and pooled for the next lease,
+ * or removed from the root container if the pool is full or the reset
+ * fails. Adding, resetting and removing data models changes state shared by
+ * all data models and holds the {@link NativeLock}.
+ */
+public class DataModelManager {
+
+    /** Milliseconds between two checks for cancellation while waiting for memory. */
+    private static final long WAIT_MILLIS = 100;
+
+    private final int budgetMB;
+    private final int poolSize;
+    private final Semaphore nativeMemory;
+    private final Deque<CDataModel> pool = new ArrayDeque<>();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong leasedMB = new AtomicLong();
+    private final AtomicLong peakLeasedMB = new AtomicLong();
+
+    /**
+     * @param budgetMB native memory in MB all leases may take together
+     * @param poolSize number of reset data models kept for reuse
+     */
+    public DataModelManager(long budgetMB, int poolSize) {
+        this.budgetMB = (int) Math.max(1, Math.min(budgetMB, Integer.MAX_VALUE));
+        this.poolSize = Math.max(0, poolSize);
+        this.nativeMemory = new Semaphore(this.budgetMB, true);
+    }
+
+    /**
+     * Leases a data model once the native memory is available.
+     * Work larger than the whole budget runs alone.
+     *
+     * @param nativeMB estimated native memory of the work in MB
+     * @param cancellation checked while waiting for memory
+     * @throws CancellationException if the work was cancelled while waiting
+     */
+    public Lease acquire(long nativeMB, Cancellation cancellation) {
+        int permits = (int) Math.max(1, Math.min(nativeMB, budgetMB));
+        try {
+            while (!nativeMemory.tryAcquire(permits, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancellation.isCancelled()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+
+        CDataModel dm;
+        try {
+            dm = take();
+        } catch (RuntimeException | Error e) {
+            nativeMemory.release(permits);
+            throw e;
+        }
+        leased.incrementAndGet();
+        long mb = leasedMB.addAndGet(permits);
+        long peak;
+        while (mb > (peak = peakLeasedMB.get()) && !peakLeasedMB.compareAndSet(peak, mb)) {
+            // retry until the peak is at least the current value
+        }
+        return new Lease(dm, permits);
+    }
+
+    private CDataModel take() {
+        synchronized (pool) {
+            CDataModel dm = pool.pollFirst();
+            if (dm != null) {
+                reused.incrementAndGet();
+                return dm;
+            }
+        }
+        try (NativeLock.Hold hold = NativeLock.acquire(Cancellation.NONE)) {
+            CDataModel dm = CRootContainer.addDatamodel();
+            created.incrementAndGet();
+            return dm;
+        }
+    }
+
+    private void giveBack(CDataModel dm, boolean reusable) {
+        if (reusable) {
+            try (NativeLock.Hold hold = NativeLock.acquire(Cancellation.NONE)) {
+                // an empty model frees the native memory of the loaded one
+                dm.newModel(null, true);
+                synchronized (pool) {
+                    if (pool.size() < poolSize) {
+                        pool.addFirst(dm);
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                // a data model that cannot be reset is not reused
+            }
+        }
+        remove(dm);
+    }
+
+    private void remove(CDataModel dm) {
+        try (NativeLock.Hold hold = NativeLock.acquire(Cancellation.NONE)) {
+            CRootContainer.removeDatamodel(dm);
+        }
+        removed.incrementAndGet();
+    }
+
+    /** Removes the pooled data models. */
+    public void clear() {
+        while (true) {
+            CDataModel dm;
+            synchronized (pool) {
+                dm = pool.pollFirst();
+            }
+            if (dm == null) {
+                return;
+            }
+            remove(dm);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Statistics
+    //////////////////////////////////////////////////////////////////////////
+
+    /** Data models currently leased. */
+    public long getLeasedCount() {
+        return leased.get();
+    }
+
+    public int getPooledCount() {
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+
+    /** Estimated native memory of the leased data models in MB. */
+    public long getLeasedMB() {
+        return leasedMB.get();
+    }
+
+    public long getPeakLeasedMB() {
+        return peakLeasedMB.get();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getRemovedCount() {
+        return removed.get();
+    }
+
+    /** Human readable statistics. */
+    public String getStatistics() {
+        return String.format("%d data models in use (about %d of %d MB native memory, peak %d MB), %d pooled, "
+                        + "%d created, %d reused, %d removed",
+                getLeasedCount(), getLeasedMB(), budgetMB, getPeakLeasedMB(), getPooledCount(),
+                getCreatedCount(), getReusedCount(), getRemovedCount());
+    }
+
+    /**
+     * A data model and the native memory reserved for it, given back on
+     * close. Closing a lease more than once has no effect.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final CDataModel dm;
+        private final int permits;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean reusable = true;
+
+        Lease(CDataModel dm, int permits) {
+            this.dm = dm;
+            this.permits = permits;
+        }
+
+        public CDataModel getDataModel() {
+            return dm;
+        }
+
+        /** The data model is removed on close instead of being pooled, e.g. after a native error. */
+        public void discard() {
+            reusable = false;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                giveBack(dm, reusable);
+            } finally {
+                leased.decrementAndGet();
+                leasedMB.addAndGet(-permits);
+                nativeMemory.release(permits);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.copasi.cytoscape.internal.model;
+
+/**
+ * Level of detail of an imported network.
+ * <p>
+ * The snapshot always holds the whole model, the profile only decides which
+ * of its objects become nodes and whether the dependencies between them
+ * become edges. Details left out can be added later for selected reactions
+ * from the snapshot kept with the network.
+ */
+public enum ImportProfile {
+
+    /** Species and reactions with their participant edges. */
+    SKELETON("skeleton", false, ModelSnapshot.SPECIES, ModelSnapshot.REACTION),
+    /** All compartments, parameters, species and reactions. */
+    STANDARD("standard", false,
+            ModelSnapshot.COMPARTMENT, ModelSnapshot.PARAMETER, ModelSnapshot.SPECIES, ModelSnapshot.REACTION),
+    /** All objects and the dependency edges between them, e.g. from the modifiers of reactions. */
+    FULL("full", true,
+            ModelSnapshot.COMPARTMENT, ModelSnapshot.PARAMETER, ModelSnapshot.SPECIES, ModelSnapshot.REACTION);
+
+    private final String name;
+    private final boolean dependencies;
+    private final boolean[] kinds = new boolean[ModelSnapshot.REACTION + 1];
+
+    ImportProfile(String name, boolean dependencies, byte... kinds) {
+        this.name = name;
+        this.dependencies = dependencies;
+        for (byte kind : kinds) {
+            this.kinds[kind] = true;
+        }
+    }
+
+    /** Name of the profile as used in settings and the network table. */
+    public String getName() {
+        return name;
+    }
+
+    /** Whether objects of the kind become nodes. */
+    public boolean includes(byte kind) {
+        return kinds[kind];
+    }
+
+    /** Whether the dependencies of all objects become edges. */
+    public boolean hasDependencies() {
+        return dependencies;
+    }
+
+    /** Profile with the given name, ignoring case, null if there is none. */
+    public static ImportProfile of(String name) {
+        if (name != null) {
+            for (ImportProfile profile : values()) {
+                if (profile.name.equalsIgnoreCase(name.trim())) {
+                    return profile;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
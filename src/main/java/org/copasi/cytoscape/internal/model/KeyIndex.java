@@ -0,0 +1,79 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps COPASI keys to object indices.
+ * <p>
+ * COPASI keys have the form {@code Prefix_N} with a number handed out by the
+ * key factory, so within one prefix the numbers are small and dense. The
+ * index keeps them in a primitive int table and only falls back to a hash
+ * map for keys that do not follow that form.
+ */
+class KeyIndex {
+
+    private final String prefix;
+    private int[] table = new int[64];
+    private Map<String, Integer> fallback;
+
+    KeyIndex(String prefix) {
+        this.prefix = prefix + "_";
+        Arrays.fill(table, -1);
+    }
+
+    void put(String key, int index) {
+        int number = number(key);
+        if (number < 0) {
+            if (fallback == null) {
+                fallback = new HashMap<>();
+            }
+            fallback.put(key, index);
+            return;
+        }
+        if (number >= table.length) {
+            int length = table.length;
+            table = Arrays.copyOf(table, Math.max(2 * length, number + 1));
+            Arrays.fill(table, length, table.length, -1);
+        }
+        table[number] = index;
+    }
+
+    /** Index of the given key, -1 if unknown. */
+    int get(String key) {
+        if (key == null) {
+            return -1;
+        }
+        int number = number(key);
+        if (number >= 0) {
+            return number < table.length ? table[number] : -1;
+        }
+        if (fallback != null) {
+            Integer index = fallback.get(key);
+            if (index != null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /** Number of a key with the expected prefix, -1 otherwise. */
+    private int number(String key) {
+        int length = key.length();
+        int start = prefix.length();
+        if (length == start || length - start > 9 || !key.startsWith(prefix)) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = start; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = 10 * number + (c - '0');
+        }
+        return number;
+    }
+
+}
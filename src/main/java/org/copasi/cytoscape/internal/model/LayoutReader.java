@@ -0,0 +1,254 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+
+/**
+ * Reads the node positions of the first layout stored in a COPASI file.
+ * <p>
+ * The Java bindings give no typed access to the layouts of a data model, so
+ * the layout is streamed from the file itself. Glyphs reference model
+ * objects by their file keys, which are resolved to snapshot objects through
+ * the names of the compartments, global quantities, species and reactions
+ * in the same file. The position of an object is the center of its first
+ * glyph, for reaction glyphs without a bounding box the center of their
+ * curve.
+ */
+class LayoutReader {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final Set<String> MODEL_LISTS = new HashSet<>(Arrays.asList(
+            "ListOfCompartments", "ListOfModelValues", "ListOfMetabolites", "ListOfReactions"));
+
+    private final ModelSnapshot snapshot;
+
+    // file key of the model objects to their snapshot index
+    private final Map<String, String> compartmentNames = new HashMap<>();
+    private final Map<String, Integer> objectIndex = new HashMap<>();
+
+    // glyph being read, nested glyphs such as species references are skipped
+    private int glyphDepth;
+    private int glyphObject = -1;
+    private boolean reactionGlyph;
+    private double boxX, boxY, boxWidth, boxHeight;
+    private double curveX, curveY;
+    private int curvePoints;
+    private boolean inBoundingBox;
+
+    private LayoutReader(ModelSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Sets the positions of the snapshot objects from the layout of the file.
+     * The layout is optional, objects without glyph keep NaN and an
+     * unreadable layout is ignored.
+     */
+    static void read(File file, ModelSnapshot snapshot) {
+        ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.LAYOUT_READ);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            new LayoutReader(snapshot).read(in);
+        } catch (IOException | XMLStreamException e) {
+            Arrays.fill(snapshot.x, Double.NaN);
+            Arrays.fill(snapshot.y, Double.NaN);
+        }
+        span.end(snapshot.getObjectCount());
+    }
+
+    private void read(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            Map<String, Integer> names = indexNames();
+            String list = null;
+            int layouts = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if ("Layout".equals(element)) {
+                        // only the first layout is used
+                        return;
+                    }
+                    if (element.equals(list)) {
+                        list = null;
+                    } else if (element.endsWith("Glyph")) {
+                        if (glyphDepth == 1) {
+                            endGlyph();
+                        }
+                        glyphDepth--;
+                    } else if ("BoundingBox".equals(element)) {
+                        inBoundingBox = false;
+                    }
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if (MODEL_LISTS.contains(element)) {
+                    list = element;
+                    continue;
+                }
+                if (element.endsWith("Glyph") && ++glyphDepth > 1) {
+                    continue;
+                }
+                switch (element) {
+                    // model objects
+                    case "Compartment":
+                        if ("ListOfCompartments".equals(list)) {
+                            String name = reader.getAttributeValue(null, "name");
+                            compartmentNames.put(reader.getAttributeValue(null, "key"), name);
+                            putObject(reader, names, ModelSnapshot.COMPARTMENT, name);
+                        }
+                        break;
+                    case "ModelValue":
+                        if ("ListOfModelValues".equals(list)) {
+                            putObject(reader, names, ModelSnapshot.PARAMETER, reader.getAttributeValue(null, "name"));
+                        }
+                        break;
+                    case "Metabolite":
+                        if ("ListOfMetabolites".equals(list)) {
+                            String compartment = compartmentNames.get(reader.getAttributeValue(null, "compartment"));
+                            putObject(reader, names, ModelSnapshot.SPECIES,
+                                    speciesName(reader.getAttributeValue(null, "name"), compartment));
+                        }
+                        break;
+                    case "Reaction":
+                        if ("ListOfReactions".equals(list)) {
+                            putObject(reader, names, ModelSnapshot.REACTION, reader.getAttributeValue(null, "name"));
+                        }
+                        break;
+
+                    // layout
+                    case "Layout":
+                        layouts++;
+                        break;
+                    case "CompartmentGlyph":
+                        startGlyph(layouts, reader.getAttributeValue(null, "compartment"), false);
+                        break;
+                    case "MetaboliteGlyph":
+                        startGlyph(layouts, reader.getAttributeValue(null, "metabolite"), false);
+                        break;
+                    case "ReactionGlyph":
+                        startGlyph(layouts, reader.getAttributeValue(null, "reaction"), true);
+                        break;
+                    case "GeneralGlyph":
+                        startGlyph(layouts, reader.getAttributeValue(null, "reference"), false);
+                        break;
+                    case "BoundingBox":
+                        inBoundingBox = glyphDepth == 1;
+                        break;
+                    case "Position":
+                        if (inBoundingBox) {
+                            boxX = number(reader, "x");
+                            boxY = number(reader, "y");
+                        }
+                        break;
+                    case "Dimensions":
+                        if (inBoundingBox) {
+                            boxWidth = number(reader, "width");
+                            boxHeight = number(reader, "height");
+                        }
+                        break;
+                    case "Start":
+                    case "End":
+                        if (glyphDepth == 1 && glyphObject >= 0) {
+                            curveX += number(reader, "x");
+                            curveY += number(reader, "y");
+                            curvePoints++;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Snapshot objects by kind and name. */
+    private Map<String, Integer> indexNames() {
+        Map<String, Integer> names = new HashMap<>();
+        for (int i = 0; i < snapshot.getObjectCount(); i++) {
+            String name = snapshot.getName(i);
+            if (snapshot.getKind(i) == ModelSnapshot.SPECIES) {
+                int compartment = snapshot.getCompartment(i);
+                name = speciesName(name, compartment >= 0 ? snapshot.getName(compartment) : null);
+            }
+            String id = snapshot.getKind(i) + name;
+            if (!names.containsKey(id)) {
+                names.put(id, i);
+            }
+        }
+        return names;
+    }
+
+    private static String speciesName(String name, String compartment) {
+        // species names are only unique within their compartment
+        return name + '\u0000' + compartment;
+    }
+
+    private void putObject(XMLStreamReader reader, Map<String, Integer> names, byte kind, String name) {
+        Integer index = names.get(kind + name);
+        if (index != null) {
+            objectIndex.put(reader.getAttributeValue(null, "key"), index);
+        }
+    }
+
+    private void startGlyph(int layouts, String key, boolean reaction) {
+        Integer index = layouts == 1 && key != null ? objectIndex.get(key) : null;
+        glyphObject = index != null ? index : -1;
+        reactionGlyph = reaction;
+        boxX = boxY = boxWidth = boxHeight = 0.0;
+        curveX = curveY = 0.0;
+        curvePoints = 0;
+    }
+
+    private void endGlyph() {
+        int index = glyphObject;
+        glyphObject = -1;
+        if (index < 0 || !Double.isNaN(snapshot.x[index])) {
+            return;
+        }
+        if (reactionGlyph && boxWidth == 0.0 && boxHeight == 0.0 && curvePoints > 0) {
+            snapshot.x[index] = curveX / curvePoints;
+            snapshot.y[index] = curveY / curvePoints;
+        } else {
+            snapshot.x[index] = boxX + boxWidth / 2;
+            snapshot.y[index] = boxY + boxHeight / 2;
+        }
+    }
+
+    private static double number(XMLStreamReader reader, String attribute) {
+        String value = reader.getAttributeValue(null, attribute);
+        if (value == null) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Trajectory stored in a memory mapped file.
+ * <p>
+ * Frames are appended to a temporary file as floats, frame after frame,
+ * through a direct write buffer. Reading maps the file in segments of whole
+ * frames, so the trajectory may be much larger than the heap: the heap only
+ * holds the times and the operating system pages the values in and out.
+ * The file is deleted when the trajectory is released.
+ */
+public class MappedTrajectory implements Trajectory {
+
+    /** Largest mapped segment. */
+    private static final long SEGMENT_BYTES = 256L * 1024 * 1024;
+    /** Size of the write buffer. */
+    private static final int WRITE_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private final String[] seriesCns;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    private final int frameBytes;
+    private final int segmentFrames;
+    private final ByteBuffer writeBuffer;
+
+    private double[] times = new double[1024];
+    private int frames;
+    private int flushedFrames;
+
+    private FloatBuffer[] segments = new FloatBuffer[0];
+    private int[] segmentMappedFrames = new int[0];
+    private final float[] row;
+
+    private MappedTrajectory(String[] seriesCns, File file) throws IOException {
+        this.seriesCns = seriesCns;
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.frameBytes = Math.max(4, 4 * seriesCns.length);
+        this.segmentFrames = (int) Math.max(1, SEGMENT_BYTES / frameBytes);
+        this.writeBuffer = ByteBuffer.allocateDirect(Math.max(frameBytes, WRITE_BUFFER_BYTES / frameBytes * frameBytes))
+                .order(ByteOrder.nativeOrder());
+        this.row = new float[seriesCns.length];
+    }
+
+    /** Creates an empty trajectory backed by a temporary file. */
+    public static MappedTrajectory create(String[] seriesCns) throws IOException {
+        File file = File.createTempFile("copasi-trajectory-", ".bin");
+        file.deleteOnExit();
+        try {
+            return new MappedTrajectory(seriesCns, file);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Write
+    //////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public synchronized boolean append(double time, double[] frame) {
+        if (writeBuffer.remaining() < frameBytes) {
+            flush();
+        }
+        for (int s = 0; s < seriesCns.length; s++) {
+            writeBuffer.putFloat((float) frame[s]);
+        }
+        if (frames == times.length) {
+            times = Arrays.copyOf(times, 2 * times.length);
+        }
+        times[frames++] = time;
+        return true;
+    }
+
+    /** Writes the buffered frames to the file. */
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            long position = (long) flushedFrames * frameBytes;
+            while (writeBuffer.hasRemaining()) {
+                position += channel.write(writeBuffer, position);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write trajectory " + file, e);
+        }
+        writeBuffer.clear();
+        flushedFrames = frames;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Read
+    //////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int getSeriesCount() {
+        return seriesCns.length;
+    }
+
+    @Override
+    public String getSeriesCn(int series) {
+        return seriesCns[series];
+    }
+
+    @Override
+    public synchronized int getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public synchronized double getTime(int frame) {
+        return times[frame];
+    }
+
+    @Override
+    public synchronized void getFrame(int frame, double[] target) {
+        if (frame >= flushedFrames) {
+            flush();
+        }
+        FloatBuffer segment = segment(frame);
+        segment.position((frame % segmentFrames) * seriesCns.length);
+        segment.get(row);
+        for (int s = 0; s < row.length; s++) {
+            target[s] = row[s];
+        }
+    }
+
+    /** Mapped segment holding the frame, remapped if the file grew since. */
+    private FloatBuffer segment(int frame) {
+        int index = frame / segmentFrames;
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+            segmentMappedFrames = Arrays.copyOf(segmentMappedFrames, index + 1);
+        }
+        if (segments[index] == null || frame % segmentFrames >= segmentMappedFrames[index]) {
+            int first = index * segmentFrames;
+            int count = Math.min(segmentFrames, flushedFrames - first);
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        (long) first * frameBytes, (long) count * frameBytes);
+                segments[index] = mapped.order(ByteOrder.nativeOrder()).asFloatBuffer();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map trajectory " + file, e);
+            }
+            segmentMappedFrames[index] = count;
+        }
+        return segments[index];
+    }
+
+    /** Size of the trajectory file in bytes. */
+    public synchronized long getFileBytes() {
+        return (long) frames * frameBytes;
+    }
+
+    @Override
+    public synchronized void release() {
+        segments = new FloatBuffer[0];
+        try {
+            raf.close();
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        file.delete();
+    }
+
+}
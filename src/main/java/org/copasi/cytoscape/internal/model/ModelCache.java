@@ -0,0 +1,256 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.COPASI.CVersion;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+
+/**
+ * Content addressed on-disk cache of model snapshots.
+ * <p>
+ * Snapshots are stored in the {@link SnapshotIO} format under a key made of
+ * the SHA-256 hash of the model file and the COPASI version, so a changed
+ * file or a new COPASI release never sees a stale entry. A cache hit skips
+ * parsing the model entirely. The cache is bounded in size, the least
+ * recently used entries are evicted first. A cache with a size of zero is
+ * disabled and loads every model.
+ */
+public class ModelCache {
+
+    private static final String SUFFIX = ".snapshot";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final File directory;
+    private final long maxBytes;
+    private final DataModelManager dataModels;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param directory directory of the cache, created if missing
+     * @param maxBytes  size the cache is trimmed to after every store
+     * @param dataModels leases the data models of cache misses
+     */
+    public ModelCache(File directory, long maxBytes, DataModelManager dataModels) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.dataModels = dataModels;
+        if (isEnabled()) {
+            directory.mkdirs();
+        }
+    }
+
+    /**
+     * Returns the snapshot of the model file, from the cache if possible,
+     * otherwise it is loaded and stored.
+     */
+    public ModelSnapshot load(File file) throws IOException {
+        return load(file, Cancellation.NONE);
+    }
+
+    /**
+     * Returns the snapshot of the model file, from the cache if possible,
+     * otherwise it is loaded and stored. A cancelled load stores nothing.
+     */
+    public ModelSnapshot load(File file, Cancellation cancellation) throws IOException {
+        if (!isEnabled()) {
+            return ModelLoader.load(file, cancellation, dataModels);
+        }
+        ImportMetrics.Span lookup = ImportMetrics.begin(ImportMetrics.Phase.CACHE);
+        String key = key(file);
+        ModelSnapshot snapshot = get(key);
+        lookup.end(snapshot != null ? 1 : 0);
+        if (snapshot != null) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+        misses.incrementAndGet();
+        snapshot = ModelLoader.load(file, cancellation, dataModels);
+        ImportMetrics.Span store = ImportMetrics.begin(ImportMetrics.Phase.CACHE);
+        put(key, snapshot);
+        store.end(1);
+        return snapshot;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /** Cache key of the model file. */
+    public String key(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update(CVersion.getVERSION().getVersion().getBytes(Charset.forName("UTF-8")));
+        digest.update((byte) SnapshotIO.FORMAT_VERSION);
+        return toHex(digest.digest());
+    }
+
+    /** Cached snapshot for the key, null if there is none or it is unreadable. */
+    public ModelSnapshot get(String key) {
+        File entry = entry(key);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(entry), BUFFER_SIZE))) {
+            ModelSnapshot snapshot = SnapshotIO.read(in);
+            // least recently used is tracked through the modification time
+            entry.setLastModified(System.currentTimeMillis());
+            return snapshot;
+        } catch (IOException e) {
+            entry.delete();
+            return null;
+        }
+    }
+
+    /** Stores the snapshot and trims the cache. Failures only lose the entry. */
+    public void put(String key, ModelSnapshot snapshot) {
+        File entry = entry(key);
+        File partial = new File(directory, key + ".part" + Thread.currentThread().getId());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE))) {
+            SnapshotIO.write(snapshot, out);
+        } catch (IOException e) {
+            partial.delete();
+            return;
+        }
+        entry.delete();
+        if (!partial.renameTo(entry)) {
+            partial.delete();
+            return;
+        }
+        trim();
+    }
+
+    /** Evicts least recently used entries until the cache fits its size. */
+    private synchronized void trim() {
+        File[] entries = entries();
+        long size = 0;
+        for (File f : entries) {
+            size += f.length();
+        }
+        if (size <= maxBytes) {
+            return;
+        }
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (int i = 0; i < entries.length && size > maxBytes; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                size -= length;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /** Removes all entries. */
+    public synchronized void clear() {
+        for (File f : entries()) {
+            f.delete();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Statistics
+    //////////////////////////////////////////////////////////////////////////
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getEntryCount() {
+        return entries().length;
+    }
+
+    public long getSizeBytes() {
+        long size = 0;
+        for (File f : entries()) {
+            size += f.length();
+        }
+        return size;
+    }
+
+    /** Human readable statistics. */
+    public String getStatistics() {
+        if (!isEnabled()) {
+            return "Model cache disabled";
+        }
+        long h = getHits();
+        long m = getMisses();
+        return String.format("%d hits, %d misses (%.0f%% hit rate), %d evictions, %d entries, %d of %d MB",
+                h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), getEvictions(),
+                getEntryCount(), getSizeBytes() / (1024 * 1024), maxBytes / (1024 * 1024));
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+
+    private File entry(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private File[] entries() {
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return new File[0];
+        }
+        int n = 0;
+        for (File f : entries) {
+            if (f.getName().endsWith(SUFFIX)) {
+                entries[n++] = f;
+            }
+        }
+        return Arrays.copyOf(entries, n);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+}
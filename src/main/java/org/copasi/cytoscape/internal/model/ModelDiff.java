@@ -0,0 +1,345 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Differences between two snapshots of the same model.
+ * <p>
+ * Objects are matched by their CN, COPASI keys are handed out anew on every
+ * load and do not identify an object across loads. Objects left over are
+ * taken as renamed if they agree in data a rename keeps: compartments in
+ * their dimensionality and size, global quantities in their value, species
+ * in their matched compartment and initial concentration and reactions in
+ * their matched participants and reversibility. Such a match is only made
+ * if exactly one previous and one current object agree. For matched
+ * objects the diff records whether any attribute changed, whether the
+ * objects they depend on changed, for reactions whether the participants
+ * changed and whether the key changed. Everything is computed on the
+ * primitive arrays of the snapshots, in time linear in their size.
+ */
+public class ModelDiff {
+
+    private final ModelSnapshot previous;
+    private final ModelSnapshot current;
+
+    /** Previous index of every current object, -1 for added objects. */
+    private final int[] previousIndex;
+    /** Previous objects without current object. */
+    private final int[] removed;
+    /** Current objects whose attributes have to be written. */
+    private final boolean[] attributesChanged;
+    /** Current reactions whose edges have to be created. */
+    private final boolean[] participantsChanged;
+    /** Current objects whose dependency edges have to be created. */
+    private final boolean[] dependenciesChanged;
+
+    private ModelDiff(ModelSnapshot previous, ModelSnapshot current, int[] previousIndex, int[] removed,
+                      boolean[] attributesChanged, boolean[] participantsChanged, boolean[] dependenciesChanged) {
+        this.previous = previous;
+        this.current = current;
+        this.previousIndex = previousIndex;
+        this.removed = removed;
+        this.attributesChanged = attributesChanged;
+        this.participantsChanged = participantsChanged;
+        this.dependenciesChanged = dependenciesChanged;
+    }
+
+    /** Compares the snapshot the network was built from with a new one. */
+    public static ModelDiff of(ModelSnapshot previous, ModelSnapshot current) {
+        int n = current.getObjectCount();
+        int[] previousIndex = new int[n];
+        Arrays.fill(previousIndex, -1);
+        boolean[] matched = new boolean[previous.getObjectCount()];
+
+        Map<String, Integer> byCn = new HashMap<>(2 * previous.getObjectCount());
+        for (int j = 0; j < previous.getObjectCount(); j++) {
+            byCn.put(previous.getCn(j), j);
+        }
+        for (int i = 0; i < n; i++) {
+            Integer j = byCn.get(current.getCn(i));
+            if (j != null && previous.getKind(j) == current.getKind(i) && !matched[j]) {
+                previousIndex[i] = j;
+                matched[j] = true;
+            }
+        }
+
+        // renamed objects, kind by kind so species see their renamed
+        // compartments and reactions their renamed species
+        for (byte kind = ModelSnapshot.COMPARTMENT; kind <= ModelSnapshot.REACTION; kind++) {
+            matchRenamed(previous, current, kind, previousIndex, matched);
+        }
+
+        int removedCount = 0;
+        for (boolean m : matched) {
+            if (!m) {
+                removedCount++;
+            }
+        }
+        int[] removed = new int[removedCount];
+        for (int j = 0, r = 0; j < matched.length; j++) {
+            if (!matched[j]) {
+                removed[r++] = j;
+            }
+        }
+
+        String[] previousMoieties = moieties(previous);
+        String[] currentMoieties = moieties(current);
+        boolean[] attributesChanged = new boolean[n];
+        boolean[] participantsChanged = new boolean[n];
+        boolean[] dependenciesChanged = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int j = previousIndex[i];
+            if (j < 0) {
+                attributesChanged[i] = true;
+                participantsChanged[i] = current.getKind(i) == ModelSnapshot.REACTION;
+                dependenciesChanged[i] = current.getDependencyEnd(i) > current.getDependencyStart(i);
+                continue;
+            }
+            attributesChanged[i] = !sameAttributes(previous, j, current, i)
+                    || !equal(previousMoieties[j], currentMoieties[i]);
+            if (current.getKind(i) == ModelSnapshot.REACTION) {
+                participantsChanged[i] = !sameParticipants(previous, j, current, i, previousIndex);
+            }
+            dependenciesChanged[i] = !sameDependencies(previous, j, current, i, previousIndex);
+        }
+        return new ModelDiff(previous, current, previousIndex, removed, attributesChanged, participantsChanged,
+                dependenciesChanged);
+    }
+
+    /**
+     * Matches the unmatched objects of a kind whose rename signature is
+     * unique among the unmatched objects of both snapshots.
+     */
+    private static void matchRenamed(ModelSnapshot previous, ModelSnapshot current, byte kind,
+                                     int[] previousIndex, boolean[] matched) {
+        Map<String, Integer> bySignature = new HashMap<>();
+        for (int j = previous.getStart(kind); j < previous.getEnd(kind); j++) {
+            if (!matched[j]) {
+                String signature = signature(previous, j, null);
+                bySignature.put(signature, bySignature.containsKey(signature) ? -1 : j);
+            }
+        }
+        if (bySignature.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> candidates = new HashMap<>();
+        for (int i = current.getStart(kind); i < current.getEnd(kind); i++) {
+            if (previousIndex[i] < 0) {
+                String signature = signature(current, i, previousIndex);
+                if (signature != null) {
+                    candidates.put(signature, candidates.containsKey(signature) ? -1 : i);
+                }
+            }
+        }
+        for (Map.Entry<String, Integer> candidate : candidates.entrySet()) {
+            Integer j = bySignature.get(candidate.getKey());
+            int i = candidate.getValue();
+            if (j != null && j >= 0 && i >= 0) {
+                previousIndex[i] = j;
+                matched[j] = true;
+            }
+        }
+    }
+
+    /**
+     * Data of an object a rename keeps, with the objects it refers to as
+     * indices of the previous snapshot. Null if one of them is unmatched.
+     *
+     * @param previousIndex maps the indices of the current snapshot, null
+     *                      for the previous snapshot itself
+     */
+    private static String signature(ModelSnapshot snapshot, int index, int[] previousIndex) {
+        StringBuilder sb = new StringBuilder();
+        switch (snapshot.getKind(index)) {
+            case ModelSnapshot.COMPARTMENT:
+                sb.append(snapshot.getDimensionality(index)).append(' ')
+                        .append(Double.doubleToLongBits(snapshot.getValue(index)));
+                break;
+            case ModelSnapshot.SPECIES:
+                int compartment = previousIndex(snapshot.getCompartment(index), previousIndex);
+                if (compartment < 0) {
+                    return null;
+                }
+                sb.append(compartment).append(' ').append(Double.doubleToLongBits(snapshot.getValue(index)));
+                break;
+            case ModelSnapshot.REACTION:
+                sb.append(snapshot.isReversible(index));
+                for (int k = snapshot.getParticipantStart(index); k < snapshot.getParticipantEnd(index); k++) {
+                    int species = previousIndex(snapshot.getParticipantSpecies(k), previousIndex);
+                    if (species < 0) {
+                        return null;
+                    }
+                    sb.append(' ').append(species).append('*')
+                            .append(Double.doubleToLongBits(snapshot.getParticipantStoichiometry(k)));
+                }
+                break;
+            default:
+                sb.append(Double.doubleToLongBits(snapshot.getValue(index)));
+                break;
+        }
+        return sb.toString();
+    }
+
+    private static int previousIndex(int index, int[] previousIndex) {
+        return index < 0 || previousIndex == null ? index : previousIndex[index];
+    }
+
+    /** The key is not compared, COPASI hands out new keys on every load. */
+    private static boolean sameAttributes(ModelSnapshot previous, int j, ModelSnapshot current, int i) {
+        if (!equal(previous.getCn(j), current.getCn(i))
+                || !equal(previous.getName(j), current.getName(i))
+                || !equal(previous.getDisplayName(j), current.getDisplayName(i))
+                || Double.compare(previous.getValue(j), current.getValue(i)) != 0
+                || Double.compare(previous.getX(j), current.getX(i)) != 0
+                || Double.compare(previous.getY(j), current.getY(i)) != 0) {
+            return false;
+        }
+        switch (current.getKind(i)) {
+            case ModelSnapshot.COMPARTMENT:
+                return previous.getDimensionality(j) == current.getDimensionality(i);
+            case ModelSnapshot.SPECIES:
+                int pc = previous.getCompartment(j);
+                int cc = current.getCompartment(i);
+                return equal(pc >= 0 ? previous.getName(pc) : null, cc >= 0 ? current.getName(cc) : null)
+                        && previous.isDependent(j) == current.isDependent(i);
+            case ModelSnapshot.REACTION:
+                return previous.isReversible(j) == current.isReversible(i);
+            default:
+                return true;
+        }
+    }
+
+    /** Same species, matched, with the same stoichiometries in the same order. */
+    private static boolean sameParticipants(ModelSnapshot previous, int j, ModelSnapshot current, int i,
+                                            int[] previousIndex) {
+        int ps = previous.getParticipantStart(j);
+        int cs = current.getParticipantStart(i);
+        int count = current.getParticipantEnd(i) - cs;
+        if (previous.getParticipantEnd(j) - ps != count) {
+            return false;
+        }
+        for (int k = 0; k < count; k++) {
+            int species = current.getParticipantSpecies(cs + k);
+            int before = previous.getParticipantSpecies(ps + k);
+            if ((species < 0 ? -1 : previousIndex[species]) != before
+                    || Double.compare(previous.getParticipantStoichiometry(ps + k),
+                    current.getParticipantStoichiometry(cs + k)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Same objects, matched, with the same types in the same order. */
+    private static boolean sameDependencies(ModelSnapshot previous, int j, ModelSnapshot current, int i,
+                                            int[] previousIndex) {
+        int ps = previous.getDependencyStart(j);
+        int cs = current.getDependencyStart(i);
+        int count = current.getDependencyEnd(i) - cs;
+        if (previous.getDependencyEnd(j) - ps != count) {
+            return false;
+        }
+        for (int k = 0; k < count; k++) {
+            if (previousIndex[current.getDependencySource(cs + k)] != previous.getDependencySource(ps + k)
+                    || previous.getDependencyType(ps + k) != current.getDependencyType(cs + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Moiety of every object, null for objects not determined by one. */
+    private static String[] moieties(ModelSnapshot snapshot) {
+        String[] moieties = new String[snapshot.getObjectCount()];
+        for (int m = 0; m < snapshot.getMoietyCount(); m++) {
+            int species = snapshot.getMoietySpecies(m);
+            if (species >= 0) {
+                moieties[species] = snapshot.getMoietyDescription(m);
+            }
+        }
+        return moieties;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public ModelSnapshot getPrevious() {
+        return previous;
+    }
+
+    public ModelSnapshot getCurrent() {
+        return current;
+    }
+
+    /** Index of the current object in the previous snapshot, -1 if it was added. */
+    public int getPreviousIndex(int index) {
+        return previousIndex[index];
+    }
+
+    /** Indices of the previous objects that were removed. */
+    public int[] getRemoved() {
+        return removed.clone();
+    }
+
+    public boolean isAttributesChanged(int index) {
+        return attributesChanged[index];
+    }
+
+    /** Whether the matched object has another key than in the previous snapshot, its id has to be written. */
+    public boolean isKeyChanged(int index) {
+        int j = previousIndex[index];
+        return j >= 0 && !equal(previous.getKey(j), current.getKey(index));
+    }
+
+    /** Whether the edges of the current reaction have to be created. */
+    public boolean isParticipantsChanged(int index) {
+        return participantsChanged[index];
+    }
+
+    /** Whether the dependency edges of the current object have to be created. */
+    public boolean isDependenciesChanged(int index) {
+        return dependenciesChanged[index];
+    }
+
+    public int getAddedCount() {
+        int count = 0;
+        for (int j : previousIndex) {
+            if (j < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getRemovedCount() {
+        return removed.length;
+    }
+
+    /** Matched objects with changed attributes, participants or dependencies. */
+    public int getChangedCount() {
+        int count = 0;
+        for (int i = 0; i < previousIndex.length; i++) {
+            if (previousIndex[i] >= 0 && (attributesChanged[i] || participantsChanged[i] || dependenciesChanged[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether the network needs no update. Other keys alone need none, the
+     * network then keeps the previous snapshot its ids were written from.
+     */
+    public boolean isEmpty() {
+        return removed.length == 0 && getAddedCount() == 0 && getChangedCount() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d added, %d removed, %d changed", getAddedCount(), getRemovedCount(), getChangedCount());
+    }
+
+}
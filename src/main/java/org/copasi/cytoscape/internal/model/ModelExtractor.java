@@ -0,0 +1,511 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import org.COPASI.CChemEq;
+import org.COPASI.CChemEqElement;
+import org.COPASI.CCompartment;
+import org.COPASI.CDataModel;
+import org.COPASI.CDataObject;
+import org.COPASI.CEvent;
+import org.COPASI.CEventAssignment;
+import org.COPASI.CFunction;
+import org.COPASI.CFunctionParameter;
+import org.COPASI.CFunctionParameters;
+import org.COPASI.CMetab;
+import org.COPASI.DataObjectVector;
+import org.COPASI.MetabVector;
+import org.COPASI.CModel;
+import org.COPASI.CModelEntity;
+import org.COPASI.CModelValue;
+import org.COPASI.CReaction;
+import org.COPASI.CVersion;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+
+/**
+ * Extracts a {@link ModelSnapshot} from a COPASI model.
+ * <p>
+ * The model is walked once and every string is read through JNI exactly once
+ * per object. References between objects, e.g. reaction participants, are
+ * resolved through the short COPASI keys into dense object indices, no
+ * common name is built for them. The modifiers of the reactions are read
+ * as dependencies of the reactions. The extractor does not depend on Cytoscape.
+ * An estimate of the JNI calls, from the calls every kind of object takes,
+ * is reported to the {@link ImportMetrics}.
+ * <p>
+ * The rate laws, rules and events are read as dependencies too. Which
+ * variables of a rate law are global quantities or volumes is looked up
+ * once per function and shared by all reactions using it, so only the
+ * objects mapped to these variables are read per reaction. Expressions are
+ * read as infix once and the objects in them are resolved by their common
+ * names, without walking the expression trees through JNI.
+ */
+public class ModelExtractor {
+
+    /** Number of objects between two cancellation checkpoints. */
+    private static final int CHECKPOINT_INTERVAL = 256;
+    /** Estimated JNI calls of {@link #readObject}. */
+    private static final int OBJECT_CALLS = 5;
+
+    private final CModel model;
+    private final Cancellation cancellation;
+    private final ModelSnapshot snapshot = new ModelSnapshot();
+    private final Map<String, String> strings = new HashMap<>();
+    private final KeyIndex compartmentIndex = new KeyIndex("Compartment");
+    private final KeyIndex speciesIndex = new KeyIndex("Metabolite");
+    private final Map<String, Integer> cnIndex = new HashMap<>();
+    // per function key, the variables mapped to global quantities or volumes
+    private final Map<String, int[]> signatures = new HashMap<>();
+    private long nativeCalls;
+
+    // dependencies in the order they are read, sorted into CSR form at the end
+    private int[] dependencyTargets = new int[64];
+    private int[] dependencySources = new int[64];
+    private byte[] dependencyTypes = new byte[64];
+    private int dependencyCount;
+
+    // rules, resolved when all objects are known
+    private int[] ruleTargets = new int[16];
+    private String[] ruleExpressions = new String[16];
+    private byte[] ruleTypes = new byte[16];
+    private int ruleCount;
+
+    private ModelExtractor(CModel model, Cancellation cancellation) {
+        this.model = model;
+        this.cancellation = cancellation;
+    }
+
+    /** Extracts the snapshot of the given model. */
+    public static ModelSnapshot extract(CModel model) {
+        return extract(model, Cancellation.NONE);
+    }
+
+    /**
+     * Extracts the snapshot of the given model.
+     *
+     * @throws CancellationException if the work was cancelled
+     */
+    public static ModelSnapshot extract(CModel model, Cancellation cancellation) {
+        ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.EXTRACT);
+        ModelExtractor extractor = new ModelExtractor(model, cancellation);
+        ModelSnapshot snapshot = extractor.extract();
+        span.addNativeCalls(extractor.nativeCalls);
+        span.end(snapshot.getObjectCount() + snapshot.getParticipantCount());
+        return snapshot;
+    }
+
+    private ModelSnapshot extract() {
+        int numCompartments = (int) model.getNumCompartments();
+        int numParameters = (int) model.getNumModelValues();
+        int numSpecies = (int) model.getNumMetabs();
+        int numReactions = (int) model.getNumReactions();
+
+        int[] offsets = snapshot.offsets;
+        offsets[ModelSnapshot.COMPARTMENT] = 0;
+        offsets[ModelSnapshot.PARAMETER] = numCompartments;
+        offsets[ModelSnapshot.SPECIES] = offsets[ModelSnapshot.PARAMETER] + numParameters;
+        offsets[ModelSnapshot.REACTION] = offsets[ModelSnapshot.SPECIES] + numSpecies;
+        offsets[ModelSnapshot.REACTION + 1] = offsets[ModelSnapshot.REACTION] + numReactions;
+
+        int n = offsets[ModelSnapshot.REACTION + 1];
+        snapshot.kinds = new byte[n];
+        snapshot.keys = new String[n];
+        snapshot.cns = new String[n];
+        snapshot.names = new String[n];
+        snapshot.displayNames = new String[n];
+        snapshot.values = new double[n];
+        snapshot.compartmentDimensions = new int[numCompartments];
+        snapshot.speciesCompartment = new int[numSpecies];
+        snapshot.reactionReversible = new boolean[numReactions];
+        snapshot.reactionOffsets = new int[numReactions + 1];
+        snapshot.x = new double[n];
+        snapshot.y = new double[n];
+        Arrays.fill(snapshot.x, Double.NaN);
+        Arrays.fill(snapshot.y, Double.NaN);
+
+        // model
+        snapshot.modelKey = model.getKey();
+        snapshot.modelCn = model.getCN().getString();
+        snapshot.modelName = intern(model.getObjectName());
+        snapshot.modelDisplayName = intern(model.getObjectDisplayName());
+        snapshot.copasiVersion = CVersion.getVERSION().getVersion();
+        nativeCalls += 11;
+
+        // compartments
+        int index = offsets[ModelSnapshot.COMPARTMENT];
+        for (int i = 0; i < numCompartments; i++, index++) {
+            CCompartment compartment = model.getCompartment(i);
+            checkpoint(index);
+            readObject(index, ModelSnapshot.COMPARTMENT, compartment);
+            compartmentIndex.put(snapshot.keys[index], index);
+            snapshot.compartmentDimensions[i] = (int) compartment.getDimensionality();
+            snapshot.values[index] = compartment.getInitialValue();
+            readRule(index, compartment);
+            nativeCalls += 3 + OBJECT_CALLS;
+        }
+
+        // parameters
+        for (int i = 0; i < numParameters; i++, index++) {
+            CModelValue parameter = model.getModelValue(i);
+            checkpoint(index);
+            readObject(index, ModelSnapshot.PARAMETER, parameter);
+            snapshot.values[index] = parameter.getInitialValue();
+            readRule(index, parameter);
+            nativeCalls += 2 + OBJECT_CALLS;
+        }
+
+        // species
+        for (int i = 0; i < numSpecies; i++, index++) {
+            CMetab species = model.getMetabolite(i);
+            checkpoint(index);
+            readObject(index, ModelSnapshot.SPECIES, species);
+            speciesIndex.put(snapshot.keys[index], index);
+            snapshot.values[index] = species.getInitialConcentration();
+            CCompartment compartment = species.getCompartment();
+            snapshot.speciesCompartment[i] = compartment != null ? compartmentIndex.get(compartment.getKey()) : -1;
+            readRule(index, species);
+            nativeCalls += (compartment != null ? 4 : 3) + OBJECT_CALLS;
+        }
+
+        // reactions
+        int[] participants = new int[4 * numReactions];
+        double[] stoichiometry = new double[participants.length];
+        int entry = 0;
+        for (int i = 0; i < numReactions; i++, index++) {
+            CReaction reaction = model.getReaction(i);
+            checkpoint(index);
+            readObject(index, ModelSnapshot.REACTION, reaction);
+            snapshot.values[index] = Double.NaN;
+            snapshot.reactionReversible[i] = reaction.isReversible();
+
+            CChemEq eqn = reaction.getChemEq();
+            int numSubstrates = (int) eqn.getSubstrates().size();
+            int numProducts = (int) eqn.getProducts().size();
+            int numModifiers = (int) eqn.getModifiers().size();
+            if (entry + numSubstrates + numProducts > participants.length) {
+                int capacity = Math.max(2 * participants.length, entry + numSubstrates + numProducts);
+                participants = Arrays.copyOf(participants, capacity);
+                stoichiometry = Arrays.copyOf(stoichiometry, capacity);
+            }
+            for (int j = 0; j < numSubstrates; j++, entry++) {
+                CChemEqElement el = eqn.getSubstrate(j);
+                participants[entry] = speciesIndex.get(el.getMetaboliteKey());
+                stoichiometry[entry] = -el.getMultiplicity();
+            }
+            for (int j = 0; j < numProducts; j++, entry++) {
+                CChemEqElement el = eqn.getProduct(j);
+                participants[entry] = speciesIndex.get(el.getMetaboliteKey());
+                stoichiometry[entry] = el.getMultiplicity();
+            }
+            snapshot.reactionOffsets[i + 1] = entry;
+            for (int j = 0; j < numModifiers; j++) {
+                addDependency(index, speciesIndex.get(eqn.getModifier(j).getMetaboliteKey()), ModelSnapshot.MODIFIER);
+            }
+            readRateLaw(index, reaction);
+            nativeCalls += 9 + OBJECT_CALLS + 3L * (numSubstrates + numProducts) + 2L * numModifiers;
+        }
+        snapshot.participantSpecies = Arrays.copyOf(participants, entry);
+        snapshot.participantStoichiometry = Arrays.copyOf(stoichiometry, entry);
+
+        // rules may use any object, events as well
+        for (int r = 0; r < ruleCount; r++) {
+            addDependencies(ruleTargets[r], ruleExpressions[r], ruleTypes[r]);
+        }
+        readEvents();
+        sortDependencies(n);
+        readMoieties(numSpecies);
+        readTasks();
+        return snapshot;
+    }
+
+    /** Reads the names of the tasks of the file, so they are listed without loading it again. */
+    private void readTasks() {
+        CDataModel dataModel = model.getObjectDataModel();
+        int numTasks = dataModel != null ? (int) dataModel.getNumTasks() : 0;
+        snapshot.taskNames = new String[numTasks];
+        for (int i = 0; i < numTasks; i++) {
+            snapshot.taskNames[i] = intern(dataModel.getTask(i).getObjectName());
+        }
+        nativeCalls += 2 + 2L * numTasks;
+    }
+
+    /**
+     * Remembers the assignment or rate rule of the object, if it has one.
+     * The objects in the rule are resolved after all objects were read.
+     */
+    private void readRule(int index, CModelEntity entity) {
+        int status = entity.getStatus();
+        nativeCalls++;
+        byte type;
+        if (status == CModelEntity.Status_ASSIGNMENT) {
+            type = ModelSnapshot.ASSIGNMENT;
+        } else if (status == CModelEntity.Status_ODE) {
+            type = ModelSnapshot.RATE_RULE;
+        } else {
+            return;
+        }
+        if (ruleCount == ruleTargets.length) {
+            int capacity = 2 * ruleCount;
+            ruleTargets = Arrays.copyOf(ruleTargets, capacity);
+            ruleExpressions = Arrays.copyOf(ruleExpressions, capacity);
+            ruleTypes = Arrays.copyOf(ruleTypes, capacity);
+        }
+        ruleTargets[ruleCount] = index;
+        ruleExpressions[ruleCount] = entity.getExpression();
+        ruleTypes[ruleCount] = type;
+        ruleCount++;
+        nativeCalls++;
+    }
+
+    /**
+     * Reads the global quantities and compartments mapped to the variables
+     * of the rate law. Species are left out, they are participants or
+     * modifiers already, and so are local parameters, they are no objects
+     * of the snapshot.
+     */
+    private void readRateLaw(int index, CReaction reaction) {
+        CFunction function = reaction.getFunction();
+        nativeCalls++;
+        if (function == null) {
+            return;
+        }
+        int[] variables = signature(function);
+        for (int variable : variables) {
+            DataObjectVector objects = reaction.getParameterObjects(variable);
+            int size = (int) objects.size();
+            for (int j = 0; j < size; j++) {
+                CDataObject object = objects.get(j);
+                if (object != null) {
+                    addDependency(index, resolve(object.getCN().getString()), ModelSnapshot.RATE_LAW);
+                    nativeCalls += 2;
+                }
+            }
+            nativeCalls += 2 + size;
+        }
+    }
+
+    /**
+     * Indices of the variables of the function that are global quantities or
+     * volumes. Read once per function, genome-scale models use a few dozen
+     * rate laws for thousands of reactions.
+     */
+    private int[] signature(CFunction function) {
+        String key = function.getKey();
+        nativeCalls++;
+        int[] variables = signatures.get(key);
+        if (variables != null) {
+            return variables;
+        }
+        CFunctionParameters parameters = function.getVariables();
+        int size = (int) parameters.size();
+        variables = new int[size];
+        int count = 0;
+        for (int v = 0; v < size; v++) {
+            int usage = parameters.getParameter(v).getUsage();
+            if (usage == CFunctionParameter.Role_PARAMETER || usage == CFunctionParameter.Role_VOLUME) {
+                variables[count++] = v;
+            }
+        }
+        nativeCalls += 2 + 2L * size;
+        variables = Arrays.copyOf(variables, count);
+        signatures.put(key, variables);
+        return variables;
+    }
+
+    /**
+     * Reads the events: the targets of the assignments depend on the objects
+     * in the trigger, the delay and the assigned expression.
+     */
+    private void readEvents() {
+        int numEvents = (int) model.getNumEvents();
+        nativeCalls++;
+        for (int i = 0; i < numEvents; i++) {
+            checkpoint(i);
+            CEvent event = model.getEvent(i);
+            String trigger = event.getTriggerExpression();
+            String delay = event.getDelayExpression();
+            int numAssignments = (int) event.getNumAssignments();
+            for (int a = 0; a < numAssignments; a++) {
+                CEventAssignment assignment = event.getAssignment(a);
+                int target = resolve(assignment.getTargetCN());
+                if (target >= 0) {
+                    addDependencies(target, trigger, ModelSnapshot.EVENT);
+                    addDependencies(target, delay, ModelSnapshot.EVENT);
+                    addDependencies(target, assignment.getExpression(), ModelSnapshot.EVENT);
+                }
+                nativeCalls += 3;
+            }
+            nativeCalls += 4;
+        }
+    }
+
+    /**
+     * Records that the target depends on the objects referenced in the infix
+     * expression, written as {@code <CN=...>} with backslash escapes.
+     */
+    private void addDependencies(int target, String infix, byte type) {
+        if (infix == null) {
+            return;
+        }
+        int length = infix.length();
+        for (int i = infix.indexOf("<CN="); i >= 0; i = infix.indexOf("<CN=", i)) {
+            int end = i + 1;
+            while (end < length && infix.charAt(end) != '>') {
+                end += infix.charAt(end) == '\\' ? 2 : 1;
+            }
+            if (end >= length) {
+                return;
+            }
+            addDependency(target, resolve(infix.substring(i + 1, end)), type);
+            i = end + 1;
+        }
+    }
+
+    /**
+     * Index of the object with the given common name or of the object a
+     * reference like {@code ...,Reference=Value} belongs to, -1 if it is no
+     * object of the snapshot.
+     */
+    private int resolve(String cn) {
+        if (cn == null) {
+            return -1;
+        }
+        int reference = cn.lastIndexOf(",Reference=");
+        Integer index = cnIndex.get(reference >= 0 ? cn.substring(0, reference) : cn);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Records that the target object depends on the source object, unknown
+     * sources and objects depending on themselves are dropped.
+     */
+    private void addDependency(int target, int source, byte type) {
+        if (source < 0 || source == target) {
+            return;
+        }
+        if (dependencyCount == dependencyTargets.length) {
+            int capacity = 2 * dependencyCount;
+            dependencyTargets = Arrays.copyOf(dependencyTargets, capacity);
+            dependencySources = Arrays.copyOf(dependencySources, capacity);
+            dependencyTypes = Arrays.copyOf(dependencyTypes, capacity);
+        }
+        dependencyTargets[dependencyCount] = target;
+        dependencySources[dependencyCount] = source;
+        dependencyTypes[dependencyCount] = type;
+        dependencyCount++;
+    }
+
+    /**
+     * Sorts the dependencies by their target into CSR form, keeping the order
+     * per target. A source repeated with the same type, e.g. a quantity used
+     * by two variables of a rate law, is kept once.
+     */
+    private void sortDependencies(int n) {
+        int[] offsets = new int[n + 1];
+        for (int d = 0; d < dependencyCount; d++) {
+            offsets[dependencyTargets[d] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] sources = new int[dependencyCount];
+        byte[] types = new byte[dependencyCount];
+        for (int d = 0; d < dependencyCount; d++) {
+            int k = next[dependencyTargets[d]]++;
+            sources[k] = dependencySources[d];
+            types[k] = dependencyTypes[d];
+        }
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int start = offsets[i];
+            int end = offsets[i + 1];
+            offsets[i] = count;
+            for (int k = start; k < end; k++) {
+                int m = offsets[i];
+                while (m < count && (sources[m] != sources[k] || types[m] != types[k])) {
+                    m++;
+                }
+                if (m == count) {
+                    sources[count] = sources[k];
+                    types[count] = types[k];
+                    count++;
+                }
+            }
+        }
+        offsets[n] = count;
+        snapshot.dependencySources = Arrays.copyOf(sources, count);
+        snapshot.dependencyTypes = Arrays.copyOf(types, count);
+        snapshot.dependencyOffsets = offsets;
+    }
+
+    /**
+     * Reads the conserved moieties COPASI found while compiling the model.
+     * The dependent species follow the independent ones in the reduced
+     * order of the species, the i-th of them is determined by the i-th
+     * moiety.
+     */
+    private void readMoieties(int numSpecies) {
+        model.compileIfNecessary();
+        snapshot.speciesDependent = new boolean[numSpecies];
+        int numMoieties = (int) model.getMoieties().size();
+        snapshot.moietyDescriptions = new String[numMoieties];
+        snapshot.moietySpecies = new int[numMoieties];
+        Arrays.fill(snapshot.moietySpecies, -1);
+
+        MetabVector reduced = model.getMetabolitesX();
+        int independent = (int) model.getNumIndependentReactionMetabs();
+        int dependent = (int) model.getNumDependentReactionMetabs();
+        int speciesStart = snapshot.offsets[ModelSnapshot.SPECIES];
+        nativeCalls += 6 + 2L * dependent + 2L * numMoieties;
+        for (int d = 0; d < dependent; d++) {
+            int index = speciesIndex.get(reduced.get(independent + d).getKey());
+            if (index < 0) {
+                continue;
+            }
+            snapshot.speciesDependent[index - speciesStart] = true;
+            if (d < numMoieties) {
+                snapshot.moietySpecies[d] = index;
+            }
+        }
+        for (int m = 0; m < numMoieties; m++) {
+            checkpoint(m);
+            snapshot.moietyDescriptions[m] = model.getMoiety(m).getDescription(model);
+        }
+    }
+
+    private void checkpoint(int index) {
+        if (index % CHECKPOINT_INTERVAL == 0 && cancellation.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /** Reads the attributes shared by all objects. */
+    private void readObject(int index, byte kind, CDataObject obj) {
+        snapshot.kinds[index] = kind;
+        snapshot.keys[index] = obj.getKey();
+        snapshot.cns[index] = obj.getCN().getString();
+        snapshot.names[index] = intern(obj.getObjectName());
+        snapshot.displayNames[index] = intern(obj.getObjectDisplayName());
+        cnIndex.put(snapshot.cns[index], index);
+    }
+
+    /** Shares equal strings between objects. */
+    private String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String shared = strings.get(s);
+        if (shared == null) {
+            strings.put(s, s);
+            shared = s;
+        }
+        return shared;
+    }
+
+}
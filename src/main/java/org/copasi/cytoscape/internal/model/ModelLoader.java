@@ -0,0 +1,74 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+import org.COPASI.CDataModel;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.ImportSettings;
+
+/**
+ * Loads COPASI model files into snapshots.
+ * <p>
+ * Every load leases its own data model from the {@link DataModelManager},
+ * which is given back as soon as the snapshot is extracted, also if loading
+ * fails. COPASI loads into state shared by all data models, so parsing and
+ * extraction hold the {@link NativeLock} and run one file at a time. The
+ * layout is read from the file afterwards without the lock, see
+ * {@link LayoutReader}, so layouts and networks of other files are done in
+ * parallel.
+ */
+public class ModelLoader {
+
+    private ModelLoader() {
+    }
+
+    /**
+     * Loads the model file and extracts its snapshot.
+     * Parsing and extraction stop as soon as the work is cancelled.
+     *
+     * @param file COPASI model file
+     * @param cancellation checked while waiting for the native lock, parsing and extracting
+     * @param dataModels leases the data model
+     * @return snapshot of the model
+     * @throws IOException if COPASI cannot load the file
+     * @throws CancellationException if the work was cancelled
+     */
+    public static ModelSnapshot load(File file, Cancellation cancellation, DataModelManager dataModels)
+            throws IOException {
+        ModelSnapshot snapshot;
+        CancellableProcessReport report = new CancellableProcessReport(cancellation);
+        try (DataModelManager.Lease lease = dataModels.acquire(
+                ImportSettings.estimateNativeMB(file.length()), cancellation);
+             NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+            CDataModel dm = lease.getDataModel();
+            ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.LOAD);
+            boolean loaded = dm.loadFromFile(file.getAbsolutePath(), report);
+            span.addNativeCalls(1);
+            span.end(file.length());
+            if (cancellation.isCancelled()) {
+                throw new CancellationException();
+            }
+            if (!loaded) {
+                // a data model COPASI failed to load into is not reused
+                lease.discard();
+                throw new IOException("COPASI could not load " + file.getName());
+            }
+            try {
+                snapshot = ModelExtractor.extract(dm.getModel(), cancellation);
+            } catch (RuntimeException e) {
+                if (!(e instanceof CancellationException)) {
+                    lease.discard();
+                }
+                throw e;
+            }
+        } finally {
+            report.delete();
+        }
+        LayoutReader.read(file, snapshot);
+        return snapshot;
+    }
+
+}
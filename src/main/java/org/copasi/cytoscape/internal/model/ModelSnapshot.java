@@ -0,0 +1,308 @@
+package org.copasi.cytoscape.internal.model;
+
+/**
+ * Plain Java snapshot of a COPASI model.
+ * <p>
+ * The snapshot holds everything the reader needs to build a network, so the
+ * native data model can be released before any Cytoscape object is created.
+ * Objects are addressed by a dense index and laid out kind by kind:
+ * compartments, parameters, species and reactions. Kind specific values are
+ * stored in primitive arrays indexed by the position within the kind, the
+ * reaction participants are stored in compressed sparse row (CSR) form.
+ * Dependencies between objects that are not participants, e.g. the
+ * modifiers of a reaction, the quantities its rate law uses or the objects
+ * in a rule, are stored in CSR form too, with one row per object listing
+ * the objects it depends on. Positions from the layout stored with the
+ * model are NaN for objects without glyph.
+ */
+public class ModelSnapshot {
+
+    public static final byte COMPARTMENT = 0;
+    public static final byte PARAMETER = 1;
+    public static final byte SPECIES = 2;
+    public static final byte REACTION = 3;
+
+    private static final String[] TYPE_NAMES = {"compartment", "parameter", "species", "reaction"};
+
+    /** Dependency of a reaction on a species that modifies its rate. */
+    public static final byte MODIFIER = 0;
+    /** Dependency of a reaction on a global quantity or compartment its rate law uses. */
+    public static final byte RATE_LAW = 1;
+    /** Dependency of an object with an assignment rule on the objects in the rule. */
+    public static final byte ASSIGNMENT = 2;
+    /** Dependency of an object with a rate rule on the objects in the rule. */
+    public static final byte RATE_RULE = 3;
+    /** Dependency of the target of an event assignment on the objects in the event. */
+    public static final byte EVENT = 4;
+
+    private static final String[] DEPENDENCY_TYPE_NAMES = {"modifier", "rate law", "assignment", "rate rule",
+            "event"};
+
+    // model
+    String modelKey;
+    String modelCn;
+    String modelName;
+    String modelDisplayName;
+    String copasiVersion;
+
+    // offsets of the kinds in the object arrays, offsets[kind + 1] is the end
+    final int[] offsets = new int[5];
+
+    // objects
+    byte[] kinds;
+    String[] keys;
+    String[] cns;
+    String[] names;
+    String[] displayNames;
+    double[] values;                 // size, value, initial concentration or NaN
+
+    // kind specific
+    int[] compartmentDimensions;     // per compartment
+    int[] speciesCompartment;        // per species, object index of the compartment
+    boolean[] reactionReversible;    // per reaction
+
+    // stoichiometry in CSR form, rows are reactions
+    int[] reactionOffsets;           // per reaction + 1
+    int[] participantSpecies;        // object index of the species
+    double[] participantStoichiometry; // negative for substrates, positive for products
+
+    // dependencies in CSR form, rows are the dependent objects
+    int[] dependencyOffsets;         // per object + 1
+    int[] dependencySources;         // object index of the object depended on
+    byte[] dependencyTypes;
+
+    // conservation
+    boolean[] speciesDependent;      // per species, determined by a conserved moiety
+    String[] moietyDescriptions;     // per moiety
+    int[] moietySpecies;             // per moiety, object index of its dependent species or -1
+
+    // names of the tasks defined in the file
+    String[] taskNames;
+
+    // layout, center of the glyph or NaN
+    double[] x;
+    double[] y;
+
+    ModelSnapshot() {
+    }
+
+    /** Name of the kind as used in the "type" attribute. */
+    public static String getTypeName(byte kind) {
+        return TYPE_NAMES[kind];
+    }
+
+    /** Name of the dependency type as used in the "type" attribute of edges. */
+    public static String getDependencyTypeName(byte type) {
+        return DEPENDENCY_TYPE_NAMES[type];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Model
+    //////////////////////////////////////////////////////////////////////////
+
+    public String getModelKey() {
+        return modelKey;
+    }
+
+    public String getModelCn() {
+        return modelCn;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public String getModelDisplayName() {
+        return modelDisplayName;
+    }
+
+    public String getCopasiVersion() {
+        return copasiVersion;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Objects
+    //////////////////////////////////////////////////////////////////////////
+
+    /** Number of objects of all kinds. */
+    public int getObjectCount() {
+        return kinds.length;
+    }
+
+    /** Index of the first object of the given kind. */
+    public int getStart(byte kind) {
+        return offsets[kind];
+    }
+
+    /** Index after the last object of the given kind. */
+    public int getEnd(byte kind) {
+        return offsets[kind + 1];
+    }
+
+    /** Number of objects of the given kind. */
+    public int getCount(byte kind) {
+        return offsets[kind + 1] - offsets[kind];
+    }
+
+    public byte getKind(int index) {
+        return kinds[index];
+    }
+
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    public String getCn(int index) {
+        return cns[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getDisplayName(int index) {
+        return displayNames[index];
+    }
+
+    /**
+     * Numeric value of the object: compartment size, parameter value or
+     * species initial concentration. NaN for reactions.
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /** Dimensionality of the compartment with the given object index. */
+    public int getDimensionality(int index) {
+        return compartmentDimensions[index - offsets[COMPARTMENT]];
+    }
+
+    /** Object index of the compartment of the species with the given object index. */
+    public int getCompartment(int index) {
+        return speciesCompartment[index - offsets[SPECIES]];
+    }
+
+    /** Reversibility of the reaction with the given object index. */
+    public boolean isReversible(int index) {
+        return reactionReversible[index - offsets[REACTION]];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Stoichiometry
+    //////////////////////////////////////////////////////////////////////////
+
+    /** Number of substrate and product entries of all reactions. */
+    public int getParticipantCount() {
+        return participantSpecies.length;
+    }
+
+    /** First participant entry of the reaction with the given object index. */
+    public int getParticipantStart(int index) {
+        return reactionOffsets[index - offsets[REACTION]];
+    }
+
+    /** Entry after the last participant of the reaction with the given object index. */
+    public int getParticipantEnd(int index) {
+        return reactionOffsets[index - offsets[REACTION] + 1];
+    }
+
+    /** Object index of the species of the given participant entry. */
+    public int getParticipantSpecies(int entry) {
+        return participantSpecies[entry];
+    }
+
+    /** Stoichiometry of the entry, negative for substrates and positive for products. */
+    public double getParticipantStoichiometry(int entry) {
+        return participantStoichiometry[entry];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Dependencies
+    //////////////////////////////////////////////////////////////////////////
+
+    /** Number of dependency entries of all objects. */
+    public int getDependencyCount() {
+        return dependencySources.length;
+    }
+
+    /** First dependency entry of the object with the given index. */
+    public int getDependencyStart(int index) {
+        return dependencyOffsets[index];
+    }
+
+    /** Entry after the last dependency of the object with the given index. */
+    public int getDependencyEnd(int index) {
+        return dependencyOffsets[index + 1];
+    }
+
+    /** Object index of the object the given dependency entry depends on. */
+    public int getDependencySource(int entry) {
+        return dependencySources[entry];
+    }
+
+    /** Type of the dependency entry, e.g. {@link #MODIFIER}. */
+    public byte getDependencyType(int entry) {
+        return dependencyTypes[entry];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Conservation
+    //////////////////////////////////////////////////////////////////////////
+
+    /** Whether the species with the given object index is determined by a conserved moiety. */
+    public boolean isDependent(int index) {
+        return speciesDependent[index - offsets[SPECIES]];
+    }
+
+    public int getMoietyCount() {
+        return moietyDescriptions.length;
+    }
+
+    /** Conserved sum of the moiety, e.g. {@code [ATP] + [ADP]}. */
+    public String getMoietyDescription(int moiety) {
+        return moietyDescriptions[moiety];
+    }
+
+    /** Object index of the species the moiety determines, -1 if unknown. */
+    public int getMoietySpecies(int moiety) {
+        return moietySpecies[moiety];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Tasks
+    //////////////////////////////////////////////////////////////////////////
+
+    public int getTaskCount() {
+        return taskNames.length;
+    }
+
+    /** Name of a task defined in the file, e.g. {@code Time-Course}. */
+    public String getTaskName(int task) {
+        return taskNames[task];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Layout
+    //////////////////////////////////////////////////////////////////////////
+
+    /** Whether the model has a layout with at least one positioned object. */
+    public boolean hasLayout() {
+        for (double v : x) {
+            if (!Double.isNaN(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** X coordinate of the object in the model layout, NaN if it has no glyph. */
+    public double getX(int index) {
+        return x[index];
+    }
+
+    /** Y coordinate of the object in the model layout, NaN if it has no glyph. */
+    public double getY(int index) {
+        return y[index];
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the native COPASI work of the app.
+ * <p>
+ * Every piece of work has its own data model, but COPASI keeps state in the
+ * process that all data models share and that it does not synchronize: the
+ * root container with the list of data models, the function database that
+ * loading a file adds the rate laws of the model to, and the key factory
+ * handing out the keys of all objects. Loading a file, extracting or
+ * resetting a model and running a task therefore hold this lock. Background
+ * jobs only hold it to set up and restore their task, their runs may take
+ * hours and only work on their own data model. The Java side of the work,
+ * e.g. spilling streams, hashing files, reading layouts and building
+ * networks, runs in parallel.
+ * <p>
+ * The lock is reentrant and fair, long work like a simulation takes it once
+ * per chunk so other work gets its turn in between.
+ */
+public final class NativeLock {
+
+    private static final ReentrantLock LOCK = new ReentrantLock(true);
+
+    /** Milliseconds between two checks for cancellation while waiting for the lock. */
+    private static final long WAIT_MILLIS = 100;
+
+    private NativeLock() {
+    }
+
+    /**
+     * Waits for the lock.
+     *
+     * @param cancellation checked while waiting
+     * @return the held lock, to be closed in a try-with-resources block
+     * @throws CancellationException if the work was cancelled while waiting
+     */
+    public static Hold acquire(Cancellation cancellation) {
+        try {
+            while (!LOCK.tryLock(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancellation.isCancelled()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+        return new Hold();
+    }
+
+    /** Whether the current thread holds the lock. */
+    public static boolean isHeldByCurrentThread() {
+        return LOCK.isHeldByCurrentThread();
+    }
+
+    /** The held lock, released on close. Closing it more than once has no effect. */
+    public static final class Hold implements AutoCloseable {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Hold() {
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                LOCK.unlock();
+            }
+        }
+    }
+
+}
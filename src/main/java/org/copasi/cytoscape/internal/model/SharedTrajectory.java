@@ -0,0 +1,78 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trajectory used by several owners at once, e.g. the registry, a running
+ * simulation and open players. Every owner holds a reference and releases
+ * it when done, the store is released with the last reference.
+ */
+public class SharedTrajectory implements Trajectory {
+
+    private final Trajectory store;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * @param store trajectory the values are kept in, the caller holds the
+     *              first reference
+     */
+    public SharedTrajectory(Trajectory store) {
+        this.store = store;
+    }
+
+    /**
+     * Takes another reference.
+     *
+     * @return false if the last reference was already released
+     */
+    public boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return store.getSeriesCount();
+    }
+
+    @Override
+    public String getSeriesCn(int series) {
+        return store.getSeriesCn(series);
+    }
+
+    @Override
+    public int getFrameCount() {
+        return store.getFrameCount();
+    }
+
+    @Override
+    public double getTime(int frame) {
+        return store.getTime(frame);
+    }
+
+    @Override
+    public void getFrame(int frame, double[] target) {
+        store.getFrame(frame, target);
+    }
+
+    @Override
+    public boolean append(double time, double[] frame) {
+        return store.append(time, frame);
+    }
+
+    /** Releases one reference, the store goes with the last one. */
+    @Override
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            store.release();
+        }
+    }
+
+}
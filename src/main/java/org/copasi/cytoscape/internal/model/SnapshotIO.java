@@ -0,0 +1,260 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format of {@link ModelSnapshot}.
+ * <p>
+ * All strings are written once into a string table and referenced by their
+ * position, the arrays are written as they are. Reading a snapshot does not
+ * need the native library.
+ */
+public class SnapshotIO {
+
+    private static final int MAGIC = 0x43505353; // "CPSS"
+    /** Increase whenever the layout or the content of the snapshot changes. */
+    public static final int FORMAT_VERSION = 6;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private SnapshotIO() {
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Write
+    //////////////////////////////////////////////////////////////////////////
+
+    public static void write(ModelSnapshot snapshot, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+
+        // string table
+        StringTable table = new StringTable();
+        table.add(snapshot.modelKey);
+        table.add(snapshot.modelCn);
+        table.add(snapshot.modelName);
+        table.add(snapshot.modelDisplayName);
+        table.add(snapshot.copasiVersion);
+        table.addAll(snapshot.keys);
+        table.addAll(snapshot.cns);
+        table.addAll(snapshot.names);
+        table.addAll(snapshot.displayNames);
+        table.addAll(snapshot.moietyDescriptions);
+        table.addAll(snapshot.taskNames);
+        out.writeInt(table.strings.size());
+        for (String s : table.strings) {
+            byte[] bytes = s.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        // model
+        out.writeInt(table.indexOf(snapshot.modelKey));
+        out.writeInt(table.indexOf(snapshot.modelCn));
+        out.writeInt(table.indexOf(snapshot.modelName));
+        out.writeInt(table.indexOf(snapshot.modelDisplayName));
+        out.writeInt(table.indexOf(snapshot.copasiVersion));
+
+        // objects
+        writeInts(out, snapshot.offsets);
+        out.writeInt(snapshot.kinds.length);
+        out.write(snapshot.kinds);
+        writeStrings(out, table, snapshot.keys);
+        writeStrings(out, table, snapshot.cns);
+        writeStrings(out, table, snapshot.names);
+        writeStrings(out, table, snapshot.displayNames);
+        writeDoubles(out, snapshot.values);
+
+        // kind specific
+        writeInts(out, snapshot.compartmentDimensions);
+        writeInts(out, snapshot.speciesCompartment);
+        out.writeInt(snapshot.reactionReversible.length);
+        for (boolean b : snapshot.reactionReversible) {
+            out.writeBoolean(b);
+        }
+
+        // stoichiometry
+        writeInts(out, snapshot.reactionOffsets);
+        writeInts(out, snapshot.participantSpecies);
+        writeDoubles(out, snapshot.participantStoichiometry);
+
+        // dependencies
+        writeInts(out, snapshot.dependencyOffsets);
+        writeInts(out, snapshot.dependencySources);
+        out.writeInt(snapshot.dependencyTypes.length);
+        out.write(snapshot.dependencyTypes);
+
+        // conservation
+        out.writeInt(snapshot.speciesDependent.length);
+        for (boolean b : snapshot.speciesDependent) {
+            out.writeBoolean(b);
+        }
+        writeStrings(out, table, snapshot.moietyDescriptions);
+        writeInts(out, snapshot.moietySpecies);
+
+        // tasks
+        writeStrings(out, table, snapshot.taskNames);
+
+        // layout
+        writeDoubles(out, snapshot.x);
+        writeDoubles(out, snapshot.y);
+    }
+
+    private static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeDoubles(DataOutput out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    private static void writeStrings(DataOutput out, StringTable table, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String s : values) {
+            out.writeInt(table.indexOf(s));
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Read
+    //////////////////////////////////////////////////////////////////////////
+
+    public static ModelSnapshot read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a COPASI model snapshot");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format " + version);
+        }
+
+        // string table
+        String[] table = new String[in.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            table[i] = new String(bytes, UTF8);
+        }
+
+        ModelSnapshot snapshot = new ModelSnapshot();
+
+        // model
+        snapshot.modelKey = string(table, in.readInt());
+        snapshot.modelCn = string(table, in.readInt());
+        snapshot.modelName = string(table, in.readInt());
+        snapshot.modelDisplayName = string(table, in.readInt());
+        snapshot.copasiVersion = string(table, in.readInt());
+
+        // objects
+        int[] offsets = readInts(in);
+        System.arraycopy(offsets, 0, snapshot.offsets, 0, snapshot.offsets.length);
+        snapshot.kinds = new byte[in.readInt()];
+        in.readFully(snapshot.kinds);
+        snapshot.keys = readStrings(in, table);
+        snapshot.cns = readStrings(in, table);
+        snapshot.names = readStrings(in, table);
+        snapshot.displayNames = readStrings(in, table);
+        snapshot.values = readDoubles(in);
+
+        // kind specific
+        snapshot.compartmentDimensions = readInts(in);
+        snapshot.speciesCompartment = readInts(in);
+        snapshot.reactionReversible = new boolean[in.readInt()];
+        for (int i = 0; i < snapshot.reactionReversible.length; i++) {
+            snapshot.reactionReversible[i] = in.readBoolean();
+        }
+
+        // stoichiometry
+        snapshot.reactionOffsets = readInts(in);
+        snapshot.participantSpecies = readInts(in);
+        snapshot.participantStoichiometry = readDoubles(in);
+
+        // dependencies
+        snapshot.dependencyOffsets = readInts(in);
+        snapshot.dependencySources = readInts(in);
+        snapshot.dependencyTypes = new byte[in.readInt()];
+        in.readFully(snapshot.dependencyTypes);
+
+        // conservation
+        snapshot.speciesDependent = new boolean[in.readInt()];
+        for (int i = 0; i < snapshot.speciesDependent.length; i++) {
+            snapshot.speciesDependent[i] = in.readBoolean();
+        }
+        snapshot.moietyDescriptions = readStrings(in, table);
+        snapshot.moietySpecies = readInts(in);
+
+        // tasks
+        snapshot.taskNames = readStrings(in, table);
+
+        // layout
+        snapshot.x = readDoubles(in);
+        snapshot.y = readDoubles(in);
+        return snapshot;
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(DataInput in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    private static String[] readStrings(DataInput in, String[] table) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = string(table, in.readInt());
+        }
+        return values;
+    }
+
+    private static String string(String[] table, int index) {
+        return index < 0 ? null : table[index];
+    }
+
+    /** Distinct strings in order of first use, null is stored as -1. */
+    private static class StringTable {
+
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+
+        void add(String s) {
+            if (s != null && !index.containsKey(s)) {
+                index.put(s, strings.size());
+                strings.add(s);
+            }
+        }
+
+        void addAll(String[] values) {
+            for (String s : values) {
+                add(s);
+            }
+        }
+
+        int indexOf(String s) {
+            return s == null ? -1 : index.get(s);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.copasi.cytoscape.internal.model;
+
+/**
+ * Steady state of a model and the control coefficients at that state.
+ * <p>
+ * Objects are identified by their CN. The control coefficients are scaled
+ * and keep the order COPASI reports them in, which need not be the order
+ * of the species and reactions of the model. Without a steady state the
+ * values are NaN and there are no control coefficients.
+ */
+public class SteadyStateResult {
+
+    private final String status;
+
+    private final String[] species;
+    private final double[] concentrations;
+    private final String[] reactions;
+    private final double[] fluxes;
+
+    private final String[] controlledSpecies;
+    private final String[] controllingReactions;
+    /** Concentration control coefficients, controlled species x controlling reactions. */
+    private final double[][] concentrationControl;
+    private final String[] controlledFluxes;
+    /** Flux control coefficients, controlled fluxes x controlling reactions. */
+    private final double[][] fluxControl;
+
+    public SteadyStateResult(String status,
+                             String[] species, double[] concentrations,
+                             String[] reactions, double[] fluxes,
+                             String[] controlledSpecies, String[] controllingReactions,
+                             double[][] concentrationControl,
+                             String[] controlledFluxes, double[][] fluxControl) {
+        this.status = status;
+        this.species = species;
+        this.concentrations = concentrations;
+        this.reactions = reactions;
+        this.fluxes = fluxes;
+        this.controlledSpecies = controlledSpecies;
+        this.controllingReactions = controllingReactions;
+        this.concentrationControl = concentrationControl;
+        this.controlledFluxes = controlledFluxes;
+        this.fluxControl = fluxControl;
+    }
+
+    /** Outcome of the steady state search as shown to the user. */
+    public String getStatus() {
+        return status;
+    }
+
+    public int getSpeciesCount() {
+        return species.length;
+    }
+
+    public String getSpeciesCn(int i) {
+        return species[i];
+    }
+
+    public double getConcentration(int i) {
+        return concentrations[i];
+    }
+
+    public int getReactionCount() {
+        return reactions.length;
+    }
+
+    public String getReactionCn(int i) {
+        return reactions[i];
+    }
+
+    public double getFlux(int i) {
+        return fluxes[i];
+    }
+
+    public String[] getControlledSpecies() {
+        return controlledSpecies;
+    }
+
+    public String[] getControllingReactions() {
+        return controllingReactions;
+    }
+
+    /** Control of the concentration of a controlled species by a controlling reaction. */
+    public double getConcentrationControl(int species, int reaction) {
+        return concentrationControl[species][reaction];
+    }
+
+    public String[] getControlledFluxes() {
+        return controlledFluxes;
+    }
+
+    /** Control of a controlled flux by a controlling reaction. */
+    public double getFluxControl(int flux, int reaction) {
+        return fluxControl[flux][reaction];
+    }
+
+}
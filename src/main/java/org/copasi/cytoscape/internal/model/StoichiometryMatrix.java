@@ -0,0 +1,264 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Sparse stoichiometry matrix of a model, species by reactions.
+ * <p>
+ * The matrix is stored in compressed sparse column form in primitive
+ * arrays, the columns are the reactions and the row indices within a column
+ * are sorted. The compressed sparse row form is derived on first use. A
+ * species that is substrate and product of the same reaction has one entry
+ * with the net stoichiometry, entries that cancel out are dropped. Memory
+ * and time are linear in the number of entries, the matrix is never dense.
+ */
+public class StoichiometryMatrix {
+
+    private final String[] species;
+    private final String[] reactions;
+
+    // CSC, columns are reactions
+    private final int[] columnPointers;
+    private final int[] rowIndices;
+    private final double[] values;
+
+    // CSR, rows are species, built on first use
+    private int[] rowPointers;
+    private int[] columnIndices;
+    private double[] rowValues;
+
+    private StoichiometryMatrix(String[] species, String[] reactions,
+                                int[] columnPointers, int[] rowIndices, double[] values) {
+        this.species = species;
+        this.reactions = reactions;
+        this.columnPointers = columnPointers;
+        this.rowIndices = rowIndices;
+        this.values = values;
+    }
+
+    /** Builds the matrix from the reaction participants of a snapshot. */
+    public static StoichiometryMatrix of(ModelSnapshot snapshot) {
+        int speciesStart = snapshot.getStart(ModelSnapshot.SPECIES);
+        int numSpecies = snapshot.getCount(ModelSnapshot.SPECIES);
+        int reactionStart = snapshot.getStart(ModelSnapshot.REACTION);
+        int numReactions = snapshot.getCount(ModelSnapshot.REACTION);
+
+        String[] species = new String[numSpecies];
+        for (int s = 0; s < numSpecies; s++) {
+            species[s] = snapshot.getCn(speciesStart + s);
+        }
+        String[] reactions = new String[numReactions];
+        for (int r = 0; r < numReactions; r++) {
+            reactions[r] = snapshot.getCn(reactionStart + r);
+        }
+
+        int[] columnPointers = new int[numReactions + 1];
+        int[] rowIndices = new int[snapshot.getParticipantCount()];
+        double[] values = new double[rowIndices.length];
+        // position of a species in the current column, -1 if it has no entry yet
+        int[] position = new int[numSpecies];
+        Arrays.fill(position, -1);
+
+        int nonZeros = 0;
+        for (int r = 0; r < numReactions; r++) {
+            int start = nonZeros;
+            int index = reactionStart + r;
+            for (int j = snapshot.getParticipantStart(index); j < snapshot.getParticipantEnd(index); j++) {
+                int s = snapshot.getParticipantSpecies(j) - speciesStart;
+                if (s < 0 || s >= numSpecies) {
+                    continue;
+                }
+                if (position[s] < 0) {
+                    position[s] = nonZeros;
+                    rowIndices[nonZeros] = s;
+                    values[nonZeros] = 0.0;
+                    nonZeros++;
+                }
+                values[position[s]] += snapshot.getParticipantStoichiometry(j);
+            }
+
+            // drop entries that cancel out and reset the positions
+            int kept = start;
+            for (int k = start; k < nonZeros; k++) {
+                position[rowIndices[k]] = -1;
+                if (values[k] != 0.0) {
+                    rowIndices[kept] = rowIndices[k];
+                    values[kept] = values[k];
+                    kept++;
+                }
+            }
+            nonZeros = kept;
+            sortColumn(rowIndices, values, start, nonZeros);
+            columnPointers[r + 1] = nonZeros;
+        }
+
+        return new StoichiometryMatrix(species, reactions, columnPointers,
+                Arrays.copyOf(rowIndices, nonZeros), Arrays.copyOf(values, nonZeros));
+    }
+
+    /** Insertion sort of one column by row, columns have few entries. */
+    private static void sortColumn(int[] rows, double[] values, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int row = rows[i];
+            double value = values[i];
+            int j = i - 1;
+            while (j >= from && rows[j] > row) {
+                rows[j + 1] = rows[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            rows[j + 1] = row;
+            values[j + 1] = value;
+        }
+    }
+
+    public int getRowCount() {
+        return species.length;
+    }
+
+    public int getColumnCount() {
+        return reactions.length;
+    }
+
+    public int getNonZeroCount() {
+        return rowIndices.length;
+    }
+
+    /** CN of the species of a row. */
+    public String getSpeciesCn(int row) {
+        return species[row];
+    }
+
+    /** CN of the reaction of a column. */
+    public String getReactionCn(int column) {
+        return reactions[column];
+    }
+
+    /** Entry of the matrix, 0 if it is not stored. */
+    public double get(int row, int column) {
+        int from = columnPointers[column];
+        int to = columnPointers[column + 1];
+        int k = Arrays.binarySearch(rowIndices, from, to, row);
+        return k >= 0 ? values[k] : 0.0;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Compressed sparse column
+    //////////////////////////////////////////////////////////////////////////
+
+    /** First entry of the column. */
+    public int getColumnStart(int column) {
+        return columnPointers[column];
+    }
+
+    /** Entry after the last one of the column. */
+    public int getColumnEnd(int column) {
+        return columnPointers[column + 1];
+    }
+
+    public int getRowIndex(int entry) {
+        return rowIndices[entry];
+    }
+
+    public double getValue(int entry) {
+        return values[entry];
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Compressed sparse row
+    //////////////////////////////////////////////////////////////////////////
+
+    /** First entry of the row in the row form. */
+    public int getRowStart(int row) {
+        buildRows();
+        return rowPointers[row];
+    }
+
+    /** Entry after the last one of the row in the row form. */
+    public int getRowEnd(int row) {
+        buildRows();
+        return rowPointers[row + 1];
+    }
+
+    public int getColumnIndex(int rowEntry) {
+        buildRows();
+        return columnIndices[rowEntry];
+    }
+
+    public double getRowValue(int rowEntry) {
+        buildRows();
+        return rowValues[rowEntry];
+    }
+
+    /** Transposes the column form, the columns within a row come out sorted. */
+    private synchronized void buildRows() {
+        if (rowPointers != null) {
+            return;
+        }
+        int[] pointers = new int[species.length + 1];
+        for (int row : rowIndices) {
+            pointers[row + 1]++;
+        }
+        for (int s = 0; s < species.length; s++) {
+            pointers[s + 1] += pointers[s];
+        }
+        int[] next = Arrays.copyOf(pointers, species.length);
+        int[] columns = new int[rowIndices.length];
+        double[] rowValues = new double[rowIndices.length];
+        for (int r = 0; r < reactions.length; r++) {
+            for (int k = columnPointers[r]; k < columnPointers[r + 1]; k++) {
+                int target = next[rowIndices[k]]++;
+                columns[target] = r;
+                rowValues[target] = values[k];
+            }
+        }
+        this.columnIndices = columns;
+        this.rowValues = rowValues;
+        this.rowPointers = pointers;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Export
+    //////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the matrix in the Matrix Market coordinate format, one entry
+     * per line with 1-based row and column.
+     */
+    public void writeMatrixMarket(Writer out, String comment) throws IOException {
+        out.write("%%MatrixMarket matrix coordinate real general\n");
+        if (comment != null) {
+            for (String line : comment.split("\n")) {
+                out.write("% " + line + "\n");
+            }
+        }
+        out.write(species.length + " " + reactions.length + " " + rowIndices.length + "\n");
+        StringBuilder sb = new StringBuilder(64);
+        for (int r = 0; r < reactions.length; r++) {
+            for (int k = columnPointers[r]; k < columnPointers[r + 1]; k++) {
+                sb.setLength(0);
+                sb.append(rowIndices[k] + 1).append(' ').append(r + 1).append(' ').append(values[k]).append('\n');
+                out.append(sb);
+            }
+        }
+    }
+
+    /** Writes the CNs of the rows, one per line in the order of the rows. */
+    public void writeSpecies(Writer out) throws IOException {
+        for (String cn : species) {
+            out.write(cn);
+            out.write('\n');
+        }
+    }
+
+    /** Writes the CNs of the columns, one per line in the order of the columns. */
+    public void writeReactions(Writer out) throws IOException {
+        for (String cn : reactions) {
+            out.write(cn);
+            out.write('\n');
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.copasi.cytoscape.internal.model;
+
+/**
+ * Bounded in-heap store of a simulated time course.
+ * <p>
+ * Frames hold the values of all series at one time point and are stored
+ * frame after frame in a single float array, so a frame is read in one
+ * contiguous pass. The store never grows beyond its capacity: once it is
+ * full every other frame is dropped and only every second appended frame is
+ * kept from then on. A trajectory of any length thus keeps evenly spaced
+ * frames, the first frame and, at most, all of its capacity.
+ */
+public class TimeCourse implements Trajectory {
+
+    private final String[] seriesCns;
+    private final int capacity;
+
+    private final double[] times;
+    private final float[] values;
+    private int frames;
+
+    private int stride = 1;
+    private long appended;
+
+    /**
+     * @param seriesCns CN of the object of every series
+     * @param capacity  maximal number of frames kept, at least 2
+     */
+    public TimeCourse(String[] seriesCns, int capacity) {
+        this.seriesCns = seriesCns;
+        this.capacity = Math.max(2, capacity);
+        this.times = new double[this.capacity];
+        this.values = new float[this.capacity * seriesCns.length];
+    }
+
+    /** Appends a frame. Whether it is kept depends on the current stride. */
+    @Override
+    public synchronized boolean append(double time, double[] frame) {
+        long index = appended++;
+        if (index % stride != 0) {
+            return false;
+        }
+        if (frames == capacity) {
+            decimate();
+            if (index % stride != 0) {
+                return false;
+            }
+        }
+        int n = seriesCns.length;
+        times[frames] = time;
+        for (int s = 0; s < n; s++) {
+            values[frames * n + s] = (float) frame[s];
+        }
+        frames++;
+        return true;
+    }
+
+    /** Keeps every other frame and doubles the stride. */
+    private void decimate() {
+        int n = seriesCns.length;
+        int kept = 0;
+        for (int f = 0; f < frames; f += 2, kept++) {
+            times[kept] = times[f];
+            System.arraycopy(values, f * n, values, kept * n, n);
+        }
+        frames = kept;
+        stride *= 2;
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return seriesCns.length;
+    }
+
+    @Override
+    public String getSeriesCn(int series) {
+        return seriesCns[series];
+    }
+
+    @Override
+    public synchronized int getFrameCount() {
+        return frames;
+    }
+
+    /** Number of simulated steps between two kept frames. */
+    public synchronized int getStride() {
+        return stride;
+    }
+
+    @Override
+    public synchronized double getTime(int frame) {
+        return times[frame];
+    }
+
+    public synchronized double getValue(int frame, int series) {
+        return values[frame * seriesCns.length + series];
+    }
+
+    @Override
+    public synchronized void getFrame(int frame, double[] target) {
+        int n = seriesCns.length;
+        for (int s = 0; s < n; s++) {
+            target[s] = values[frame * n + s];
+        }
+    }
+
+    /** Copy of all kept values of a series. */
+    public synchronized double[] getSeries(int series) {
+        double[] result = new double[frames];
+        for (int f = 0; f < frames; f++) {
+            result[f] = values[f * seriesCns.length + series];
+        }
+        return result;
+    }
+
+    @Override
+    public void release() {
+        // the arrays go with the store
+    }
+
+}
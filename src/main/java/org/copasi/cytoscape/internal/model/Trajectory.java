@@ -0,0 +1,31 @@
+package org.copasi.cytoscape.internal.model;
+
+/**
+ * Simulated values of a set of series over time, frame by frame.
+ * A frame holds the values of all series at one time point.
+ */
+public interface Trajectory {
+
+    int getSeriesCount();
+
+    /** CN of the object of the series. */
+    String getSeriesCn(int series);
+
+    int getFrameCount();
+
+    double getTime(int frame);
+
+    /** Copies the values of a frame into the given array. */
+    void getFrame(int frame, double[] target);
+
+    /**
+     * Appends a frame, the store may drop it to stay within its bounds.
+     *
+     * @return true if the frame was kept
+     */
+    boolean append(double time, double[] frame);
+
+    /** Frees the memory and files of the trajectory. */
+    void release();
+
+}
@@ -1,38 +1,32 @@
 package org.copasi.cytoscape.internal.tasks;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
 import org.cytoscape.io.read.CyNetworkReader;
-import org.cytoscape.model.CyEdge;
-import org.cytoscape.model.CyIdentifiable;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNetworkFactory;
-import org.cytoscape.model.CyNode;
-import org.cytoscape.model.subnetwork.CyRootNetwork;
-import org.cytoscape.model.subnetwork.CySubNetwork;
-import org.cytoscape.view.layout.CyLayoutAlgorithm;
 import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.CyNetworkViewFactory;
 import org.cytoscape.work.AbstractTask;
-import org.cytoscape.work.Task;
-import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.TaskMonitor;
 
-import org.COPASI.*;
-import org.copasi.cytoscape.internal.AttributeUtil;
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.ModelCache;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
 
 /**
  * The SBMLReaderTask creates CyNetworks from SBMLDocuments.
  * <p>
- * The reader creates the master SBML network graph with various subnetworks
- * created from the full graph.
+ * The reader creates the network of the whole model and, for models with
+ * several compartments, a subnetwork per compartment sharing its nodes.
  */
 public class CopasiFileReaderTask extends AbstractTask implements CyNetworkReader {
 
@@ -41,13 +35,29 @@ public class CopasiFileReaderTask extends AbstractTask implements CyNetworkReade
     private final CyNetworkFactory networkFactory;
     private final CyNetworkViewFactory viewFactory;
     private final CyLayoutAlgorithmManager cyLayoutAlgorithmManager;
+    private final CyEventHelper eventHelper;
+    private final CyGroupFactory groupFactory;
+    private final ModelCache modelCache;
+    private final ModelRegistry modelRegistry;
 
     private LinkedList<CyNetwork> cyNetworks;
     private TaskMonitor taskMonitor;
 
-    private Map<String, CyNode> id2Node;      // node dictionary
+    /** Lets COPASI and the network builder stop once the task is cancelled. */
+    private final Cancellation cancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+
     private Boolean error = false;
 
+    private long startNanos;
+    private long startAllocated;
+    private long firstNodeNanos;
+    private ImportMetrics.Recording recording;
+
 
     /**
      * Constructor
@@ -55,13 +65,21 @@ public class CopasiFileReaderTask extends AbstractTask implements CyNetworkReade
     public CopasiFileReaderTask(InputStream stream, String fileName,
                           CyNetworkFactory networkFactory,
                           CyNetworkViewFactory viewFactory,
-                          CyLayoutAlgorithmManager cyLayoutAlgorithmManager) {
+                          CyLayoutAlgorithmManager cyLayoutAlgorithmManager,
+                          CyEventHelper eventHelper,
+                          CyGroupFactory groupFactory,
+                          ModelCache modelCache,
+                          ModelRegistry modelRegistry) {
 
         this.stream = stream;
         this.fileName = fileName;
         this.networkFactory = networkFactory;
         this.viewFactory = viewFactory;
         this.cyLayoutAlgorithmManager = cyLayoutAlgorithmManager;
+        this.eventHelper = eventHelper;
+        this.groupFactory = groupFactory;
+        this.modelCache = modelCache;
+        this.modelRegistry = modelRegistry;
 
         // networks returned by the reader
         cyNetworks = new LinkedList<>();
@@ -86,26 +104,18 @@ public class CopasiFileReaderTask extends AbstractTask implements CyNetworkReade
      */
     @Override
     public CyNetworkView buildCyNetworkView(final CyNetwork network) {
-        // Create view
-        CyNetworkView view = viewFactory.createNetworkView(network);
-
-        // layout
-        if (cyLayoutAlgorithmManager != null) {
-            CyLayoutAlgorithm layout = cyLayoutAlgorithmManager.getLayout("force-directed");
-            if (layout == null) {
-                layout = cyLayoutAlgorithmManager.getLayout(CyLayoutAlgorithmManager.DEFAULT_LAYOUT_NAME);
-            }
-            TaskIterator itr = layout.createTaskIterator(view, layout.getDefaultLayoutContext(), CyLayoutAlgorithm.ALL_NODE_VIEWS, "");
-            Task nextTask = itr.next();
-            try {
-                nextTask.run(taskMonitor);
-            } catch (Exception e) {
-                throw new RuntimeException("Could not finish layout", e);
-            }
+        // Cytoscape decides by its own view threshold whether it asks for a view,
+        // large networks only get the model layout instead of a costly automatic one
+        CyLayoutAlgorithmManager layoutManager = NetworkViews.isLarge(network) ? null : cyLayoutAlgorithmManager;
+        // Cytoscape asks for the view after the import finished, it is measured on its own
+        ImportMetrics.Recording recording = ImportMetrics.start(fileName + " (view)");
+        try {
+            CyNetworkView view = NetworkViews.createView(viewFactory, layoutManager, network, taskMonitor);
+            recording.finish(taskMonitor);
+            return view;
+        } finally {
+            recording.suspend();
         }
-
-        // finished
-        return view;
     }
 
     /**
@@ -115,31 +125,6 @@ public class CopasiFileReaderTask extends AbstractTask implements CyNetworkReade
         return error;
     }
 
-    /**
-     * Cancel task.
-     */
-    @Override
-    public void cancel() {
-    }
-
-    private static final int BUFFER_SIZE = 16384;
-    
-    public static String inputStream2String(InputStream source) throws IOException {
-        StringWriter writer = new StringWriter();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(source));
-        try {
-            char[] buffer = new char[BUFFER_SIZE];
-            int charactersRead = reader.read(buffer, 0, buffer.length);
-            while (charactersRead != -1) {
-                writer.write(buffer, 0, charactersRead);
-                charactersRead = reader.read(buffer, 0, buffer.length);
-            }
-        } finally {
-            reader.close();
-        }
-        return writer.toString();
-    }
-    
     /**
      * Parse SBML networks.
      */
@@ -158,217 +143,116 @@ public class CopasiFileReaderTask extends AbstractTask implements CyNetworkReade
             //////////////////////////////////////////////////////////////////
             // Read COPASI
             //////////////////////////////////////////////////////////////////
-            String xml = inputStream2String(stream);
-            id2Node = new HashMap<>();
-
-            CDataModel dm = CRootContainer.addDatamodel();
-            dm.loadFromString(xml);
-    		
-            CyNetwork network = readModelInNetwork(dm.getModel());
-            // Create the different subnetworks
-            addAllNetworks(network);
-            
-            CRootContainer.removeDatamodel(dm);
+            startNanos = System.nanoTime();
+            startAllocated = ImportMetrics.allocatedBytes();
+            firstNodeNanos = 0;
+            recording = ImportMetrics.start(fileName);
+
+            // COPASI reads the document from disk, it is never held on the heap
+            ModelFile modelFile = ModelFile.resolve(stream, fileName);
+
+            // extract everything in one pass and release the native model early,
+            // a cached snapshot skips COPASI entirely
+            boolean registered = false;
+            try {
+                setProgress(0.1);
+                ModelSnapshot snapshot = modelCache.load(modelFile.getFile(), cancellation);
+
+                CyNetwork network = readModelInNetwork(snapshot);
+                // Create the different subnetworks
+                addAllNetworks(network);
+
+                // the model file stays around for simulations of the network
+                modelRegistry.register(network, modelFile, snapshot);
+                registered = true;
+            } finally {
+                if (!registered) {
+                    modelFile.release();
+                }
+            }
+
+            reportImport(modelFile);
+            recording.finish(taskMonitor);
+        }
+        catch (CancellationException e) {
+            // nothing of a cancelled import is handed to Cytoscape
+            cyNetworks.clear();
         }
         catch (Exception e) {
-			// TODO: handle exception
-		}
-            
+            // Cytoscape shows the error, the data model was given back already
+            error = true;
+            cyNetworks.clear();
+            throw new IOException("Could not import " + fileName + ": " + e.getMessage(), e);
+        }
+        finally {
+            // failed and cancelled imports are not measured
+            if (recording != null) {
+                recording.suspend();
+            }
+        }
     }
 
 
 
     /**
-     * Creates the given model into a network.
+     * Reports time-to-first-node and the bytes allocated by the thread of
+     * the finished import. Other imports running at the same time are not
+     * counted, unlike in the peak of the heap.
+     */
+    private void reportImport(ModelFile modelFile) {
+        if (taskMonitor == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long first = firstNodeNanos != 0 ? firstNodeNanos : now;
+        long allocated = ImportMetrics.allocatedBytes();
+        taskMonitor.setStatusMessage(String.format(
+                "Read %d kB (%s) in %d ms, first node after %d ms, %s, model cache: %s",
+                modelFile.length() / 1024,
+                modelFile.isTemporary() ? "spilled stream" : "file",
+                (now - startNanos) / 1000000,
+                (first - startNanos) / 1000000,
+                startAllocated >= 0 && allocated >= 0
+                        ? String.format("%d MB allocated", (allocated - startAllocated) / (1024 * 1024))
+                        : "allocation not measured",
+                modelCache.getStatistics()));
+    }
+
+    /**
+     * Creates the given model snapshot into a network.
      * The network is the master network containing all nodes and edges belonging
-     * to the model.
+     * to the model, the compartment networks and groups are created with it.
      *
-     * @param model
+     * @param snapshot
      * @return
      */
-    private CyNetwork readModelInNetwork(CModel model){
+    private CyNetwork readModelInNetwork(ModelSnapshot snapshot){
         // new network
-        CyNetwork network = networkFactory.createNetwork();
+        NetworkBuilder builder = new NetworkBuilder(networkFactory, eventHelper)
+                .setCompartments(ImportSettings.isCompartmentNetworks(),
+                        ImportSettings.isCompartmentGroups() ? groupFactory : null);
+        CyNetwork network = builder.build(snapshot, ImportSettings.getImportProfile(), cancellation, taskMonitor,
+                0.5, 1.0);
+        firstNodeNanos = builder.getFirstNodeNanos();
+        return network;
+    }
 
-        // <core>
-        readCore(network, model);
+    private void setProgress(double progress) {
         if (taskMonitor != null) {
-            taskMonitor.setProgress(0.4);
+            taskMonitor.setProgress(progress);
         }
-        return network;
     }
 
     /**
-     * Adds all networks to the list of base networks.
+     * Adds all networks to the list of base networks: the network of the
+     * whole model and the networks of its compartments.
      */
     private void addAllNetworks(CyNetwork network){
-
-        // root network
-        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
-        String name = getNetworkName(network);
-        //String name = AttributeUtil.get(network, network, SBML.ATTR_ID, String.class);
-        rootNetwork.getRow(rootNetwork).set(CyNetwork.NAME, String.format("%s", name));
-
-        // all network
-        network.getRow(network).set(CyNetwork.NAME, String.format("%s: %s", "ALL", name));
-
+        NetworkBuilder.setNetworkNames(network, fileName);
 
         // add the networks to the created networks
         cyNetworks.add(network);
+        cyNetworks.addAll(NetworkBuilder.getCompartmentNetworks(network));
     }
 
-    /**
-     * Get network name.
-     * Is used for naming the network and the network collection.
-     */
-    private String getNetworkName(CyNetwork network) {
-        // name of root network
-        String name = network.getRow(network).get("id", String.class);
-        if (name == null) {
-            String[] tokens = fileName.split(File.separator);
-            name = tokens[tokens.length - 1];
-        }
-        return name;
-    }
-
-    ////////////////////////////////////////////////////////////////////////////
-    // SBML CORE
-    ////////////////////////////////////////////////////////////////////////////
-
-    private static void setAttributes(CyNetwork network, CyIdentifiable n, CDataObject obj) {
-
-    	AttributeUtil.set(network, n, "id", obj.getKey(), String.class);
-    	AttributeUtil.set(network, n, "cn", obj.getCN().getString(), String.class);
-    	AttributeUtil.set(network, n, "name", obj.getObjectName(), String.class);
-    	AttributeUtil.set(network, n, "display name", obj.getObjectDisplayName(), String.class);    	
-    	
-    }
-    
-    
-    private CyNode createNode(CyNetwork network, CDataObject obj, String type) 
-    {
-        CyNode n = network.addNode();
-        // Set attributes
-        AttributeUtil.set(network, n, "type", type, String.class);     
-        setAttributes(network, n, obj);
-        
-        id2Node.put(obj.getCN().getString(), n);
-    
-        return n;
-    }
-    /**
-     * Read SBML core.
-     * <p>
-     * Create nodes, edges and attributes from SBML core.
-     *
-     * @param network
-     * @param model
-     */
-    private void readCore(CyNetwork network ,CModel model) {
-
-        // SBMLDocument & Model //
-        // Mark network as SBML
-        AttributeUtil.set(network, network, "copasiNetwork", "copasi", String.class);
-        AttributeUtil.set(network, network, "copasiVersion", CVersion.getVERSION().getVersion(), String.class);
-
-        setAttributes(network, network, model);
-
-        // Compartment //
-        for(int i = 0; i < model.getNumCompartments(); i++) {
-			CCompartment compartment = model.getCompartment(i);       		
-            CyNode n = createNode(network, compartment, "compartment");
-            AttributeUtil.set(network, n, "dimensions", (double)compartment.getDimensionality(), Double.class);
-            AttributeUtil.set(network, n, "size", (double)compartment.getInitialValue(), Double.class);
-                        
-        }
-
-        // Parameter //
-        for(int i = 0; i < model.getNumModelValues(); i++) {
-			CModelValue parameter = model.getModelValue(i);       		
-            CyNode n = createNode(network, parameter, "parameter");
-            AttributeUtil.set(network, n, "value", (double)parameter.getInitialValue(), Double.class);
-        }
-
-        // Species //
-        for(int i = 0; i < model.getNumMetabs(); i++) {
-			CMetab species = model.getMetabolite(i);       		
-            CyNode n = createNode(network, species, "species");
-
-            // edge to compartment
-            CCompartment comp = species.getCompartment();
-            AttributeUtil.set(network, n, "compartment", comp.getObjectName(), String.class);
-            
-            // edge to compartment?
-            //if (comp != null) {
-            //    CyNode compNode = id2Node.get(comp.getCN().getString());
-            //    createEdge(network, n, compNode, "compartment");
-            //}
-            
-            AttributeUtil.set(network, n, "initial concentration", species.getInitialConcentration(), Double.class);
-        }
-
-        // Reaction //
-        for(int i = 0; i < model.getNumReactions(); i++) {
-        	CReaction reaction = model.getReaction(i);
-            CyNode n = createNode(network, reaction, "reaction");
-
-            AttributeUtil.set(network, n, "reversible", reaction.isReversible(), Boolean.class);
-
-            // edge to compartment?
-            //CCompartment comp = reaction.getScalingCompartment();
-    		//
-            //if (comp != null) {
-            //    AttributeUtil.set(network, n, "compartment", comp.getObjectName(), String.class);
-            //    CyNode compNode = id2Node.get(comp.getCN().getString());
-            //    createEdge(network, n, compNode, "compartment");
-            //}
-
-    		CChemEq eqn = reaction.getChemEq();
-    		int numSubstrates = (int) eqn.getSubstrates().size();
-    		int numProducts = (int)eqn.getProducts().size();
-    		
-    		
-            // Reactants
-            for (int j = 0; j < numSubstrates; j++) {
-            	CChemEqElement el = eqn.getSubstrate(j);
-            	String cn = el.getMetabolite().getCN().getString();
-                CyNode reactantNode = id2Node.get(cn);
-                CyEdge edge = createEdge(network, reactantNode, n, "reaction");
-
-                Double stoichiometry = el.getMultiplicity();
-                AttributeUtil.set(network, edge, "stoichiometry", stoichiometry, Double.class);
-            }
-
-            // Products
-            for (int j = 0; j < numProducts; j++) {
-            	CChemEqElement el = eqn.getProduct(j);
-            	String cn = el.getMetabolite().getCN().getString();
-                CyNode reactantNode = id2Node.get(cn);
-                CyEdge edge = createEdge(network, n, reactantNode, "reaction");
-
-                Double stoichiometry = el.getMultiplicity();
-                AttributeUtil.set(network, edge, "stoichiometry", stoichiometry, Double.class);
-            }
-
-        }
-
-    }
-   
-    /**
-     * Creates SBML edge.
-     * Only function to create edges in the network.
-     * All edges are directed.
-     *
-     * @param source
-     * @param target
-     * @param interactionType
-     * @return
-     */
-    private CyEdge createEdge(CyNetwork network, CyNode source, CyNode target, String interactionType) {
-        CyEdge e = network.addEdge(source, target, true);
-        AttributeUtil.set(network, e, "type", interactionType, String.class);
-        return e;
-    }
-
-
 }
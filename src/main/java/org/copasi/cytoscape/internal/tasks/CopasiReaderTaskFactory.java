@@ -1,16 +1,16 @@
 package org.copasi.cytoscape.internal.tasks;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
 
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
 import org.cytoscape.io.CyFileFilter;
 import org.cytoscape.io.read.AbstractInputStreamTaskFactory;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
 import org.cytoscape.view.model.CyNetworkViewFactory;
 import org.cytoscape.work.TaskIterator;
+import org.copasi.cytoscape.internal.model.ModelCache;
 
 /**
  * SBMLReaderTaskFactory class
@@ -21,39 +21,30 @@ public class CopasiReaderTaskFactory extends AbstractInputStreamTaskFactory {
 	CyNetworkFactory networkFactory; 
 	CyNetworkViewFactory viewFactory;
 	CyLayoutAlgorithmManager cyLayoutAlgorithmManager;
+	CyEventHelper eventHelper;
+	CyGroupFactory groupFactory;
+	ModelCache modelCache;
+	ModelRegistry modelRegistry;
 
 	/** Constructor. */
-	public CopasiReaderTaskFactory(CyFileFilter filter,CyNetworkFactory networkFactory, CyNetworkViewFactory viewFactory, CyLayoutAlgorithmManager cyLayoutAlgorithmManager){
+	public CopasiReaderTaskFactory(CyFileFilter filter,CyNetworkFactory networkFactory, CyNetworkViewFactory viewFactory, CyLayoutAlgorithmManager cyLayoutAlgorithmManager, CyEventHelper eventHelper, CyGroupFactory groupFactory, ModelCache modelCache, ModelRegistry modelRegistry){
 		super(filter);
 		this.networkFactory = networkFactory;
 		this.viewFactory = viewFactory;
 		this.cyLayoutAlgorithmManager = cyLayoutAlgorithmManager;
+		this.eventHelper = eventHelper;
+		this.groupFactory = groupFactory;
+		this.modelCache = modelCache;
+		this.modelRegistry = modelRegistry;
 	}
 	
-    /** Copy InputStream. */
-    public static InputStream copyInputStream(InputStream is) throws IOException {
-        ByteArrayOutputStream copy = new ByteArrayOutputStream();
-        int chunk = 0;
-        byte[] data = new byte[1024*1024];
-        while((-1 != (chunk = is.read(data)))) {
-            copy.write(data, 0, chunk);
-        }
-        is.close();
-        return new ByteArrayInputStream( copy.toByteArray() );
-    }
-
-
 	@Override
 	public TaskIterator createTaskIterator(InputStream is, String inputName) {		
 
-		try {
-			return new TaskIterator(
-				new CopasiFileReaderTask(copyInputStream(is), inputName,
-                        networkFactory, viewFactory, cyLayoutAlgorithmManager)
-			);
-		} catch (IOException e) {
-			e.printStackTrace();
-            return null;
-		}
+		// the stream is resolved to a file by the task, not buffered here
+		return new TaskIterator(
+			new CopasiFileReaderTask(is, inputName,
+                    networkFactory, viewFactory, cyLayoutAlgorithmManager, eventHelper, groupFactory, modelCache, modelRegistry)
+		);
 	}
 }
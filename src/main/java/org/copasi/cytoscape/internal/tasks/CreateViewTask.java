@@ -0,0 +1,63 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Creates the view of a network that was imported without one, or the view
+ * of its compartment overview.
+ */
+public class CreateViewTask extends AbstractTask {
+
+    private final CyNetwork network;
+    private final boolean overview;
+    private final CyNetworkManager networkManager;
+    private final CyNetworkViewFactory viewFactory;
+    private final CyNetworkViewManager viewManager;
+    private final CyLayoutAlgorithmManager cyLayoutAlgorithmManager;
+    private final CyEventHelper eventHelper;
+
+    public CreateViewTask(CyNetwork network, boolean overview,
+                          CyNetworkManager networkManager,
+                          CyNetworkViewFactory viewFactory,
+                          CyNetworkViewManager viewManager,
+                          CyLayoutAlgorithmManager cyLayoutAlgorithmManager,
+                          CyEventHelper eventHelper) {
+        this.network = network;
+        this.overview = overview;
+        this.networkManager = networkManager;
+        this.viewFactory = viewFactory;
+        this.viewManager = viewManager;
+        this.cyLayoutAlgorithmManager = cyLayoutAlgorithmManager;
+        this.eventHelper = eventHelper;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle(overview ? "Create compartment overview" : "Create network view");
+        taskMonitor.setProgress(0.0);
+
+        CyNetwork target = network;
+        if (overview) {
+            CySubNetwork subNetwork = new OverviewBuilder(eventHelper).build(network);
+            networkManager.addNetwork(subNetwork);
+            target = subNetwork;
+        }
+        if (cancelled) {
+            return;
+        }
+        taskMonitor.setProgress(0.2);
+        CyNetworkView view = NetworkViews.createView(viewFactory, cyLayoutAlgorithmManager, target, taskMonitor);
+        viewManager.addNetworkView(view);
+        taskMonitor.setProgress(1.0);
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * CreateViewTaskFactory class
+ * TaskFactory for the CreateViewTask.
+ */
+public class CreateViewTaskFactory {
+
+	CyNetworkManager networkManager;
+	CyNetworkViewFactory viewFactory;
+	CyNetworkViewManager viewManager;
+	CyLayoutAlgorithmManager cyLayoutAlgorithmManager;
+	CyEventHelper eventHelper;
+
+	/** Constructor. */
+	public CreateViewTaskFactory(CyNetworkManager networkManager, CyNetworkViewFactory viewFactory,
+			CyNetworkViewManager viewManager, CyLayoutAlgorithmManager cyLayoutAlgorithmManager,
+			CyEventHelper eventHelper) {
+		this.networkManager = networkManager;
+		this.viewFactory = viewFactory;
+		this.viewManager = viewManager;
+		this.cyLayoutAlgorithmManager = cyLayoutAlgorithmManager;
+		this.eventHelper = eventHelper;
+	}
+
+	/**
+	 * @param overview create the compartment overview and its view instead
+	 *                 of the view of the network itself
+	 */
+	public TaskIterator createTaskIterator(CyNetwork network, boolean overview) {
+		return new TaskIterator(
+			new CreateViewTask(network, overview, networkManager, viewFactory, viewManager,
+					cyLayoutAlgorithmManager, eventHelper)
+		);
+	}
+}
@@ -0,0 +1,145 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Adds the details the import profile left out for the selected reactions
+ * of a network.
+ * <p>
+ * The objects the reactions depend on and the dependency edges are taken
+ * from the snapshot kept in the {@link ModelRegistry}, COPASI is not
+ * involved, see {@link NetworkBuilder#expand}. They are added to the
+ * network the model was registered for; if the reactions were selected in
+ * another network of the collection, e.g. a subnetwork, the new edges are
+ * added there too. Added species join the compartment networks and groups
+ * of their compartment. Added nodes are placed next to their reactions in
+ * all views.
+ */
+public class ExpandTask extends AbstractTask {
+
+    private final CyNetwork network;
+    private final ModelRegistry modelRegistry;
+    private final CyNetworkFactory networkFactory;
+    private final CyNetworkViewManager viewManager;
+    private final CyEventHelper eventHelper;
+    private final CyGroupManager groupManager;
+
+    public ExpandTask(CyNetwork network, ModelRegistry modelRegistry, CyNetworkFactory networkFactory,
+                      CyNetworkViewManager viewManager, CyEventHelper eventHelper, CyGroupManager groupManager) {
+        this.network = network;
+        this.modelRegistry = modelRegistry;
+        this.networkFactory = networkFactory;
+        this.viewManager = viewManager;
+        this.eventHelper = eventHelper;
+        this.groupManager = groupManager;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Expand reactions");
+        taskMonitor.setProgress(0.0);
+
+        CyNetwork registered = modelRegistry.getRegisteredNetwork(network);
+        ModelSnapshot snapshot = modelRegistry.getSnapshot(network);
+        if (registered == null || snapshot == null) {
+            throw new IllegalStateException("The network was not imported from a COPASI file");
+        }
+        if (NetworkBuilder.getProfile(registered).hasDependencies()) {
+            taskMonitor.setStatusMessage("The network was imported with all details");
+            return;
+        }
+        List<CyNode> reactions = selectedReactions(registered);
+        if (reactions.isEmpty()) {
+            taskMonitor.setStatusMessage("No reactions selected");
+            return;
+        }
+        if (cancelled) {
+            return;
+        }
+
+        List<CyNode> added = new NetworkBuilder(networkFactory, eventHelper).setGroupManager(groupManager)
+                .expand(registered, snapshot, reactions);
+        taskMonitor.setProgress(0.6);
+
+        // the network the reactions were selected in shows their new edges too
+        List<CyNode> addedHere = new ArrayList<>();
+        if (network != registered && network instanceof CySubNetwork) {
+            CySubNetwork subNetwork = (CySubNetwork) network;
+            for (CyNode reaction : reactions) {
+                for (CyEdge edge : registered.getAdjacentEdgeList(reaction, CyEdge.Type.INCOMING)) {
+                    if (subNetwork.containsEdge(edge)
+                            || "reaction".equals(registered.getRow(edge).get("type", String.class))) {
+                        continue;
+                    }
+                    if (subNetwork.addNode(edge.getSource())) {
+                        addedHere.add(edge.getSource());
+                    }
+                    subNetwork.addEdge(edge);
+                }
+            }
+        }
+        eventHelper.flushPayloadEvents();
+        taskMonitor.setProgress(0.8);
+
+        for (CyNetworkView view : viewManager.getNetworkViews(registered)) {
+            NetworkViews.placeNodes(view, added);
+            view.updateView();
+        }
+        if (network != registered) {
+            // nodes the builder added to the compartment of the network are new here too
+            Set<CyNode> placedHere = new LinkedHashSet<>(addedHere);
+            for (CyNode node : added) {
+                if (network.containsNode(node)) {
+                    placedHere.add(node);
+                }
+            }
+            for (CyNetworkView view : viewManager.getNetworkViews(network)) {
+                NetworkViews.placeNodes(view, placedHere);
+                view.updateView();
+            }
+        }
+        for (CySubNetwork subNetwork : NetworkBuilder.getCompartmentNetworks(registered)) {
+            if (subNetwork.equals(network)) {
+                continue;
+            }
+            for (CyNetworkView view : viewManager.getNetworkViews(subNetwork)) {
+                NetworkViews.placeNodes(view, added);
+                view.updateView();
+            }
+        }
+        taskMonitor.setProgress(1.0);
+        taskMonitor.setStatusMessage(String.format("Expanded %d reactions, added %d nodes",
+                reactions.size(), added.size()));
+    }
+
+    /** Selected reaction nodes of the network that are in the registered network. */
+    private List<CyNode> selectedReactions(CyNetwork registered) {
+        List<CyNode> reactions = new ArrayList<>();
+        for (CyNode node : network.getNodeList()) {
+            if (Boolean.TRUE.equals(network.getRow(node).get(CyNetwork.SELECTED, Boolean.class))
+                    && "reaction".equals(network.getRow(node).get("type", String.class))
+                    && registered.containsNode(node)) {
+                reactions.add(node);
+            }
+        }
+        return reactions;
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * ExpandTaskFactory class
+ * TaskFactory for the ExpandTask.
+ */
+public class ExpandTaskFactory {
+
+	ModelRegistry modelRegistry;
+	CyNetworkFactory networkFactory;
+	CyNetworkViewManager viewManager;
+	CyEventHelper eventHelper;
+	CyGroupManager groupManager;
+
+	/** Constructor. */
+	public ExpandTaskFactory(ModelRegistry modelRegistry, CyNetworkFactory networkFactory,
+			CyNetworkViewManager viewManager, CyEventHelper eventHelper, CyGroupManager groupManager) {
+		this.modelRegistry = modelRegistry;
+		this.networkFactory = networkFactory;
+		this.viewManager = viewManager;
+		this.eventHelper = eventHelper;
+		this.groupManager = groupManager;
+	}
+
+	/** Expands the selected reactions of the given network. */
+	public TaskIterator createTaskIterator(CyNetwork network) {
+		return new TaskIterator(
+			new ExpandTask(network, modelRegistry, networkFactory, viewManager, eventHelper, groupManager)
+		);
+	}
+
+	/** Whether the network was imported from a COPASI file whose snapshot is kept. */
+	public boolean isReady(CyNetwork network) {
+		return network != null && modelRegistry.getSnapshot(network) != null
+				&& modelRegistry.getRegisteredNetwork(network) != null;
+	}
+}
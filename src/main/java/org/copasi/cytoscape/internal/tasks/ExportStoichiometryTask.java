@@ -0,0 +1,68 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.model.StoichiometryMatrix;
+
+/**
+ * Exports the stoichiometry matrix of a network in the Matrix Market
+ * format. The CNs of the rows and columns are written next to it into
+ * {@code <name>.species.txt} and {@code <name>.reactions.txt}.
+ */
+public class ExportStoichiometryTask extends AbstractTask {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final CyNetwork network;
+    private final StoichiometryMatrix matrix;
+    private final File file;
+
+    public ExportStoichiometryTask(CyNetwork network, StoichiometryMatrix matrix, File file) {
+        this.network = network;
+        this.matrix = matrix;
+        this.file = file;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Export stoichiometry matrix");
+        taskMonitor.setProgress(0.0);
+
+        String name = network.getRow(network).get(CyNetwork.NAME, String.class);
+        String base = file.getName().endsWith(".mtx")
+                ? file.getName().substring(0, file.getName().length() - 4) : file.getName();
+        File directory = file.getAbsoluteFile().getParentFile();
+        File matrixFile = new File(directory, base + ".mtx");
+
+        try (Writer out = open(matrixFile)) {
+            matrix.writeMatrixMarket(out, String.format("stoichiometry of %s%nrows: species in %s.species.txt%n"
+                    + "columns: reactions in %s.reactions.txt", name, base, base));
+        }
+        taskMonitor.setProgress(0.8);
+        try (Writer out = open(new File(directory, base + ".species.txt"))) {
+            matrix.writeSpecies(out);
+        }
+        try (Writer out = open(new File(directory, base + ".reactions.txt"))) {
+            matrix.writeReactions(out);
+        }
+        taskMonitor.setProgress(1.0);
+        taskMonitor.setStatusMessage(String.format("Wrote %d x %d matrix with %d entries to %s",
+                matrix.getRowCount(), matrix.getColumnCount(), matrix.getNonZeroCount(), matrixFile));
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8), BUFFER_SIZE);
+    }
+
+}
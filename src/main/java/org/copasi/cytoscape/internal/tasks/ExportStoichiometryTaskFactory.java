@@ -0,0 +1,31 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * ExportStoichiometryTaskFactory class
+ * TaskFactory for the ExportStoichiometryTask.
+ */
+public class ExportStoichiometryTaskFactory {
+
+	ModelRegistry modelRegistry;
+
+	/** Constructor. */
+	public ExportStoichiometryTaskFactory(ModelRegistry modelRegistry) {
+		this.modelRegistry = modelRegistry;
+	}
+
+	public TaskIterator createTaskIterator(CyNetwork network, File file) {
+		return new TaskIterator(
+			new ExportStoichiometryTask(network, modelRegistry.getStoichiometry(network), file)
+		);
+	}
+
+	/** Whether the network has a stoichiometry matrix. */
+	public boolean isReady(CyNetwork network) {
+		return network != null && modelRegistry.getStoichiometry(network) != null;
+	}
+}
@@ -0,0 +1,234 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.ImportProfile;
+import org.copasi.cytoscape.internal.model.ModelCache;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Imports several COPASI files at once.
+ * <p>
+ * The files are parsed and extracted on a bounded worker pool, every worker
+ * with its own data model. The pool is sized to the cores, workers wait for
+ * the native memory of their model in the budget of the
+ * {@link org.copasi.cytoscape.internal.model.DataModelManager}. Networks are published in
+ * the order of the files, each as soon as it and all files before it are
+ * done.
+ */
+public class ImportFilesTask extends AbstractTask {
+
+    private final File[] files;
+    private final CyNetworkFactory networkFactory;
+    private final CyNetworkManager networkManager;
+    private final CyNetworkViewFactory viewFactory;
+    private final CyNetworkViewManager viewManager;
+    private final CyLayoutAlgorithmManager cyLayoutAlgorithmManager;
+    private final CyEventHelper eventHelper;
+    private final CyGroupFactory groupFactory;
+    private final ModelCache modelCache;
+    private final ModelRegistry modelRegistry;
+
+    private volatile ExecutorService executor;
+
+    /** Lets the workers and the network builder stop once the task is cancelled. */
+    private final Cancellation cancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+
+    public ImportFilesTask(File[] files,
+                           CyNetworkFactory networkFactory,
+                           CyNetworkManager networkManager,
+                           CyNetworkViewFactory viewFactory,
+                           CyNetworkViewManager viewManager,
+                           CyLayoutAlgorithmManager cyLayoutAlgorithmManager,
+                           CyEventHelper eventHelper,
+                           CyGroupFactory groupFactory,
+                           ModelCache modelCache,
+                           ModelRegistry modelRegistry) {
+        this.files = files;
+        this.networkFactory = networkFactory;
+        this.networkManager = networkManager;
+        this.viewFactory = viewFactory;
+        this.viewManager = viewManager;
+        this.cyLayoutAlgorithmManager = cyLayoutAlgorithmManager;
+        this.eventHelper = eventHelper;
+        this.groupFactory = groupFactory;
+        this.modelCache = modelCache;
+        this.modelRegistry = modelRegistry;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Import COPASI files");
+        taskMonitor.setProgress(0.0);
+
+        int threads = Math.min(ImportSettings.getImportThreads(), files.length);
+
+        executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory("copasi-import-"));
+        try {
+            List<Future<LoadedModel>> futures = new ArrayList<>(files.length);
+            for (File file : files) {
+                futures.add(executor.submit(new LoadModel(file, modelCache, cancellation)));
+            }
+            executor.shutdown();
+
+            NetworkBuilder builder = new NetworkBuilder(networkFactory, eventHelper).setCompartments(
+                    ImportSettings.isCompartmentNetworks(), ImportSettings.isCompartmentGroups() ? groupFactory : null);
+            ImportProfile profile = ImportSettings.getImportProfile();
+            int failed = 0;
+            for (int i = 0; i < files.length; i++) {
+                if (cancelled) {
+                    return;
+                }
+                double progress = (double) i / files.length;
+                taskMonitor.setProgress(progress);
+                taskMonitor.setStatusMessage(String.format("Importing %s (%d of %d)",
+                        files[i].getName(), i + 1, files.length));
+                LoadedModel loaded;
+                try {
+                    loaded = futures.get(i).get();
+                } catch (CancellationException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        return;
+                    }
+                    failed++;
+                    taskMonitor.showMessage(TaskMonitor.Level.ERROR,
+                            "Could not import " + files[i].getName() + ": " + e.getCause().getMessage());
+                    continue;
+                }
+                CyNetwork network;
+                // the file was loaded on a worker, its network is built here
+                loaded.recording.resume();
+                try {
+                    try {
+                        network = builder.build(loaded.snapshot, profile, cancellation, taskMonitor,
+                                progress, progress + 0.5 / files.length);
+                    } catch (CancellationException e) {
+                        loaded.modelFile.release();
+                        return;
+                    }
+                    publish(network, files[i], taskMonitor);
+                    loaded.recording.finish(taskMonitor);
+                } finally {
+                    loaded.recording.suspend();
+                }
+                // the model file stays around for simulations of the network
+                modelRegistry.register(network, loaded.modelFile, loaded.snapshot);
+                taskMonitor.setProgress((i + 1.0) / files.length);
+            }
+            taskMonitor.setStatusMessage(String.format("Imported %d of %d files, model cache: %s",
+                    files.length - failed, files.length, modelCache.getStatistics()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers the network and its view, and the compartment networks
+     * without view.
+     * Large networks are registered without view, it can be created on demand.
+     */
+    private void publish(CyNetwork network, File file, TaskMonitor taskMonitor) {
+        NetworkBuilder.setNetworkNames(network, file.getName());
+        networkManager.addNetwork(network);
+        for (CySubNetwork subNetwork : NetworkBuilder.getCompartmentNetworks(network)) {
+            networkManager.addNetwork(subNetwork);
+        }
+        if (NetworkViews.isLarge(network)) {
+            taskMonitor.showMessage(TaskMonitor.Level.INFO, String.format(
+                    "No view created for %s with %d nodes and %d edges, use Apps > COPASI > Create view",
+                    file.getName(), network.getNodeCount(), network.getEdgeCount()));
+            return;
+        }
+        CyNetworkView view = NetworkViews.createView(viewFactory, cyLayoutAlgorithmManager, network, taskMonitor);
+        viewManager.addNetworkView(view);
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads one file into a snapshot. Only cache misses lease a data model
+     * and wait for its native memory.
+     */
+    private static class LoadModel implements Callable<LoadedModel> {
+
+        private final File file;
+        private final ModelCache modelCache;
+        private final Cancellation cancellation;
+
+        LoadModel(File file, ModelCache modelCache, Cancellation cancellation) {
+            this.file = file;
+            this.modelCache = modelCache;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public LoadedModel call() throws Exception {
+            ImportMetrics.Recording recording = ImportMetrics.start(file.getName());
+            try {
+                // compressed models are inflated into a temporary file first
+                ModelFile modelFile = ModelFile.of(file);
+                try {
+                    return new LoadedModel(modelCache.load(modelFile.getFile(), cancellation), modelFile, recording);
+                } catch (Exception e) {
+                    modelFile.release();
+                    throw e;
+                }
+            } finally {
+                recording.suspend();
+            }
+        }
+    }
+
+    /** Snapshot of a model, the file it was loaded from and the measurements of its import. */
+    private static class LoadedModel {
+
+        final ModelSnapshot snapshot;
+        final ModelFile modelFile;
+        final ImportMetrics.Recording recording;
+
+        LoadedModel(ModelSnapshot snapshot, ModelFile modelFile, ImportMetrics.Recording recording) {
+            this.snapshot = snapshot;
+            this.modelFile = modelFile;
+            this.recording = recording;
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.TaskIterator;
+import org.copasi.cytoscape.internal.model.ModelCache;
+
+/**
+ * ImportFilesTaskFactory class
+ * TaskFactory for the ImportFilesTask.
+ */
+public class ImportFilesTaskFactory {
+
+	CyNetworkFactory networkFactory;
+	CyNetworkManager networkManager;
+	CyNetworkViewFactory viewFactory;
+	CyNetworkViewManager viewManager;
+	CyLayoutAlgorithmManager cyLayoutAlgorithmManager;
+	CyEventHelper eventHelper;
+	CyGroupFactory groupFactory;
+	ModelCache modelCache;
+	ModelRegistry modelRegistry;
+
+	/** Constructor. */
+	public ImportFilesTaskFactory(CyNetworkFactory networkFactory, CyNetworkManager networkManager,
+			CyNetworkViewFactory viewFactory, CyNetworkViewManager viewManager,
+			CyLayoutAlgorithmManager cyLayoutAlgorithmManager, CyEventHelper eventHelper,
+			CyGroupFactory groupFactory, ModelCache modelCache, ModelRegistry modelRegistry) {
+		this.networkFactory = networkFactory;
+		this.networkManager = networkManager;
+		this.viewFactory = viewFactory;
+		this.viewManager = viewManager;
+		this.cyLayoutAlgorithmManager = cyLayoutAlgorithmManager;
+		this.eventHelper = eventHelper;
+		this.groupFactory = groupFactory;
+		this.modelCache = modelCache;
+		this.modelRegistry = modelRegistry;
+	}
+
+	public TaskIterator createTaskIterator(File[] files) {
+		return new TaskIterator(
+			new ImportFilesTask(files, networkFactory, networkManager, viewFactory, viewManager,
+					cyLayoutAlgorithmManager, eventHelper, groupFactory, modelCache, modelRegistry)
+		);
+	}
+}
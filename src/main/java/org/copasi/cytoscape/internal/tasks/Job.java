@@ -0,0 +1,131 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.copasi.cytoscape.internal.model.Cancellation;
+
+/**
+ * A COPASI task of a model file that runs in the {@link JobEngine}.
+ * <p>
+ * COPASI does not tell how far a task is, the progress of a job is the
+ * number of callbacks COPASI made while running it, which shows that it is
+ * alive. The result of a job is its message and, if the task has a report
+ * defined in the file, the report written to {@link #getReportFile()}.
+ */
+public class Job implements Cancellation {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private final int id;
+    private final String networkName;
+    private final String taskName;
+    private final File modelFile;
+
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled;
+    private volatile long startMillis;
+    private volatile long endMillis;
+    private volatile String message = "";
+    private volatile File reportFile;
+    private final AtomicLong callbacks = new AtomicLong();
+
+    volatile Future<?> future;
+
+    Job(int id, String networkName, String taskName, File modelFile) {
+        this.id = id;
+        this.networkName = networkName;
+        this.taskName = taskName;
+        this.modelFile = modelFile;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getNetworkName() {
+        return networkName;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    File getModelFile() {
+        return modelFile;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return state != State.QUEUED && state != State.RUNNING;
+    }
+
+    /** Callbacks COPASI made so far. */
+    public long getCallbacks() {
+        return callbacks.get();
+    }
+
+    /** Milliseconds the job has been running, or ran. */
+    public long getElapsedMillis() {
+        if (startMillis == 0) {
+            return 0;
+        }
+        return (endMillis != 0 ? endMillis : System.currentTimeMillis()) - startMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /** Report of the task, null if the task has none. */
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    /** Stops the job, a queued job never starts. */
+    public void cancel() {
+        cancelled = true;
+        Future<?> future = this.future;
+        if (future != null && state == State.QUEUED) {
+            future.cancel(false);
+            finish(State.CANCELLED, "Cancelled before it started");
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Updates of the engine
+    //////////////////////////////////////////////////////////////////////////
+
+    void start() {
+        startMillis = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    void callback() {
+        callbacks.incrementAndGet();
+    }
+
+    void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    void finish(State state, String message) {
+        if (startMillis != 0) {
+            endMillis = System.currentTimeMillis();
+        }
+        this.message = message != null ? message : "";
+        this.state = state;
+    }
+
+}
@@ -0,0 +1,439 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.COPASI.CCopasiTask;
+import org.COPASI.CDataModel;
+import org.COPASI.CReport;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.CancellableProcessReport;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+import org.copasi.cytoscape.internal.model.NativeLock;
+
+/**
+ * Runs the tasks configured in the COPASI file of a network in the
+ * background.
+ * <p>
+ * Jobs run on a pool of {@link ImportSettings#JOB_THREADS} threads behind a
+ * queue of {@link ImportSettings#JOB_QUEUE} jobs, a job submitted to a full
+ * queue is rejected. Every job loads the model into a data model of its
+ * own, leased within the native memory budget, unless the model is kept
+ * loaded for its network, then the jobs of the network run one after the
+ * other on the same data model. Kept data models hold their native memory,
+ * at most {@link ImportSettings#JOB_KEPT_MODELS} are kept and the least
+ * recently used idle one is removed to keep another. Kept data models are
+ * also removed when their network is destroyed. Reports of the tasks are
+ * written to the result directory.
+ * <p>
+ * Loading the model, initializing the task, which compiles the model and
+ * opens the report, and restoring it afterwards hold the
+ * {@link NativeLock}. The run in between only works on the data model of
+ * the job and does not hold it, so a fitting that runs for hours does not
+ * hold up imports, simulations or other jobs.
+ */
+public class JobEngine implements NetworkAboutToBeDestroyedListener {
+
+    /** Finished jobs kept in the job list. */
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final ModelRegistry modelRegistry;
+    private final DataModelManager dataModels;
+    private final File resultDirectory;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final List<Job> jobs = new CopyOnWriteArrayList<>();
+    private final Map<Long, KeptModel> keptModels = new ConcurrentHashMap<>();
+    private volatile boolean shutdown;
+
+    /** Stops waiting for native memory once the engine is shut down. */
+    private final Cancellation shutdownCancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return shutdown;
+        }
+    };
+
+    public JobEngine(ModelRegistry modelRegistry, DataModelManager dataModels, File resultDirectory) {
+        this.modelRegistry = modelRegistry;
+        this.dataModels = dataModels;
+        this.resultDirectory = resultDirectory;
+        int threads = ImportSettings.getJobThreads();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(ImportSettings.getJobQueue()),
+                new WorkerThreadFactory("copasi-job-"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Names of the tasks defined in the COPASI file of the network.
+     * They are recorded in the snapshot of the network, the file is only
+     * loaded if the network has none. A job running on the kept model of
+     * the network does not hold up the list.
+     */
+    public List<String> listTasks(CyNetwork network) throws IOException {
+        File file = modelFile(network);
+        ModelSnapshot snapshot = modelRegistry.getSnapshot(network);
+        if (snapshot != null) {
+            List<String> names = new ArrayList<>(snapshot.getTaskCount());
+            for (int i = 0; i < snapshot.getTaskCount(); i++) {
+                names.add(snapshot.getTaskName(i));
+            }
+            return names;
+        }
+        try (DataModelManager.Lease lease = dataModels.acquire(
+                ImportSettings.estimateNativeMB(file.length()), shutdownCancellation)) {
+            CDataModel dm = lease.getDataModel();
+            try (NativeLock.Hold hold = NativeLock.acquire(shutdownCancellation)) {
+                if (!dm.loadFromFile(file.getAbsolutePath())) {
+                    lease.discard();
+                    throw new IOException("COPASI could not load " + file.getName());
+                }
+                return taskNames(dm);
+            }
+        }
+    }
+
+    private static List<String> taskNames(CDataModel dm) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < dm.getNumTasks(); i++) {
+            names.add(dm.getTask(i).getObjectName());
+        }
+        return names;
+    }
+
+    /**
+     * Queues a task of the COPASI file of the network.
+     *
+     * @param keepModel keep the data model loaded for further jobs of the network
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public Job submit(CyNetwork network, String taskName, boolean keepModel) {
+        File file = modelFile(network);
+        KeptModel kept = null;
+        if (keepModel) {
+            Long key = ModelRegistry.key(network);
+            synchronized (keptModels) {
+                kept = keptModels.get(key);
+                if (kept == null && makeRoomForKeptModel()) {
+                    kept = new KeptModel(network.getSUID());
+                    keptModels.put(key, kept);
+                }
+                if (kept != null) {
+                    kept.pendingJobs.incrementAndGet();
+                }
+            }
+        }
+
+        String networkName = network.getRow(network).get(CyNetwork.NAME, String.class);
+        Job job = new Job(ids.incrementAndGet(), networkName, taskName, file);
+        final KeptModel pendingOn = kept;
+        FutureTask<Void> future = new FutureTask<Void>(new RunJob(job, kept), null) {
+            @Override
+            protected void done() {
+                // also called if the job is cancelled before it started
+                if (pendingOn != null) {
+                    pendingOn.pendingJobs.decrementAndGet();
+                }
+            }
+        };
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
+            throw e;
+        }
+        job.future = future;
+        jobs.add(job);
+        trimJobs();
+        return job;
+    }
+
+    /**
+     * Removes the least recently used kept data model without queued or
+     * running jobs if the limit is reached. False if all kept data models
+     * are busy, the job then runs on a data model of its own.
+     */
+    private boolean makeRoomForKeptModel() {
+        int limit = ImportSettings.getJobKeptModels();
+        while (keptModels.size() >= limit) {
+            Map.Entry<Long, KeptModel> oldest = null;
+            for (Map.Entry<Long, KeptModel> entry : keptModels.entrySet()) {
+                KeptModel kept = entry.getValue();
+                if (kept.pendingJobs.get() == 0
+                        && (oldest == null || kept.lastUsed < oldest.getValue().lastUsed)) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            }
+            keptModels.remove(oldest.getKey());
+            oldest.getValue().release();
+        }
+        return true;
+    }
+
+    /** Jobs in the order they were submitted. */
+    public List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /** Cancels all jobs and removes the kept data models. */
+    public void shutdown() {
+        shutdown = true;
+        for (Job job : jobs) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+        for (KeptModel kept : keptModels.values()) {
+            kept.release();
+        }
+        keptModels.clear();
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        CyNetwork network = e.getNetwork();
+        Long key = ModelRegistry.key(network);
+        KeptModel kept = keptModels.get(key);
+        if (kept != null && kept.networkSuid.equals(network.getSUID())) {
+            keptModels.remove(key);
+            kept.release();
+        }
+    }
+
+    private File modelFile(CyNetwork network) {
+        File file = network != null ? modelRegistry.getModelFile(network) : null;
+        if (file == null) {
+            throw new IllegalStateException("The network was not imported from a COPASI file");
+        }
+        return file;
+    }
+
+    private void trimJobs() {
+        int finished = 0;
+        for (Job job : jobs) {
+            if (job.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<Job> it = jobs.iterator();
+        while (finished > MAX_FINISHED_JOBS && it.hasNext()) {
+            Job job = it.next();
+            if (job.isFinished()) {
+                jobs.remove(job);
+                finished--;
+            }
+        }
+    }
+
+    /** Runs one job, on a kept data model or on one of its own. */
+    private class RunJob implements Runnable {
+
+        private final Job job;
+        private final KeptModel kept;
+
+        RunJob(Job job, KeptModel kept) {
+            this.job = job;
+            this.kept = kept;
+        }
+
+        @Override
+        public void run() {
+            if (job.isCancelled()) {
+                if (!job.isFinished()) {
+                    job.finish(Job.State.CANCELLED, "Cancelled before it started");
+                }
+                return;
+            }
+            job.start();
+            JobReport report = new JobReport(job);
+            try {
+                if (kept == null) {
+                    try (DataModelManager.Lease lease = lease()) {
+                        try {
+                            process(load(lease, report), report);
+                        } catch (Exception e) {
+                            // COPASI may have left the data model in any state
+                            lease.discard();
+                            throw e;
+                        }
+                    }
+                } else {
+                    kept.lock.lock();
+                    try {
+                        if (kept.released) {
+                            job.finish(Job.State.CANCELLED, "The network was destroyed");
+                            return;
+                        }
+                        if (kept.lease == null) {
+                            DataModelManager.Lease lease = lease();
+                            try {
+                                load(lease, report);
+                            } catch (Exception e) {
+                                lease.discard();
+                                lease.close();
+                                throw e;
+                            }
+                            kept.lease = lease;
+                        }
+                        kept.lastUsed = System.nanoTime();
+                        try {
+                            process(kept.lease.getDataModel(), report);
+                        } catch (Exception e) {
+                            // the next job of the network loads the model again
+                            kept.lease.discard();
+                            kept.lease.close();
+                            kept.lease = null;
+                            throw e;
+                        }
+                    } finally {
+                        kept.lock.unlock();
+                        // the network may have been destroyed while the job ran
+                        if (kept.released) {
+                            kept.release();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                job.finish(job.isCancelled() ? Job.State.CANCELLED : Job.State.FAILED, e.getMessage());
+            } finally {
+                report.delete();
+            }
+        }
+
+        /** Leases a data model within the native memory budget. */
+        private DataModelManager.Lease lease() {
+            return dataModels.acquire(ImportSettings.estimateNativeMB(job.getModelFile().length()), job);
+        }
+
+        private CDataModel load(DataModelManager.Lease lease, JobReport report) throws IOException {
+            File file = job.getModelFile();
+            CDataModel dm = lease.getDataModel();
+            try (NativeLock.Hold hold = NativeLock.acquire(job)) {
+                if (!dm.loadFromFile(file.getAbsolutePath(), report)) {
+                    throw new IOException(job.isCancelled() ? "Cancelled" : "COPASI could not load " + file.getName());
+                }
+            }
+            return dm;
+        }
+
+        /**
+         * Runs the task. Initializing and restoring it hold the native
+         * lock, the run itself does not.
+         */
+        private void process(CDataModel dm, JobReport report) throws Exception {
+            CCopasiTask task;
+            try (NativeLock.Hold hold = NativeLock.acquire(job)) {
+                task = dm.getTask(job.getTaskName());
+                if (task == null) {
+                    throw new IllegalArgumentException("The model has no task " + job.getTaskName());
+                }
+                CReport taskReport = task.getReport();
+                if (taskReport.getReportDefinition() != null) {
+                    resultDirectory.mkdirs();
+                    File reportFile = new File(resultDirectory, String.format("job-%d-%s.txt",
+                            job.getId(), job.getTaskName().replaceAll("[^A-Za-z0-9]+", "-")));
+                    taskReport.setTarget(reportFile.getAbsolutePath());
+                    taskReport.setConfirmOverwrite(false);
+                    taskReport.setAppend(false);
+                    job.setReportFile(reportFile);
+                }
+                task.setCallBack(report);
+                if (!task.initialize((int) CCopasiTask.OUTPUT_UI)) {
+                    task.clearCallBack();
+                    job.finish(Job.State.FAILED, task.getProcessError());
+                    return;
+                }
+            }
+
+            try {
+                boolean ok = task.processRaw(true);
+                try (NativeLock.Hold hold = NativeLock.acquire(Cancellation.NONE)) {
+                    // closes the report and brings back the initial state
+                    task.restore();
+                }
+                if (job.isCancelled()) {
+                    job.finish(Job.State.CANCELLED, "Cancelled");
+                } else if (!ok) {
+                    job.finish(Job.State.FAILED, task.getProcessError());
+                } else {
+                    String warning = task.getProcessWarning();
+                    job.finish(Job.State.DONE, warning != null && !warning.isEmpty() ? warning : "Finished");
+                }
+            } finally {
+                // the report is deleted after the job, a kept task must not call it
+                task.clearCallBack();
+            }
+        }
+    }
+
+    /** Process report that counts the callbacks of a job. */
+    private static class JobReport extends CancellableProcessReport {
+
+        private final Job job;
+
+        JobReport(Job job) {
+            super(job);
+            this.job = job;
+        }
+
+        @Override
+        public boolean proceed() {
+            job.callback();
+            return super.proceed();
+        }
+    }
+
+    /** Data model kept loaded for the jobs of one network. */
+    private static class KeptModel {
+
+        final Long networkSuid;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile boolean released;
+        volatile long lastUsed = System.nanoTime();
+        /** Queued and running jobs, a kept data model with jobs is not removed to make room. */
+        final AtomicInteger pendingJobs = new AtomicInteger();
+        DataModelManager.Lease lease;
+
+        KeptModel(Long networkSuid) {
+            this.networkSuid = networkSuid;
+        }
+
+        /** Removes the data model now, or once the running job is done. */
+        void release() {
+            released = true;
+            if (lock.tryLock()) {
+                try {
+                    if (lease != null) {
+                        lease.close();
+                        lease = null;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.ModelStreams;
+
+/**
+ * A COPASI model document on disk.
+ * <p>
+ * COPASI parses models from a path, so the reader never has to hold the
+ * document on the Java heap. Inputs that are backed by an uncompressed file
+ * are handed to COPASI as they are, all other streams are spilled to a
+ * temporary file through a channel transfer. Compressed models are inflated
+ * while they are spilled.
+ */
+public class ModelFile {
+
+    private static final String TEMP_PREFIX = "copasi-";
+    private static final String TEMP_SUFFIX = ".cps";
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final File file;
+    private final boolean temporary;
+    private final File source;
+
+    private ModelFile(File file, boolean temporary, File source) {
+        this.file = file;
+        this.temporary = temporary;
+        this.source = source;
+    }
+
+    /**
+     * Resolves the document behind the given stream.
+     * <p>
+     * If the input name denotes an existing file (absolute path or
+     * {@code file:} URI) the stream is closed unread and the file is used,
+     * see {@link #of(File)}. Otherwise the stream is spilled to a temporary
+     * file.
+     *
+     * @param stream    stream of the document
+     * @param inputName name the stream was opened with
+     * @return the model file, never null
+     */
+    public static ModelFile resolve(InputStream stream, String inputName) throws IOException {
+        File source = toFile(inputName);
+        if (source != null) {
+            stream.close();
+            return of(source);
+        }
+        return spill(stream);
+    }
+
+    /**
+     * Uses an existing file as model document, a compressed file is inflated
+     * into a temporary file.
+     */
+    public static ModelFile of(File file) throws IOException {
+        if (ModelStreams.detect(file) == ModelStreams.Compression.NONE) {
+            return new ModelFile(file, false, file);
+        }
+        return new ModelFile(spill(new FileInputStream(file)).file, true, file);
+    }
+
+    /** Copies the stream, inflated if compressed, into a temporary file and closes it. */
+    public static ModelFile spill(InputStream stream) throws IOException {
+        ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.SPILL);
+        File target = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX);
+        target.deleteOnExit();
+        long position = 0;
+        try (InputStream source = stream;
+             ReadableByteChannel in = Channels.newChannel(ModelStreams.decompress(source));
+             FileOutputStream out = new FileOutputStream(target)) {
+            FileChannel channel = out.getChannel();
+            long transferred;
+            while ((transferred = channel.transferFrom(in, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
+        } catch (IOException e) {
+            target.delete();
+            throw e;
+        }
+        span.end(position);
+        return new ModelFile(target, true, null);
+    }
+
+    /**
+     * Returns the file for the given input name if it denotes an existing
+     * file, null otherwise.
+     */
+    private static File toFile(String inputName) {
+        if (inputName == null) {
+            return null;
+        }
+        File file = null;
+        if (inputName.startsWith("file:")) {
+            try {
+                file = new File(new URI(inputName));
+            } catch (Exception e) {
+                return null;
+            }
+        } else {
+            file = new File(inputName);
+            if (!file.isAbsolute()) {
+                return null;
+            }
+        }
+        return file.isFile() ? file : null;
+    }
+
+    /** File to hand to COPASI. */
+    public File getFile() {
+        return file;
+    }
+
+    /** File the document was read from, null if it came from a stream that is not a file. */
+    public File getSource() {
+        return source;
+    }
+
+    /** True if the file was spilled from a stream. */
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    /** Size of the document in bytes. */
+    public long length() {
+        return file.length();
+    }
+
+    /** Deletes spilled files, leaves files that were handed in alone. */
+    public void release() {
+        if (temporary) {
+            file.delete();
+        }
+    }
+
+}
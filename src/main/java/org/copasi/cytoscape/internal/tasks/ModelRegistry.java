@@ -0,0 +1,214 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+import org.copasi.cytoscape.internal.model.SharedTrajectory;
+import org.copasi.cytoscape.internal.model.SteadyStateResult;
+import org.copasi.cytoscape.internal.model.StoichiometryMatrix;
+
+/**
+ * Keeps track of the model file behind every imported network.
+ * <p>
+ * Work on an imported network that needs COPASI, such as a simulation,
+ * loads the model again from this file. Networks are registered by their
+ * network collection, so subnetworks like the compartment overview find
+ * the model too. The snapshot the network was built from, the sparse
+ * stoichiometry matrix of the model, the latest simulated trajectory and
+ * the most recently used steady states, keyed by their parameter set, are
+ * attached to the same entry. Registering a network again, e.g. after a
+ * reload, drops everything derived from the previous model. Temporary
+ * model files and trajectories are released when the network they were
+ * registered for is destroyed. The registry holds one reference of a
+ * trajectory, simulations and players still reading it hold their own, so
+ * the trajectory outlives its entry until they are done.
+ */
+public class ModelRegistry implements NetworkAboutToBeDestroyedListener {
+
+    /** Steady states kept per network collection. */
+    private static final int MAX_STEADY_STATES = 16;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the model file of a network.
+     *
+     * @param modelFile file the network was built from, owned by the
+     *                  registry from now on
+     * @param snapshot  snapshot the network was built from
+     */
+    public void register(CyNetwork network, ModelFile modelFile, ModelSnapshot snapshot) {
+        Entry previous = entries.put(key(network), new Entry(network.getSUID(), modelFile, snapshot,
+                StoichiometryMatrix.of(snapshot)));
+        if (previous != null) {
+            previous.modelFile.release();
+            previous.releaseTrajectory();
+        }
+    }
+
+    /**
+     * Network of the collection the model was registered for, e.g. the
+     * network with all nodes for its compartment overview. Null if the
+     * network was not imported from COPASI.
+     */
+    public CyNetwork getRegisteredNetwork(CyNetwork network) {
+        Entry entry = entries.get(key(network));
+        if (entry == null) {
+            return null;
+        }
+        if (entry.networkSuid.equals(network.getSUID()) || !(network instanceof CySubNetwork)) {
+            return network;
+        }
+        for (CySubNetwork subNetwork : ((CySubNetwork) network).getRootNetwork().getSubNetworkList()) {
+            if (entry.networkSuid.equals(subNetwork.getSUID())) {
+                return subNetwork;
+            }
+        }
+        return null;
+    }
+
+    /** Model file of the network, null if it was not imported from COPASI. */
+    public File getModelFile(CyNetwork network) {
+        Entry entry = entries.get(key(network));
+        return entry != null ? entry.modelFile.getFile() : null;
+    }
+
+    /**
+     * File the user imported the network from, null if it was not imported
+     * from COPASI or read from a stream that is not a file.
+     */
+    public File getSourceFile(CyNetwork network) {
+        Entry entry = entries.get(key(network));
+        return entry != null ? entry.modelFile.getSource() : null;
+    }
+
+    /** Snapshot the network was built or last reloaded from, null if it was not imported from COPASI. */
+    public ModelSnapshot getSnapshot(CyNetwork network) {
+        Entry entry = entries.get(key(network));
+        return entry != null ? entry.snapshot : null;
+    }
+
+    /** Stoichiometry matrix of the network, null if it was not imported from COPASI. */
+    public StoichiometryMatrix getStoichiometry(CyNetwork network) {
+        Entry entry = entries.get(key(network));
+        return entry != null ? entry.stoichiometry : null;
+    }
+
+    /**
+     * Latest trajectory simulated for the network, null if there is none.
+     * The caller holds a reference of the trajectory and releases it when done.
+     */
+    public SharedTrajectory getTrajectory(CyNetwork network) {
+        Entry entry = entries.get(key(network));
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.trajectory != null && entry.trajectory.retain() ? entry.trajectory : null;
+        }
+    }
+
+    /**
+     * Attaches a trajectory to the network. The registry takes a reference
+     * of its own and releases its reference of the previous trajectory.
+     */
+    public void setTrajectory(CyNetwork network, SharedTrajectory trajectory) {
+        Entry entry = entries.get(key(network));
+        if (entry == null || !trajectory.retain()) {
+            return;
+        }
+        SharedTrajectory previous;
+        synchronized (entry) {
+            previous = entry.trajectory;
+            entry.trajectory = trajectory;
+        }
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /** Cached steady state of the network for a parameter set, null if there is none. */
+    public SteadyStateResult getSteadyState(CyNetwork network, String parameterSet) {
+        Entry entry = entries.get(key(network));
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry.steadyStates) {
+            return entry.steadyStates.get(parameterSet);
+        }
+    }
+
+    /** Caches a steady state, the least recently used ones are dropped. */
+    public void putSteadyState(CyNetwork network, String parameterSet, SteadyStateResult result) {
+        Entry entry = entries.get(key(network));
+        if (entry != null) {
+            synchronized (entry.steadyStates) {
+                entry.steadyStates.put(parameterSet, result);
+            }
+        }
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        CyNetwork network = e.getNetwork();
+        Long key = key(network);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.networkSuid.equals(network.getSUID())) {
+            entries.remove(key);
+            entry.modelFile.release();
+            entry.releaseTrajectory();
+        }
+    }
+
+    /** Networks of one collection share their entry. */
+    static Long key(CyNetwork network) {
+        if (network instanceof CySubNetwork) {
+            return ((CySubNetwork) network).getRootNetwork().getSUID();
+        }
+        return network.getSUID();
+    }
+
+    private static class Entry {
+
+        final Long networkSuid;
+        final ModelFile modelFile;
+        final ModelSnapshot snapshot;
+        final StoichiometryMatrix stoichiometry;
+        SharedTrajectory trajectory;
+        final Map<String, SteadyStateResult> steadyStates =
+                new LinkedHashMap<String, SteadyStateResult>(MAX_STEADY_STATES, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, SteadyStateResult> eldest) {
+                        return size() > MAX_STEADY_STATES;
+                    }
+                };
+
+        Entry(Long networkSuid, ModelFile modelFile, ModelSnapshot snapshot, StoichiometryMatrix stoichiometry) {
+            this.networkSuid = networkSuid;
+            this.modelFile = modelFile;
+            this.snapshot = snapshot;
+            this.stoichiometry = stoichiometry;
+        }
+
+        /** Releases the reference of the registry to the trajectory. */
+        void releaseTrajectory() {
+            SharedTrajectory released;
+            synchronized (this) {
+                released = trajectory;
+                trajectory = null;
+            }
+            if (released != null) {
+                released.release();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.work.TaskManager;
+
+import org.copasi.cytoscape.internal.ImportSettings;
+
+/**
+ * Reloads networks when their COPASI file changes.
+ * <p>
+ * The directories of the watched files are registered with one watch
+ * service, served by a single daemon thread. Saving a model often writes
+ * the file several times or replaces it, so a reload is only started once
+ * the file has been quiet for {@link ImportSettings#RELOAD_DELAY_MILLIS}.
+ * Watches end with their network.
+ */
+public class ModelWatcher implements NetworkAboutToBeDestroyedListener {
+
+    private final ModelRegistry modelRegistry;
+    private final ReloadTaskFactory reloadTaskFactory;
+    @SuppressWarnings("rawtypes")
+    private final TaskManager taskManager;
+
+    private final Map<Long, Watch> watches = new HashMap<>();
+    private final Map<Path, WatchKey> directories = new HashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new WorkerThreadFactory("copasi-reload-"));
+    private WatchService watchService;
+    private Thread thread;
+
+    public ModelWatcher(ModelRegistry modelRegistry, ReloadTaskFactory reloadTaskFactory,
+                        @SuppressWarnings("rawtypes") TaskManager taskManager) {
+        this.modelRegistry = modelRegistry;
+        this.reloadTaskFactory = reloadTaskFactory;
+        this.taskManager = taskManager;
+    }
+
+    /**
+     * Starts watching the COPASI file of the network.
+     *
+     * @throws IllegalArgumentException if the network was not imported from a file
+     */
+    public synchronized void watch(CyNetwork network) throws IOException {
+        CyNetwork registered = modelRegistry.getRegisteredNetwork(network);
+        File source = modelRegistry.getSourceFile(network);
+        if (registered == null || source == null) {
+            throw new IllegalArgumentException("The network was not imported from a COPASI file");
+        }
+        if (watches.containsKey(registered.getSUID())) {
+            return;
+        }
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve();
+                }
+            }, "copasi-watch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Path file = source.toPath().toAbsolutePath().normalize();
+        Path directory = file.getParent();
+        if (!directories.containsKey(directory)) {
+            directories.put(directory, directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        }
+        watches.put(registered.getSUID(), new Watch(registered, file));
+    }
+
+    /** Stops watching the COPASI file of the network. */
+    public synchronized void unwatch(CyNetwork network) {
+        CyNetwork registered = modelRegistry.getRegisteredNetwork(network);
+        remove(registered != null ? registered.getSUID() : network.getSUID());
+    }
+
+    public synchronized boolean isWatched(CyNetwork network) {
+        CyNetwork registered = modelRegistry.getRegisteredNetwork(network);
+        return registered != null && watches.containsKey(registered.getSUID());
+    }
+
+    private void remove(Long suid) {
+        Watch watch = watches.remove(suid);
+        if (watch == null) {
+            return;
+        }
+        if (watch.pending != null) {
+            watch.pending.cancel(false);
+        }
+        Path directory = watch.file.getParent();
+        for (Watch other : watches.values()) {
+            if (other.file.getParent().equals(directory)) {
+                return;
+            }
+        }
+        WatchKey key = directories.remove(directory);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    /** Stops all watches and the watch thread. */
+    public synchronized void shutdown() {
+        watches.clear();
+        directories.clear();
+        scheduler.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // the thread ends either way
+            }
+            watchService = null;
+        }
+    }
+
+    @Override
+    public synchronized void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        remove(e.getNetwork().getSUID());
+    }
+
+    /** Waits for changes of the watched directories until the watch service is closed. */
+    private void serve() {
+        WatchService service;
+        synchronized (this) {
+            service = watchService;
+        }
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    changedAll(directory);
+                } else {
+                    changed(directory.resolve((Path) event.context()));
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private synchronized void changed(Path file) {
+        for (Watch watch : watches.values()) {
+            if (watch.file.equals(file)) {
+                schedule(watch);
+            }
+        }
+    }
+
+    private synchronized void changedAll(Path directory) {
+        for (Watch watch : watches.values()) {
+            if (watch.file.getParent().equals(directory)) {
+                schedule(watch);
+            }
+        }
+    }
+
+    /** (Re)starts the quiet period of the file, the reload starts once it passes. */
+    private void schedule(final Watch watch) {
+        if (watch.pending != null) {
+            watch.pending.cancel(false);
+        }
+        watch.pending = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                reload(watch);
+            }
+        }, ImportSettings.getReloadDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void reload(final Watch watch) {
+        synchronized (this) {
+            watch.pending = null;
+            if (!watches.containsKey(watch.network.getSUID()) || !watch.file.toFile().isFile()) {
+                return;
+            }
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (reloadTaskFactory.isReady(watch.network)) {
+                    taskManager.execute(reloadTaskFactory.createTaskIterator(watch.network));
+                }
+            }
+        });
+    }
+
+    /** Watched file of a network. */
+    private static class Watch {
+
+        final CyNetwork network;
+        final Path file;
+        ScheduledFuture<?> pending;
+
+        Watch(CyNetwork network, Path file) {
+            this.network = network;
+            this.file = file;
+        }
+    }
+
+}
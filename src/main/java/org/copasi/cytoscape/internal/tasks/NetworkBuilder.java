@@ -0,0 +1,1305 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroup;
+import org.cytoscape.group.CyGroupFactory;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.AttributeUtil;
+import org.copasi.cytoscape.internal.BulkAttributeWriter;
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.ImportProfile;
+import org.copasi.cytoscape.internal.model.ModelDiff;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Builds a CyNetwork from a {@link ModelSnapshot}.
+ * <p>
+ * The builder works on the snapshot only and never touches the native
+ * COPASI library. Nodes are kept in a dense array indexed like the snapshot
+ * objects, so edges are created without any lookup by name. Attributes are
+ * written column by column once all nodes and edges exist.
+ * <p>
+ * The {@link ImportProfile} decides which objects become nodes and whether
+ * the dependencies between them become edges. The profile is stored with
+ * the network, details it left out are added for selected reactions by
+ * {@link #expand}.
+ * <p>
+ * Models with several compartments may also get a subnetwork per
+ * compartment, sharing the nodes of the network, and a group per
+ * compartment in the network, see {@link #setCompartments}. The node and
+ * edge columns live in the shared tables of the network collection, so the
+ * compartment subnetworks show the same attributes. Objects added later by
+ * {@link #update} and {@link #expand} join their compartment subnetworks
+ * and groups.
+ * <p>
+ * Nodes, edges and attributes are created in batches of {@link #BATCH_SIZE}.
+ * Between two batches the builder reports its progress and checks whether
+ * it was cancelled, a cancelled build removes everything created so far.
+ */
+public class NetworkBuilder {
+
+    /** Number of nodes, edges or attribute rows between two checkpoints. */
+    public static final int BATCH_SIZE = 1000;
+
+    /** Network column with the name of the {@link ImportProfile} of the network. */
+    public static final String PROFILE = "import profile";
+    /** Node column marking reactions whose dependencies were added by {@link #expand}. */
+    public static final String EXPANDED = "expanded";
+    /** Network column with the name of the compartment of a compartment subnetwork. */
+    public static final String COMPARTMENT = "compartment";
+
+    /** Edge type of reaction participants, dependency edges are typed by their dependency. */
+    private static final String PARTICIPANT = "reaction";
+
+    private static final byte[] KINDS = {
+            ModelSnapshot.COMPARTMENT, ModelSnapshot.PARAMETER, ModelSnapshot.SPECIES, ModelSnapshot.REACTION};
+
+    /** Node columns besides the name, kept in the shared node table. */
+    private static final Map<String, Class<?>> NODE_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        NODE_COLUMNS.put("type", String.class);
+        NODE_COLUMNS.put("id", String.class);
+        NODE_COLUMNS.put("cn", String.class);
+        NODE_COLUMNS.put("display name", String.class);
+        NODE_COLUMNS.put("dimensions", Double.class);
+        NODE_COLUMNS.put("size", Double.class);
+        NODE_COLUMNS.put("value", Double.class);
+        NODE_COLUMNS.put("compartment", String.class);
+        NODE_COLUMNS.put("initial concentration", Double.class);
+        NODE_COLUMNS.put("dependent", Boolean.class);
+        NODE_COLUMNS.put("moiety", String.class);
+        NODE_COLUMNS.put("reversible", Boolean.class);
+    }
+
+    private final CyNetworkFactory networkFactory;
+    private final CyEventHelper eventHelper;
+    private boolean compartmentNetworks;
+    private CyGroupFactory groupFactory;
+    private CyGroupManager groupManager;
+    private long firstNodeNanos;
+
+    public NetworkBuilder(CyNetworkFactory networkFactory, CyEventHelper eventHelper) {
+        this.networkFactory = networkFactory;
+        this.eventHelper = eventHelper;
+    }
+
+    /**
+     * Lets {@link #build} also create the compartments of models with
+     * several of them.
+     *
+     * @param networks     whether every compartment gets a subnetwork with
+     *                     its species and the reactions they take part in
+     * @param groupFactory creates a collapsible group per compartment in
+     *                     the network, null for no groups
+     * @return this builder
+     */
+    public NetworkBuilder setCompartments(boolean networks, CyGroupFactory groupFactory) {
+        this.compartmentNetworks = networks;
+        this.groupFactory = groupFactory;
+        return this;
+    }
+
+    /**
+     * Lets {@link #update} and {@link #expand} add new objects to the
+     * compartment groups of the network.
+     *
+     * @param groupManager finds the groups of the network, null to leave
+     *                     the groups as they are
+     * @return this builder
+     */
+    public NetworkBuilder setGroupManager(CyGroupManager groupManager) {
+        this.groupManager = groupManager;
+        return this;
+    }
+
+    /**
+     * Creates the master network containing all nodes and edges of the
+     * snapshot, with the standard profile.
+     */
+    public CyNetwork build(ModelSnapshot snapshot) {
+        return build(snapshot, ImportProfile.STANDARD, Cancellation.NONE, null, 0.0, 1.0);
+    }
+
+    /**
+     * Creates the master network containing the nodes and edges of the
+     * snapshot the profile asks for.
+     *
+     * @param profile      objects and edges to include
+     * @param cancellation checked after every batch
+     * @param taskMonitor  receives the progress, may be null
+     * @param from         progress when the build starts
+     * @param to           progress when the build is done
+     * @throws CancellationException if the build was cancelled, nothing of
+     *                               the network is left in that case
+     */
+    public CyNetwork build(ModelSnapshot snapshot, ImportProfile profile, Cancellation cancellation,
+                           TaskMonitor taskMonitor, double from, double to) {
+        ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.BUILD);
+        long objects = 0;
+        for (byte kind : KINDS) {
+            if (profile.includes(kind)) {
+                objects += snapshot.getCount(kind);
+            }
+        }
+        long dependencies = profile.hasDependencies() ? snapshot.getDependencyCount() : 0;
+        long units = 2L * (objects + snapshot.getParticipantCount() + dependencies);
+        boolean compartments = (compartmentNetworks || groupFactory != null)
+                && snapshot.getCount(ModelSnapshot.COMPARTMENT) > 1;
+        if (compartments) {
+            units += objects;
+        }
+        Checkpoints checkpoints = new Checkpoints(cancellation, taskMonitor, from, to, units);
+
+        firstNodeNanos = 0;
+        CyNetwork network = networkFactory.createNetwork();
+        try {
+            CyNode[] nodes = createNodes(network, snapshot, profile, checkpoints);
+            firstNodeNanos = checkpoints.firstNodeNanos;
+            CyEdge[] edges = createEdges(network, snapshot, nodes, checkpoints);
+            CyEdge[] dependencyEdges = profile.hasDependencies()
+                    ? createDependencyEdges(network, snapshot, nodes, checkpoints)
+                    : new CyEdge[0];
+
+            writeNetworkAttributes(network, snapshot, profile);
+            createSharedColumns(network, snapshot.hasLayout());
+            writeNodeAttributes(network, snapshot, profile, nodes, checkpoints);
+            writeEdgeAttributes(network, snapshot, edges, dependencyEdges, checkpoints);
+            if (compartments) {
+                buildCompartments(network, snapshot, nodes, checkpoints);
+            }
+        } catch (CancellationException e) {
+            discard(network);
+            throw e;
+        }
+        span.end(network.getNodeCount() + network.getEdgeCount());
+        return network;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the first batch of nodes of the last
+     * build existed, 0 if it created no node.
+     */
+    public long getFirstNodeNanos() {
+        return firstNodeNanos;
+    }
+
+    /** Removes all nodes and edges and the compartment networks of a network that is not registered. */
+    public static void discard(CyNetwork network) {
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        for (CySubNetwork subNetwork : getCompartmentNetworks(network)) {
+            rootNetwork.removeSubNetwork(subNetwork);
+        }
+        List<CyNode> nodes = network.getNodeList();
+        network.removeEdges(network.getEdgeList());
+        network.removeNodes(nodes);
+        rootNetwork.removeNodes(nodes);
+    }
+
+    /**
+     * Applies the differences between the snapshot a network was built from
+     * and a new one to the network.
+     * <p>
+     * Nodes of matched objects are found through their previous COPASI key
+     * in the column {@code id} and keep their SUID, so views keep their
+     * positions and styles. COPASI hands out new keys on every load, unchanged
+     * objects whose key changed only get their {@code id} written. Only removed
+     * objects lose their node, only reactions with other participants and
+     * objects with other dependencies get their edges created again, and
+     * only changed objects get their attributes written. Added objects get a
+     * node if the profile of the network includes their kind, objects it
+     * left out are only updated if they were added by {@link #expand}. Added
+     * objects, species moved to another compartment with their reactions and
+     * reactions with other participants join the compartment subnetworks and
+     * groups of the network they belong to, new edges join those holding
+     * both their ends. Renamed compartments keep their subnetworks and
+     * groups, added compartments get none. The views and the attribute index
+     * follow the update through the table events.
+     *
+     * @param cancellation checked before the network is touched
+     * @return nodes of the current objects that were added or touched, the
+     *         other entries are null
+     * @throws CancellationException if the update was cancelled, the
+     *                               network is unchanged in that case
+     */
+    public CyNode[] update(CyNetwork network, ModelDiff diff, Cancellation cancellation) {
+        ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.BUILD);
+        ModelSnapshot previous = diff.getPrevious();
+        ModelSnapshot snapshot = diff.getCurrent();
+        ImportProfile profile = getProfile(network);
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        int n = snapshot.getObjectCount();
+
+        // nodes that are looked up before anything changes
+        CyNode[] nodes = new CyNode[n];
+        boolean[] missing = new boolean[n];
+        boolean[] withDependencies = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int j = diff.getPreviousIndex(i);
+            if (j < 0) {
+                withDependencies[i] = diff.isDependenciesChanged(i) && profile.hasDependencies()
+                        && profile.includes(snapshot.getKind(i));
+                continue;
+            }
+            if (!(diff.isAttributesChanged(i) || diff.isParticipantsChanged(i) || diff.isDependenciesChanged(i))) {
+                // only the id of an unchanged object is written, a node deleted from the network stays deleted
+                if (diff.isKeyChanged(i)) {
+                    nodes[i] = AttributeUtil.getNodeByAttribute(network, "id", previous.getKey(j));
+                }
+                continue;
+            }
+            nodes[i] = findNode(network, snapshot, previous.getKey(j), i, profile, missing);
+            if (diff.isParticipantsChanged(i)) {
+                for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                    int species = snapshot.getParticipantSpecies(k);
+                    if (species >= 0 && nodes[species] == null && diff.getPreviousIndex(species) >= 0) {
+                        nodes[species] = findNode(network, snapshot, previous.getKey(diff.getPreviousIndex(species)),
+                                species, profile, missing);
+                    }
+                }
+            }
+            withDependencies[i] = diff.isDependenciesChanged(i) && (nodes[i] != null || missing[i])
+                    && (profile.hasDependencies() || nodes[i] != null && isExpanded(network, nodes[i]));
+        }
+        // objects depended on get a node, also if the profile leaves them out
+        for (int i = 0; i < n; i++) {
+            if (!withDependencies[i]) {
+                continue;
+            }
+            for (int k = snapshot.getDependencyStart(i); k < snapshot.getDependencyEnd(i); k++) {
+                int source = snapshot.getDependencySource(k);
+                if (nodes[source] == null && diff.getPreviousIndex(source) >= 0) {
+                    nodes[source] = findNode(network, snapshot, previous.getKey(diff.getPreviousIndex(source)),
+                            source, profile, missing);
+                }
+                missing[source] |= nodes[source] == null && !isAdded(diff, snapshot, profile, source);
+            }
+        }
+        List<CyNode> removedNodes = new ArrayList<>();
+        for (int j : diff.getRemoved()) {
+            CyNode node = AttributeUtil.getNodeByAttribute(network, "id", previous.getKey(j));
+            if (node != null) {
+                removedNodes.add(node);
+            }
+        }
+        if (cancellation.isCancelled()) {
+            throw new CancellationException();
+        }
+
+        // removed objects, the old participant edges of changed reactions
+        // and the old dependency edges of objects with changed dependencies
+        if (!removedNodes.isEmpty()) {
+            network.removeNodes(removedNodes);
+            rootNetwork.removeNodes(removedNodes);
+        }
+        List<CyEdge> oldEdges = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            boolean participants = diff.isParticipantsChanged(i);
+            boolean dependencies = diff.isDependenciesChanged(i);
+            if (nodes[i] == null || !(participants || dependencies)) {
+                continue;
+            }
+            for (CyEdge edge : network.getAdjacentEdgeList(nodes[i], CyEdge.Type.ANY)) {
+                if (PARTICIPANT.equals(network.getRow(edge).get("type", String.class))
+                        ? participants : dependencies && edge.getTarget() == nodes[i]) {
+                    oldEdges.add(edge);
+                }
+            }
+        }
+        if (!oldEdges.isEmpty()) {
+            network.removeEdges(oldEdges);
+            rootNetwork.removeEdges(oldEdges);
+        }
+
+        // added objects, the edges of changed reactions and the dependency edges
+        for (int i = 0; i < n; i++) {
+            if (isAdded(diff, snapshot, profile, i) || missing[i]) {
+                nodes[i] = network.addNode();
+            }
+        }
+        List<CyEdge> edges = new ArrayList<>();
+        List<Integer> entries = new ArrayList<>();
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            if (!diff.isParticipantsChanged(i)) {
+                continue;
+            }
+            for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                int species = snapshot.getParticipantSpecies(k);
+                if (species < 0 || nodes[species] == null) {
+                    continue;
+                }
+                edges.add(snapshot.getParticipantStoichiometry(k) < 0
+                        ? network.addEdge(nodes[species], nodes[i], true)
+                        : network.addEdge(nodes[i], nodes[species], true));
+                entries.add(k);
+            }
+        }
+        List<CyEdge> dependencyEdges = new ArrayList<>();
+        List<Integer> dependencyEntries = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!withDependencies[i] || nodes[i] == null) {
+                continue;
+            }
+            for (int k = snapshot.getDependencyStart(i); k < snapshot.getDependencyEnd(i); k++) {
+                CyNode source = nodes[snapshot.getDependencySource(k)];
+                if (source != null) {
+                    dependencyEdges.add(network.addEdge(source, nodes[i], true));
+                    dependencyEntries.add(k);
+                }
+            }
+        }
+
+        // attributes of added and changed objects
+        writeNetworkAttributes(network, snapshot, profile);
+        String[] moieties = moieties(snapshot);
+        boolean layout = snapshot.hasLayout();
+        createSharedColumns(network, layout);
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), null)) {
+            declareNodeColumns(writer, layout);
+            for (int i = 0; i < n; i++) {
+                if (nodes[i] == null) {
+                    continue;
+                }
+                if (diff.isAttributesChanged(i) || missing[i]) {
+                    writeNode(writer, snapshot, nodes[i], i, moieties[i], layout);
+                } else if (diff.isKeyChanged(i)) {
+                    writer.set(nodes[i], "id", snapshot.getKey(i));
+                }
+            }
+        }
+
+        // compartments of added objects, moved species and their reactions and changed reactions
+        boolean[] moved = new boolean[n];
+        for (int i = snapshot.getStart(ModelSnapshot.SPECIES); i < snapshot.getEnd(ModelSnapshot.SPECIES); i++) {
+            int j = diff.getPreviousIndex(i);
+            int compartment = snapshot.getCompartment(i);
+            moved[i] = j >= 0 && compartment >= 0 && diff.getPreviousIndex(compartment) != previous.getCompartment(j);
+        }
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i) && !moved[i]; k++) {
+                int species = snapshot.getParticipantSpecies(k);
+                moved[i] = species >= 0 && moved[species];
+            }
+        }
+        CyNode[] placed = new CyNode[n];
+        for (int i = 0; i < n; i++) {
+            if (nodes[i] != null && (isAdded(diff, snapshot, profile, i) || missing[i] || moved[i]
+                    || diff.isParticipantsChanged(i))) {
+                placed[i] = nodes[i];
+            }
+        }
+        List<CyEdge> addedEdges = new ArrayList<>(edges);
+        addedEdges.addAll(dependencyEdges);
+        addToCompartments(network, diff, snapshot, placed, addedEdges);
+        // the name is a column of every network, the compartment networks get the changed ones
+        List<CyNode> changed = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (nodes[i] != null && (diff.isAttributesChanged(i) || missing[i])) {
+                changed.add(nodes[i]);
+            }
+        }
+        if (!changed.isEmpty()) {
+            for (CySubNetwork subNetwork : getCompartmentNetworks(network)) {
+                copyNames(network, subNetwork, changed);
+            }
+        }
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultEdgeTable(), null)) {
+            writer.declare("type", String.class)
+                    .declare("stoichiometry", Double.class);
+            for (int e = 0; e < edges.size(); e++) {
+                writer.set(edges.get(e), "type", PARTICIPANT);
+                writer.set(edges.get(e), "stoichiometry",
+                        Math.abs(snapshot.getParticipantStoichiometry(entries.get(e))));
+            }
+            for (int e = 0; e < dependencyEdges.size(); e++) {
+                writer.set(dependencyEdges.get(e), "type",
+                        ModelSnapshot.getDependencyTypeName(snapshot.getDependencyType(dependencyEntries.get(e))));
+            }
+        }
+        span.end(removedNodes.size() + oldEdges.size() + diff.getAddedCount() + edges.size()
+                + dependencyEdges.size());
+        return nodes;
+    }
+
+    /**
+     * Adds the details the profile of the network left out for the given
+     * reactions: the objects they depend on, e.g. their modifiers, and the
+     * dependency edges. Objects already in the network keep their node.
+     * Reactions expanded before, and all reactions of networks whose
+     * profile has the dependencies, are skipped. Added species join the
+     * subnetwork and group of their compartment, new edges the compartment
+     * subnetworks and groups holding both their ends.
+     *
+     * @param snapshot  snapshot the network was built or last reloaded from
+     * @param reactions reaction nodes of the network
+     * @return nodes that were added
+     */
+    public List<CyNode> expand(CyNetwork network, ModelSnapshot snapshot, Collection<CyNode> reactions) {
+        List<CyNode> added = new ArrayList<>();
+        if (getProfile(network).hasDependencies()) {
+            return added;
+        }
+        Map<String, Integer> reactionIndex = new HashMap<>();
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            reactionIndex.put(snapshot.getKey(i), i);
+        }
+
+        // objects depended on, looked up once and added if they are not in the network
+        Map<Integer, CyNode> nodes = new HashMap<>();
+        List<Integer> addedObjects = new ArrayList<>();
+        List<CyNode> expanded = new ArrayList<>();
+        List<CyEdge> edges = new ArrayList<>();
+        List<Integer> entries = new ArrayList<>();
+        for (CyNode reaction : reactions) {
+            Integer i = reactionIndex.get(network.getRow(reaction).get("id", String.class));
+            if (i == null || isExpanded(network, reaction)) {
+                continue;
+            }
+            for (int k = snapshot.getDependencyStart(i); k < snapshot.getDependencyEnd(i); k++) {
+                int source = snapshot.getDependencySource(k);
+                CyNode node = nodes.get(source);
+                if (node == null) {
+                    node = AttributeUtil.getNodeByAttribute(network, "id", snapshot.getKey(source));
+                    if (node == null) {
+                        node = network.addNode();
+                        added.add(node);
+                        addedObjects.add(source);
+                    }
+                    nodes.put(source, node);
+                }
+                edges.add(network.addEdge(node, reaction, true));
+                entries.add(k);
+            }
+            expanded.add(reaction);
+        }
+
+        String[] moieties = moieties(snapshot);
+        boolean layout = snapshot.hasLayout();
+        createSharedColumns(network, layout);
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        createSharedColumn(rootNetwork, rootNetwork.getSharedNodeTable(), CyNode.class, EXPANDED, Boolean.class);
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), null)) {
+            declareNodeColumns(writer, layout);
+            writer.declare(EXPANDED, Boolean.class);
+            for (int a = 0; a < added.size(); a++) {
+                int index = addedObjects.get(a);
+                writeNode(writer, snapshot, added.get(a), index, moieties[index], layout);
+            }
+            for (CyNode reaction : expanded) {
+                writer.set(reaction, EXPANDED, true);
+            }
+        }
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultEdgeTable(), null)) {
+            writer.declare("type", String.class);
+            for (int e = 0; e < edges.size(); e++) {
+                writer.set(edges.get(e), "type",
+                        ModelSnapshot.getDependencyTypeName(snapshot.getDependencyType(entries.get(e))));
+            }
+        }
+
+        CyNode[] placed = new CyNode[snapshot.getObjectCount()];
+        for (int a = 0; a < added.size(); a++) {
+            placed[addedObjects.get(a)] = added.get(a);
+        }
+        addToCompartments(network, null, snapshot, placed, edges);
+        return added;
+    }
+
+    /** Moiety of every object, null for objects not determined by one. */
+    private static String[] moieties(ModelSnapshot snapshot) {
+        String[] moieties = new String[snapshot.getObjectCount()];
+        for (int m = 0; m < snapshot.getMoietyCount(); m++) {
+            int species = snapshot.getMoietySpecies(m);
+            if (species >= 0) {
+                moieties[species] = snapshot.getMoietyDescription(m);
+            }
+        }
+        return moieties;
+    }
+
+    /** Whether the object was added to the model and its kind is in the profile. */
+    private static boolean isAdded(ModelDiff diff, ModelSnapshot snapshot, ImportProfile profile, int index) {
+        return diff.getPreviousIndex(index) < 0 && profile.includes(snapshot.getKind(index));
+    }
+
+    /**
+     * Node of a previous object, null if it is not in the network. It is
+     * marked missing if it was deleted from the network although the
+     * profile includes its kind.
+     */
+    private static CyNode findNode(CyNetwork network, ModelSnapshot snapshot, String key, int index,
+                                   ImportProfile profile, boolean[] missing) {
+        CyNode node = AttributeUtil.getNodeByAttribute(network, "id", key);
+        missing[index] = node == null && profile.includes(snapshot.getKind(index));
+        return node;
+    }
+
+    /** Writes all attributes of a single node, values the object no longer has are removed. */
+    private static void writeNode(BulkAttributeWriter writer, ModelSnapshot snapshot, CyNode node, int i,
+                                  String moiety, boolean layout) {
+        byte kind = snapshot.getKind(i);
+        writer.set(node, "type", ModelSnapshot.getTypeName(kind));
+        writer.set(node, "id", snapshot.getKey(i));
+        writer.set(node, "cn", snapshot.getCn(i));
+        writer.set(node, "name", snapshot.getName(i));
+        writer.set(node, "display name", snapshot.getDisplayName(i));
+        switch (kind) {
+            case ModelSnapshot.COMPARTMENT:
+                writer.set(node, "dimensions", (double) snapshot.getDimensionality(i));
+                writer.set(node, "size", snapshot.getValue(i));
+                break;
+            case ModelSnapshot.PARAMETER:
+                writer.set(node, "value", snapshot.getValue(i));
+                break;
+            case ModelSnapshot.SPECIES:
+                int compartment = snapshot.getCompartment(i);
+                if (compartment >= 0) {
+                    writer.set(node, "compartment", snapshot.getName(compartment));
+                } else {
+                    writer.clear(node, "compartment");
+                }
+                writer.set(node, "initial concentration", snapshot.getValue(i));
+                writer.set(node, "dependent", snapshot.isDependent(i));
+                if (moiety != null) {
+                    writer.set(node, "moiety", moiety);
+                } else {
+                    writer.clear(node, "moiety");
+                }
+                break;
+            case ModelSnapshot.REACTION:
+                writer.set(node, "reversible", snapshot.isReversible(i));
+                break;
+            default:
+                break;
+        }
+        if (layout) {
+            setOrClear(writer, node, NetworkViews.LAYOUT_X, snapshot.getX(i));
+            setOrClear(writer, node, NetworkViews.LAYOUT_Y, snapshot.getY(i));
+        }
+    }
+
+    private static void setOrClear(BulkAttributeWriter writer, CyNode node, String name, double value) {
+        if (Double.isNaN(value)) {
+            writer.clear(node, name);
+        } else {
+            writer.set(node, name, value);
+        }
+    }
+
+    /** Creates one node per snapshot object of the kinds in the profile, the other entries stay null. */
+    private static CyNode[] createNodes(CyNetwork network, ModelSnapshot snapshot, ImportProfile profile,
+                                        Checkpoints checkpoints) {
+        CyNode[] nodes = new CyNode[snapshot.getObjectCount()];
+        for (byte kind : KINDS) {
+            if (!profile.includes(kind)) {
+                continue;
+            }
+            int end = snapshot.getEnd(kind);
+            for (int b = snapshot.getStart(kind); b < end; b += BATCH_SIZE) {
+                int e = Math.min(b + BATCH_SIZE, end);
+                for (int i = b; i < e; i++) {
+                    nodes[i] = network.addNode();
+                }
+                if (checkpoints.firstNodeNanos == 0) {
+                    checkpoints.firstNodeNanos = System.nanoTime();
+                }
+                checkpoints.done(e - b);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Creates one edge per reaction participant.
+     * All edges are directed, from substrate to reaction and from reaction
+     * to product.
+     */
+    private static CyEdge[] createEdges(CyNetwork network, ModelSnapshot snapshot, CyNode[] nodes,
+                                        Checkpoints checkpoints) {
+        CyEdge[] edges = new CyEdge[snapshot.getParticipantCount()];
+        int pending = 0;
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            for (int j = snapshot.getParticipantStart(i); j < snapshot.getParticipantEnd(i); j++) {
+                int species = snapshot.getParticipantSpecies(j);
+                if (species < 0) {
+                    continue;
+                }
+                edges[j] = snapshot.getParticipantStoichiometry(j) < 0
+                        ? network.addEdge(nodes[species], nodes[i], true)
+                        : network.addEdge(nodes[i], nodes[species], true);
+            }
+            // reactions are never split, a batch may exceed the batch size
+            pending += snapshot.getParticipantEnd(i) - snapshot.getParticipantStart(i);
+            if (pending >= BATCH_SIZE) {
+                checkpoints.done(pending);
+                pending = 0;
+            }
+        }
+        checkpoints.done(pending);
+        return edges;
+    }
+
+    /**
+     * Creates one edge per dependency between two nodes, directed from the
+     * object depended on to the dependent object.
+     */
+    private static CyEdge[] createDependencyEdges(CyNetwork network, ModelSnapshot snapshot, CyNode[] nodes,
+                                                  Checkpoints checkpoints) {
+        CyEdge[] edges = new CyEdge[snapshot.getDependencyCount()];
+        int pending = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == null) {
+                continue;
+            }
+            for (int k = snapshot.getDependencyStart(i); k < snapshot.getDependencyEnd(i); k++) {
+                CyNode source = nodes[snapshot.getDependencySource(k)];
+                if (source != null) {
+                    edges[k] = network.addEdge(source, nodes[i], true);
+                }
+            }
+            pending += snapshot.getDependencyEnd(i) - snapshot.getDependencyStart(i);
+            if (pending >= BATCH_SIZE) {
+                checkpoints.done(pending);
+                pending = 0;
+            }
+        }
+        checkpoints.done(pending);
+        return edges;
+    }
+
+    /**
+     * Creates the compartment subnetworks and groups from an index of the
+     * species and reactions by compartment, built in one pass over the
+     * snapshot. A reaction belongs to the subnetworks of all compartments of
+     * its species, to a group only if all its species are in the
+     * compartment. Edges between the nodes of a compartment come along, and
+     * so does its node if the profile has compartments.
+     */
+    private void buildCompartments(CyNetwork network, ModelSnapshot snapshot, CyNode[] nodes,
+                                   Checkpoints checkpoints) {
+        int compartmentStart = snapshot.getStart(ModelSnapshot.COMPARTMENT);
+        int numCompartments = snapshot.getCount(ModelSnapshot.COMPARTMENT);
+
+        // the nodes of each compartment
+        List<List<CyNode>> members = new ArrayList<>(numCompartments);
+        List<List<CyNode>> transport = new ArrayList<>(numCompartments);
+        for (int c = 0; c < numCompartments; c++) {
+            members.add(new ArrayList<CyNode>());
+            transport.add(new ArrayList<CyNode>());
+            if (nodes[compartmentStart + c] != null) {
+                members.get(c).add(nodes[compartmentStart + c]);
+            }
+        }
+        for (int i = snapshot.getStart(ModelSnapshot.SPECIES); i < snapshot.getEnd(ModelSnapshot.SPECIES); i++) {
+            int compartment = snapshot.getCompartment(i);
+            if (compartment >= 0 && nodes[i] != null) {
+                members.get(compartment - compartmentStart).add(nodes[i]);
+            }
+        }
+        int[] lastReaction = new int[numCompartments];
+        Arrays.fill(lastReaction, -1);
+        for (int i = snapshot.getStart(ModelSnapshot.REACTION); i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            if (nodes[i] == null) {
+                continue;
+            }
+            int first = -1;
+            boolean local = true;
+            for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                int species = snapshot.getParticipantSpecies(k);
+                int compartment = species >= 0 ? snapshot.getCompartment(species) : -1;
+                if (compartment < 0) {
+                    continue;
+                }
+                int c = compartment - compartmentStart;
+                if (first < 0) {
+                    first = c;
+                } else if (c != first) {
+                    local = false;
+                }
+                if (lastReaction[c] != i) {
+                    lastReaction[c] = i;
+                    transport.get(c).add(nodes[i]);
+                }
+            }
+            // reactions within one compartment are members, the others only shown with it
+            if (local && first >= 0) {
+                transport.get(first).remove(transport.get(first).size() - 1);
+                members.get(first).add(nodes[i]);
+            }
+        }
+
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        if (compartmentNetworks) {
+            for (int c = 0; c < numCompartments; c++) {
+                List<CyNode> compartmentNodes = new ArrayList<>(members.get(c));
+                compartmentNodes.addAll(transport.get(c));
+                CySubNetwork subNetwork = rootNetwork.addSubNetwork(compartmentNodes,
+                        edgesBetween(network, compartmentNodes));
+                copyNames(network, subNetwork, compartmentNodes);
+                AttributeUtil.set(subNetwork, subNetwork, COMPARTMENT,
+                        snapshot.getName(compartmentStart + c), String.class);
+                checkpoints.done(compartmentNodes.size());
+            }
+        }
+
+        // groups come last, a build is not cancelled once they are registered
+        if (groupFactory != null) {
+            for (int c = 0; c < numCompartments; c++) {
+                List<CyNode> groupNodes = members.get(c);
+                if (groupNodes.isEmpty()) {
+                    continue;
+                }
+                CyGroup group = groupFactory.createGroup(network, groupNodes, edgesBetween(network, groupNodes), true);
+                rootNetwork.getRow(group.getGroupNode()).set(CyRootNetwork.SHARED_NAME,
+                        snapshot.getName(compartmentStart + c));
+            }
+        }
+    }
+
+    /** Edges of the network between the given nodes. */
+    private static List<CyEdge> edgesBetween(CyNetwork network, Collection<CyNode> nodes) {
+        Set<CyNode> included = new HashSet<>(nodes);
+        List<CyEdge> edges = new ArrayList<>();
+        for (CyNode node : nodes) {
+            for (CyEdge edge : network.getAdjacentEdgeList(node, CyEdge.Type.OUTGOING)) {
+                if (included.contains(edge.getTarget())) {
+                    edges.add(edge);
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Adds objects new to the network to the compartment subnetworks and
+     * groups {@link #buildCompartments} would have put them in, and new
+     * edges to the subnetworks and groups holding both their ends. Placed
+     * objects leave the subnetworks and groups of compartments they no
+     * longer belong to, e.g. species moved to another compartment. The
+     * subnetworks and groups are found through the names of their
+     * compartments in the previous model, so renamed compartments keep them
+     * and they get the new name. Compartments added by a reload get neither.
+     *
+     * @param diff   differences the network was updated with, null if the
+     *               objects were added from the model it was built from
+     * @param placed nodes of the objects to place, indexed like the
+     *               snapshot, the other entries are null
+     * @param edges  edges new to the network
+     */
+    private void addToCompartments(CyNetwork network, ModelDiff diff, ModelSnapshot snapshot, CyNode[] placed,
+                                   Collection<CyEdge> edges) {
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        // compartments by the names their subnetworks and groups were given
+        Map<String, Integer> compartments = new HashMap<>();
+        int compartmentEnd = snapshot.getEnd(ModelSnapshot.COMPARTMENT);
+        for (int i = snapshot.getStart(ModelSnapshot.COMPARTMENT); i < compartmentEnd; i++) {
+            if (diff == null) {
+                compartments.put(snapshot.getName(i), i);
+            } else if (diff.getPreviousIndex(i) >= 0) {
+                compartments.put(diff.getPrevious().getName(diff.getPreviousIndex(i)), i);
+            }
+        }
+        String model = rootNetwork.getRow(rootNetwork).get(CyNetwork.NAME, String.class);
+        Map<Integer, CySubNetwork> subNetworks = new HashMap<>();
+        for (CySubNetwork subNetwork : getCompartmentNetworks(network)) {
+            CyRow row = subNetwork.getRow(subNetwork);
+            String name = row.get(COMPARTMENT, String.class);
+            Integer compartment = compartments.get(name);
+            if (compartment == null) {
+                continue;
+            }
+            subNetworks.put(compartment, subNetwork);
+            String current = snapshot.getName(compartment);
+            if (!current.equals(name)) {
+                row.set(COMPARTMENT, current);
+                // names given by setNetworkNames follow, names set by the user stay
+                if (String.format("%s: %s", name, model).equals(row.get(CyNetwork.NAME, String.class))) {
+                    row.set(CyNetwork.NAME, String.format("%s: %s", current, model));
+                }
+            }
+        }
+        Map<Integer, CyGroup> groups = new HashMap<>();
+        if (groupManager != null) {
+            for (CyGroup group : groupManager.getGroupSet(network)) {
+                CyRow row = rootNetwork.getRow(group.getGroupNode());
+                Integer compartment = compartments.get(row.get(CyRootNetwork.SHARED_NAME, String.class));
+                if (compartment == null) {
+                    continue;
+                }
+                groups.put(compartment, group);
+                String current = snapshot.getName(compartment);
+                if (!current.equals(row.get(CyRootNetwork.SHARED_NAME, String.class))) {
+                    row.set(CyRootNetwork.SHARED_NAME, current);
+                }
+            }
+        }
+        if (subNetworks.isEmpty() && groups.isEmpty()) {
+            return;
+        }
+
+        Map<CySubNetwork, List<CyNode>> subNetworkNodes = new HashMap<>();
+        Map<CySubNetwork, List<CyNode>> subNetworkLeaving = new HashMap<>();
+        Map<CyGroup, List<CyNode>> groupNodes = new HashMap<>();
+        Map<CyGroup, List<CyNode>> groupLeaving = new HashMap<>();
+        Set<CySubNetwork> targets = new HashSet<>();
+        for (int i = 0; i < placed.length; i++) {
+            if (placed[i] == null) {
+                continue;
+            }
+            targets.clear();
+            int first = -1;
+            boolean local = true;
+            switch (snapshot.getKind(i)) {
+                case ModelSnapshot.COMPARTMENT:
+                    first = i;
+                    break;
+                case ModelSnapshot.SPECIES:
+                    first = snapshot.getCompartment(i);
+                    break;
+                case ModelSnapshot.REACTION:
+                    // a reaction is shown with all compartments of its species
+                    for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                        int species = snapshot.getParticipantSpecies(k);
+                        int compartment = species >= 0 ? snapshot.getCompartment(species) : -1;
+                        if (compartment < 0) {
+                            continue;
+                        }
+                        targets.add(subNetworks.get(compartment));
+                        if (first < 0) {
+                            first = compartment;
+                        } else if (compartment != first) {
+                            local = false;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            CyGroup target = null;
+            if (first >= 0) {
+                targets.add(subNetworks.get(first));
+                target = local ? groups.get(first) : null;
+            }
+            for (CySubNetwork subNetwork : subNetworks.values()) {
+                if (targets.contains(subNetwork)) {
+                    add(subNetworkNodes, subNetwork, placed[i]);
+                } else if (subNetwork.containsNode(placed[i])) {
+                    add(subNetworkLeaving, subNetwork, placed[i]);
+                }
+            }
+            for (CyGroup group : groups.values()) {
+                boolean member = group.getGroupNetwork().containsNode(placed[i]);
+                if (group == target && !member) {
+                    add(groupNodes, group, placed[i]);
+                } else if (group != target && member) {
+                    add(groupLeaving, group, placed[i]);
+                }
+            }
+        }
+
+        for (CySubNetwork subNetwork : subNetworks.values()) {
+            List<CyNode> leaving = subNetworkLeaving.get(subNetwork);
+            if (leaving != null) {
+                subNetwork.removeNodes(leaving);
+            }
+            List<CyNode> nodes = subNetworkNodes.get(subNetwork);
+            if (nodes != null) {
+                List<CyNode> added = new ArrayList<>(nodes.size());
+                for (CyNode node : nodes) {
+                    if (subNetwork.addNode(node)) {
+                        added.add(node);
+                    }
+                }
+                copyNames(network, subNetwork, added);
+            }
+            for (CyEdge edge : edges) {
+                if (subNetwork.containsNode(edge.getSource()) && subNetwork.containsNode(edge.getTarget())) {
+                    subNetwork.addEdge(edge);
+                }
+            }
+        }
+        for (CyGroup group : groups.values()) {
+            List<CyNode> leaving = groupLeaving.get(group);
+            if (leaving != null) {
+                group.removeNodes(leaving);
+            }
+            List<CyNode> nodes = groupNodes.get(group);
+            if (nodes != null) {
+                group.addNodes(nodes);
+            }
+            CyNetwork groupNetwork = group.getGroupNetwork();
+            List<CyEdge> internal = new ArrayList<>();
+            for (CyEdge edge : edges) {
+                if (groupNetwork.containsNode(edge.getSource()) && groupNetwork.containsNode(edge.getTarget())) {
+                    internal.add(edge);
+                }
+            }
+            if (!internal.isEmpty()) {
+                group.addEdges(internal);
+            }
+        }
+    }
+
+    private static <T> void add(Map<T, List<CyNode>> nodes, T target, CyNode node) {
+        if (target == null) {
+            return;
+        }
+        List<CyNode> list = nodes.get(target);
+        if (list == null) {
+            list = new ArrayList<>();
+            nodes.put(target, list);
+        }
+        list.add(node);
+    }
+
+    /**
+     * Copies the names of the nodes the subnetwork holds into it, the name
+     * is a column of every network.
+     */
+    private static void copyNames(CyNetwork network, CySubNetwork subNetwork, Collection<CyNode> nodes) {
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(subNetwork.getDefaultNodeTable(), null)) {
+            writer.declare(CyNetwork.NAME, String.class);
+            for (CyNode node : nodes) {
+                if (!subNetwork.containsNode(node)) {
+                    continue;
+                }
+                writer.set(node, CyNetwork.NAME, network.getRow(node).get(CyNetwork.NAME, String.class));
+            }
+        }
+    }
+
+    /** Subnetworks of the compartments of the network, in the order of the compartments. */
+    public static List<CySubNetwork> getCompartmentNetworks(CyNetwork network) {
+        List<CySubNetwork> subNetworks = new ArrayList<>();
+        for (CySubNetwork subNetwork : ((CySubNetwork) network).getRootNetwork().getSubNetworkList()) {
+            if (!subNetwork.equals(network)
+                    && subNetwork.getDefaultNetworkTable().getColumn(COMPARTMENT) != null
+                    && subNetwork.getRow(subNetwork).get(COMPARTMENT, String.class) != null) {
+                subNetworks.add(subNetwork);
+            }
+        }
+        return subNetworks;
+    }
+
+    /** Profile the network was imported with, the standard profile for networks without one. */
+    public static ImportProfile getProfile(CyNetwork network) {
+        ImportProfile profile = network.getDefaultNetworkTable().getColumn(PROFILE) != null
+                ? ImportProfile.of(network.getRow(network).get(PROFILE, String.class)) : null;
+        return profile != null ? profile : ImportProfile.STANDARD;
+    }
+
+    /** Whether the dependencies of the node were added by {@link #expand}. */
+    private static boolean isExpanded(CyNetwork network, CyNode node) {
+        return network.getDefaultNodeTable().getColumn(EXPANDED) != null
+                && Boolean.TRUE.equals(network.getRow(node).get(EXPANDED, Boolean.class));
+    }
+
+    private void writeNetworkAttributes(CyNetwork network, ModelSnapshot snapshot, ImportProfile profile) {
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNetworkTable(), eventHelper)) {
+            writer.declare("copasiNetwork", String.class)
+                    .declare("copasiVersion", String.class)
+                    .declare("id", String.class)
+                    .declare("cn", String.class)
+                    .declare("name", String.class)
+                    .declare("display name", String.class)
+                    .declareList("conserved moieties", String.class)
+                    .declare(PROFILE, String.class);
+
+            // Mark network as COPASI
+            writer.set(network, "copasiNetwork", "copasi");
+            writer.set(network, "copasiVersion", snapshot.getCopasiVersion());
+            writer.set(network, "id", snapshot.getModelKey());
+            writer.set(network, "cn", snapshot.getModelCn());
+            writer.set(network, "name", snapshot.getModelName());
+            writer.set(network, "display name", snapshot.getModelDisplayName());
+            List<String> moieties = new ArrayList<>(snapshot.getMoietyCount());
+            for (int m = 0; m < snapshot.getMoietyCount(); m++) {
+                moieties.add(snapshot.getMoietyDescription(m));
+            }
+            writer.set(network, "conserved moieties", moieties);
+            writer.set(network, PROFILE, profile.getName());
+        }
+    }
+
+    private void writeNodeAttributes(CyNetwork network, ModelSnapshot snapshot, ImportProfile profile,
+                                     CyNode[] nodes, Checkpoints checkpoints) {
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), eventHelper)) {
+            boolean layout = snapshot.hasLayout();
+            declareNodeColumns(writer, layout);
+
+            Object[] column = new Object[nodes.length];
+            for (byte kind : KINDS) {
+                if (!profile.includes(kind)) {
+                    continue;
+                }
+                int end = snapshot.getEnd(kind);
+                for (int b = snapshot.getStart(kind); b < end; b += BATCH_SIZE) {
+                    int e = Math.min(b + BATCH_SIZE, end);
+                    writeNodeBatch(writer, snapshot, nodes, column, kind, b, e);
+                    if (layout) {
+                        writeLayoutBatch(writer, snapshot, nodes, column, b, e);
+                    }
+                    checkpoints.done(e - b);
+                }
+            }
+
+            // dependent species get the moiety that determines them
+            for (int m = 0; m < snapshot.getMoietyCount(); m++) {
+                int species = snapshot.getMoietySpecies(m);
+                if (species >= 0 && nodes[species] != null) {
+                    writer.set(nodes[species], "moiety", snapshot.getMoietyDescription(m));
+                }
+            }
+        }
+    }
+
+    private static void declareNodeColumns(BulkAttributeWriter writer, boolean layout) {
+        writer.declare("name", String.class);
+        for (Map.Entry<String, Class<?>> column : NODE_COLUMNS.entrySet()) {
+            writer.declare(column.getKey(), column.getValue());
+        }
+        if (layout) {
+            writer.declare(NetworkViews.LAYOUT_X, Double.class)
+                    .declare(NetworkViews.LAYOUT_Y, Double.class);
+        }
+    }
+
+    /**
+     * Creates the node and edge columns in the shared tables of the network
+     * collection, so all its networks show the values written through one
+     * of them. Columns a network of the collection already has of its own,
+     * e.g. from a session saved before, are left as they are.
+     */
+    private static void createSharedColumns(CyNetwork network, boolean layout) {
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        CyTable nodeTable = rootNetwork.getSharedNodeTable();
+        for (Map.Entry<String, Class<?>> column : NODE_COLUMNS.entrySet()) {
+            createSharedColumn(rootNetwork, nodeTable, CyNode.class, column.getKey(), column.getValue());
+        }
+        if (layout) {
+            createSharedColumn(rootNetwork, nodeTable, CyNode.class, NetworkViews.LAYOUT_X, Double.class);
+            createSharedColumn(rootNetwork, nodeTable, CyNode.class, NetworkViews.LAYOUT_Y, Double.class);
+        }
+        CyTable edgeTable = rootNetwork.getSharedEdgeTable();
+        createSharedColumn(rootNetwork, edgeTable, CyEdge.class, "type", String.class);
+        createSharedColumn(rootNetwork, edgeTable, CyEdge.class, "stoichiometry", Double.class);
+    }
+
+    private static void createSharedColumn(CyRootNetwork rootNetwork, CyTable shared,
+                                           Class<? extends CyIdentifiable> entries, String name, Class<?> type) {
+        if (shared.getColumn(name) != null) {
+            return;
+        }
+        for (CySubNetwork subNetwork : rootNetwork.getSubNetworkList()) {
+            if (subNetwork.getTable(entries, CyNetwork.DEFAULT_ATTRS).getColumn(name) != null) {
+                return;
+            }
+        }
+        shared.createColumn(name, type, false);
+    }
+
+    /** Writes the attributes of the nodes from start to end, all of one kind. */
+    private static void writeNodeBatch(BulkAttributeWriter writer, ModelSnapshot snapshot, CyNode[] nodes,
+                                       Object[] column, byte kind, int start, int end) {
+        // shared by all kinds
+        writer.set("type", nodes, ModelSnapshot.getTypeName(kind), start, end);
+        for (int i = start; i < end; i++) {
+            column[i] = snapshot.getKey(i);
+        }
+        writer.set("id", nodes, column, start, end);
+        for (int i = start; i < end; i++) {
+            column[i] = snapshot.getCn(i);
+        }
+        writer.set("cn", nodes, column, start, end);
+        for (int i = start; i < end; i++) {
+            column[i] = snapshot.getName(i);
+        }
+        writer.set("name", nodes, column, start, end);
+        for (int i = start; i < end; i++) {
+            column[i] = snapshot.getDisplayName(i);
+        }
+        writer.set("display name", nodes, column, start, end);
+
+        switch (kind) {
+            case ModelSnapshot.COMPARTMENT:
+                for (int i = start; i < end; i++) {
+                    column[i] = (double) snapshot.getDimensionality(i);
+                }
+                writer.set("dimensions", nodes, column, start, end);
+                for (int i = start; i < end; i++) {
+                    column[i] = snapshot.getValue(i);
+                }
+                writer.set("size", nodes, column, start, end);
+                break;
+
+            case ModelSnapshot.PARAMETER:
+                for (int i = start; i < end; i++) {
+                    column[i] = snapshot.getValue(i);
+                }
+                writer.set("value", nodes, column, start, end);
+                break;
+
+            case ModelSnapshot.SPECIES:
+                for (int i = start; i < end; i++) {
+                    int compartment = snapshot.getCompartment(i);
+                    column[i] = compartment >= 0 ? snapshot.getName(compartment) : null;
+                }
+                writer.set("compartment", nodes, column, start, end);
+                for (int i = start; i < end; i++) {
+                    column[i] = snapshot.getValue(i);
+                }
+                writer.set("initial concentration", nodes, column, start, end);
+                for (int i = start; i < end; i++) {
+                    column[i] = snapshot.isDependent(i);
+                }
+                writer.set("dependent", nodes, column, start, end);
+                break;
+
+            case ModelSnapshot.REACTION:
+                for (int i = start; i < end; i++) {
+                    column[i] = snapshot.isReversible(i);
+                }
+                writer.set("reversible", nodes, column, start, end);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /** Writes the model layout positions, objects without glyph get none. */
+    private static void writeLayoutBatch(BulkAttributeWriter writer, ModelSnapshot snapshot, CyNode[] nodes,
+                                         Object[] column, int start, int end) {
+        for (int i = start; i < end; i++) {
+            double x = snapshot.getX(i);
+            column[i] = Double.isNaN(x) ? null : x;
+        }
+        writer.set(NetworkViews.LAYOUT_X, nodes, column, start, end);
+        for (int i = start; i < end; i++) {
+            double y = snapshot.getY(i);
+            column[i] = Double.isNaN(y) ? null : y;
+        }
+        writer.set(NetworkViews.LAYOUT_Y, nodes, column, start, end);
+    }
+
+    private void writeEdgeAttributes(CyNetwork network, ModelSnapshot snapshot, CyEdge[] edges,
+                                     CyEdge[] dependencyEdges, Checkpoints checkpoints) {
+        int n = edges.length;
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultEdgeTable(), eventHelper)) {
+            writer.declare("type", String.class)
+                    .declare("stoichiometry", Double.class);
+
+            Object[] column = new Object[n];
+            for (int b = 0; b < n; b += BATCH_SIZE) {
+                int e = Math.min(b + BATCH_SIZE, n);
+                writer.set("type", edges, PARTICIPANT, b, e);
+                for (int j = b; j < e; j++) {
+                    column[j] = Math.abs(snapshot.getParticipantStoichiometry(j));
+                }
+                writer.set("stoichiometry", edges, column, b, e);
+                checkpoints.done(e - b);
+            }
+
+            column = new Object[dependencyEdges.length];
+            for (int b = 0; b < dependencyEdges.length; b += BATCH_SIZE) {
+                int e = Math.min(b + BATCH_SIZE, dependencyEdges.length);
+                for (int k = b; k < e; k++) {
+                    column[k] = ModelSnapshot.getDependencyTypeName(snapshot.getDependencyType(k));
+                }
+                writer.set("type", dependencyEdges, column, b, e);
+                checkpoints.done(e - b);
+            }
+        }
+    }
+
+    /**
+     * Names the network and its network collection.
+     * The model id is used as name, the file name if the model has none.
+     */
+    public static void setNetworkNames(CyNetwork network, String fileName) {
+        // root network
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        String name = getNetworkName(network, fileName);
+        rootNetwork.getRow(rootNetwork).set(CyNetwork.NAME, String.format("%s", name));
+
+        // all network
+        network.getRow(network).set(CyNetwork.NAME, String.format("%s: %s", "ALL", name));
+
+        // compartment networks
+        for (CySubNetwork subNetwork : getCompartmentNetworks(network)) {
+            String compartment = subNetwork.getRow(subNetwork).get(COMPARTMENT, String.class);
+            subNetwork.getRow(subNetwork).set(CyNetwork.NAME, String.format("%s: %s", compartment, name));
+        }
+    }
+
+    /**
+     * Get network name.
+     * Is used for naming the network and the network collection.
+     */
+    private static String getNetworkName(CyNetwork network, String fileName) {
+        // name of root network
+        String name = network.getRow(network).get("id", String.class);
+        if (name == null) {
+            name = new File(fileName).getName();
+        }
+        return name;
+    }
+
+    /**
+     * Checks for cancellation and maps the work done so far into the
+     * progress range of the build.
+     */
+    private static class Checkpoints {
+
+        private final Cancellation cancellation;
+        private final TaskMonitor taskMonitor;
+        private final double from;
+        private final double to;
+        private final long units;
+        private long done;
+        long firstNodeNanos;
+
+        Checkpoints(Cancellation cancellation, TaskMonitor taskMonitor, double from, double to, long units) {
+            this.cancellation = cancellation;
+            this.taskMonitor = taskMonitor;
+            this.from = from;
+            this.to = to;
+            this.units = Math.max(1, units);
+        }
+
+        void done(int count) {
+            if (cancellation.isCancelled()) {
+                throw new CancellationException();
+            }
+            done += count;
+            if (taskMonitor != null) {
+                taskMonitor.setProgress(from + (to - from) * Math.min(done, units) / units);
+            }
+        }
+    }
+
+}
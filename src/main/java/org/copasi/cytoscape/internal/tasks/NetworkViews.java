@@ -0,0 +1,183 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.view.layout.CyLayoutAlgorithm;
+import org.cytoscape.view.layout.CyLayoutAlgorithmManager;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.presentation.property.BasicVisualLexicon;
+import org.cytoscape.work.Task;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.ImportSettings;
+
+/**
+ * Creates and lays out views of COPASI networks.
+ * Shared by the reader and the multi-file import.
+ * <p>
+ * The layout drawn in CopasiUI and stored with the model is applied as it
+ * is. Only networks without such a layout get an automatic one, force
+ * directed for small networks and grid above
+ * {@link ImportSettings#FORCE_DIRECTED_MAX_NODES} nodes. Networks above
+ * {@link ImportSettings#VIEW_MAX_ELEMENTS} nodes and edges are imported
+ * without view, see {@link #isLarge(CyNetwork)}.
+ */
+public class NetworkViews {
+
+    /** Node columns holding the position from the model layout. */
+    public static final String LAYOUT_X = "layout x";
+    public static final String LAYOUT_Y = "layout y";
+
+    /** Distance of nodes without position placed below the model layout. */
+    private static final double GRID_SPACING = 50.0;
+    /** Distance of added nodes from the centre of their neighbours. */
+    private static final double OFFSET = 40.0;
+    /** Angle between two nodes added around the same centre, they never line up. */
+    private static final double GOLDEN_ANGLE = Math.PI * (3.0 - Math.sqrt(5.0));
+
+    private NetworkViews() {
+    }
+
+    /** Whether the network is too large for a view to be created on import. */
+    public static boolean isLarge(CyNetwork network) {
+        return (long) network.getNodeCount() + network.getEdgeCount() > ImportSettings.getViewMaxElements();
+    }
+
+    /**
+     * Creates the view of the given network and applies a layout.
+     * Without layout manager only the model layout is applied.
+     */
+    public static CyNetworkView createView(CyNetworkViewFactory viewFactory,
+                                           CyLayoutAlgorithmManager cyLayoutAlgorithmManager,
+                                           CyNetwork network, TaskMonitor taskMonitor) {
+        // Create view
+        ImportMetrics.Span span = ImportMetrics.begin(ImportMetrics.Phase.VIEW);
+        CyNetworkView view = viewFactory.createNetworkView(network);
+        span.end(network.getNodeCount() + network.getEdgeCount());
+
+        // layout
+        span = ImportMetrics.begin(ImportMetrics.Phase.LAYOUT);
+        if (!applyModelLayout(network, view) && cyLayoutAlgorithmManager != null) {
+            CyLayoutAlgorithm layout;
+            if (network.getNodeCount() <= ImportSettings.getForceDirectedMaxNodes()) {
+                layout = cyLayoutAlgorithmManager.getLayout("force-directed");
+            } else {
+                layout = cyLayoutAlgorithmManager.getLayout("grid");
+            }
+            if (layout == null) {
+                layout = cyLayoutAlgorithmManager.getLayout(CyLayoutAlgorithmManager.DEFAULT_LAYOUT_NAME);
+            }
+            TaskIterator itr = layout.createTaskIterator(view, layout.getDefaultLayoutContext(), CyLayoutAlgorithm.ALL_NODE_VIEWS, "");
+            Task nextTask = itr.next();
+            try {
+                nextTask.run(taskMonitor);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not finish layout", e);
+            }
+        }
+        span.end(network.getNodeCount());
+
+        // finished
+        return view;
+    }
+
+    /**
+     * Positions the nodes as in the model layout.
+     * Nodes without glyph, e.g. parameters, are placed on a grid below it.
+     *
+     * @return false if the network has no model layout
+     */
+    private static boolean applyModelLayout(CyNetwork network, CyNetworkView view) {
+        if (network.getDefaultNodeTable().getColumn(LAYOUT_X) == null) {
+            return false;
+        }
+        List<CyNode> unplaced = new ArrayList<>();
+        double minX = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (CyNode node : network.getNodeList()) {
+            CyRow row = network.getRow(node);
+            Double x = row.get(LAYOUT_X, Double.class);
+            Double y = row.get(LAYOUT_Y, Double.class);
+            if (x == null || y == null) {
+                unplaced.add(node);
+                continue;
+            }
+            setPosition(view.getNodeView(node), x, y);
+            minX = Math.min(minX, x);
+            maxY = Math.max(maxY, y);
+        }
+        if (minX == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        int columns = (int) Math.ceil(Math.sqrt(unplaced.size()));
+        for (int i = 0; i < unplaced.size(); i++) {
+            setPosition(view.getNodeView(unplaced.get(i)),
+                    minX + (i % columns) * GRID_SPACING,
+                    maxY + (i / columns + 2) * GRID_SPACING);
+        }
+        return true;
+    }
+
+    /**
+     * Places nodes added to the network of an existing view at their
+     * position in the model layout, otherwise around the centre of their
+     * neighbours that were there before. Nodes without either keep the
+     * position the view gave them.
+     */
+    public static void placeNodes(CyNetworkView view, Collection<CyNode> added) {
+        CyNetwork network = view.getModel();
+        boolean layout = network.getDefaultNodeTable().getColumn(LAYOUT_X) != null
+                && network.getDefaultNodeTable().getColumn(LAYOUT_Y) != null;
+        Set<CyNode> addedNodes = new HashSet<>(added);
+        int placed = 0;
+        for (CyNode node : added) {
+            View<CyNode> nodeView = view.getNodeView(node);
+            if (nodeView == null) {
+                continue;
+            }
+            CyRow row = network.getRow(node);
+            Double x = layout ? row.get(LAYOUT_X, Double.class) : null;
+            Double y = layout ? row.get(LAYOUT_Y, Double.class) : null;
+            if (x == null || y == null) {
+                double sumX = 0.0;
+                double sumY = 0.0;
+                int count = 0;
+                for (CyNode neighbour : network.getNeighborList(node, CyEdge.Type.ANY)) {
+                    View<CyNode> neighbourView = view.getNodeView(neighbour);
+                    if (neighbourView == null || addedNodes.contains(neighbour)) {
+                        continue;
+                    }
+                    sumX += neighbourView.getVisualProperty(BasicVisualLexicon.NODE_X_LOCATION);
+                    sumY += neighbourView.getVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION);
+                    count++;
+                }
+                if (count == 0) {
+                    continue;
+                }
+                double angle = placed++ * GOLDEN_ANGLE;
+                x = sumX / count + OFFSET * Math.cos(angle);
+                y = sumY / count + OFFSET * Math.sin(angle);
+            }
+            setPosition(nodeView, x, y);
+        }
+    }
+
+    private static void setPosition(View<CyNode> nodeView, double x, double y) {
+        nodeView.setVisualProperty(BasicVisualLexicon.NODE_X_LOCATION, x);
+        nodeView.setVisualProperty(BasicVisualLexicon.NODE_Y_LOCATION, y);
+    }
+
+}
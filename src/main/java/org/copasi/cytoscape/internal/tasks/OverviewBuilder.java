@@ -0,0 +1,145 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+
+import org.copasi.cytoscape.internal.BulkAttributeWriter;
+
+/**
+ * Builds a compartment overview of a COPASI network.
+ * <p>
+ * The overview is a small subnetwork in the same collection. It contains
+ * the compartment nodes of the network, annotated with the number of their
+ * species and of the reactions within them, and one undirected edge per
+ * pair of compartments connected by reactions, annotated with the number
+ * of these reactions. It gives large networks a view that can be rendered
+ * before the full network is looked at.
+ */
+public class OverviewBuilder {
+
+    private final CyEventHelper eventHelper;
+
+    public OverviewBuilder(CyEventHelper eventHelper) {
+        this.eventHelper = eventHelper;
+    }
+
+    /** Creates the overview of the given network. */
+    public CySubNetwork build(CyNetwork network) {
+        // compartments and the compartment of every species
+        Map<String, CyNode> compartments = new LinkedHashMap<>();
+        Map<CyNode, String> speciesCompartment = new HashMap<>();
+        List<CyNode> reactions = new ArrayList<>();
+        for (CyNode node : network.getNodeList()) {
+            CyRow row = network.getRow(node);
+            String type = row.get("type", String.class);
+            if ("compartment".equals(type)) {
+                compartments.put(row.get("name", String.class), node);
+            } else if ("species".equals(type)) {
+                speciesCompartment.put(node, row.get("compartment", String.class));
+            } else if ("reaction".equals(type)) {
+                reactions.add(node);
+            }
+        }
+
+        Map<String, int[]> counts = new HashMap<>();
+        for (String compartment : compartments.keySet()) {
+            counts.put(compartment, new int[2]);
+        }
+        for (String compartment : speciesCompartment.values()) {
+            if (counts.containsKey(compartment)) {
+                counts.get(compartment)[0]++;
+            }
+        }
+
+        // reactions within a compartment or between compartments
+        Map<List<String>, int[]> links = new LinkedHashMap<>();
+        for (CyNode reaction : reactions) {
+            TreeSet<String> involved = new TreeSet<>();
+            for (CyNode neighbor : network.getNeighborList(reaction, CyEdge.Type.ANY)) {
+                String compartment = speciesCompartment.get(neighbor);
+                if (compartment != null && compartments.containsKey(compartment)) {
+                    involved.add(compartment);
+                }
+            }
+            if (involved.size() == 1) {
+                counts.get(involved.first())[1]++;
+                continue;
+            }
+            List<String> names = new ArrayList<>(involved);
+            for (int i = 0; i < names.size(); i++) {
+                for (int j = i + 1; j < names.size(); j++) {
+                    List<String> pair = Arrays.asList(names.get(i), names.get(j));
+                    int[] count = links.get(pair);
+                    if (count == null) {
+                        count = new int[1];
+                        links.put(pair, count);
+                    }
+                    count[0]++;
+                }
+            }
+        }
+
+        CyRootNetwork rootNetwork = ((CySubNetwork) network).getRootNetwork();
+        CySubNetwork overview = rootNetwork.addSubNetwork();
+        for (CyNode node : compartments.values()) {
+            overview.addNode(node);
+        }
+        Map<CyEdge, int[]> edges = new LinkedHashMap<>();
+        for (Map.Entry<List<String>, int[]> link : links.entrySet()) {
+            CyEdge edge = overview.addEdge(compartments.get(link.getKey().get(0)),
+                    compartments.get(link.getKey().get(1)), false);
+            edges.put(edge, link.getValue());
+        }
+
+        writeAttributes(network, overview, compartments, counts, edges);
+        return overview;
+    }
+
+    private void writeAttributes(CyNetwork network, CySubNetwork overview, Map<String, CyNode> compartments,
+                                 Map<String, int[]> counts, Map<CyEdge, int[]> edges) {
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(overview.getDefaultNetworkTable(), eventHelper)) {
+            writer.declare("copasiNetwork", String.class)
+                    .declare(CyNetwork.NAME, String.class);
+            writer.set(overview, "copasiNetwork", "copasi");
+            String name = network.getRow(network).get("id", String.class);
+            writer.set(overview, CyNetwork.NAME, "Overview: " + (name != null ? name
+                    : network.getRow(network).get(CyNetwork.NAME, String.class)));
+        }
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(overview.getDefaultNodeTable(), eventHelper)) {
+            writer.declare("type", String.class)
+                    .declare("name", String.class)
+                    .declare("species count", Integer.class)
+                    .declare("reaction count", Integer.class);
+            for (Map.Entry<String, CyNode> compartment : compartments.entrySet()) {
+                CyNode node = compartment.getValue();
+                int[] count = counts.get(compartment.getKey());
+                writer.set(node, "type", "compartment");
+                writer.set(node, "name", compartment.getKey());
+                writer.set(node, "species count", count[0]);
+                writer.set(node, "reaction count", count[1]);
+            }
+        }
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(overview.getDefaultEdgeTable(), eventHelper)) {
+            writer.declare("type", String.class)
+                    .declare("reaction count", Integer.class);
+            for (Map.Entry<CyEdge, int[]> edge : edges.entrySet()) {
+                writer.set(edge.getKey(), "type", "compartment link");
+                writer.set(edge.getKey(), "reaction count", edge.getValue()[0]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.ImportMetrics;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.ModelCache;
+import org.copasi.cytoscape.internal.model.ModelDiff;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+
+/**
+ * Reloads the COPASI file of a network into the existing network.
+ * <p>
+ * The file is read into a snapshot as on import, through the model cache,
+ * and compared with the snapshot the network was built from. Only the
+ * differences are applied, see {@link NetworkBuilder#update}, so existing
+ * nodes keep their positions and styles in all views. Added nodes join
+ * their compartment networks and groups and are placed by
+ * {@link NetworkViews#placeNodes} in the views of the network and of its
+ * compartment networks. The new model replaces the old one in the
+ * {@link ModelRegistry}, results derived from the old one are dropped.
+ */
+public class ReloadTask extends AbstractTask {
+
+    private final CyNetwork network;
+    private final ModelRegistry modelRegistry;
+    private final ModelCache modelCache;
+    private final CyNetworkFactory networkFactory;
+    private final CyNetworkViewManager viewManager;
+    private final CyEventHelper eventHelper;
+    private final CyGroupManager groupManager;
+
+    /** Lets the model loading stop once the task is cancelled. */
+    private final Cancellation cancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+
+    public ReloadTask(CyNetwork network, ModelRegistry modelRegistry, ModelCache modelCache,
+                      CyNetworkFactory networkFactory, CyNetworkViewManager viewManager, CyEventHelper eventHelper,
+                      CyGroupManager groupManager) {
+        this.network = network;
+        this.modelRegistry = modelRegistry;
+        this.modelCache = modelCache;
+        this.networkFactory = networkFactory;
+        this.viewManager = viewManager;
+        this.eventHelper = eventHelper;
+        this.groupManager = groupManager;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Reload COPASI model");
+        taskMonitor.setProgress(0.0);
+
+        File source = modelRegistry.getSourceFile(network);
+        ModelSnapshot previous = modelRegistry.getSnapshot(network);
+        if (source == null || previous == null) {
+            throw new IllegalStateException("The network was not imported from a COPASI file");
+        }
+
+        ImportMetrics.Recording recording = ImportMetrics.start("reload of " + source.getName());
+        try {
+            taskMonitor.setStatusMessage("Reading " + source.getName());
+            ModelFile modelFile = ModelFile.of(source);
+            ModelSnapshot snapshot;
+            try {
+                snapshot = modelCache.load(modelFile.getFile(), cancellation);
+            } catch (Exception e) {
+                modelFile.release();
+                throw e;
+            }
+            if (cancelled) {
+                modelFile.release();
+                return;
+            }
+            taskMonitor.setProgress(0.6);
+
+            ModelDiff diff = ModelDiff.of(previous, snapshot);
+            if (diff.isEmpty()) {
+                modelFile.release();
+                taskMonitor.setProgress(1.0);
+                taskMonitor.setStatusMessage(source.getName() + " is unchanged");
+                recording.finish(taskMonitor);
+                return;
+            }
+            taskMonitor.setStatusMessage(String.format("Applying %s", diff));
+
+            CyNode[] nodes;
+            try {
+                nodes = new NetworkBuilder(networkFactory, eventHelper).setGroupManager(groupManager)
+                        .update(network, diff, cancellation);
+            } catch (RuntimeException e) {
+                modelFile.release();
+                throw e;
+            }
+            // the new model replaces the old one, also if the task is cancelled from now on
+            modelRegistry.register(network, modelFile, snapshot);
+            eventHelper.flushPayloadEvents();
+            taskMonitor.setProgress(0.9);
+
+            List<CyNode> added = addedNodes(diff, nodes);
+            for (CyNetworkView view : viewManager.getNetworkViews(network)) {
+                NetworkViews.placeNodes(view, added);
+                view.updateView();
+            }
+            for (CySubNetwork subNetwork : NetworkBuilder.getCompartmentNetworks(network)) {
+                for (CyNetworkView view : viewManager.getNetworkViews(subNetwork)) {
+                    NetworkViews.placeNodes(view, added);
+                    view.updateView();
+                }
+            }
+            taskMonitor.setProgress(1.0);
+            taskMonitor.setStatusMessage(String.format("Reloaded %s: %s", source.getName(), diff));
+            recording.finish(taskMonitor);
+        } finally {
+            recording.suspend();
+        }
+    }
+
+    /** Nodes of the objects added to the model. */
+    private static List<CyNode> addedNodes(ModelDiff diff, CyNode[] nodes) {
+        List<CyNode> added = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] != null && diff.getPreviousIndex(i) < 0) {
+                added.add(nodes[i]);
+            }
+        }
+        return added;
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.group.CyGroupManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.TaskIterator;
+import org.copasi.cytoscape.internal.model.ModelCache;
+
+/**
+ * ReloadTaskFactory class
+ * TaskFactory for the ReloadTask.
+ */
+public class ReloadTaskFactory {
+
+	ModelRegistry modelRegistry;
+	ModelCache modelCache;
+	CyNetworkFactory networkFactory;
+	CyNetworkViewManager viewManager;
+	CyEventHelper eventHelper;
+	CyGroupManager groupManager;
+
+	/** Constructor. */
+	public ReloadTaskFactory(ModelRegistry modelRegistry, ModelCache modelCache, CyNetworkFactory networkFactory,
+			CyNetworkViewManager viewManager, CyEventHelper eventHelper, CyGroupManager groupManager) {
+		this.modelRegistry = modelRegistry;
+		this.modelCache = modelCache;
+		this.networkFactory = networkFactory;
+		this.viewManager = viewManager;
+		this.eventHelper = eventHelper;
+		this.groupManager = groupManager;
+	}
+
+	/** Reloads the network the model of the given network's collection was registered for. */
+	public TaskIterator createTaskIterator(CyNetwork network) {
+		return new TaskIterator(
+			new ReloadTask(modelRegistry.getRegisteredNetwork(network), modelRegistry, modelCache,
+					networkFactory, viewManager, eventHelper, groupManager)
+		);
+	}
+
+	/** Whether the network was imported from a COPASI file that can be read again. */
+	public boolean isReady(CyNetwork network) {
+		return network != null && modelRegistry.getSourceFile(network) != null
+				&& modelRegistry.getRegisteredNetwork(network) != null;
+	}
+}
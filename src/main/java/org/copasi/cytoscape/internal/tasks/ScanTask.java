@@ -0,0 +1,341 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.COPASI.CCopasiTask;
+import org.COPASI.CDataModel;
+import org.COPASI.CModel;
+import org.COPASI.CModelValue;
+import org.COPASI.CSteadyStateMethod;
+import org.COPASI.CSteadyStateTask;
+import org.COPASI.CTimeSeries;
+import org.COPASI.CTrajectoryProblem;
+import org.COPASI.CTrajectoryTask;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.cytoscape.work.util.ListSingleSelection;
+
+import org.copasi.cytoscape.internal.BulkAttributeWriter;
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.CancellableProcessReport;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+import org.copasi.cytoscape.internal.model.NativeLock;
+
+/**
+ * Scans a global quantity of the model behind a network.
+ * <p>
+ * The global quantities to choose from are taken from the snapshot of the
+ * network, so those without a node can be scanned too, i.e. in networks
+ * imported with the skeleton profile or whose parameter nodes were deleted.
+ * Parameter nodes of networks without a snapshot are offered as well.
+ * <p>
+ * The model is loaded once into a data model leased within the native
+ * memory budget and the points are computed one after the other in it.
+ * COPASI keeps state shared by all data models, so points in several data
+ * models of the process would only take turns: loading and every point
+ * hold the {@link NativeLock}, other work gets its turn between two
+ * points. For every point the steady state or the end of the time course
+ * is computed and the species concentrations and, for steady states, the
+ * reaction fluxes are collected. The results are written as list columns,
+ * one value per scan point, to the nodes, and the scanned values to the
+ * network.
+ * <p>
+ * The scan task configured in the COPASI file is not run. It scans the
+ * items of the file and reports through a report definition of the file. Instead this task scans the quantity and
+ * range chosen in the dialog itself, running the steady state or time
+ * course task of the file per point like a single scan item would.
+ */
+public class ScanTask extends AbstractTask {
+
+    public static final String STEADY_STATE = "steady state";
+    public static final String END_OF_TIME_COURSE = "end of time course";
+
+    @Tunable(description = "Global quantity")
+    public ListSingleSelection<String> parameter;
+
+    @Tunable(description = "From")
+    public double from = 0.1;
+
+    @Tunable(description = "To")
+    public double to = 10.0;
+
+    @Tunable(description = "Number of points")
+    public int points = 10;
+
+    @Tunable(description = "Logarithmic")
+    public boolean logarithmic = false;
+
+    @Tunable(description = "Result")
+    public ListSingleSelection<String> result = new ListSingleSelection<>(STEADY_STATE, END_OF_TIME_COURSE);
+
+    private final CyNetwork network;
+    private final ModelRegistry modelRegistry;
+    private final CyEventHelper eventHelper;
+    private final DataModelManager dataModels;
+
+    /** CN of the global quantities by name, in model order. */
+    private final Map<String, String> parameterCns = new LinkedHashMap<>();
+
+    /** Lets COPASI stop once the task is cancelled. */
+    private final Cancellation cancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+
+    public ScanTask(CyNetwork network, ModelRegistry modelRegistry, CyEventHelper eventHelper,
+                    DataModelManager dataModels) {
+        this.network = network;
+        this.modelRegistry = modelRegistry;
+        this.eventHelper = eventHelper;
+        this.dataModels = dataModels;
+
+        Set<String> cns = new HashSet<>();
+        ModelSnapshot snapshot = modelRegistry.getSnapshot(network);
+        if (snapshot != null) {
+            for (int i = snapshot.getStart(ModelSnapshot.PARAMETER); i < snapshot.getEnd(ModelSnapshot.PARAMETER);
+                 i++) {
+                parameterCns.put(snapshot.getName(i), snapshot.getCn(i));
+                cns.add(snapshot.getCn(i));
+            }
+        }
+        for (CyNode node : network.getNodeList()) {
+            CyRow row = network.getRow(node);
+            String cn = row.get("cn", String.class);
+            if ("parameter".equals(row.get("type", String.class)) && cn != null && cns.add(cn)) {
+                parameterCns.put(row.get("name", String.class), cn);
+            }
+        }
+        parameter = new ListSingleSelection<>(new ArrayList<>(parameterCns.keySet()));
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Parameter scan");
+        taskMonitor.setProgress(0.0);
+
+        String name = parameter.getSelectedValue();
+        if (name == null || points < 1) {
+            throw new IllegalArgumentException("Select a global quantity and at least one point");
+        }
+        if (logarithmic && (from <= 0.0 || to <= 0.0)) {
+            throw new IllegalArgumentException("A logarithmic scan needs positive bounds");
+        }
+        File file = modelRegistry.getModelFile(network);
+        if (file == null) {
+            throw new IllegalStateException("The network was not imported from a COPASI file");
+        }
+
+        double[] values = scanValues();
+        double[][] results = new double[points][];
+        boolean steadyState = STEADY_STATE.equals(result.getSelectedValue());
+        String[] cns = scan(file, parameterCns.get(name), steadyState, values, results, taskMonitor);
+        if (cns == null) {
+            return;
+        }
+
+        writeResults(name, values, cns, results);
+        taskMonitor.setProgress(1.0);
+    }
+
+    private double[] scanValues() {
+        double[] values = new double[points];
+        for (int i = 0; i < points; i++) {
+            double f = points == 1 ? 0.0 : (double) i / (points - 1);
+            values[i] = logarithmic
+                    ? from * Math.pow(to / from, f)
+                    : from + (to - from) * f;
+        }
+        return values;
+    }
+
+    /** Writes one list of results per node and the scanned values. */
+    private void writeResults(String name, double[] values, String[] cns, double[][] results) {
+        Map<String, CyNode> byCn = new HashMap<>();
+        for (CyNode node : network.getNodeList()) {
+            String cn = network.getRow(node).get("cn", String.class);
+            if (cn != null) {
+                byCn.put(cn, node);
+            }
+        }
+
+        String column = "scan " + name;
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), eventHelper)) {
+            writer.declareList(column, Double.class);
+            for (int o = 0; o < cns.length; o++) {
+                CyNode node = byCn.get(cns[o]);
+                if (node == null) {
+                    continue;
+                }
+                List<Double> series = new ArrayList<>(points);
+                for (int p = 0; p < points; p++) {
+                    series.add(results[p][o]);
+                }
+                writer.set(node, column, series);
+            }
+        }
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNetworkTable(), eventHelper)) {
+            writer.declareList(column + " values", Double.class);
+            List<Double> scanned = new ArrayList<>(points);
+            for (double v : values) {
+                scanned.add(v);
+            }
+            writer.set(network, column + " values", scanned);
+        }
+    }
+
+    /**
+     * Computes all scan points in one data model.
+     *
+     * @return CN of the species and reactions, in the order of the results,
+     *         null if cancelled
+     */
+    private String[] scan(File file, String parameterCn, boolean steadyState, double[] values,
+                          double[][] results, TaskMonitor taskMonitor) throws Exception {
+        CancellableProcessReport report = new CancellableProcessReport(cancellation);
+        try (DataModelManager.Lease lease = dataModels.acquire(
+                ImportSettings.estimateNativeMB(file.length()), cancellation)) {
+            CDataModel dm = lease.getDataModel();
+            taskMonitor.setStatusMessage("Loading " + file.getName());
+            try {
+                try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+                    if (!dm.loadFromFile(file.getAbsolutePath(), report) && !cancelled) {
+                        throw new IOException("COPASI could not load " + file.getName());
+                    }
+                }
+                if (cancelled) {
+                    return null;
+                }
+                return scan(dm, parameterCn, steadyState, values, results, report, taskMonitor);
+            } catch (Exception e) {
+                // COPASI may have left the data model in any state, it is not reused
+                if (!(e instanceof CancellationException)) {
+                    lease.discard();
+                }
+                throw e;
+            }
+        } catch (CancellationException e) {
+            // cancelled while waiting for native memory or the native lock
+            return null;
+        } finally {
+            report.delete();
+        }
+    }
+
+    private String[] scan(CDataModel dm, String parameterCn, boolean steadyState, double[] values,
+                          double[][] results, CancellableProcessReport report, TaskMonitor taskMonitor) {
+        CModel model;
+        CModelValue scanned = null;
+        int numSpecies;
+        int numReactions;
+        String[] cns;
+        String[] keys;
+        CCopasiTask task;
+        try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+            model = dm.getModel();
+            for (int i = 0; i < model.getNumModelValues(); i++) {
+                if (model.getModelValue(i).getCN().getString().equals(parameterCn)) {
+                    scanned = model.getModelValue(i);
+                }
+            }
+            if (scanned == null) {
+                throw new IllegalStateException("The model has no global quantity " + parameterCn);
+            }
+
+            numSpecies = (int) model.getNumMetabs();
+            numReactions = (int) model.getNumReactions();
+            cns = new String[numSpecies + numReactions];
+            keys = new String[numSpecies];
+            for (int s = 0; s < numSpecies; s++) {
+                cns[s] = model.getMetabolite(s).getCN().getString();
+                keys[s] = model.getMetabolite(s).getKey();
+            }
+            for (int r = 0; r < numReactions; r++) {
+                cns[numSpecies + r] = model.getReaction(r).getCN().getString();
+            }
+
+            task = dm.getTask(steadyState ? "Steady-State" : "Time-Course");
+            task.setCallBack(report);
+            task.setUpdateModel(false);
+            if (!steadyState) {
+                ((CTrajectoryProblem) task.getProblem()).setTimeSeriesRequested(true);
+            }
+        }
+
+        int[] variables = null;
+        for (int p = 0; p < values.length; p++) {
+            if (cancelled) {
+                return null;
+            }
+            taskMonitor.setProgress(0.9 * p / values.length);
+            taskMonitor.setStatusMessage(String.format("Point %d of %d", p + 1, values.length));
+            double[] row = new double[cns.length];
+            Arrays.fill(row, Double.NaN);
+            // other work gets its turn between two points
+            try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+                scanned.setInitialValue(values[p]);
+                model.updateInitialValues(scanned.getInitialValueReference());
+
+                boolean ok = task.processWithOutputFlags(true, (int) (steadyState
+                        ? CCopasiTask.NO_OUTPUT : CCopasiTask.ONLY_TIME_SERIES));
+                if (ok && steadyState) {
+                    if (((CSteadyStateTask) task).getResult() != CSteadyStateMethod.notFound) {
+                        for (int s = 0; s < numSpecies; s++) {
+                            row[s] = model.getMetabolite(s).getConcentration();
+                        }
+                        for (int r = 0; r < numReactions; r++) {
+                            row[numSpecies + r] = model.getReaction(r).getFlux();
+                        }
+                    }
+                } else if (ok) {
+                    CTimeSeries timeSeries = ((CTrajectoryTask) task).getTimeSeries();
+                    if (variables == null) {
+                        variables = variables(timeSeries, keys);
+                    }
+                    long last = timeSeries.getRecordedSteps() - 1;
+                    for (int s = 0; s < numSpecies && last >= 0; s++) {
+                        if (variables[s] >= 0) {
+                            row[s] = timeSeries.getConcentrationData(last, variables[s]);
+                        }
+                    }
+                }
+            }
+            results[p] = row;
+        }
+        return cancelled ? null : cns;
+    }
+
+    /** Index of every species in the time series, -1 if it is not recorded. */
+    private static int[] variables(CTimeSeries timeSeries, String[] keys) {
+        Map<String, Integer> index = new HashMap<>();
+        long numVariables = timeSeries.getNumVariables();
+        for (int v = 0; v < numVariables; v++) {
+            index.put(timeSeries.getKey(v), v);
+        }
+        int[] variables = new int[keys.length];
+        for (int s = 0; s < keys.length; s++) {
+            Integer v = index.get(keys[s]);
+            variables[s] = v != null ? v : -1;
+        }
+        return variables;
+    }
+
+}
@@ -0,0 +1,244 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import org.COPASI.CCopasiTask;
+import org.COPASI.CDataModel;
+import org.COPASI.CModel;
+import org.COPASI.CTimeSeries;
+import org.COPASI.CTrajectoryProblem;
+import org.COPASI.CTrajectoryTask;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.CancellableProcessReport;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.MappedTrajectory;
+import org.copasi.cytoscape.internal.model.NativeLock;
+import org.copasi.cytoscape.internal.model.SharedTrajectory;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.TimeCourse;
+import org.copasi.cytoscape.internal.model.Trajectory;
+
+/**
+ * Runs the time course of the model behind a network.
+ * <p>
+ * The model is loaded into its own data model from the file it was
+ * imported from. The trajectory is simulated in chunks of at most
+ * {@link ImportSettings#SIMULATION_CHUNK_STEPS} steps, every chunk
+ * continuing from the state the previous one ended in. After each chunk
+ * the species concentrations are appended to the trajectory of the network
+ * and the latest frame is shown through a {@link TrajectoryScrubber}, so
+ * visual mappings follow the simulation while it runs. Only one chunk of
+ * the trajectory is held by COPASI at any time. Trajectories larger than
+ * {@link ImportSettings#TRAJECTORY_HEAP_MB} are stored in a
+ * {@link MappedTrajectory} with all frames, smaller ones in a bounded
+ * {@link TimeCourse} on the heap. Each chunk is copied out of COPASI under
+ * the {@link NativeLock} and appended to the trajectory after it was
+ * released, so other models are not held up while a mapped file pages.
+ */
+public class SimulationTask extends AbstractTask {
+
+    @Tunable(description = "Duration (0: as set in the model)")
+    public double duration = 0.0;
+
+    @Tunable(description = "Number of steps (0: as set in the model)")
+    public int steps = 0;
+
+    private final CyNetwork network;
+    private final ModelRegistry modelRegistry;
+    private final CyEventHelper eventHelper;
+    private final DataModelManager dataModels;
+
+    /** Lets COPASI stop once the task is cancelled. */
+    private final Cancellation cancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+
+    public SimulationTask(CyNetwork network, ModelRegistry modelRegistry, CyEventHelper eventHelper,
+                          DataModelManager dataModels) {
+        this.network = network;
+        this.modelRegistry = modelRegistry;
+        this.eventHelper = eventHelper;
+        this.dataModels = dataModels;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Simulate time course");
+        taskMonitor.setProgress(0.0);
+
+        File file = modelRegistry.getModelFile(network);
+        if (file == null) {
+            throw new IllegalStateException("The network was not imported from a COPASI file");
+        }
+
+        CancellableProcessReport report = new CancellableProcessReport(cancellation);
+        try (DataModelManager.Lease lease = dataModels.acquire(
+                ImportSettings.estimateNativeMB(file.length()), cancellation)) {
+            CDataModel dm = lease.getDataModel();
+            taskMonitor.setStatusMessage("Loading " + file.getName());
+            try {
+                try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+                    if (!dm.loadFromFile(file.getAbsolutePath(), report) && !cancelled) {
+                        throw new IOException("COPASI could not load " + file.getName());
+                    }
+                }
+                if (cancelled) {
+                    return;
+                }
+                simulate(dm, taskMonitor, report);
+            } catch (Exception e) {
+                // COPASI may have left the data model in any state, it is not reused
+                if (!(e instanceof CancellationException)) {
+                    lease.discard();
+                }
+                throw e;
+            }
+        } catch (CancellationException e) {
+            // cancelled while waiting for native memory or the native lock
+        } finally {
+            report.delete();
+        }
+    }
+
+    /**
+     * Runs the time course chunk by chunk. The native lock is held while
+     * setting up and while COPASI simulates a chunk and its time series is
+     * copied, other native work gets its turn while the frame is shown.
+     */
+    private void simulate(CDataModel dm, TaskMonitor taskMonitor, CancellableProcessReport report) throws Exception {
+        CTrajectoryTask task;
+        CTrajectoryProblem problem;
+        double totalDuration;
+        long totalSteps;
+        long chunks;
+        long stepsPerChunk;
+        String[] keys;
+        String[] cns;
+        try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+            CModel model = dm.getModel();
+            task = (CTrajectoryTask) dm.getTask("Time-Course");
+            problem = (CTrajectoryProblem) task.getProblem();
+            task.setCallBack(report);
+
+            totalDuration = duration > 0.0 ? duration : problem.getDuration();
+            totalSteps = Math.max(1, steps > 0 ? steps : problem.getStepNumber());
+            long chunkSteps = Math.max(1, ImportSettings.getSimulationChunkSteps());
+            chunks = (totalSteps + chunkSteps - 1) / chunkSteps;
+            stepsPerChunk = totalSteps / chunks;
+            problem.setTimeSeriesRequested(true);
+
+            // species of the model and their nodes
+            int numSpecies = (int) model.getNumMetabs();
+            keys = new String[numSpecies];
+            cns = new String[numSpecies];
+            for (int s = 0; s < numSpecies; s++) {
+                keys[s] = model.getMetabolite(s).getKey();
+                cns[s] = model.getMetabolite(s).getCN().getString();
+            }
+        }
+        int numSpecies = keys.length;
+
+        // small trajectories stay on the heap, large ones go to a mapped file
+        long frames = totalSteps + 1;
+        Trajectory store;
+        if (4L * numSpecies * frames <= ImportSettings.getTrajectoryHeapBytes()) {
+            store = new TimeCourse(cns, (int) Math.min(frames, ImportSettings.getSimulationMaxFrames()));
+        } else {
+            store = MappedTrajectory.create(cns);
+        }
+        // players may still read the trajectory after the next simulation replaced it
+        SharedTrajectory trajectory = new SharedTrajectory(store);
+        modelRegistry.setTrajectory(network, trajectory);
+        TrajectoryScrubber scrubber = new TrajectoryScrubber(network, trajectory, eventHelper);
+
+        try {
+            double[] frame = new double[numSpecies];
+            double[] times = new double[0];
+            double[] values = new double[0];
+            int[] variables = null;
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                int first = chunk == 0 ? 0 : 1;
+                int recorded;
+                try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+                    // the last chunk also takes the steps left over by the division
+                    long chunkStepNumber = chunk < chunks - 1 ? stepsPerChunk : totalSteps - chunk * stepsPerChunk;
+                    problem.setStepNumber(chunkStepNumber);
+                    problem.setDuration(totalDuration * chunkStepNumber / totalSteps);
+                    // the first chunk starts from the initial values, the others continue
+                    if (!task.processWithOutputFlags(chunk == 0, (int) CCopasiTask.ONLY_TIME_SERIES)) {
+                        if (cancelled) {
+                            return;
+                        }
+                        throw new Exception("Simulation failed: " + task.getProcessError());
+                    }
+                    CTimeSeries timeSeries = task.getTimeSeries();
+                    if (variables == null) {
+                        variables = variables(timeSeries, keys);
+                    }
+
+                    // only the time series is copied under the lock, the store may have to page
+                    recorded = (int) timeSeries.getRecordedSteps();
+                    if (times.length < recorded) {
+                        times = new double[recorded];
+                        values = new double[recorded * numSpecies];
+                    }
+                    for (int step = first; step < recorded; step++) {
+                        times[step] = timeSeries.getData(step, 0);
+                        for (int s = 0; s < numSpecies; s++) {
+                            values[step * numSpecies + s] = variables[s] >= 0
+                                    ? timeSeries.getConcentrationData(step, variables[s]) : Double.NaN;
+                        }
+                    }
+                }
+
+                // the first point of a continued chunk repeats the last of the previous one
+                double time = 0.0;
+                for (int step = first; step < recorded; step++) {
+                    time = times[step];
+                    System.arraycopy(values, step * numSpecies, frame, 0, numSpecies);
+                    trajectory.append(time, frame);
+                }
+                if (trajectory.getFrameCount() > 0) {
+                    scrubber.showFrame(trajectory.getFrameCount() - 1);
+                }
+
+                taskMonitor.setProgress((chunk + 1.0) / chunks);
+                taskMonitor.setStatusMessage(String.format("t = %g, %d frames kept", time, trajectory.getFrameCount()));
+                if (cancelled) {
+                    return;
+                }
+            }
+        } finally {
+            scrubber.dispose();
+        }
+    }
+
+    /** Index of every species in the time series, -1 if it is not recorded. */
+    private static int[] variables(CTimeSeries timeSeries, String[] keys) {
+        Map<String, Integer> index = new HashMap<>();
+        long numVariables = timeSeries.getNumVariables();
+        for (int v = 0; v < numVariables; v++) {
+            index.put(timeSeries.getKey(v), v);
+        }
+        int[] variables = new int[keys.length];
+        for (int s = 0; s < keys.length; s++) {
+            Integer v = index.get(keys[s]);
+            variables[s] = v != null ? v : -1;
+        }
+        return variables;
+    }
+
+}
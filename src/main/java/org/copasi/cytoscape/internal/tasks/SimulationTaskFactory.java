@@ -0,0 +1,36 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskIterator;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+
+/**
+ * SimulationTaskFactory class
+ * TaskFactory for the SimulationTask.
+ */
+public class SimulationTaskFactory {
+
+	ModelRegistry modelRegistry;
+	CyEventHelper eventHelper;
+	DataModelManager dataModels;
+
+	/** Constructor. */
+	public SimulationTaskFactory(ModelRegistry modelRegistry, CyEventHelper eventHelper,
+			DataModelManager dataModels) {
+		this.modelRegistry = modelRegistry;
+		this.eventHelper = eventHelper;
+		this.dataModels = dataModels;
+	}
+
+	public TaskIterator createTaskIterator(CyNetwork network) {
+		return new TaskIterator(
+			new SimulationTask(network, modelRegistry, eventHelper, dataModels)
+		);
+	}
+
+	/** Whether the network can be simulated. */
+	public boolean isReady(CyNetwork network) {
+		return network != null && modelRegistry.getModelFile(network) != null;
+	}
+}
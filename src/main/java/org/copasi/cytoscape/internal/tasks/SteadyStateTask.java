@@ -0,0 +1,363 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+
+import org.COPASI.CArrayInterface;
+import org.COPASI.CDataArray;
+import org.COPASI.CDataModel;
+import org.COPASI.CMCAMethod;
+import org.COPASI.CMCAProblem;
+import org.COPASI.CMCATask;
+import org.COPASI.CModel;
+import org.COPASI.CModelValue;
+import org.COPASI.CSteadyStateMethod;
+import org.COPASI.ReportItemVector;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+import org.copasi.cytoscape.internal.BulkAttributeWriter;
+import org.copasi.cytoscape.internal.ImportSettings;
+import org.copasi.cytoscape.internal.model.CancellableProcessReport;
+import org.copasi.cytoscape.internal.model.Cancellation;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+import org.copasi.cytoscape.internal.model.ModelSnapshot;
+import org.copasi.cytoscape.internal.model.NativeLock;
+import org.copasi.cytoscape.internal.model.SteadyStateResult;
+
+/**
+ * Computes the steady state and the metabolic control analysis of the
+ * model behind a network.
+ * <p>
+ * The parameter set is made of the values of all global quantities in the
+ * snapshot of the network, overridden by the values of the parameter nodes
+ * in the node table, so they can be edited before the computation. Global
+ * quantities without a node, left out by the skeleton profile or deleted
+ * from the network, keep their value from the file. Results are cached in
+ * the {@link ModelRegistry} per model file and parameter set, an unchanged
+ * network only has its columns written again. Species get their steady state concentration, reactions their flux
+ * and the scaled flux control coefficients of their flux, species-reaction
+ * edges the scaled concentration control coefficient of the species by the
+ * reaction.
+ */
+public class SteadyStateTask extends AbstractTask {
+
+    public static final String STEADY_STATE = "steady state";
+    public static final String STEADY_STATE_CONCENTRATION = "steady state concentration";
+    public static final String STEADY_STATE_FLUX = "steady state flux";
+    public static final String CONTROLLING_REACTIONS = "controlling reactions";
+    public static final String FLUX_CONTROL = "flux control coefficients";
+    public static final String CONCENTRATION_CONTROL = "concentration control coefficient";
+
+    private final CyNetwork network;
+    private final ModelRegistry modelRegistry;
+    private final CyEventHelper eventHelper;
+    private final DataModelManager dataModels;
+
+    /** Lets COPASI stop once the task is cancelled. */
+    private final Cancellation cancellation = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    };
+
+    public SteadyStateTask(CyNetwork network, ModelRegistry modelRegistry, CyEventHelper eventHelper,
+                           DataModelManager dataModels) {
+        this.network = network;
+        this.modelRegistry = modelRegistry;
+        this.eventHelper = eventHelper;
+        this.dataModels = dataModels;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Steady state and control analysis");
+        taskMonitor.setProgress(0.0);
+
+        File file = modelRegistry.getModelFile(network);
+        if (file == null) {
+            throw new IllegalStateException("The network was not imported from a COPASI file");
+        }
+
+        Map<String, Double> parameters = parameterSet();
+        String key = parameterSetKey(parameters);
+        SteadyStateResult result = modelRegistry.getSteadyState(network, key);
+        if (result == null) {
+            result = compute(file, parameters, taskMonitor);
+            if (result == null) {
+                return;
+            }
+            modelRegistry.putSteadyState(network, key, result);
+        } else {
+            taskMonitor.setStatusMessage("Steady state of this parameter set taken from the cache");
+        }
+
+        taskMonitor.setProgress(0.9);
+        writeResults(result);
+        taskMonitor.setProgress(1.0);
+    }
+
+    /** Values of the global quantities by CN, ordered, from the snapshot and the node table. */
+    private Map<String, Double> parameterSet() {
+        Map<String, Double> parameters = new TreeMap<>();
+        ModelSnapshot snapshot = modelRegistry.getSnapshot(network);
+        if (snapshot != null) {
+            for (int i = snapshot.getStart(ModelSnapshot.PARAMETER); i < snapshot.getEnd(ModelSnapshot.PARAMETER);
+                 i++) {
+                parameters.put(snapshot.getCn(i), snapshot.getValue(i));
+            }
+        }
+        for (CyNode node : network.getNodeList()) {
+            CyRow row = network.getRow(node);
+            if ("parameter".equals(row.get("type", String.class))) {
+                String cn = row.get("cn", String.class);
+                Double value = row.get("value", Double.class);
+                if (cn != null && value != null) {
+                    parameters.put(cn, value);
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static String parameterSetKey(Map<String, Double> parameters) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Double> parameter : parameters.entrySet()) {
+            sb.append(parameter.getKey()).append('=')
+                    .append(Long.toHexString(Double.doubleToLongBits(parameter.getValue()))).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Computes the result in a data model of its own, null if cancelled. */
+    private SteadyStateResult compute(File file, Map<String, Double> parameters, TaskMonitor taskMonitor)
+            throws Exception {
+        CancellableProcessReport report = new CancellableProcessReport(cancellation);
+        try (DataModelManager.Lease lease = dataModels.acquire(
+                ImportSettings.estimateNativeMB(file.length()), cancellation)) {
+            CDataModel dm = lease.getDataModel();
+            taskMonitor.setStatusMessage("Loading " + file.getName());
+            try {
+                try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+                    if (!dm.loadFromFile(file.getAbsolutePath(), report) && !cancelled) {
+                        throw new IOException("COPASI could not load " + file.getName());
+                    }
+                }
+                if (cancelled) {
+                    return null;
+                }
+                try (NativeLock.Hold hold = NativeLock.acquire(cancellation)) {
+                    return compute(dm, parameters, report, taskMonitor);
+                }
+            } catch (Exception e) {
+                // COPASI may have left the data model in any state, it is not reused
+                if (!(e instanceof CancellationException)) {
+                    lease.discard();
+                }
+                throw e;
+            }
+        } catch (CancellationException e) {
+            // cancelled while waiting for native memory or the native lock
+            return null;
+        } finally {
+            report.delete();
+        }
+    }
+
+    /** Computes the result in a loaded data model while holding the native lock. */
+    private SteadyStateResult compute(CDataModel dm, Map<String, Double> parameters,
+            CancellableProcessReport report, TaskMonitor taskMonitor) throws Exception {
+        CModel model = dm.getModel();
+        applyParameters(model, parameters);
+
+        // the control analysis solves the steady state as its subtask, it is not solved twice
+        taskMonitor.setStatusMessage("Computing the steady state and the control coefficients");
+        taskMonitor.setProgress(0.2);
+        CMCATask mca = (CMCATask) dm.getTask("Metabolic Control Analysis");
+        ((CMCAProblem) mca.getProblem()).setSteadyStateRequested(true);
+        mca.setCallBack(report);
+        mca.setUpdateModel(false);
+        boolean ok = mca.process(true);
+        if (cancelled) {
+            return null;
+        }
+        CMCAMethod method = (CMCAMethod) mca.getMethod();
+        int found = method.getSteadyStateStatus();
+        if (!ok && found != CSteadyStateMethod.notFound) {
+            throw new Exception("Control analysis failed: " + mca.getProcessError());
+        }
+
+        int numSpecies = (int) model.getNumMetabs();
+        int numReactions = (int) model.getNumReactions();
+        String[] species = new String[numSpecies];
+        double[] concentrations = new double[numSpecies];
+        String[] reactions = new String[numReactions];
+        double[] fluxes = new double[numReactions];
+        for (int s = 0; s < numSpecies; s++) {
+            species[s] = model.getMetabolite(s).getCN().getString();
+            concentrations[s] = found == CSteadyStateMethod.notFound
+                    ? Double.NaN : model.getMetabolite(s).getConcentration();
+        }
+        for (int r = 0; r < numReactions; r++) {
+            reactions[r] = model.getReaction(r).getCN().getString();
+            fluxes[r] = found == CSteadyStateMethod.notFound
+                    ? Double.NaN : model.getReaction(r).getFlux();
+        }
+        if (found == CSteadyStateMethod.notFound) {
+            return new SteadyStateResult(status(found), species, concentrations, reactions, fluxes,
+                    new String[0], new String[0], new double[0][0], new String[0], new double[0][0]);
+        }
+
+        CDataArray concentrationControl = method.getScaledConcentrationCCAnn();
+        CDataArray fluxControl = method.getScaledFluxCCAnn();
+
+        return new SteadyStateResult(status(found), species, concentrations, reactions, fluxes,
+                annotations(concentrationControl, 0), annotations(concentrationControl, 1),
+                values(concentrationControl),
+                annotations(fluxControl, 0), values(fluxControl));
+    }
+
+    /** Sets the global quantities whose value differs from the file. */
+    private static void applyParameters(CModel model, Map<String, Double> parameters) {
+        for (int i = 0; i < model.getNumModelValues(); i++) {
+            CModelValue value = model.getModelValue(i);
+            Double v = parameters.get(value.getCN().getString());
+            if (v != null && v != value.getInitialValue()) {
+                value.setInitialValue(v);
+                model.updateInitialValues(value.getInitialValueReference());
+            }
+        }
+    }
+
+    private static String status(int found) {
+        if (found == CSteadyStateMethod.found) {
+            return "found";
+        } else if (found == CSteadyStateMethod.foundEquilibrium) {
+            return "equilibrium";
+        } else if (found == CSteadyStateMethod.foundNegative) {
+            return "negative concentrations";
+        }
+        return "not found";
+    }
+
+    /** CNs along one dimension of an annotated matrix. */
+    private static String[] annotations(CDataArray array, int dimension) {
+        ReportItemVector cns = array.getAnnotationsCN(dimension);
+        String[] result = new String[(int) cns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = cns.get(i).getString();
+        }
+        return result;
+    }
+
+    private static double[][] values(CDataArray array) {
+        CArrayInterface matrix = array.array();
+        int rows = (int) array.getAnnotationsCN(0).size();
+        int columns = (int) array.getAnnotationsCN(1).size();
+        double[][] values = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                values[i][j] = matrix.get(i, j);
+            }
+        }
+        return values;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Columns
+    //////////////////////////////////////////////////////////////////////////
+
+    private void writeResults(SteadyStateResult result) {
+        Map<String, CyNode> byCn = new HashMap<>();
+        for (CyNode node : network.getNodeList()) {
+            String cn = network.getRow(node).get("cn", String.class);
+            if (cn != null) {
+                byCn.put(cn, node);
+            }
+        }
+
+        String[] controlling = result.getControllingReactions();
+        Map<String, Integer> controllingIndex = index(controlling);
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNetworkTable(), eventHelper)) {
+            writer.declare(STEADY_STATE, String.class)
+                    .declareList(CONTROLLING_REACTIONS, String.class);
+            writer.set(network, STEADY_STATE, result.getStatus());
+            List<String> names = new ArrayList<>(controlling.length);
+            for (String cn : controlling) {
+                CyNode node = byCn.get(cn);
+                names.add(node != null ? network.getRow(node).get("name", String.class) : cn);
+            }
+            writer.set(network, CONTROLLING_REACTIONS, names);
+        }
+
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), eventHelper)) {
+            writer.declare(STEADY_STATE_CONCENTRATION, Double.class)
+                    .declare(STEADY_STATE_FLUX, Double.class)
+                    .declareList(FLUX_CONTROL, Double.class);
+            for (int s = 0; s < result.getSpeciesCount(); s++) {
+                CyNode node = byCn.get(result.getSpeciesCn(s));
+                if (node != null) {
+                    writer.set(node, STEADY_STATE_CONCENTRATION, result.getConcentration(s));
+                }
+            }
+            for (int r = 0; r < result.getReactionCount(); r++) {
+                CyNode node = byCn.get(result.getReactionCn(r));
+                if (node != null) {
+                    writer.set(node, STEADY_STATE_FLUX, result.getFlux(r));
+                }
+            }
+            // one coefficient per controlling reaction, in the order of the network column
+            String[] fluxes = result.getControlledFluxes();
+            for (int f = 0; f < fluxes.length; f++) {
+                CyNode node = byCn.get(fluxes[f]);
+                if (node == null) {
+                    continue;
+                }
+                List<Double> coefficients = new ArrayList<>(controlling.length);
+                for (int r = 0; r < controlling.length; r++) {
+                    coefficients.add(result.getFluxControl(f, r));
+                }
+                writer.set(node, FLUX_CONTROL, coefficients);
+            }
+        }
+
+        Map<String, Integer> speciesIndex = index(result.getControlledSpecies());
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultEdgeTable(), eventHelper)) {
+            writer.declare(CONCENTRATION_CONTROL, Double.class);
+            for (CyEdge edge : network.getEdgeList()) {
+                String source = network.getRow(edge.getSource()).get("cn", String.class);
+                String target = network.getRow(edge.getTarget()).get("cn", String.class);
+                Integer s = speciesIndex.get(source);
+                Integer r = controllingIndex.get(target);
+                if (s == null || r == null) {
+                    s = speciesIndex.get(target);
+                    r = controllingIndex.get(source);
+                }
+                if (s != null && r != null) {
+                    writer.set(edge, CONCENTRATION_CONTROL, result.getConcentrationControl(s, r));
+                }
+            }
+        }
+    }
+
+    private static Map<String, Integer> index(String[] cns) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < cns.length; i++) {
+            index.put(cns[i], i);
+        }
+        return index;
+    }
+
+}
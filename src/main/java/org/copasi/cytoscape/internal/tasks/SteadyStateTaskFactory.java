@@ -0,0 +1,36 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.TaskIterator;
+import org.copasi.cytoscape.internal.model.DataModelManager;
+
+/**
+ * SteadyStateTaskFactory class
+ * TaskFactory for the SteadyStateTask.
+ */
+public class SteadyStateTaskFactory {
+
+	ModelRegistry modelRegistry;
+	CyEventHelper eventHelper;
+	DataModelManager dataModels;
+
+	/** Constructor. */
+	public SteadyStateTaskFactory(ModelRegistry modelRegistry, CyEventHelper eventHelper,
+			DataModelManager dataModels) {
+		this.modelRegistry = modelRegistry;
+		this.eventHelper = eventHelper;
+		this.dataModels = dataModels;
+	}
+
+	public TaskIterator createTaskIterator(CyNetwork network) {
+		return new TaskIterator(
+			new SteadyStateTask(network, modelRegistry, eventHelper, dataModels)
+		);
+	}
+
+	/** Whether the steady state of the network can be computed. */
+	public boolean isReady(CyNetwork network) {
+		return network != null && modelRegistry.getModelFile(network) != null;
+	}
+}
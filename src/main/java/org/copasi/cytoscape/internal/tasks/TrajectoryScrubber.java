@@ -0,0 +1,152 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+
+import org.copasi.cytoscape.internal.BulkAttributeWriter;
+import org.copasi.cytoscape.internal.model.SharedTrajectory;
+import org.copasi.cytoscape.internal.model.Trajectory;
+
+/**
+ * Shows frames of a trajectory in the tables of a network.
+ * <p>
+ * Only the current frame lives in the table: the node column
+ * {@value #CONCENTRATION} and the network column {@value #SIMULATION_TIME}.
+ * The scrubber remembers the values it wrote and only writes the nodes whose
+ * value changed, their row events are fired together once the frame is
+ * written, so mapped styles follow every frame. Frames requested
+ * while playing are written on a background thread, requests arriving
+ * while a frame is written are coalesced to the latest one.
+ * <p>
+ * The scrubber owns a reference of its trajectory and releases it on
+ * {@link #dispose()}, frames requested afterwards are not shown.
+ */
+public class TrajectoryScrubber {
+
+    /** Node column holding the concentration of the current frame. */
+    public static final String CONCENTRATION = "concentration";
+    /** Network column holding the time of the current frame. */
+    public static final String SIMULATION_TIME = "simulation time";
+
+    private final CyNetwork network;
+    private final SharedTrajectory trajectory;
+    private final CyEventHelper eventHelper;
+
+    private final CyNode[] nodes;
+    private final double[] frame;
+    private final double[] shown;
+
+    private final AtomicInteger pending = new AtomicInteger(-1);
+    private ExecutorService executor;
+    private boolean disposed;
+
+    /**
+     * @param trajectory trajectory to show, the scrubber takes over a
+     *                   reference the caller holds
+     */
+    public TrajectoryScrubber(CyNetwork network, SharedTrajectory trajectory, CyEventHelper eventHelper) {
+        this.network = network;
+        this.trajectory = trajectory;
+        this.eventHelper = eventHelper;
+        this.nodes = seriesNodes(network, trajectory);
+        this.frame = new double[trajectory.getSeriesCount()];
+        this.shown = new double[trajectory.getSeriesCount()];
+        Arrays.fill(shown, Double.NaN);
+    }
+
+    /** Nodes of the series by CN, null for series without node. */
+    private static CyNode[] seriesNodes(CyNetwork network, Trajectory trajectory) {
+        Map<String, CyNode> byCn = new HashMap<>();
+        for (CyNode node : network.getNodeList()) {
+            String cn = network.getRow(node).get("cn", String.class);
+            if (cn != null) {
+                byCn.put(cn, node);
+            }
+        }
+        CyNode[] nodes = new CyNode[trajectory.getSeriesCount()];
+        for (int s = 0; s < nodes.length; s++) {
+            nodes[s] = byCn.get(trajectory.getSeriesCn(s));
+        }
+        return nodes;
+    }
+
+    public Trajectory getTrajectory() {
+        return trajectory;
+    }
+
+    /**
+     * Writes the frame into the tables.
+     *
+     * @return number of node values written
+     */
+    public synchronized int showFrame(int index) {
+        if (disposed || index < 0 || index >= trajectory.getFrameCount()) {
+            return 0;
+        }
+        trajectory.getFrame(index, frame);
+        int changed = 0;
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNodeTable(), eventHelper)) {
+            writer.declare(CONCENTRATION, Double.class);
+            for (int s = 0; s < nodes.length; s++) {
+                double value = frame[s];
+                if (nodes[s] == null || Double.isNaN(value) || value == shown[s]) {
+                    continue;
+                }
+                writer.set(nodes[s], CONCENTRATION, value);
+                shown[s] = value;
+                changed++;
+            }
+        }
+        try (BulkAttributeWriter writer = new BulkAttributeWriter(network.getDefaultNetworkTable(), eventHelper)) {
+            writer.declare(SIMULATION_TIME, Double.class);
+            writer.set(network, SIMULATION_TIME, trajectory.getTime(index));
+        }
+        return changed;
+    }
+
+    /**
+     * Shows the frame on the background thread. Returns at once, frames
+     * requested faster than they are written are skipped.
+     */
+    public synchronized void request(int index) {
+        if (disposed) {
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new WorkerThreadFactory("copasi-scrubber-"));
+        }
+        if (pending.getAndSet(index) == -1) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int latest = pending.getAndSet(-1);
+                    if (latest >= 0) {
+                        showFrame(latest);
+                    }
+                }
+            });
+        }
+    }
+
+    /** Stops the background thread and releases the trajectory. */
+    public synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        trajectory.release();
+    }
+
+}
@@ -0,0 +1,25 @@
+package org.copasi.cytoscape.internal.tasks;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads for the worker pools of the tasks and the batch converter.
+ */
+public class WorkerThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public WorkerThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
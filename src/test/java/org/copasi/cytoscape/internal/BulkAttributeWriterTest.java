@@ -0,0 +1,108 @@
+package org.copasi.cytoscape.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkAttributeWriterTest {
+
+	private CyNetwork network;
+	private CyTable table;
+	private CyNode[] nodes;
+
+	@Before
+	public void createNetwork() {
+		network = new NetworkTestSupport().getNetwork();
+		table = network.getDefaultNodeTable();
+		nodes = new CyNode[4];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = network.addNode();
+		}
+	}
+
+	@Test
+	public void declareCreatesMissingColumns() {
+		table.createColumn("value", Integer.class, false);
+		try (BulkAttributeWriter writer = new BulkAttributeWriter(table, null)) {
+			writer.declare("value", Integer.class)
+					.declare("type", String.class)
+					.declareList("participants", String.class);
+		}
+		assertEquals(Integer.class, table.getColumn("value").getType());
+		assertEquals(String.class, table.getColumn("type").getType());
+		assertEquals(List.class, table.getColumn("participants").getType());
+		assertEquals(String.class, table.getColumn("participants").getListElementType());
+	}
+
+	@Test
+	public void columnRangesSkipNullEntriesAndValues() {
+		CyNode[] entries = {nodes[0], null, nodes[2], nodes[3]};
+		try (BulkAttributeWriter writer = new BulkAttributeWriter(table, null)) {
+			writer.declare("value", Double.class);
+			writer.set("value", entries, new Object[] {1.0, 2.0, null, 4.0}, 0, 3);
+		}
+		assertEquals(1.0, network.getRow(nodes[0]).get("value", Double.class), 0.0);
+		assertNull(network.getRow(nodes[1]).get("value", Double.class));
+		assertNull(network.getRow(nodes[2]).get("value", Double.class));
+		// outside of the range
+		assertNull(network.getRow(nodes[3]).get("value", Double.class));
+	}
+
+	@Test
+	public void sameValueForARange() {
+		try (BulkAttributeWriter writer = new BulkAttributeWriter(table, null)) {
+			writer.declare("type", String.class);
+			writer.set("type", nodes, "species", 1, 4);
+		}
+		assertNull(network.getRow(nodes[0]).get("type", String.class));
+		for (int i = 1; i < nodes.length; i++) {
+			assertEquals("species", network.getRow(nodes[i]).get("type", String.class));
+		}
+	}
+
+	@Test
+	public void singleValuesAndClear() {
+		try (BulkAttributeWriter writer = new BulkAttributeWriter(table, null)) {
+			writer.declare("type", String.class).declareList("participants", String.class);
+			writer.set(nodes[0], "type", "reaction");
+			writer.set(nodes[0], "participants", Arrays.asList("A", "B"));
+			writer.set(nodes[1], "type", null);
+			writer.clear(nodes[0], "type");
+		}
+		assertFalse(network.getRow(nodes[0]).isSet("type"));
+		assertEquals(Arrays.asList("A", "B"), network.getRow(nodes[0]).getList("participants", String.class));
+		assertFalse(network.getRow(nodes[1]).isSet("type"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void undeclaredColumnsAreRejected() {
+		table.createColumn("value", Double.class, false);
+		try (BulkAttributeWriter writer = new BulkAttributeWriter(table, null)) {
+			writer.set(nodes[0], "value", 1.0);
+		}
+	}
+
+	@Test
+	public void closeFlushesTheRowEvents() {
+		CyEventHelper eventHelper = mock(CyEventHelper.class);
+		try (BulkAttributeWriter writer = new BulkAttributeWriter(table, eventHelper)) {
+			writer.declare("type", String.class);
+			writer.set("type", nodes, "species", 0, nodes.length);
+		}
+		verify(eventHelper).flushPayloadEvents();
+	}
+
+}
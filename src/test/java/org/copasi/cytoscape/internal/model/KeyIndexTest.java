@@ -0,0 +1,58 @@
+package org.copasi.cytoscape.internal.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class KeyIndexTest {
+
+    private final KeyIndex index = new KeyIndex("Metabolite");
+
+    @Test
+    public void findsNumberedKeys() {
+        index.put("Metabolite_0", 5);
+        index.put("Metabolite_17", 6);
+        assertEquals(5, index.get("Metabolite_0"));
+        assertEquals(6, index.get("Metabolite_17"));
+        assertEquals(-1, index.get("Metabolite_1"));
+    }
+
+    @Test
+    public void growsForLargeNumbers() {
+        index.put("Metabolite_3", 1);
+        index.put("Metabolite_100000", 2);
+        assertEquals(1, index.get("Metabolite_3"));
+        assertEquals(2, index.get("Metabolite_100000"));
+        assertEquals(-1, index.get("Metabolite_99999"));
+        assertEquals(-1, index.get("Metabolite_100001"));
+    }
+
+    @Test
+    public void keepsOtherKeysInTheFallback() {
+        index.put("Metabolite_x", 1);
+        index.put("Compartment_2", 2);
+        index.put("Metabolite_", 3);
+        index.put("Metabolite_1234567890", 4);
+        assertEquals(1, index.get("Metabolite_x"));
+        assertEquals(2, index.get("Compartment_2"));
+        assertEquals(3, index.get("Metabolite_"));
+        assertEquals(4, index.get("Metabolite_1234567890"));
+        assertEquals(-1, index.get("Compartment_3"));
+        assertEquals(-1, index.get("Metabolite_2"));
+    }
+
+    @Test
+    public void laterPutReplaces() {
+        index.put("Metabolite_4", 1);
+        index.put("Metabolite_4", 2);
+        assertEquals(2, index.get("Metabolite_4"));
+    }
+
+    @Test
+    public void unknownKeys() {
+        assertEquals(-1, index.get(null));
+        assertEquals(-1, index.get("Metabolite_8"));
+        assertEquals(-1, index.get("Reaction_8"));
+    }
+
+}
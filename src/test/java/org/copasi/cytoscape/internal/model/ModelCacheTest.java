@@ -0,0 +1,87 @@
+package org.copasi.cytoscape.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelCacheTest {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("model-cache").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void storedSnapshotsAreReadBack() {
+        ModelCache cache = new ModelCache(directory, 1024 * 1024, null);
+        ModelSnapshot snapshot = SnapshotIOTest.snapshot();
+        cache.put("a", snapshot);
+        ModelSnapshot cached = cache.get("a");
+        assertNotNull(cached);
+        SnapshotIOTest.assertSameSnapshot(snapshot, cached);
+        assertEquals(1, cache.getEntryCount());
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void unreadableEntriesAreDropped() throws IOException {
+        ModelCache cache = new ModelCache(directory, 1024 * 1024, null);
+        File entry = new File(directory, "a.snapshot");
+        try (OutputStream out = new FileOutputStream(entry)) {
+            out.write(SnapshotIOTest.write(SnapshotIOTest.snapshot()), 0, 100);
+        }
+        assertNull(cache.get("a"));
+        assertFalse(entry.exists());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        ModelSnapshot snapshot = SnapshotIOTest.snapshot();
+        int size = SnapshotIOTest.write(snapshot).length;
+        ModelCache cache = new ModelCache(directory, 2L * size, null);
+        cache.put("a", snapshot);
+        cache.put("b", snapshot);
+        long now = System.currentTimeMillis();
+        assertTrue(new File(directory, "a.snapshot").setLastModified(now - 2000));
+        assertTrue(new File(directory, "b.snapshot").setLastModified(now - 3000));
+        cache.put("c", snapshot);
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void emptyCacheIsDisabled() {
+        ModelCache cache = new ModelCache(directory, 0, null);
+        assertFalse(cache.isEnabled());
+        assertEquals("Model cache disabled", cache.getStatistics());
+    }
+
+}
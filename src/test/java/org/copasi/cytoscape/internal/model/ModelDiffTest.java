@@ -0,0 +1,176 @@
+package org.copasi.cytoscape.internal.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ModelDiffTest {
+
+    /** The same model on every call, species with distinct initial concentrations. */
+    private static ModelSnapshot model() {
+        ModelSnapshot snapshot = new SyntheticModel(2, 3, 12, 8, 2, 1, 4, false, 5).toSnapshot();
+        for (int i = snapshot.getStart(ModelSnapshot.SPECIES); i < snapshot.getEnd(ModelSnapshot.SPECIES); i++) {
+            snapshot.values[i] = i;
+        }
+        return snapshot;
+    }
+
+    /** Renames an object, in its name and in the CNs of all objects, as COPASI does. */
+    private static void rename(ModelSnapshot snapshot, int index, String name) {
+        String old = "[" + snapshot.names[index] + "]";
+        for (int i = 0; i < snapshot.getObjectCount(); i++) {
+            snapshot.cns[i] = snapshot.cns[i].replace(old, "[" + name + "]");
+        }
+        snapshot.names[index] = name;
+        snapshot.displayNames[index] = name;
+    }
+
+    private static void assertUnchanged(ModelDiff diff, int index) {
+        assertEquals(index, diff.getPreviousIndex(index));
+        assertFalse(diff.isAttributesChanged(index));
+        assertFalse(diff.isParticipantsChanged(index));
+        assertFalse(diff.isDependenciesChanged(index));
+    }
+
+    @Test
+    public void sameModelHasNoDifferences() {
+        ModelDiff diff = ModelDiff.of(model(), model());
+        assertTrue(diff.isEmpty());
+        for (int i = 0; i < diff.getCurrent().getObjectCount(); i++) {
+            assertUnchanged(diff, i);
+            assertFalse(diff.isKeyChanged(i));
+        }
+    }
+
+    @Test
+    public void newKeysOnlyChangeTheKey() {
+        ModelSnapshot current = model();
+        int species = current.getStart(ModelSnapshot.SPECIES);
+        current.keys[species] = "Metabolite_99";
+        ModelDiff diff = ModelDiff.of(model(), current);
+        assertUnchanged(diff, species);
+        assertTrue(diff.isKeyChanged(species));
+        assertEquals(0, diff.getChangedCount());
+    }
+
+    @Test
+    public void renamedSpeciesIsMatched() {
+        ModelSnapshot current = model();
+        int species = current.getStart(ModelSnapshot.SPECIES) + 3;
+        rename(current, species, "renamed");
+        ModelDiff diff = ModelDiff.of(model(), current);
+        assertEquals(species, diff.getPreviousIndex(species));
+        assertTrue(diff.isAttributesChanged(species));
+        assertEquals(0, diff.getAddedCount());
+        assertEquals(0, diff.getRemovedCount());
+        for (int i = current.getStart(ModelSnapshot.REACTION); i < current.getEnd(ModelSnapshot.REACTION); i++) {
+            assertFalse(diff.isParticipantsChanged(i));
+        }
+    }
+
+    @Test
+    public void renamedCompartmentKeepsItsSpecies() {
+        ModelSnapshot current = model();
+        int compartment = current.getStart(ModelSnapshot.COMPARTMENT);
+        rename(current, compartment, "renamed");
+        ModelDiff diff = ModelDiff.of(model(), current);
+        assertEquals(compartment, diff.getPreviousIndex(compartment));
+        assertTrue(diff.isAttributesChanged(compartment));
+        // the CNs of its species changed with it
+        for (int i = current.getStart(ModelSnapshot.SPECIES); i < current.getEnd(ModelSnapshot.SPECIES); i++) {
+            assertEquals(i, diff.getPreviousIndex(i));
+            assertEquals(current.getCompartment(i) == compartment, diff.isAttributesChanged(i));
+        }
+        assertEquals(0, diff.getAddedCount());
+        assertEquals(0, diff.getRemovedCount());
+    }
+
+    @Test
+    public void ambiguousRenamesAreNotMatched() {
+        ModelSnapshot previous = model();
+        ModelSnapshot current = model();
+        int first = current.getStart(ModelSnapshot.SPECIES);
+        int second = first + 1;
+        assertEquals(current.getCompartment(first), current.getCompartment(second));
+        previous.values[second] = previous.values[first];
+        current.values[second] = current.values[first];
+        rename(current, first, "renamed1");
+        rename(current, second, "renamed2");
+        ModelDiff diff = ModelDiff.of(previous, current);
+        assertEquals(-1, diff.getPreviousIndex(first));
+        assertEquals(-1, diff.getPreviousIndex(second));
+        assertEquals(2, diff.getAddedCount());
+        assertArrayEquals(new int[] {first, second}, diff.getRemoved());
+        // reactions of the species now have other participants
+        for (int i = current.getStart(ModelSnapshot.REACTION); i < current.getEnd(ModelSnapshot.REACTION); i++) {
+            boolean participant = false;
+            for (int k = current.getParticipantStart(i); k < current.getParticipantEnd(i); k++) {
+                participant |= current.getParticipantSpecies(k) == first || current.getParticipantSpecies(k) == second;
+            }
+            assertEquals(participant, diff.isParticipantsChanged(i));
+        }
+    }
+
+    @Test
+    public void changedStoichiometryChangesParticipants() {
+        ModelSnapshot current = model();
+        int reaction = current.getStart(ModelSnapshot.REACTION) + 2;
+        current.participantStoichiometry[current.getParticipantStart(reaction)] = -2.0;
+        ModelDiff diff = ModelDiff.of(model(), current);
+        assertTrue(diff.isParticipantsChanged(reaction));
+        assertFalse(diff.isAttributesChanged(reaction));
+        assertEquals(1, diff.getChangedCount());
+    }
+
+    @Test
+    public void changedValueChangesAttributes() {
+        ModelSnapshot current = model();
+        int parameter = current.getStart(ModelSnapshot.PARAMETER);
+        current.values[parameter] = 42.0;
+        ModelDiff diff = ModelDiff.of(model(), current);
+        assertEquals(parameter, diff.getPreviousIndex(parameter));
+        assertTrue(diff.isAttributesChanged(parameter));
+        assertEquals(1, diff.getChangedCount());
+    }
+
+    @Test
+    public void addedDependencyChangesDependencies() {
+        ModelSnapshot current = model();
+        int n = current.getObjectCount();
+        int reaction = current.getStart(ModelSnapshot.REACTION);
+        current.dependencyOffsets = new int[n + 1];
+        for (int i = reaction + 1; i <= n; i++) {
+            current.dependencyOffsets[i] = 1;
+        }
+        current.dependencySources = new int[] {current.getStart(ModelSnapshot.PARAMETER)};
+        current.dependencyTypes = new byte[] {ModelSnapshot.RATE_LAW};
+        ModelDiff diff = ModelDiff.of(model(), current);
+        assertTrue(diff.isDependenciesChanged(reaction));
+        assertFalse(diff.isDependenciesChanged(reaction + 1));
+        assertEquals(1, diff.getChangedCount());
+    }
+
+    @Test
+    public void removedAndAddedReactions() {
+        // the generator draws the reactions in order, the smaller model lacks the last one
+        ModelSnapshot previous = new SyntheticModel(2, 3, 12, 8, 2, 1, 4, false, 5).toSnapshot();
+        ModelSnapshot current = new SyntheticModel(2, 3, 12, 7, 2, 1, 4, false, 5).toSnapshot();
+        int last = previous.getEnd(ModelSnapshot.REACTION) - 1;
+        ModelDiff removed = ModelDiff.of(previous, current);
+        assertArrayEquals(new int[] {last}, removed.getRemoved());
+        assertEquals(0, removed.getAddedCount());
+        assertEquals(0, removed.getChangedCount());
+
+        ModelDiff added = ModelDiff.of(current, previous);
+        assertEquals(-1, added.getPreviousIndex(last));
+        assertTrue(added.isAttributesChanged(last));
+        assertTrue(added.isParticipantsChanged(last));
+        assertEquals(1, added.getAddedCount());
+        assertEquals(0, added.getRemovedCount());
+        assertEquals(0, added.getChangedCount());
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.copasi.cytoscape.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ModelSnapshotTest {
+
+    private static final int COMPARTMENTS = 3;
+    private static final int PARAMETERS = 4;
+    private static final int SPECIES = 30;
+    private static final int REACTIONS = 20;
+    private static final int FAN_IN = 2;
+    private static final int FAN_OUT = 3;
+
+    private final ModelSnapshot snapshot = new SyntheticModel(COMPARTMENTS, PARAMETERS, SPECIES, REACTIONS,
+            FAN_IN, FAN_OUT, 8, true, 7).toSnapshot();
+
+    @Test
+    public void kindsAreContiguousRanges() {
+        assertEquals(COMPARTMENTS + PARAMETERS + SPECIES + REACTIONS, snapshot.getObjectCount());
+        assertEquals(0, snapshot.getStart(ModelSnapshot.COMPARTMENT));
+        assertEquals(snapshot.getEnd(ModelSnapshot.COMPARTMENT), snapshot.getStart(ModelSnapshot.PARAMETER));
+        assertEquals(snapshot.getEnd(ModelSnapshot.PARAMETER), snapshot.getStart(ModelSnapshot.SPECIES));
+        assertEquals(snapshot.getEnd(ModelSnapshot.SPECIES), snapshot.getStart(ModelSnapshot.REACTION));
+        assertEquals(snapshot.getObjectCount(), snapshot.getEnd(ModelSnapshot.REACTION));
+        assertEquals(SPECIES, snapshot.getCount(ModelSnapshot.SPECIES));
+        for (byte kind = ModelSnapshot.COMPARTMENT; kind <= ModelSnapshot.REACTION; kind++) {
+            for (int i = snapshot.getStart(kind); i < snapshot.getEnd(kind); i++) {
+                assertEquals(kind, snapshot.getKind(i));
+            }
+        }
+    }
+
+    @Test
+    public void speciesPointToCompartments() {
+        for (int i = snapshot.getStart(ModelSnapshot.SPECIES); i < snapshot.getEnd(ModelSnapshot.SPECIES); i++) {
+            int compartment = snapshot.getCompartment(i);
+            assertEquals(ModelSnapshot.COMPARTMENT, snapshot.getKind(compartment));
+            assertTrue(snapshot.getCn(i).startsWith(snapshot.getCn(compartment) + ","));
+        }
+    }
+
+    @Test
+    public void participantRowsCoverAllEntries() {
+        int reactionStart = snapshot.getStart(ModelSnapshot.REACTION);
+        assertEquals(0, snapshot.getParticipantStart(reactionStart));
+        for (int i = reactionStart; i < snapshot.getEnd(ModelSnapshot.REACTION); i++) {
+            assertEquals(FAN_IN + FAN_OUT, snapshot.getParticipantEnd(i) - snapshot.getParticipantStart(i));
+            if (i > reactionStart) {
+                assertEquals(snapshot.getParticipantEnd(i - 1), snapshot.getParticipantStart(i));
+            }
+            int substrates = 0;
+            for (int k = snapshot.getParticipantStart(i); k < snapshot.getParticipantEnd(i); k++) {
+                assertEquals(ModelSnapshot.SPECIES, snapshot.getKind(snapshot.getParticipantSpecies(k)));
+                if (snapshot.getParticipantStoichiometry(k) < 0) {
+                    substrates++;
+                }
+            }
+            assertEquals(FAN_IN, substrates);
+        }
+        assertEquals(REACTIONS * (FAN_IN + FAN_OUT),
+                snapshot.getParticipantEnd(snapshot.getEnd(ModelSnapshot.REACTION) - 1));
+        assertEquals(REACTIONS * (FAN_IN + FAN_OUT), snapshot.getParticipantCount());
+    }
+
+    @Test
+    public void dependencyRowsAreIndexedByObject() {
+        int n = snapshot.getObjectCount();
+        int reaction = snapshot.getStart(ModelSnapshot.REACTION);
+        int parameter = snapshot.getStart(ModelSnapshot.PARAMETER);
+        int modifier = snapshot.getStart(ModelSnapshot.SPECIES);
+        // the first reaction has a modifier and a rate law quantity, all other objects none
+        snapshot.dependencyOffsets = new int[n + 1];
+        for (int i = reaction + 1; i <= n; i++) {
+            snapshot.dependencyOffsets[i] = 2;
+        }
+        snapshot.dependencySources = new int[] {modifier, parameter};
+        snapshot.dependencyTypes = new byte[] {ModelSnapshot.MODIFIER, ModelSnapshot.RATE_LAW};
+
+        assertEquals(2, snapshot.getDependencyCount());
+        assertEquals(0, snapshot.getDependencyStart(reaction));
+        assertEquals(2, snapshot.getDependencyEnd(reaction));
+        assertEquals(modifier, snapshot.getDependencySource(0));
+        assertEquals(ModelSnapshot.MODIFIER, snapshot.getDependencyType(0));
+        assertEquals(parameter, snapshot.getDependencySource(1));
+        assertEquals("rate law", ModelSnapshot.getDependencyTypeName(snapshot.getDependencyType(1)));
+        for (int i = 0; i < n; i++) {
+            if (i != reaction) {
+                assertEquals(snapshot.getDependencyStart(i), snapshot.getDependencyEnd(i));
+            }
+        }
+    }
+
+    @Test
+    public void layoutOnlyForObjectsWithGlyphs() {
+        assertTrue(snapshot.hasLayout());
+        assertFalse(Double.isNaN(snapshot.getX(snapshot.getStart(ModelSnapshot.SPECIES))));
+        assertTrue(Double.isNaN(snapshot.getX(snapshot.getStart(ModelSnapshot.PARAMETER))));
+        assertFalse(new SyntheticModel(1, 0, 2, 1, 1, 1, 0, false, 1).toSnapshot().hasLayout());
+    }
+
+}
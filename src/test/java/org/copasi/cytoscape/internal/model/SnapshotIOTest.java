@@ -0,0 +1,115 @@
+package org.copasi.cytoscape.internal.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class SnapshotIOTest {
+
+    /** A synthetic snapshot with dependencies, a moiety and names outside of ASCII. */
+    static ModelSnapshot snapshot() {
+        ModelSnapshot snapshot = new SyntheticModel(2, 3, 12, 8, 2, 1, 4, true, 3).toSnapshot();
+        int n = snapshot.getObjectCount();
+        int reaction = snapshot.getStart(ModelSnapshot.REACTION);
+        int species = snapshot.getStart(ModelSnapshot.SPECIES);
+        snapshot.dependencyOffsets = new int[n + 1];
+        for (int i = reaction + 1; i <= n; i++) {
+            snapshot.dependencyOffsets[i] = 2;
+        }
+        snapshot.dependencySources = new int[] {species, snapshot.getStart(ModelSnapshot.PARAMETER)};
+        snapshot.dependencyTypes = new byte[] {ModelSnapshot.MODIFIER, ModelSnapshot.RATE_LAW};
+        snapshot.speciesDependent[1] = true;
+        snapshot.moietyDescriptions = new String[] {"total = s0 + s1"};
+        snapshot.moietySpecies = new int[] {species + 1};
+        snapshot.names[species] = "\u03b1-ketoglutarate";
+        snapshot.displayNames[species] = null;
+        return snapshot;
+    }
+
+    static byte[] write(ModelSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SnapshotIO.write(snapshot, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ModelSnapshot read(byte[] bytes) throws IOException {
+        return SnapshotIO.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    static void assertSameSnapshot(ModelSnapshot expected, ModelSnapshot actual) {
+        assertEquals(expected.modelKey, actual.modelKey);
+        assertEquals(expected.modelCn, actual.modelCn);
+        assertEquals(expected.modelName, actual.modelName);
+        assertEquals(expected.modelDisplayName, actual.modelDisplayName);
+        assertEquals(expected.copasiVersion, actual.copasiVersion);
+        assertArrayEquals(expected.offsets, actual.offsets);
+        assertArrayEquals(expected.kinds, actual.kinds);
+        assertArrayEquals(expected.keys, actual.keys);
+        assertArrayEquals(expected.cns, actual.cns);
+        assertArrayEquals(expected.names, actual.names);
+        assertArrayEquals(expected.displayNames, actual.displayNames);
+        assertArrayEquals(expected.values, actual.values, 0.0);
+        assertArrayEquals(expected.compartmentDimensions, actual.compartmentDimensions);
+        assertArrayEquals(expected.speciesCompartment, actual.speciesCompartment);
+        assertArrayEquals(expected.reactionReversible, actual.reactionReversible);
+        assertArrayEquals(expected.reactionOffsets, actual.reactionOffsets);
+        assertArrayEquals(expected.participantSpecies, actual.participantSpecies);
+        assertArrayEquals(expected.participantStoichiometry, actual.participantStoichiometry, 0.0);
+        assertArrayEquals(expected.dependencyOffsets, actual.dependencyOffsets);
+        assertArrayEquals(expected.dependencySources, actual.dependencySources);
+        assertArrayEquals(expected.dependencyTypes, actual.dependencyTypes);
+        assertArrayEquals(expected.speciesDependent, actual.speciesDependent);
+        assertArrayEquals(expected.moietyDescriptions, actual.moietyDescriptions);
+        assertArrayEquals(expected.moietySpecies, actual.moietySpecies);
+        assertArrayEquals(expected.taskNames, actual.taskNames);
+        assertArrayEquals(expected.x, actual.x, 0.0);
+        assertArrayEquals(expected.y, actual.y, 0.0);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        ModelSnapshot snapshot = snapshot();
+        assertSameSnapshot(snapshot, read(write(snapshot)));
+    }
+
+    @Test
+    public void stringsAreWrittenOnce() throws IOException {
+        ModelSnapshot snapshot = snapshot();
+        snapshot.displayNames = new String[snapshot.getObjectCount()];
+        int length = write(snapshot).length;
+        // display names equal to the names only add their references, as null does
+        snapshot.displayNames = snapshot.names.clone();
+        assertEquals(length, write(snapshot).length);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormatVersions() throws IOException {
+        byte[] bytes = write(snapshot());
+        ByteBuffer.wrap(bytes).putInt(4, SnapshotIO.FORMAT_VERSION + 1);
+        read(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        read("<?xml version=\"1.0\"?>".getBytes("UTF-8"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFiles() throws IOException {
+        byte[] bytes = write(snapshot());
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        read(truncated);
+    }
+
+}
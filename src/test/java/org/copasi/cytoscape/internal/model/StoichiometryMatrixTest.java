@@ -0,0 +1,108 @@
+package org.copasi.cytoscape.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class StoichiometryMatrixTest {
+
+    /**
+     * Three species and two reactions: r0 turns s2 and s0 into two s1, r1
+     * takes s0 and gives it back and makes two s2 of one.
+     */
+    private static ModelSnapshot tiny() {
+        ModelSnapshot snapshot = new SyntheticModel(1, 0, 3, 2, 1, 1, 0, false, 1).toSnapshot();
+        int s = snapshot.getStart(ModelSnapshot.SPECIES);
+        snapshot.reactionOffsets = new int[] {0, 3, 7};
+        snapshot.participantSpecies = new int[] {s + 2, s, s + 1, s, s + 2, s, s + 2};
+        snapshot.participantStoichiometry = new double[] {-1, -1, 2, -1, -1, 1, 2};
+        return snapshot;
+    }
+
+    @Test
+    public void entriesAreNetted() {
+        StoichiometryMatrix matrix = StoichiometryMatrix.of(tiny());
+        assertEquals(3, matrix.getRowCount());
+        assertEquals(2, matrix.getColumnCount());
+        // s0 cancels out in r1, s2 nets to 1
+        assertEquals(4, matrix.getNonZeroCount());
+        assertEquals(-1.0, matrix.get(0, 0), 0.0);
+        assertEquals(2.0, matrix.get(1, 0), 0.0);
+        assertEquals(-1.0, matrix.get(2, 0), 0.0);
+        assertEquals(0.0, matrix.get(0, 1), 0.0);
+        assertEquals(0.0, matrix.get(1, 1), 0.0);
+        assertEquals(1.0, matrix.get(2, 1), 0.0);
+    }
+
+    @Test
+    public void columnsAndRowsAgree() {
+        ModelSnapshot snapshot = new SyntheticModel(3, 0, 40, 60, 3, 2, 0, false, 11).toSnapshot();
+        StoichiometryMatrix matrix = StoichiometryMatrix.of(snapshot);
+        int reactionStart = snapshot.getStart(ModelSnapshot.REACTION);
+        int speciesStart = snapshot.getStart(ModelSnapshot.SPECIES);
+        for (int r = 0; r < matrix.getColumnCount(); r++) {
+            assertEquals(snapshot.getCn(reactionStart + r), matrix.getReactionCn(r));
+            // the column holds the summed participants, row indices sorted
+            double[] column = new double[matrix.getRowCount()];
+            for (int k = snapshot.getParticipantStart(reactionStart + r);
+                 k < snapshot.getParticipantEnd(reactionStart + r); k++) {
+                column[snapshot.getParticipantSpecies(k) - speciesStart] += snapshot.getParticipantStoichiometry(k);
+            }
+            int previous = -1;
+            for (int k = matrix.getColumnStart(r); k < matrix.getColumnEnd(r); k++) {
+                assertTrue(matrix.getRowIndex(k) > previous);
+                previous = matrix.getRowIndex(k);
+            }
+            for (int s = 0; s < matrix.getRowCount(); s++) {
+                assertEquals(column[s], matrix.get(s, r), 0.0);
+            }
+        }
+        int entries = 0;
+        for (int s = 0; s < matrix.getRowCount(); s++) {
+            assertEquals(snapshot.getCn(speciesStart + s), matrix.getSpeciesCn(s));
+            int previous = -1;
+            for (int k = matrix.getRowStart(s); k < matrix.getRowEnd(s); k++) {
+                int r = matrix.getColumnIndex(k);
+                assertTrue(r > previous);
+                previous = r;
+                assertEquals(matrix.get(s, r), matrix.getRowValue(k), 0.0);
+                entries++;
+            }
+        }
+        assertEquals(matrix.getNonZeroCount(), entries);
+    }
+
+    @Test
+    public void matrixMarket() throws IOException {
+        StringWriter out = new StringWriter();
+        StoichiometryMatrix.of(tiny()).writeMatrixMarket(out, "tiny\nmodel");
+        assertEquals("%%MatrixMarket matrix coordinate real general\n"
+                + "% tiny\n"
+                + "% model\n"
+                + "3 2 4\n"
+                + "1 1 -1.0\n"
+                + "2 1 2.0\n"
+                + "3 1 -1.0\n"
+                + "3 2 1.0\n", out.toString());
+    }
+
+    @Test
+    public void rowAndColumnNames() throws IOException {
+        ModelSnapshot snapshot = tiny();
+        StoichiometryMatrix matrix = StoichiometryMatrix.of(snapshot);
+        StringWriter species = new StringWriter();
+        matrix.writeSpecies(species);
+        StringWriter reactions = new StringWriter();
+        matrix.writeReactions(reactions);
+        int s = snapshot.getStart(ModelSnapshot.SPECIES);
+        int r = snapshot.getStart(ModelSnapshot.REACTION);
+        assertEquals(snapshot.getCn(s) + "\n" + snapshot.getCn(s + 1) + "\n" + snapshot.getCn(s + 2) + "\n",
+                species.toString());
+        assertEquals(snapshot.getCn(r) + "\n" + snapshot.getCn(r + 1) + "\n", reactions.toString());
+    }
+
+}
@@ -0,0 +1,382 @@
+package org.copasi.cytoscape.internal.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates synthetic COPASI models of a given size.
+ * <p>
+ * Species are spread evenly over the compartments, every reaction draws
+ * its substrates and products at random from all species. Names are padded
+ * to the requested length, so models with long names can be measured as
+ * well. The same model is available as a CopasiML document, for the phases
+ * that go through COPASI, and as the {@link ModelSnapshot} COPASI would
+ * extract from it, for the phases that only need the snapshot. Models are
+ * reproducible for the same parameters and seed.
+ */
+public class SyntheticModel {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String MODEL_NAME = "synthetic";
+    private static final String MODEL_CN = "CN=Root,Model=" + MODEL_NAME;
+
+    /** Distance between two glyphs of the generated layout. */
+    private static final double SPACING = 60.0;
+    private static final double GLYPH_SIZE = 40.0;
+
+    private final int compartments;
+    private final int parameters;
+    private final int species;
+    private final int reactions;
+    private final int nameLength;
+    private final boolean layout;
+
+    private final int[] speciesCompartment;
+    private final int[] participantOffsets;
+    private final int[] participantSpecies;
+    private final double[] participantStoichiometry;
+    private final boolean[] reversible;
+
+    /**
+     * @param compartments number of compartments, at least 1
+     * @param parameters   number of global quantities
+     * @param species      number of species
+     * @param reactions    number of reactions
+     * @param fanIn        substrates per reaction
+     * @param fanOut       products per reaction
+     * @param nameLength   minimal length of the object names
+     * @param layout       whether the model has a layout with a glyph per object
+     * @param seed         seed of the random choices
+     */
+    public SyntheticModel(int compartments, int parameters, int species, int reactions, int fanIn, int fanOut,
+                          int nameLength, boolean layout, long seed) {
+        this.compartments = Math.max(1, compartments);
+        this.parameters = Math.max(0, parameters);
+        this.species = Math.max(0, species);
+        this.reactions = this.species > 0 ? Math.max(0, reactions) : 0;
+        this.nameLength = Math.max(0, nameLength);
+        this.layout = layout;
+
+        Random random = new Random(seed);
+        speciesCompartment = new int[this.species];
+        for (int s = 0; s < this.species; s++) {
+            speciesCompartment[s] = (int) ((long) s * this.compartments / this.species);
+        }
+        int perReaction = Math.max(0, fanIn) + Math.max(0, fanOut);
+        participantOffsets = new int[this.reactions + 1];
+        participantSpecies = new int[this.reactions * perReaction];
+        participantStoichiometry = new double[participantSpecies.length];
+        reversible = new boolean[this.reactions];
+        int entry = 0;
+        for (int r = 0; r < this.reactions; r++) {
+            for (int k = 0; k < perReaction; k++) {
+                participantSpecies[entry] = random.nextInt(this.species);
+                participantStoichiometry[entry] = k < fanIn ? -1.0 : 1.0;
+                entry++;
+            }
+            participantOffsets[r + 1] = entry;
+            reversible[r] = random.nextBoolean();
+        }
+    }
+
+    /** Number of compartments, parameters, species and reactions. */
+    public int getObjectCount() {
+        return compartments + parameters + species + reactions;
+    }
+
+    public int getParticipantCount() {
+        return participantSpecies.length;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Names
+    //////////////////////////////////////////////////////////////////////////
+
+    private String name(String prefix, int index) {
+        StringBuilder sb = new StringBuilder(Math.max(nameLength, 12));
+        sb.append(prefix).append(index);
+        while (sb.length() < nameLength) {
+            sb.append('_');
+        }
+        return sb.toString();
+    }
+
+    private String compartmentName(int c) {
+        return name("c", c);
+    }
+
+    private String parameterName(int p) {
+        return name("k", p);
+    }
+
+    private String speciesName(int s) {
+        return name("s", s);
+    }
+
+    private String reactionName(int r) {
+        return name("r", r);
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // Snapshot
+    //////////////////////////////////////////////////////////////////////////
+
+    /** The snapshot COPASI extracts from the model, with the layout positions if it has a layout. */
+    public ModelSnapshot toSnapshot() {
+        ModelSnapshot snapshot = new ModelSnapshot();
+        snapshot.modelKey = "Model_1";
+        snapshot.modelCn = MODEL_CN;
+        snapshot.modelName = MODEL_NAME;
+        snapshot.modelDisplayName = MODEL_NAME;
+        snapshot.copasiVersion = "synthetic";
+
+        int n = getObjectCount();
+        snapshot.offsets[ModelSnapshot.COMPARTMENT] = 0;
+        snapshot.offsets[ModelSnapshot.PARAMETER] = compartments;
+        snapshot.offsets[ModelSnapshot.SPECIES] = compartments + parameters;
+        snapshot.offsets[ModelSnapshot.REACTION] = compartments + parameters + species;
+        snapshot.offsets[ModelSnapshot.REACTION + 1] = n;
+
+        snapshot.kinds = new byte[n];
+        snapshot.keys = new String[n];
+        snapshot.cns = new String[n];
+        snapshot.names = new String[n];
+        snapshot.displayNames = new String[n];
+        snapshot.values = new double[n];
+        snapshot.x = new double[n];
+        snapshot.y = new double[n];
+
+        int i = 0;
+        for (int c = 0; c < compartments; c++, i++) {
+            String name = compartmentName(c);
+            object(snapshot, i, ModelSnapshot.COMPARTMENT, "Compartment_" + c,
+                    MODEL_CN + ",Vector=Compartments[" + name + "]", name, name, 1.0);
+        }
+        for (int p = 0; p < parameters; p++, i++) {
+            String name = parameterName(p);
+            object(snapshot, i, ModelSnapshot.PARAMETER, "ModelValue_" + p,
+                    MODEL_CN + ",Vector=Values[" + name + "]", name, "Values[" + name + "]", 1.0);
+        }
+        for (int s = 0; s < species; s++, i++) {
+            String name = speciesName(s);
+            String compartment = compartmentName(speciesCompartment[s]);
+            object(snapshot, i, ModelSnapshot.SPECIES, "Metabolite_" + s,
+                    MODEL_CN + ",Vector=Compartments[" + compartment + "],Vector=Metabolites[" + name + "]",
+                    name, compartments > 1 ? name + "{" + compartment + "}" : name, 1.0);
+        }
+        for (int r = 0; r < reactions; r++, i++) {
+            String name = reactionName(r);
+            object(snapshot, i, ModelSnapshot.REACTION, "Reaction_" + r,
+                    MODEL_CN + ",Vector=Reactions[" + name + "]", name, "(" + name + ")", Double.NaN);
+        }
+
+        snapshot.compartmentDimensions = new int[compartments];
+        Arrays.fill(snapshot.compartmentDimensions, 3);
+        snapshot.speciesCompartment = new int[species];
+        for (int s = 0; s < species; s++) {
+            snapshot.speciesCompartment[s] = speciesCompartment[s];
+        }
+        snapshot.reactionReversible = reversible.clone();
+
+        int speciesStart = snapshot.offsets[ModelSnapshot.SPECIES];
+        snapshot.reactionOffsets = participantOffsets.clone();
+        snapshot.participantSpecies = new int[participantSpecies.length];
+        for (int k = 0; k < participantSpecies.length; k++) {
+            snapshot.participantSpecies[k] = speciesStart + participantSpecies[k];
+        }
+        snapshot.participantStoichiometry = participantStoichiometry.clone();
+
+        // the generated model has no modifiers, rate laws, rules or events
+        snapshot.dependencyOffsets = new int[n + 1];
+        snapshot.dependencySources = new int[0];
+        snapshot.dependencyTypes = new byte[0];
+
+        snapshot.speciesDependent = new boolean[species];
+        snapshot.moietyDescriptions = new String[0];
+        snapshot.moietySpecies = new int[0];
+        snapshot.taskNames = new String[] {"Steady-State", "Time-Course"};
+
+        // global quantities have no glyph
+        for (int j = 0; j < n; j++) {
+            boolean glyph = layout && snapshot.kinds[j] != ModelSnapshot.PARAMETER;
+            snapshot.x[j] = glyph ? x(j) + GLYPH_SIZE / 2 : Double.NaN;
+            snapshot.y[j] = glyph ? y(j) + GLYPH_SIZE / 2 : Double.NaN;
+        }
+        return snapshot;
+    }
+
+    private static void object(ModelSnapshot snapshot, int i, byte kind, String key, String cn, String name,
+                               String displayName, double value) {
+        snapshot.kinds[i] = kind;
+        snapshot.keys[i] = key;
+        snapshot.cns[i] = cn;
+        snapshot.names[i] = name;
+        snapshot.displayNames[i] = displayName;
+        snapshot.values[i] = value;
+    }
+
+    /** Top left corner of the glyph of an object, the objects are laid out on a square grid. */
+    private double x(int index) {
+        int columns = (int) Math.ceil(Math.sqrt(getObjectCount()));
+        return (index % columns) * SPACING;
+    }
+
+    private double y(int index) {
+        int columns = (int) Math.ceil(Math.sqrt(getObjectCount()));
+        return (index / columns) * SPACING;
+    }
+
+    //////////////////////////////////////////////////////////////////////////
+    // CopasiML
+    //////////////////////////////////////////////////////////////////////////
+
+    /** The model as CopasiML document. */
+    public String toCopasiMl() {
+        StringWriter out = new StringWriter();
+        try {
+            writeCopasiMl(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /** Writes the model as CopasiML file. */
+    public void writeCopasiMl(File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8))) {
+            writeCopasiMl(out);
+        }
+    }
+
+    /** Writes the model as CopasiML document. */
+    public void writeCopasiMl(Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<COPASI xmlns=\"http://www.copasi.org/static/schema\" versionMajor=\"4\" versionMinor=\"24\">\n");
+        out.write("  <Model key=\"Model_1\" name=\"" + MODEL_NAME + "\" simulationType=\"time\" timeUnit=\"s\""
+                + " volumeUnit=\"ml\" areaUnit=\"m\u00b2\" lengthUnit=\"m\" quantityUnit=\"mmol\""
+                + " type=\"deterministic\" avogadroConstant=\"6.0221417899999999e+23\">\n");
+
+        out.write("    <ListOfCompartments>\n");
+        for (int c = 0; c < compartments; c++) {
+            out.write("      <Compartment key=\"Compartment_" + c + "\" name=\"" + compartmentName(c)
+                    + "\" simulationType=\"fixed\" dimensionality=\"3\"/>\n");
+        }
+        out.write("    </ListOfCompartments>\n");
+
+        out.write("    <ListOfMetabolites>\n");
+        for (int s = 0; s < species; s++) {
+            out.write("      <Metabolite key=\"Metabolite_" + s + "\" name=\"" + speciesName(s)
+                    + "\" simulationType=\"reactions\" compartment=\"Compartment_" + speciesCompartment[s] + "\"/>\n");
+        }
+        out.write("    </ListOfMetabolites>\n");
+
+        out.write("    <ListOfModelValues>\n");
+        for (int p = 0; p < parameters; p++) {
+            out.write("      <ModelValue key=\"ModelValue_" + p + "\" name=\"" + parameterName(p)
+                    + "\" simulationType=\"fixed\"/>\n");
+        }
+        out.write("    </ListOfModelValues>\n");
+
+        out.write("    <ListOfReactions>\n");
+        for (int r = 0; r < reactions; r++) {
+            out.write("      <Reaction key=\"Reaction_" + r + "\" name=\"" + reactionName(r)
+                    + "\" reversible=\"" + reversible[r] + "\" fast=\"false\">\n");
+            writeParticipants(out, r, true);
+            writeParticipants(out, r, false);
+            out.write("      </Reaction>\n");
+        }
+        out.write("    </ListOfReactions>\n");
+        out.write("  </Model>\n");
+
+        if (layout) {
+            writeLayout(out);
+        }
+        out.write("</COPASI>\n");
+    }
+
+    private void writeParticipants(Writer out, int r, boolean substrates) throws IOException {
+        String list = substrates ? "ListOfSubstrates" : "ListOfProducts";
+        String element = substrates ? "Substrate" : "Product";
+        boolean open = false;
+        for (int k = participantOffsets[r]; k < participantOffsets[r + 1]; k++) {
+            if (participantStoichiometry[k] < 0 != substrates) {
+                continue;
+            }
+            if (!open) {
+                out.write("        <" + list + ">\n");
+                open = true;
+            }
+            out.write("          <" + element + " metabolite=\"Metabolite_" + participantSpecies[k]
+                    + "\" stoichiometry=\"" + Math.abs(participantStoichiometry[k]) + "\"/>\n");
+        }
+        if (open) {
+            out.write("        </" + list + ">\n");
+        }
+    }
+
+    private void writeLayout(Writer out) throws IOException {
+        out.write("  <ListOfLayouts>\n");
+        out.write("    <Layout key=\"Layout_1\" name=\"synthetic\">\n");
+        int columns = (int) Math.ceil(Math.sqrt(getObjectCount()));
+        out.write("      <Dimensions width=\"" + columns * SPACING + "\" height=\"" + columns * SPACING + "\"/>\n");
+        int glyph = 0;
+        out.write("      <ListOfCompartmentGlyphs>\n");
+        for (int c = 0; c < compartments; c++) {
+            writeGlyph(out, "CompartmentGlyph", "compartment", "Compartment_" + c, glyph++, c);
+        }
+        out.write("      </ListOfCompartmentGlyphs>\n");
+        out.write("      <ListOfMetabGlyphs>\n");
+        int speciesStart = compartments + parameters;
+        for (int s = 0; s < species; s++) {
+            writeGlyph(out, "MetaboliteGlyph", "metabolite", "Metabolite_" + s, glyph++, speciesStart + s);
+        }
+        out.write("      </ListOfMetabGlyphs>\n");
+        out.write("      <ListOfReactionGlyphs>\n");
+        int reactionStart = speciesStart + species;
+        for (int r = 0; r < reactions; r++) {
+            writeGlyph(out, "ReactionGlyph", "reaction", "Reaction_" + r, glyph++, reactionStart + r);
+        }
+        out.write("      </ListOfReactionGlyphs>\n");
+        out.write("      <ListOfTextGlyphs>\n");
+        out.write("      </ListOfTextGlyphs>\n");
+        out.write("    </Layout>\n");
+        out.write("  </ListOfLayouts>\n");
+    }
+
+    private void writeGlyph(Writer out, String element, String attribute, String key, int glyph, int index)
+            throws IOException {
+        out.write("        <" + element + " key=\"Layout_" + (glyph + 2) + "\" name=\"" + element
+                + "\" " + attribute + "=\"" + key + "\">\n");
+        out.write("          <BoundingBox>\n");
+        out.write("            <Position x=\"" + x(index) + "\" y=\"" + y(index) + "\"/>\n");
+        out.write("            <Dimensions width=\"" + GLYPH_SIZE + "\" height=\"" + GLYPH_SIZE + "\"/>\n");
+        out.write("          </BoundingBox>\n");
+        out.write("        </" + element + ">\n");
+    }
+
+    /**
+     * Writes a synthetic model file, e.g. to import it by hand.
+     * Arguments: file compartments parameters species reactions fanIn fanOut nameLength [layout]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 8) {
+            System.err.println("Usage: SyntheticModel file compartments parameters species reactions"
+                    + " fanIn fanOut nameLength [layout]");
+            System.exit(1);
+        }
+        SyntheticModel model = new SyntheticModel(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5]),
+                Integer.parseInt(args[6]), Integer.parseInt(args[7]),
+                args.length > 8 && Boolean.parseBoolean(args[8]), 1L);
+        model.writeCopasiMl(new File(args[0]));
+    }
+
+}